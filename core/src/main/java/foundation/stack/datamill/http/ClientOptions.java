@@ -0,0 +1,130 @@
+package foundation.stack.datamill.http;
+
+/**
+ * <p>
+ * Options that configure the connection pool and default timeouts used by a {@link Client}. Connections are pooled
+ * and reused across requests made through the same client, so a client should be created once and shared. For
+ * example:
+ * </p>
+ * <pre>
+ * Client client = new ClientImpl(new ClientOptions()
+ *     .maxConnections(400)
+ *     .maxConnectionsPerRoute(50)
+ *     .keepAlive(30000)
+ *     .readTimeout(10000));
+ * </pre>
+ * <p>
+ * Connect and read timeouts can also be specified for individual requests using
+ * {@link RequestBuilder#connectTimeout(int)} and {@link RequestBuilder#readTimeout(int)}. Note that a pooled connection
+ * is only returned to the pool once the response body has been fully consumed.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ClientOptions {
+    private int connectTimeout;
+    private int connectionRequestTimeout;
+    private long idleTimeout = 60000;
+    private long keepAlive;
+    private int maxConnections = 200;
+    private int maxConnectionsPerRoute = 20;
+    private int maxPendingRequests = 1000;
+    private int readTimeout;
+
+    /** Set the default timeout, in milliseconds, for establishing connections. By default, the system timeout applies. */
+    public ClientOptions connectTimeout(int milliseconds) {
+        this.connectTimeout = milliseconds;
+        return this;
+    }
+
+    /**
+     * Set the maximum time, in milliseconds, a request waits for a connection to become available when the pool is
+     * exhausted. By default, requests wait until a connection becomes available.
+     */
+    public ClientOptions connectionRequestTimeout(int milliseconds) {
+        this.connectionRequestTimeout = milliseconds;
+        return this;
+    }
+
+    /**
+     * Evict pooled connections that have been idle for longer than the specified number of milliseconds. Idle
+     * connections are evicted after a minute by default, and a value of 0 disables eviction.
+     */
+    public ClientOptions idleTimeout(long milliseconds) {
+        this.idleTimeout = milliseconds;
+        return this;
+    }
+
+    /**
+     * Set the maximum time, in milliseconds, a connection is kept alive for reuse. If a server indicates a shorter
+     * keep-alive timeout, that is honored instead. By default, connections are kept alive for as long as the server
+     * allows.
+     */
+    public ClientOptions keepAlive(long milliseconds) {
+        this.keepAlive = milliseconds;
+        return this;
+    }
+
+    /** Set the maximum number of pooled connections across all routes. */
+    public ClientOptions maxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /** Set the maximum number of pooled connections to any one route (host and port). */
+    public ClientOptions maxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of requests that can wait for a connection when the pool is exhausted - further requests
+     * fail straight away. This only applies to {@link foundation.stack.datamill.http.impl.NettyClientImpl}, as
+     * requests made through {@link foundation.stack.datamill.http.impl.ClientImpl} wait on their own threads.
+     */
+    public ClientOptions maxPendingRequests(int maxPendingRequests) {
+        this.maxPendingRequests = maxPendingRequests;
+        return this;
+    }
+
+    /**
+     * Set the default socket read timeout, in milliseconds - the maximum time to wait for data while reading a
+     * response. By default, the system timeout applies.
+     */
+    public ClientOptions readTimeout(int milliseconds) {
+        this.readTimeout = milliseconds;
+        return this;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public long getKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+}
@@ -0,0 +1,99 @@
+package foundation.stack.datamill.http;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * A cross-origin resource sharing (CORS) policy, for routes built using a
+ * {@link foundation.stack.datamill.http.builder.RouteBuilder}. Specify a policy on a route using
+ * {@link PostProcessedRoute#cors(CorsPolicy)}. For example:
+ * </p>
+ * <pre>
+ * new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/users", ...)
+ *         .orElse(r -> r.respond(b -> b.notFound()))
+ *         .cors(new CorsPolicy()
+ *             .allowedOrigins("https://app.example.com")
+ *             .allowedHeaders("Authorization", "Content-Type")
+ *             .maxAge(3600)))
+ *     .listen(8080);
+ * </pre>
+ * <p>
+ * Preflight requests are answered by the route itself, without invoking any handler, with the methods the route's
+ * matchers allow for the requested URI. Responses to other requests from allowed origins are given the
+ * Access-Control-Allow-Origin header, along with any exposed headers. By default, all origins are allowed, the headers
+ * requested by preflight requests are allowed, and browsers are allowed to cache preflight responses for 10 minutes.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class CorsPolicy {
+    private boolean allowCredentials;
+    private List<String> allowedHeaders;
+    private Set<String> allowedOrigins = Collections.emptySet();
+    private List<String> exposedHeaders = Collections.emptyList();
+    private long maxAge = 600;
+
+    /**
+     * Set whether requests are allowed to include credentials, such as cookies. Credentials are only ever allowed for
+     * the origins listed using {@link #allowedOrigins(String...)} - when all origins are allowed, they are allowed
+     * using a wildcard, which browsers never send credentials to.
+     */
+    public CorsPolicy allowCredentials(boolean allowCredentials) {
+        this.allowCredentials = allowCredentials;
+        return this;
+    }
+
+    /** Set the request headers allowed, instead of allowing the headers requested by preflight requests. */
+    public CorsPolicy allowedHeaders(String... headers) {
+        this.allowedHeaders = Arrays.asList(headers);
+        return this;
+    }
+
+    /** Set the origins allowed to make requests, instead of allowing all origins. */
+    public CorsPolicy allowedOrigins(String... origins) {
+        this.allowedOrigins = new HashSet<>(Arrays.asList(origins));
+        return this;
+    }
+
+    /** Set the response headers that browsers expose to scripts, beyond the CORS-safelisted headers. */
+    public CorsPolicy exposedHeaders(String... headers) {
+        this.exposedHeaders = Arrays.asList(headers);
+        return this;
+    }
+
+    /** Set the number of seconds browsers can cache preflight responses for. */
+    public CorsPolicy maxAge(long seconds) {
+        this.maxAge = seconds;
+        return this;
+    }
+
+    /** Get the allowed request headers, or null if the headers requested by preflight requests are allowed. */
+    public List<String> getAllowedHeaders() {
+        return allowedHeaders;
+    }
+
+    /** Get the allowed origins, which is empty if all origins are allowed. */
+    public Set<String> getAllowedOrigins() {
+        return allowedOrigins;
+    }
+
+    public List<String> getExposedHeaders() {
+        return exposedHeaders;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public boolean isAllowCredentials() {
+        return allowCredentials;
+    }
+
+    public boolean isOriginAllowed(String origin) {
+        return allowedOrigins.isEmpty() || allowedOrigins.contains(origin);
+    }
+}
@@ -7,4 +7,13 @@ import rx.functions.Func2;
  */
 public interface PostProcessedRoute extends Route {
     Route andFinally(Func2<Request, Response, Response> postProcessor);
+
+    /**
+     * Answer preflight requests, and add CORS headers to responses, according to the specified policy. Routes built
+     * using a {@link foundation.stack.datamill.http.builder.RouteBuilder} support this, while other routes throw an
+     * {@link UnsupportedOperationException} when the policy is specified, rather than silently ignoring it.
+     */
+    default PostProcessedRoute cors(CorsPolicy policy) {
+        throw new UnsupportedOperationException("CORS policies are not supported by " + getClass().getName());
+    }
 }
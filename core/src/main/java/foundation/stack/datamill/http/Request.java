@@ -10,6 +10,7 @@ import java.util.Map;
  */
 public interface Request {
     String OPTION_CONNECT_TIMEOUT = "connectTimeout";
+    String OPTION_READ_TIMEOUT = "readTimeout";
 
     Body body();
 
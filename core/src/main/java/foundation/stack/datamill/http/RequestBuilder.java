@@ -15,6 +15,15 @@ public interface RequestBuilder {
     RequestBuilder method(Method method);
     RequestBuilder method(String method);
     RequestBuilder queryParameter(String name, String value);
+
+    /**
+     * Set the socket read timeout for the request, in milliseconds, as the {@link Request#OPTION_READ_TIMEOUT} option.
+     * Builders that don't support request options ignore it, and the client's default read timeout applies.
+     */
+    default RequestBuilder readTimeout(int milliseconds) {
+        return this;
+    }
+
     RequestBuilder uri(String uri);
     <T> RequestBuilder uriParameter(String name, T value);
 }
@@ -0,0 +1,43 @@
+package foundation.stack.datamill.http;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Executes the work of handling requests received by a {@link Server}. Use {@link RequestExecutors} to create one of
+ * the available execution models, and specify it on the server using
+ * {@link Server#executeRequestsWith(RequestExecutor)}. Each executor exposes counters which can be used to size it in
+ * production.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public interface RequestExecutor {
+    /**
+     * Execute a task that handles a request.
+     *
+     * @param task Task to execute.
+     * @param eventLoop The event loop of the channel on which the request was received.
+     * @throws RejectedExecutionException If the executor is saturated and can not accept the task.
+     */
+    void execute(Runnable task, Executor eventLoop);
+
+    /** Get the number of tasks that are currently being executed. */
+    int activeCount();
+
+    /** Get the number of tasks that are waiting to be executed. */
+    int queueDepth();
+
+    /** Get the total number of tasks that were rejected because the executor was saturated. */
+    long rejectedCount();
+
+    /**
+     * Whether tasks are run directly on the channel's event loop. Routes executed this way must not block, and their
+     * responses are always dispatched asynchronously.
+     */
+    default boolean runsOnEventLoop() {
+        return false;
+    }
+
+    /** Shut down the executor, after which it will not accept any more tasks. */
+    void shutdown();
+}
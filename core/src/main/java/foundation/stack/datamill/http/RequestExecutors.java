@@ -0,0 +1,108 @@
+package foundation.stack.datamill.http;
+
+import foundation.stack.datamill.http.impl.EventLoopRequestExecutor;
+import foundation.stack.datamill.http.impl.ThreadPoolRequestExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Use this class to create {@link RequestExecutor}s for a {@link Server}. For example:
+ * </p>
+ * <pre>
+ * new Server(rb -> ...)
+ *     .executeRequestsWith(RequestExecutors.bounded(64, 1024))
+ *     .listen(8080);
+ * </pre>
+ * <p>
+ * This server will handle requests using at most 64 threads, and will queue up to 1024 requests when all of those
+ * threads are busy. Any requests received beyond that are shed, and the server responds to them with a 503 Service
+ * Unavailable.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public final class RequestExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutors.class);
+
+    private RequestExecutors() {
+    }
+
+    /**
+     * Create an executor that runs requests on a fixed number of threads, queueing up to the specified number of
+     * requests when all threads are busy. Requests beyond that are rejected.
+     */
+    public static RequestExecutor bounded(int threads, int queueLimit) {
+        return bounded(threads, queueLimit, false);
+    }
+
+    /**
+     * @see #bounded(int, int)
+     */
+    public static RequestExecutor bounded(int threads, int queueLimit, boolean daemon) {
+        return new ThreadPoolRequestExecutor(new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueLimit), threadFactory(daemon)));
+    }
+
+    /**
+     * Create an executor that runs requests directly on the event loop of the channel on which they were received.
+     * This avoids any thread hand-offs, but should only be used with routes that never block.
+     */
+    public static RequestExecutor eventLoop() {
+        return new EventLoopRequestExecutor();
+    }
+
+    /**
+     * Create an executor that runs each request on a new thread, re-using idle threads when available. This
+     * executor does not bound the number of threads it creates.
+     */
+    public static RequestExecutor unbounded(boolean daemon) {
+        return new ThreadPoolRequestExecutor(Executors.newCachedThreadPool(threadFactory(daemon)));
+    }
+
+    /**
+     * Create an executor that runs requests using the specified executor service.
+     */
+    public static RequestExecutor using(ExecutorService executorService) {
+        return new ThreadPoolRequestExecutor(executorService);
+    }
+
+    /**
+     * Create an executor that runs each request on a new virtual thread, if the Java runtime supports virtual
+     * threads. If it does not, an {@link #unbounded(boolean)} executor using daemon threads is created instead.
+     */
+    public static RequestExecutor virtualThreads() {
+        try {
+            ExecutorService executorService = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            return new ThreadPoolRequestExecutor(executorService);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Virtual threads are not supported by this Java runtime, using a thread pool instead");
+            return unbounded(true);
+        }
+    }
+
+    private static ThreadFactory threadFactory(boolean daemon) {
+        ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+        if (!daemon) {
+            return defaultFactory;
+        }
+
+        return runnable -> {
+            Thread thread = defaultFactory.newThread(runnable);
+            if (thread != null) {
+                thread.setDaemon(true);
+            }
+
+            return thread;
+        };
+    }
+}
@@ -8,6 +8,8 @@ public enum RequestHeader {
     ACCEPT_CHARSET("Accept-Charset"),
     ACCEPT_ENCODING("Accept-Encoding"),
     ACCEPT_DATETIME("Accept-Datetime"),
+    ACCESS_CONTROL_REQUEST_HEADERS("Access-Control-Request-Headers"),
+    ACCESS_CONTROL_REQUEST_METHOD("Access-Control-Request-Method"),
     AUTHORIZATION("Authorization"),
     CACHE_CONTROL("Cache-Control"),
     CONNECTION("Connection"),
@@ -1,11 +1,13 @@
 package foundation.stack.datamill.http;
 
 import foundation.stack.datamill.json.Json;
+import foundation.stack.datamill.serialization.SerializationStrategy;
 import rx.Observable;
 import rx.Observer;
 import rx.functions.Func1;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.function.Function;
 
 /**
@@ -30,6 +32,19 @@ public interface ResponseBuilder {
     /** Build a response with a 500 Internal Server Error status, and the given string body. */
     Response internalServerError(String content);
 
+    /**
+     * Add a body to the response being built which is the given object, serialized as JSON using the given strategy.
+     * The JSON is written straight into the buffer the response is sent from, as the strategy puts each property,
+     * rather than being built up as a tree of JSON objects and converted to a string.
+     */
+    <T> ResponseBuilder json(T value, SerializationStrategy<T> strategy);
+
+    /**
+     * Add a body to the response being built which is a JSON array of the given objects, each serialized using the
+     * given strategy, and written as described in {@link #json(Object, SerializationStrategy)}.
+     */
+    <T> ResponseBuilder jsonArray(Iterable<T> values, SerializationStrategy<T> strategy);
+
     /** Build a response with a 20 No Content status, and an empty body. */
     Response noContent();
 
@@ -48,6 +63,15 @@ public interface ResponseBuilder {
     /** Build a response with a 200 OK status, and the given byte array body. */
     Response ok(byte[] content);
 
+    /**
+     * Build a response with a 200 OK status, and the contents of the given file as the body. The file is transferred to
+     * the connection without being copied through the heap, and the response carries Content-Length, ETag and
+     * Last-Modified headers (and a Content-Type, if one was not added and it can be determined). Conditional and range
+     * requests are answered by the server, so the response actually sent may have a 304 Not Modified, 206 Partial
+     * Content or 416 Requested Range Not Satisfiable status instead.
+     */
+    Response ok(Path file);
+
     /** Build a response with a specific status, and an empty body. */
     Response status(Status status);
 
@@ -64,6 +88,22 @@ public interface ResponseBuilder {
      */
     ResponseBuilder streamingBodyAsBufferChunks(Func1<Observer<ByteBuffer>, Observable<ByteBuffer>> bodyStreamer);
 
+    /**
+     * Add a body to the response being built which is made up of the byte buffers emitted by the given observable. Unlike
+     * the lambda based variants, the observable is subscribed to with backpressure - buffers are only requested as they
+     * can be written to the connection, so a fast producer is held back by a slow client instead of being buffered in
+     * memory. The observable is subscribed to on an I/O thread, and should honor backpressure requests, as observables
+     * created from iterables, or using SyncOnSubscribe and AsyncOnSubscribe do. The amount of data queued for a
+     * connection is bounded by {@link ServerOptions#writeBufferWaterMark(int, int)}.
+     */
+    ResponseBuilder streamingBodyAsBufferChunks(Observable<ByteBuffer> chunks);
+
+    /**
+     * Add a body to the response being built which is made up of the byte arrays emitted by the given observable, which
+     * is subscribed to with backpressure, as described in {@link #streamingBodyAsBufferChunks(Observable)}.
+     */
+    ResponseBuilder streamingBody(Observable<byte[]> chunks);
+
     /**
      * Add a body to the response being built which is made up of byte array data emissions. The lambda will receive a
      * {@link Observer} on which it can call {@link Observer#onNext(Object)} to emit data as byte arrays. These
@@ -78,6 +118,12 @@ public interface ResponseBuilder {
      */
     ResponseBuilder streamingJson(Func1<Observer<Json>, Observable<Json>> jsonStreamer);
 
+    /**
+     * Add a body to the response being built which is a JSON array of the JSON objects emitted by the given observable,
+     * which is subscribed to with backpressure, as described in {@link #streamingBodyAsBufferChunks(Observable)}.
+     */
+    ResponseBuilder streamingJson(Observable<? extends Json> json);
+
     /** Build a response with a 401 Unauthorized status, and an empty body. */
     Response unauthorized();
 
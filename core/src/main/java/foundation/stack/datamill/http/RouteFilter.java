@@ -0,0 +1,24 @@
+package foundation.stack.datamill.http;
+
+/**
+ * <p>
+ * Wraps a {@link Route}, to act on requests before they reach it - and possibly answer them itself, instead - or on
+ * the responses it produces. A filter can wrap any route, including the routes given to a
+ * {@link foundation.stack.datamill.http.builder.RouteBuilder}, so that it only applies to particular requests:
+ * </p>
+ * <pre>
+ * RateLimiter limiter = new RateLimiter(RequestKeys.remoteAddress()).permitsPerSecond(10);
+ * rb.ifMethodAndUriMatch(Method.POST, "/reports", limiter.filter(request -> ...))
+ * </pre>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public interface RouteFilter {
+    /** Wrap the specified route with this filter. */
+    Route filter(Route route);
+
+    /** Get a filter that applies this filter to requests first, followed by the specified filter. */
+    default RouteFilter then(RouteFilter next) {
+        return route -> filter(next.filter(route));
+    }
+}
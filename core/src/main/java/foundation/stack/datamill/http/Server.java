@@ -3,16 +3,22 @@ package foundation.stack.datamill.http;
 import foundation.stack.datamill.http.builder.RouteBuilder;
 import foundation.stack.datamill.http.impl.ClientToServerChannelInitializer;
 import foundation.stack.datamill.http.impl.RouteBuilderImpl;
+import foundation.stack.datamill.http.impl.ServerTransport;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
 import io.netty.handler.logging.LoggingHandler;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,9 +29,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.security.cert.CertificateException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -35,11 +40,15 @@ import java.util.function.Function;
 public class Server {
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
 
+    private boolean asynchronousDispatch;
     private final BiFunction<ServerRequest, Throwable, Observable<Response>> errorResponseConstructor;
-    private EventLoopGroup eventLoopGroup;
+    private EventLoopGroup acceptorGroup;
+    private ServerOptions options = new ServerOptions();
     private final Function<RouteBuilder, Route> routeConstructor;
-    private Channel serverChannel;
-    private final ExecutorService threadPool;
+    private final List<Channel> serverChannels = new ArrayList<>();
+    private EventLoopGroup workerGroup;
+    private RequestExecutor requestExecutor;
+    private boolean ownsRequestExecutor;
     private final boolean daemon;
 
     private final static Certificate defaultCertificate = new SelfSignedCertificate();
@@ -65,10 +74,46 @@ public class Server {
         this.routeConstructor = routeConstructor;
         this.errorResponseConstructor = errorResponseConstructor;
         this.daemon = daemon;
+    }
+
+    /**
+     * Select whether responses are dispatched asynchronously. When enabled, the {@link Observable} returned by a route
+     * is subscribed to directly rather than waited on, and the response is written out on the channel's event loop
+     * once it completes, so that no thread is held for a request that is still in flight. Routes used with this mode
+     * should not block when they are applied. This must be set before the server starts listening.
+     */
+    public Server asynchronousDispatch(boolean asynchronousDispatch) {
+        this.asynchronousDispatch = asynchronousDispatch;
+        return this;
+    }
+
+    /**
+     * Specify the {@link RequestExecutor} used to handle requests received by this server. By default, an unbounded
+     * thread pool is created when the server starts listening, and shut down when it is stopped. An executor specified
+     * here is not shut down by the server, so it can be shared, or reused when the server listens again. This must be
+     * set before the server starts listening.
+     */
+    public Server executeRequestsWith(RequestExecutor requestExecutor) {
+        this.requestExecutor = requestExecutor;
+        this.ownsRequestExecutor = false;
+        return this;
+    }
 
-        this.threadPool = Executors.newCachedThreadPool(daemon ?
-            new DaemonThreadFactory(Executors.defaultThreadFactory()) :
-            Executors.defaultThreadFactory());
+    /**
+     * Get the {@link RequestExecutor} used to handle requests, which exposes counters for its activity. This is null
+     * if an executor was not specified, and the server has not started listening.
+     */
+    public RequestExecutor requestExecutor() {
+        return requestExecutor;
+    }
+
+    /**
+     * Specify {@link ServerOptions} that tune the transport and sockets used by this server. This must be set before
+     * the server starts listening.
+     */
+    public Server options(ServerOptions options) {
+        this.options = options;
+        return this;
     }
 
     public Server listen(String host, int port, Certificate certificate) {
@@ -84,25 +129,60 @@ public class Server {
 
         Route route = routeConstructor.apply(new RouteBuilderImpl());
 
-        eventLoopGroup = daemon ?
-                new NioEventLoopGroup(0, new DefaultThreadFactory(NioEventLoopGroup.class, true)) :
-                new NioEventLoopGroup();
+        if (requestExecutor == null || ownsRequestExecutor) {
+            requestExecutor = RequestExecutors.unbounded(daemon);
+            ownsRequestExecutor = true;
+        }
+
+        ServerTransport transport = ServerTransport.select(options.isNativeTransport());
+
+        ServerBootstrap bootstrap = new ServerBootstrap();
+
+        boolean reusePort = options.isReusePort();
+        if (reusePort && !transport.setReusePort(bootstrap)) {
+            logger.warn("SO_REUSEPORT is only supported by the native epoll transport, ignoring it");
+            reusePort = false;
+        }
 
-        ServerBootstrap bootstrap = new ServerBootstrap()
-                .group(eventLoopGroup)
-                .channel(NioServerSocketChannel.class)
+        int acceptorThreads = options.getAcceptorThreads();
+        if (acceptorThreads > 1 && !reusePort) {
+            logger.warn("Multiple acceptor threads require SO_REUSEPORT, using a single acceptor thread");
+            acceptorThreads = 1;
+        }
+
+        acceptorGroup = transport.createEventLoopGroup(acceptorThreads, new DefaultThreadFactory("http-acceptor", daemon));
+        workerGroup = transport.createEventLoopGroup(options.getWorkerThreads(), new DefaultThreadFactory("http-worker", daemon));
+
+        bootstrap.group(acceptorGroup, workerGroup)
+                .channel(transport.serverChannelClass())
                 .option(ChannelOption.TCP_NODELAY, true)
-                .option(ChannelOption.SO_BACKLOG, 8)
+                .option(ChannelOption.SO_BACKLOG, options.getBacklog())
                 .option(ChannelOption.SO_KEEPALIVE, true)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 15000)
                 .handler(new LoggingHandler())
-                .childHandler(new ClientToServerChannelInitializer(sslContext, threadPool, route, errorResponseConstructor))
+                .childHandler(new ClientToServerChannelInitializer(
+                        sslContext, requestExecutor, route, errorResponseConstructor, asynchronousDispatch, options))
                 .childOption(ChannelOption.TCP_NODELAY, true)
                 .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
 
+        if (options.getReceiveBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_RCVBUF, options.getReceiveBufferSize());
+        }
+
+        if (options.getSendBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_SNDBUF, options.getSendBufferSize());
+        }
+
+        if (options.getWriteBufferHighWaterMark() > 0) {
+            bootstrap.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                    options.getWriteBufferLowWaterMark(), options.getWriteBufferHighWaterMark()));
+        }
+
         try {
             logger.debug("Starting HTTP server on {}:{}", host, port);
-            serverChannel = bootstrap.bind(host, port).sync().channel();
+            for (int i = 0; i < acceptorThreads; i++) {
+                serverChannels.add(bootstrap.bind(host, port).sync().channel());
+            }
             logger.debug("HTTP server listening on port {}:{}", host, port);
         } catch (InterruptedException e) {
             logger.debug("Error occurred while HTTP server was listening on {}:{}", host, port, e);
@@ -131,17 +211,41 @@ public class Server {
     public void stop() {
         try {
             logger.debug("Shutting down HTTP server");
-            serverChannel.close().sync();
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close().sync();
+            }
         } catch (InterruptedException e) {
             logger.debug("Error occurred during HTTP server shut down", e);
         } finally {
-            eventLoopGroup.shutdownGracefully();
+            serverChannels.clear();
+            acceptorGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+            if (ownsRequestExecutor) {
+                requestExecutor.shutdown();
+            }
+
             logger.debug("HTTP server was shut down");
         }
     }
 
     private SslContext createSslContext(Certificate certificate) throws SSLException {
-        return SslContextBuilder.forServer(certificate.getCertificate(), certificate.getPrivateKey()).build();
+        SslContextBuilder builder = SslContextBuilder.forServer(certificate.getCertificate(), certificate.getPrivateKey());
+        if (options.isHttp2()) {
+            if (OpenSsl.isAlpnSupported()) {
+                builder.sslProvider(SslProvider.OPENSSL)
+                        .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                        .applicationProtocolConfig(new ApplicationProtocolConfig(
+                                ApplicationProtocolConfig.Protocol.ALPN,
+                                ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                                ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                                ApplicationProtocolNames.HTTP_2,
+                                ApplicationProtocolNames.HTTP_1_1));
+            } else {
+                logger.warn("ALPN is not supported without the OpenSSL provider, secure connections will use HTTP/1.1");
+            }
+        }
+
+        return builder.build();
     }
 
     public static class SelfSignedCertificate implements Certificate {
@@ -182,22 +286,4 @@ public class Server {
             }
         }
     }
-
-    private static class DaemonThreadFactory implements ThreadFactory {
-        private final ThreadFactory threadFactory;
-
-        public DaemonThreadFactory(ThreadFactory threadFactory) {
-            this.threadFactory = threadFactory;
-        }
-
-        @Override
-        public Thread newThread(Runnable r) {
-            Thread thread = threadFactory.newThread(r);
-            if (thread != null) {
-                thread.setDaemon(true);
-            }
-
-            return thread;
-        }
-    }
 }
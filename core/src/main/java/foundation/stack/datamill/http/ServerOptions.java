@@ -0,0 +1,380 @@
+package foundation.stack.datamill.http;
+
+import foundation.stack.datamill.http.metrics.ServerMetrics;
+import io.netty.util.NetUtil;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Options that tune the transport and sockets used by a {@link Server}. Specify options on a server using
+ * {@link Server#options(ServerOptions)} before it starts listening. For example:
+ * </p>
+ * <pre>
+ * new Server(rb -> ...)
+ *     .options(new ServerOptions()
+ *         .backlog(4096)
+ *         .acceptorThreads(4)
+ *         .reusePort(true)
+ *         .idleTimeout(60000))
+ *     .listen(8080);
+ * </pre>
+ * <p>
+ * By default, the server uses the native Linux epoll transport if it is available (the netty-transport-native-epoll
+ * library needs to be on the classpath), and falls back to the NIO transport otherwise. Note that SO_REUSEPORT, and
+ * hence multiple acceptor threads, are only supported by the epoll transport.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ServerOptions {
+    private int acceptorThreads = 1;
+    private int backlog = NetUtil.SOMAXCONN;
+    private List<String> compressibleContentTypes = Arrays.asList(
+            "text/*", "application/json", "application/*+json", "application/javascript", "application/xml",
+            "application/*+xml", "image/svg+xml");
+    private boolean compression = true;
+    private int compressionLevel = 6;
+    private int compressionMinimumSize = 1024;
+    private long headerReadTimeout;
+    private boolean http2;
+    private long idleTimeout;
+    private int maxConnections;
+    private long maxRequestBodySize;
+    private ServerMetrics metrics;
+    private int minimumRequestBodyRate;
+    private boolean nativeTransport = true;
+    private boolean precompressedFiles;
+    private long readTimeout;
+    private int receiveBufferSize;
+    private int requestBodyBufferSize = 256 * 1024;
+    private int responseBufferSize = 16 * 1024;
+    private long responseFlushInterval = 1;
+    private boolean reusePort;
+    private int sendBufferSize;
+    private int workerThreads;
+    private int writeBufferHighWaterMark;
+    private int writeBufferLowWaterMark;
+    private long writeTimeout;
+
+    /**
+     * Set the number of threads (and hence server sockets) accepting connections. More than one acceptor thread
+     * requires SO_REUSEPORT, and is only supported by the epoll transport.
+     */
+    public ServerOptions acceptorThreads(int acceptorThreads) {
+        this.acceptorThreads = acceptorThreads;
+        return this;
+    }
+
+    /** Set the maximum length of the queue of incoming connections waiting to be accepted (SO_BACKLOG). */
+    public ServerOptions backlog(int backlog) {
+        this.backlog = backlog;
+        return this;
+    }
+
+    /**
+     * Set the content types of responses that are compressed. Types can use a wildcard as the subtype (text/*), or as
+     * the structured syntax suffix (application/*+json). Responses that don't specify a content type are compressed.
+     */
+    public ServerOptions compressibleContentTypes(String... contentTypes) {
+        this.compressibleContentTypes = Arrays.asList(contentTypes);
+        return this;
+    }
+
+    /**
+     * Select whether responses are compressed (using gzip or deflate) for clients that accept compressed responses.
+     * Compression is enabled by default, and applies to responses with a compressible content type, that are at least
+     * the minimum size.
+     */
+    public ServerOptions compression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /** Set the compression level, from 1 (fastest) to 9 (smallest), or 0 for no compression. The default is 6. */
+    public ServerOptions compressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    /**
+     * Set the minimum size of a response body to compress. Responses whose length is known to be smaller are sent
+     * uncompressed, as compressing them saves little while costing as much CPU per response. The default is 1KB.
+     */
+    public ServerOptions compressionMinimumSize(int bytes) {
+        this.compressionMinimumSize = bytes;
+        return this;
+    }
+
+    /**
+     * Close HTTP/1.1 connections whose clients take longer than the specified number of milliseconds to send the
+     * headers of a request. The time is measured from when the connection is opened for the first request, and from
+     * when the first bytes of a request arrive for later requests, so that clients can't hold connections open by
+     * sending headers very slowly. By default, there is no limit.
+     */
+    public ServerOptions headerReadTimeout(long milliseconds) {
+        this.headerReadTimeout = milliseconds;
+        return this;
+    }
+
+    /**
+     * Select whether HTTP/2 is supported. Over TLS, HTTP/2 is negotiated using ALPN, which on Java 8 requires the
+     * OpenSSL provider (netty-tcnative) to be on the classpath - without it, secure connections use HTTP/1.1. Over
+     * cleartext connections, clients can upgrade to HTTP/2 (h2c) using the HTTP/1.1 Upgrade header. Each HTTP/2 stream is
+     * handled as a separate request, so requests made over the same connection are processed concurrently.
+     */
+    public ServerOptions http2(boolean http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    /** Close connections on which nothing has been read or written for the specified number of milliseconds. */
+    public ServerOptions idleTimeout(long milliseconds) {
+        this.idleTimeout = milliseconds;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of client connections that can be open at once. Connections accepted beyond this are
+     * closed right away, without being read from, so that the server keeps serving the connections it already has.
+     * By default, the number of connections is not limited.
+     */
+    public ServerOptions maxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * Set the maximum size of a request body, in bytes. Requests declaring a larger Content-Length are rejected with
+     * a 413 Request Entity Too Large before any of the body is read, and requests whose body grows beyond this size
+     * while being streamed are rejected as soon as it does. By default, request bodies are not limited in size.
+     */
+    public ServerOptions maxRequestBodySize(long bytes) {
+        this.maxRequestBodySize = bytes;
+        return this;
+    }
+
+    /**
+     * Record metrics about the requests handled by the server, per route. Metrics are not recorded by default.
+     *
+     * @see foundation.stack.datamill.http.metrics.MetricsRegistry
+     */
+    public ServerOptions metrics(ServerMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Close HTTP/1.1 connections whose clients send request bodies at less than the specified number of bytes per
+     * second, averaged from when the body started. Time during which the server is not reading the body, because the
+     * request handler has not consumed what was already read, is not counted against the client. By default, there
+     * is no minimum rate.
+     */
+    public ServerOptions minimumRequestBodyRate(int bytesPerSecond) {
+        this.minimumRequestBodyRate = bytesPerSecond;
+        return this;
+    }
+
+    /** Select whether the native epoll transport is used when it is available. */
+    public ServerOptions nativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+        return this;
+    }
+
+    /**
+     * Select whether precompressed variants of files are served. When a file is sent as a response body, and a file
+     * with the same name and a .br or .gz extension exists alongside it, the variant is sent instead to clients that
+     * accept that encoding. As files are never compressed as they are sent, this is how static resources can be
+     * served compressed.
+     */
+    public ServerOptions precompressedFiles(boolean precompressedFiles) {
+        this.precompressedFiles = precompressedFiles;
+        return this;
+    }
+
+    /**
+     * Close HTTP/1.1 connections on which nothing has been read for the specified number of milliseconds, unless the
+     * client is waiting on the server for a response.
+     */
+    public ServerOptions readTimeout(long milliseconds) {
+        this.readTimeout = milliseconds;
+        return this;
+    }
+
+    /** Set the size of the socket receive buffer (SO_RCVBUF) for client connections. */
+    public ServerOptions receiveBufferSize(int bytes) {
+        this.receiveBufferSize = bytes;
+        return this;
+    }
+
+    /**
+     * Set the amount of request body data, in bytes, that is buffered for a request before reading from the
+     * connection is paused, until the body has been consumed by the route.
+     */
+    public ServerOptions requestBodyBufferSize(int bytes) {
+        this.requestBodyBufferSize = bytes;
+        return this;
+    }
+
+    /**
+     * Set the size, in bytes, up to which small chunks of a streamed response body are coalesced before being written
+     * to the connection. Chunks that are at least this large are written as they are.
+     */
+    public ServerOptions responseBufferSize(int bytes) {
+        this.responseBufferSize = bytes;
+        return this;
+    }
+
+    /**
+     * Set the maximum time, in milliseconds, that coalesced response body content is held back before it is flushed
+     * to the connection, if the response buffer has not filled up in the meantime. A value of 0 flushes every chunk as
+     * soon as it is emitted.
+     */
+    public ServerOptions responseFlushInterval(long milliseconds) {
+        this.responseFlushInterval = milliseconds;
+        return this;
+    }
+
+    /** Select whether multiple server sockets can bind to the same port (SO_REUSEPORT). */
+    public ServerOptions reusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    /** Set the size of the socket send buffer (SO_SNDBUF) for client connections. */
+    public ServerOptions sendBufferSize(int bytes) {
+        this.sendBufferSize = bytes;
+        return this;
+    }
+
+    /** Set the number of event loop threads handling client connections. By default, Netty's sizing is used. */
+    public ServerOptions workerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+        return this;
+    }
+
+    /**
+     * Set the write buffer water marks for client connections. A connection becomes unwritable when the amount of
+     * data queued for writing exceeds the high water mark, and writable again when it drops below the low water mark.
+     * Streamed response bodies are not requested from their source while a connection is unwritable.
+     */
+    public ServerOptions writeBufferWaterMark(int low, int high) {
+        this.writeBufferLowWaterMark = low;
+        this.writeBufferHighWaterMark = high;
+        return this;
+    }
+
+    /**
+     * Close connections whose clients stop reading responses, so that nothing can be written to them for the
+     * specified number of milliseconds.
+     */
+    public ServerOptions writeTimeout(long milliseconds) {
+        this.writeTimeout = milliseconds;
+        return this;
+    }
+
+    public int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public List<String> getCompressibleContentTypes() {
+        return compressibleContentTypes;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public int getCompressionMinimumSize() {
+        return compressionMinimumSize;
+    }
+
+    public long getHeaderReadTimeout() {
+        return headerReadTimeout;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getMinimumRequestBodyRate() {
+        return minimumRequestBodyRate;
+    }
+
+    public long getReadTimeout() {
+        return readTimeout;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public int getRequestBodyBufferSize() {
+        return requestBodyBufferSize;
+    }
+
+    public int getResponseBufferSize() {
+        return responseBufferSize;
+    }
+
+    public long getResponseFlushInterval() {
+        return responseFlushInterval;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public long getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    public boolean isPrecompressedFiles() {
+        return precompressedFiles;
+    }
+
+    public boolean isReusePort() {
+        return reusePort;
+    }
+}
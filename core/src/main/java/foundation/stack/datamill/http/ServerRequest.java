@@ -4,6 +4,7 @@ import com.google.common.collect.Multimap;
 import foundation.stack.datamill.values.Value;
 import rx.Observable;
 
+import java.net.InetSocketAddress;
 import java.util.function.Function;
 
 /**
@@ -12,6 +13,12 @@ import java.util.function.Function;
 public interface ServerRequest extends Request {
     Value firstTrailingHeader(String header);
     Value firstTrailingHeader(RequestHeader header);
+
+    /** Get the address of the client that made the request, or null if it is not known. */
+    default InetSocketAddress remoteAddress() {
+        return null;
+    }
+
     Observable<Response> respond(Function<ResponseBuilder, Response> responseBuilder);
     Multimap<String, String> trailingHeaders();
 }
@@ -0,0 +1,126 @@
+package foundation.stack.datamill.http.cache;
+
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Multimap;
+import foundation.stack.datamill.http.Body;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Status;
+import foundation.stack.datamill.http.impl.BytesBody;
+import foundation.stack.datamill.http.impl.FileBody;
+import foundation.stack.datamill.http.impl.ResponseImpl;
+import rx.Observable;
+
+import java.util.Map;
+
+/**
+ * A response whose body has been read into memory, so that it can be sent any number of times. The bodies of responses
+ * with file bodies are kept as they are, since they can already be sent again.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+class BufferedResponse {
+    private static final byte[] EMPTY = new byte[0];
+
+    static Observable<BufferedResponse> buffer(Response response) {
+        Body body = response.body().orElse(null);
+        if (body instanceof FileBody) {
+            return Observable.just(new BufferedResponse(response));
+        }
+
+        Observable<byte[]> bytes = body != null ? body.asBytes().defaultIfEmpty(EMPTY).last() : Observable.just(EMPTY);
+        return bytes.map(content -> {
+            Multimap<String, String> headers = LinkedListMultimap.create();
+            if (response.headers() != null) {
+                headers.putAll(response.headers());
+            }
+
+            return new BufferedResponse(response.status(), headers, content);
+        });
+    }
+
+    /** Check whether the specified response headers mark the response as private, or set cookies. */
+    static boolean isPrivate(Multimap<String, String> headers) {
+        if (headerValue(headers, "Set-Cookie") != null) {
+            return true;
+        }
+
+        String cacheControl = headerValue(headers, "Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                if (directive.trim().equalsIgnoreCase("private")) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    static String headerValue(Multimap<String, String> headers, String name) {
+        for (Map.Entry<String, String> header : headers.entries()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    private final byte[] body;
+    private final Multimap<String, String> headers;
+    private final Response response;
+    private final Status status;
+
+    private BufferedResponse(Status status, Multimap<String, String> headers, byte[] body) {
+        this.body = body;
+        this.headers = headers;
+        this.response = null;
+        this.status = status;
+    }
+
+    private BufferedResponse(Response response) {
+        this.body = EMPTY;
+        this.headers = null;
+        this.response = response;
+        this.status = response.status();
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    /** Get the headers of the response, which can be added to until the response is first sent. */
+    Multimap<String, String> getHeaders() {
+        return headers;
+    }
+
+    /** Check whether the response is private, or sets cookies, and so must not be shared with other requests. */
+    boolean isPrivate() {
+        Multimap<String, String> headers = response != null ? response.headers() : this.headers;
+        return headers != null && isPrivate(headers);
+    }
+
+    Status getStatus() {
+        return status;
+    }
+
+    /** Check whether the body of the response was read into memory. */
+    boolean isBuffered() {
+        return response == null;
+    }
+
+    /** Get a new copy of the response, with its own headers, as routes further out may add to them. */
+    Response newResponse() {
+        if (response != null) {
+            Multimap<String, String> headers = LinkedListMultimap.create();
+            if (response.headers() != null) {
+                headers.putAll(response.headers());
+            }
+
+            return new ResponseImpl(status, headers, response.body().orElse(null));
+        }
+
+        Multimap<String, String> headers = LinkedListMultimap.create(this.headers);
+        return new ResponseImpl(status, headers, new BytesBody(body));
+    }
+}
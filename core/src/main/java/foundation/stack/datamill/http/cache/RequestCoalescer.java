@@ -0,0 +1,96 @@
+package foundation.stack.datamill.http.cache;
+
+import foundation.stack.datamill.http.Method;
+import foundation.stack.datamill.http.RequestHeader;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.RouteFilter;
+import foundation.stack.datamill.http.ServerRequest;
+import foundation.stack.datamill.values.Value;
+import rx.Observable;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * A filter that deduplicates identical requests that arrive while the route is already handling one of them. Only the
+ * first request runs the route, and its response is shared by all the identical requests that arrive before it
+ * completes. This keeps a popular resource that is expensive to produce from being produced many times over at once,
+ * for example, when it has just dropped out of a cache:
+ * </p>
+ * <pre>
+ * rb.ifMethodAndUriMatch(Method.GET, "/popular", new RequestCoalescer().filter(request -> ...))
+ * </pre>
+ * <p>
+ * Requests are identified by a key function, and requests for which it returns null are not coalesced. By default,
+ * GET requests are coalesced by their URI, along with their Authorization and Cookie headers, so that requests from
+ * different users are never coalesced. The shared response's body is read into memory so that it can be sent to each
+ * of the requests, and each request gets its own copy of the response's headers. Responses that are marked private,
+ * or that set cookies, are never shared - the route is run again for each of the other requests instead.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RequestCoalescer implements RouteFilter {
+    private static String methodAndUri(ServerRequest request) {
+        if (request.method() != Method.GET) {
+            return null;
+        }
+
+        Value authorization = request.firstHeader(RequestHeader.AUTHORIZATION);
+        Value cookie = request.firstHeader(RequestHeader.COOKIE);
+        if (authorization == null && cookie == null) {
+            return request.uri();
+        }
+
+        return request.uri() + '\n' +
+                (authorization != null ? authorization.asString() : "") + '\n' +
+                (cookie != null ? cookie.asString() : "");
+    }
+
+    private final SingleFlight<String, BufferedResponse> flights = new SingleFlight<>();
+    private final Function<ServerRequest, String> keys;
+
+    public RequestCoalescer() {
+        this(RequestCoalescer::methodAndUri);
+    }
+
+    /**
+     * @param keys A function that returns the same key for requests that can share a response, or null for requests
+     *             that should not be coalesced.
+     */
+    public RequestCoalescer(Function<ServerRequest, String> keys) {
+        this.keys = keys;
+    }
+
+    /** Get the number of requests that shared the response to another request. */
+    public long getCoalesced() {
+        return flights.getCoalesced();
+    }
+
+    @Override
+    public Route filter(Route route) {
+        return request -> {
+            String key = keys.apply(request);
+            if (key == null) {
+                return route.apply(request);
+            }
+
+            AtomicBoolean ran = new AtomicBoolean();
+            return flights.execute(key, () -> {
+                ran.set(true);
+                Observable<Response> response = route.apply(request);
+                return (response != null ? response.take(1) : Observable.<Response>empty())
+                        .flatMap(BufferedResponse::buffer);
+            }).flatMap(response -> {
+                if (ran.get() || !response.isPrivate()) {
+                    return Observable.just(response.newResponse());
+                }
+
+                Observable<Response> own = route.apply(request);
+                return own != null ? own : Observable.<Response>empty();
+            });
+        };
+    }
+}
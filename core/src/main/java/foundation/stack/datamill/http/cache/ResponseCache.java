@@ -0,0 +1,367 @@
+package foundation.stack.datamill.http.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.hash.Hashing;
+import foundation.stack.datamill.http.Method;
+import foundation.stack.datamill.http.RequestHeader;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.RouteFilter;
+import foundation.stack.datamill.http.ServerRequest;
+import foundation.stack.datamill.http.Status;
+import foundation.stack.datamill.http.impl.ResponseImpl;
+import foundation.stack.datamill.http.metrics.CacheMetrics;
+import foundation.stack.datamill.values.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>
+ * A filter that caches the responses of GET routes in memory, so that routes returning data that rarely changes don't
+ * have to be run for every request. For example, to cache responses for a minute, and serve them for another 10
+ * seconds while they are being refreshed:
+ * </p>
+ * <pre>
+ * ResponseCache cache = new ResponseCache(64 * 1024 * 1024)
+ *     .timeToLive(1, TimeUnit.MINUTES)
+ *     .staleWhileRevalidate(10, TimeUnit.SECONDS)
+ *     .varyingOnHeaders("Accept-Language");
+ * rb.ifMethodAndUriMatch(Method.GET, "/countries", cache.filter(request -> ...))
+ * </pre>
+ * <p>
+ * Responses are cached by path and query string - or only the query parameters selected using
+ * {@link #varyingOnQueryParameters(String...)} - along with the values of any selected request headers. Requests
+ * with Authorization or Cookie headers are also cached by the values of those headers, so that a response to one user
+ * is never served to another, or to anonymous users. Only 200 OK responses are cached, and not those that have
+ * Cache-Control no-store or private directives, or that set cookies.
+ * File responses are passed through as they are, since the server answers conditional requests for files itself.
+ * </p>
+ * <p>
+ * Cached responses are given an ETag, if the route didn't add one, and requests with a matching If-None-Match header
+ * are answered with a 304 Not Modified response. When a response isn't cached, concurrent requests for it are
+ * coalesced, so that only one of them runs the route, and the rest share its response if it turns out to be cacheable.
+ * If it isn't, the route is run again for each of the other requests, so that private responses are never shared.
+ * Responses whose time to live has passed continue to be served during the stale-while-revalidate period, while a
+ * single request refreshes them in the background, on the I/O scheduler by default.
+ * </p>
+ * <p>
+ * The cache is bounded by the total size of the bodies it holds, and evicts responses in approximately least recently
+ * used order. The bound is divided between the segments of the cache, so a response larger than a fraction of it is
+ * never kept.
+ * The numbers of hits, misses and evictions are available from the cache, and can be exposed by a
+ * {@link foundation.stack.datamill.http.metrics.MetricsRegistry}.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ResponseCache implements RouteFilter, CacheMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+    private static final String ETAG = "ETag";
+    private static final String[] NOT_MODIFIED_HEADERS = { "Cache-Control", "Content-Location", ETAG, "Expires",
+            "Vary" };
+
+    private final LongSupplier clock;
+    private final Cache<String, CachedResponse> entries;
+    private final SingleFlight<String, CachedResponse> loads = new SingleFlight<>();
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+
+    private volatile String[] headers = new String[0];
+    private volatile String[] queryParameters;
+    private volatile Scheduler refreshScheduler = Schedulers.io();
+    private volatile long staleWhileRevalidate;
+    private volatile long timeToLive = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * @param maximumBytes The maximum total size of the response bodies held by the cache.
+     */
+    public ResponseCache(long maximumBytes) {
+        this(maximumBytes, System::nanoTime);
+    }
+
+    ResponseCache(long maximumBytes, LongSupplier clock) {
+        this.clock = clock;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .<String, CachedResponse>weigher((key, cached) -> key.length() + cached.response.getBody().length)
+                .removalListener(removal -> {
+                    if (removal.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+    }
+
+    /** Set the scheduler stale responses are refreshed on. */
+    public ResponseCache refreshingOn(Scheduler scheduler) {
+        this.refreshScheduler = scheduler;
+        return this;
+    }
+
+    /** Set how long stale responses continue to be served, while they are being refreshed. */
+    public ResponseCache staleWhileRevalidate(long duration, TimeUnit unit) {
+        this.staleWhileRevalidate = unit.toNanos(duration);
+        return this;
+    }
+
+    /** Set how long responses are served from the cache before they are considered stale. */
+    public ResponseCache timeToLive(long duration, TimeUnit unit) {
+        this.timeToLive = unit.toNanos(duration);
+        return this;
+    }
+
+    /** Cache responses separately for each combination of values of the specified request headers. */
+    public ResponseCache varyingOnHeaders(String... headers) {
+        this.headers = headers.clone();
+        return this;
+    }
+
+    /**
+     * Cache responses separately for each combination of values of only the specified query parameters, rather than
+     * for each query string.
+     */
+    public ResponseCache varyingOnQueryParameters(String... parameters) {
+        String[] sorted = parameters.clone();
+        Arrays.sort(sorted);
+        this.queryParameters = sorted;
+        return this;
+    }
+
+    @Override
+    public long getCoalesced() {
+        return loads.getCoalesced();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    @Override
+    public long getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    /** Remove all responses from the cache. */
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    String keyOf(ServerRequest request) {
+        String uri = request.uri();
+        int query = uri.indexOf('?');
+
+        StringBuilder key = new StringBuilder(uri.length() + 32);
+        String[] queryParameters = this.queryParameters;
+        if (queryParameters != null) {
+            key.append(uri, 0, query >= 0 ? query : uri.length());
+            Multimap<String, String> values = request.queryParameters();
+            for (String parameter : queryParameters) {
+                Collection<String> parameterValues = values != null ? values.get(parameter) : null;
+                if (parameterValues != null && !parameterValues.isEmpty()) {
+                    key.append('\n').append(parameter).append('=').append(String.join(",", parameterValues));
+                }
+            }
+        } else {
+            key.append(uri);
+        }
+
+        for (String header : headers) {
+            Value value = request.firstHeader(header);
+            key.append('\n');
+            if (value != null) {
+                key.append(value.asString());
+            }
+        }
+
+        // Responses to requests with credentials may be specific to the user, so they are only served to that user
+        Value authorization = request.firstHeader(RequestHeader.AUTHORIZATION);
+        Value cookie = request.firstHeader(RequestHeader.COOKIE);
+        if (authorization != null || cookie != null) {
+            key.append("\nAuthorization:").append(authorization != null ? authorization.asString() : "")
+                    .append("\nCookie:").append(cookie != null ? cookie.asString() : "");
+        }
+
+        return key.toString();
+    }
+
+    @Override
+    public Route filter(Route route) {
+        return request -> {
+            if (request.method() != Method.GET) {
+                return route.apply(request);
+            }
+
+            String key = keyOf(request);
+            CachedResponse cached = entries.getIfPresent(key);
+            if (cached != null) {
+                long age = clock.getAsLong() - cached.storedAt;
+                if (age < timeToLive) {
+                    hits.increment();
+                    return Observable.just(respond(request, cached));
+                } else if (age < timeToLive + staleWhileRevalidate) {
+                    staleHits.increment();
+                    if (!loads.isRunning(key)) {
+                        load(key, route, request, new AtomicBoolean()).subscribeOn(refreshScheduler).subscribe(
+                                response -> {},
+                                e -> logger.debug("Failed to refresh cached response for {}", request.uri(), e));
+                    }
+
+                    return Observable.just(respond(request, cached));
+                }
+            }
+
+            misses.increment();
+            AtomicBoolean loaded = new AtomicBoolean();
+            return load(key, route, request, loaded).flatMap(response -> {
+                if (response.cacheable || loaded.get()) {
+                    return Observable.just(respond(request, response));
+                }
+
+                // Another request's response that can't be cached may be private to it, so run the route again
+                Observable<Response> own = route.apply(request);
+                return own != null ? own : Observable.<Response>empty();
+            });
+        };
+    }
+
+    /**
+     * Load the response for a key, or join a load that is already running for it. The specified flag is set if the
+     * load runs the route for this request, rather than sharing another request's response.
+     */
+    private Observable<CachedResponse> load(String key, Route route, ServerRequest request, AtomicBoolean loaded) {
+        return loads.execute(key, () -> {
+            loaded.set(true);
+            Observable<Response> response = route.apply(request);
+            return (response != null ? response.take(1) : Observable.<Response>empty())
+                    .flatMap(BufferedResponse::buffer)
+                    .map(this::prepare)
+                    .doOnNext(cached -> {
+                        if (cached.cacheable) {
+                            entries.put(key, cached);
+                        }
+                    });
+        });
+    }
+
+    private CachedResponse prepare(BufferedResponse response) {
+        if (!response.isBuffered()) {
+            return new CachedResponse(response, null, false, 0);
+        }
+
+        Multimap<String, String> headers = response.getHeaders();
+        boolean cacheable = response.getStatus() == Status.OK && isCacheable(headers);
+        String entityTag = BufferedResponse.headerValue(headers, ETAG);
+        if (entityTag == null && cacheable) {
+            entityTag = "\"" + Hashing.murmur3_128().hashBytes(response.getBody()).toString() + "\"";
+            headers.put(ETAG, entityTag);
+        }
+
+        return new CachedResponse(response, entityTag, cacheable, clock.getAsLong());
+    }
+
+    private static boolean isCacheable(Multimap<String, String> headers) {
+        if (BufferedResponse.isPrivate(headers)) {
+            return false;
+        }
+
+        String cacheControl = BufferedResponse.headerValue(headers, RequestHeader.CACHE_CONTROL.getName());
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                if (directive.trim().equalsIgnoreCase("no-store")) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean matches(Value ifNoneMatch, String entityTag) {
+        if (ifNoneMatch != null && entityTag != null) {
+            for (String candidate : ifNoneMatch.asString().split(",")) {
+                candidate = candidate.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+
+                if (candidate.equals("*") || candidate.equals(entityTag)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private Response respond(ServerRequest request, CachedResponse cached) {
+        BufferedResponse response = cached.response;
+        if (response.getStatus() == Status.OK && matches(request.firstHeader(RequestHeader.IF_NONE_MATCH),
+                cached.entityTag)) {
+            notModified.increment();
+
+            Multimap<String, String> headers = LinkedListMultimap.create();
+            for (String name : NOT_MODIFIED_HEADERS) {
+                String value = BufferedResponse.headerValue(response.getHeaders(), name);
+                if (value != null) {
+                    headers.put(name, value);
+                }
+            }
+
+            return new ResponseImpl(Status.NOT_MODIFIED, headers);
+        }
+
+        return response.newResponse();
+    }
+
+    private static class CachedResponse {
+        private final boolean cacheable;
+        private final String entityTag;
+        private final BufferedResponse response;
+        private final long storedAt;
+
+        CachedResponse(BufferedResponse response, String entityTag, boolean cacheable, long storedAt) {
+            this.cacheable = cacheable;
+            this.entityTag = entityTag;
+            this.response = response;
+            this.storedAt = storedAt;
+        }
+    }
+}
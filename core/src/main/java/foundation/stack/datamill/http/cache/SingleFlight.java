@@ -0,0 +1,55 @@
+package foundation.stack.datamill.http.cache;
+
+import rx.Observable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one operation at a time for each key, sharing its result with everyone who asks for the same key while
+ * it is running. The operation is started by the first subscriber, runs to completion even if its subscribers
+ * unsubscribe, and its result is replayed to each subscriber. Once it completes, the next request for the key starts
+ * a new operation. Keys are tracked in a concurrent map, so operations for different keys never contend.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class SingleFlight<K, V> {
+    private final LongAdder coalesced = new LongAdder();
+    private final Map<K, Observable<V>> running = new ConcurrentHashMap<>();
+
+    /**
+     * Get the result of the operation running for the specified key, or of a new operation, created by the specified
+     * supplier, if none is running.
+     */
+    public Observable<V> execute(K key, Supplier<Observable<V>> operation) {
+        Observable<V> existing = running.get(key);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        Observable<V> started = Observable.defer(operation::get)
+                .doOnTerminate(() -> running.remove(key))
+                .cache();
+
+        existing = running.putIfAbsent(key, started);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        return started;
+    }
+
+    /** Get the number of requests that were given the result of an operation that was already running. */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /** Check whether an operation is running for the specified key. */
+    public boolean isRunning(K key) {
+        return running.containsKey(key);
+    }
+}
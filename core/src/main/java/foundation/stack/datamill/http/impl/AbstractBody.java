@@ -2,16 +2,24 @@ package foundation.stack.datamill.http.impl;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.google.common.collect.Lists;
 import foundation.stack.datamill.http.Body;
+import foundation.stack.datamill.json.JsonArray;
 import foundation.stack.datamill.json.JsonObject;
-import org.json.JSONArray;
 import rx.Observable;
 import rx.exceptions.Exceptions;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Ravi Chodavarapu (rchodava@gmail.com)
@@ -20,24 +28,60 @@ public abstract class AbstractBody implements Body {
     private static final ObjectMapper jsonMapper = new ObjectMapper()
             .setSerializationInclusion(JsonInclude.Include.NON_NULL)
             .disable(SerializationFeature.WRITE_NULL_MAP_VALUES);
+    private static final ConcurrentMap<Class<?>, ObjectReader> jsonReaders = new ConcurrentHashMap<>();
 
+    private static ObjectReader readerFor(Class<?> clazz) {
+        ObjectReader reader = jsonReaders.get(clazz);
+        return reader != null ? reader : jsonReaders.computeIfAbsent(clazz, jsonMapper::readerFor);
+    }
+
+    /** Get the charset the body's text is encoded with. */
+    protected Charset charset() {
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Emits each object in the array as soon as all of its bytes have arrived, rather than after reading the whole
+     * body. Chunks are requested from the body as objects are consumed, so a large array is never held in memory.
+     * Bodies in charsets that can't be split as bytes, such as UTF-16, are read whole and then parsed.
+     */
     @Override
     public Observable<JsonObject> asJsonArray() {
-        return asString().flatMap(json -> {
-            JSONArray array = new JSONArray(json);
-            List<JsonObject> jsonObjects = Lists.newArrayListWithCapacity(array.length());
-            for(int i = 0; i < array.length(); i++) {
-                jsonObjects.add(new JsonObject(array.get(i).toString()));
-            }
-            return Observable.from(jsonObjects);
+        Charset charset = charset();
+        if (!JsonArraySplitter.supports(charset)) {
+            return asString().flatMapIterable(json -> new JsonArray(json).asJsonObjects());
+        }
+
+        return Observable.defer(() -> {
+            JsonArraySplitter splitter = new JsonArraySplitter(charset);
+            return asBufferChunks()
+                    .concatMapIterable(splitter::feed)
+                    .concatWith(Observable.defer(() -> {
+                        splitter.finish();
+                        return Observable.<String>empty();
+                    }))
+                    .map(JsonObject::new);
         });
     }
 
+    /**
+     * Parses the chunks of the body in place, rather than first copying them into a single array and decoding that
+     * into a string. UTF-8 and ASCII bodies are handed to Jackson as bytes; bodies in other charsets are decoded as
+     * they are parsed.
+     */
     @Override
     public <T> Observable<T> fromJson(Class<T> clazz) {
-        return asString().map(json -> {
+        return asBufferChunks().collect(() -> new ArrayList<ByteBuffer>(), List::add).map(chunks -> {
+            ObjectReader reader = readerFor(clazz);
+            InputStream stream = new ByteBuffersInputStream(chunks);
+            Charset charset = charset();
+
             try {
-                return jsonMapper.readValue(json, clazz);
+                if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)) {
+                    return reader.readValue(stream);
+                }
+
+                return reader.readValue(new InputStreamReader(stream, charset));
             } catch (IOException e) {
                 throw Exceptions.propagate(e);
             }
@@ -0,0 +1,189 @@
+package foundation.stack.datamill.http.impl;
+
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import foundation.stack.datamill.http.*;
+import foundation.stack.datamill.values.Value;
+import org.apache.http.client.utils.URIBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Observable;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Base for {@link Client} implementations, which implements the convenience request methods in terms of
+ * {@link #request(Method, Multimap, String, Map, Multimap, Map, Body)}.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public abstract class AbstractClient implements Client {
+    private static final Logger logger = LoggerFactory.getLogger(AbstractClient.class);
+    private final TemplateBasedUriBuilder templateBasedUriBuilder = new TemplateBasedUriBuilder();
+
+    @Override
+    public Observable<Response> request(Function<RequestBuilder, Request> builder) {
+        Request request = builder.apply(new RequestBuilderImpl());
+        return request(request.method(), request.headers(), request.uri(), request.uriParameters(),
+                request.queryParameters(), request.options(), request.body());
+    }
+
+    @Override
+    public Observable<Response> request(Method method, Map<String, String> headers, String uri, Value entity) {
+        return request(method, headers, uri, new ValueBody(entity));
+    }
+
+    @Override
+    public Observable<Response> request(Method method, Map<String, String> headers, String uri, Body body) {
+        return request(method, headers != null ? Multimaps.forMap(headers) : null, uri, null, null, null, body);
+    }
+
+    protected URI buildUri(String uri, Map<String, String> uriParameters, Multimap<String, String> queryParameters) {
+        if (uriParameters != null && !uriParameters.isEmpty()) {
+            uri = templateBasedUriBuilder.build(uri, uriParameters);
+        }
+
+        try {
+            URIBuilder uriBuilder = new URIBuilder(uri);
+            return appendQueryParameters(uriBuilder, queryParameters);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Could not build URI for " + uri);
+        }
+    }
+
+    private URI appendQueryParameters(URIBuilder uriBuilder, Multimap<String, String> queryParameters) throws URISyntaxException {
+        if (queryParameters != null && !queryParameters.isEmpty()) {
+            queryParameters.entries().stream().forEach(entry -> {
+                try {
+                    uriBuilder.setParameter(URLEncoder.encode(entry.getKey(), "UTF-8"), entry.getValue());
+                } catch (UnsupportedEncodingException e) {
+                }
+            });
+        }
+        return uriBuilder.build();
+    }
+
+    protected void printRequestIfTracingLog(Method method, URI composedUri, Multimap<String, String> headers) {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Making HTTP request {} {}", method.name(), composedUri);
+            if (headers != null && logger.isDebugEnabled()) {
+                logger.trace("  HTTP request headers:");
+                for (Map.Entry<String, String> header : headers.entries()) {
+                    logger.trace("    {}: {}", header.getKey(), header.getValue());
+                }
+            }
+        }
+    }
+
+    @Override
+    public Observable<Response> delete(String uri) {
+        return delete(uri, null);
+    }
+
+    @Override
+    public Observable<Response> delete(String uri, Map<String, String> headers) {
+        return request(Method.DELETE, headers, uri, (Body) null);
+    }
+
+
+    @Override
+    public Observable<Response> delete(Function<RequestBuilder, Request> builder) {
+        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.DELETE)));
+    }
+
+    @Override
+    public Observable<Response> get(String uri) {
+        return get(uri, null);
+    }
+
+    @Override
+    public Observable<Response> get(String uri, Map<String, String> headers) {
+        return request(Method.GET, headers, uri, (Body) null);
+    }
+
+
+    @Override
+    public Observable<Response> get(Function<RequestBuilder, Request> builder) {
+        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.GET)));
+    }
+
+    @Override
+    public Observable<Response> patch(String uri, Body body) {
+        return patch(uri, null, body);
+    }
+
+    @Override
+    public Observable<Response> patch(String uri, Value entity) {
+        return patch(uri, null, entity);
+    }
+
+    @Override
+    public Observable<Response> patch(String uri, Map<String, String> headers, Body body) {
+        return request(Method.PATCH, headers, uri, body);
+    }
+
+    @Override
+    public Observable<Response> patch(String uri, Map<String, String> headers, Value entity) {
+        return request(Method.PATCH, headers, uri, entity);
+    }
+
+    @Override
+    public Observable<Response> patch(Function<RequestBuilder, Request> builder) {
+        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.PATCH)));
+    }
+
+    @Override
+    public Observable<Response> post(String uri, Body body) {
+        return post(uri, null, body);
+    }
+
+    @Override
+    public Observable<Response> post(String uri, Value entity) {
+        return post(uri, null, entity);
+    }
+
+    @Override
+    public Observable<Response> post(String uri, Map<String, String> headers, Body body) {
+        return request(Method.POST, headers, uri, body);
+    }
+
+    @Override
+    public Observable<Response> post(String uri, Map<String, String> headers, Value entity) {
+        return request(Method.POST, headers, uri, entity);
+    }
+
+    @Override
+    public Observable<Response> post(Function<RequestBuilder, Request> builder) {
+        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.POST)));
+    }
+
+    @Override
+    public Observable<Response> put(String uri, Body body) {
+        return put(uri, null, body);
+    }
+
+    @Override
+    public Observable<Response> put(String uri, Value entity) {
+        return put(uri, null, entity);
+    }
+
+    @Override
+    public Observable<Response> put(String uri, Map<String, String> headers, Body body) {
+        return request(Method.PUT, headers, uri, body);
+    }
+
+    @Override
+    public Observable<Response> put(String uri, Map<String, String> headers, Value entity) {
+        return request(Method.PUT, headers, uri, entity);
+    }
+
+    @Override
+    public Observable<Response> put(Function<RequestBuilder, Request> builder) {
+        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.PUT)));
+    }
+}
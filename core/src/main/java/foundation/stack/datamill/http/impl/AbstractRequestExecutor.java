@@ -0,0 +1,50 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.RequestExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public abstract class AbstractRequestExecutor implements RequestExecutor {
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    @Override
+    public void execute(Runnable task, Executor eventLoop) {
+        try {
+            dispatch(() -> {
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            }, eventLoop);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    protected abstract void dispatch(Runnable task, Executor eventLoop);
+
+    @Override
+    public int activeCount() {
+        return active.get();
+    }
+
+    @Override
+    public int queueDepth() {
+        return 0;
+    }
+
+    @Override
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -31,6 +31,7 @@ public abstract class AbstractRequestImpl implements Request {
     private final String method;
     private final String uri;
     private Map<String, String> uriParameters;
+    private UriTemplateMatch uriTemplateMatch;
     private final Body body;
 
     protected AbstractRequestImpl(String method, Multimap<String, String> headers, String uri, Body body) {
@@ -81,6 +82,12 @@ public abstract class AbstractRequestImpl implements Request {
 
     protected void setUriParameters(Map<String, String> uriParameters) {
         this.uriParameters = uriParameters;
+        this.uriTemplateMatch = null;
+    }
+
+    protected void setUriParameters(UriTemplateMatch uriTemplateMatch) {
+        this.uriParameters = null;
+        this.uriTemplateMatch = uriTemplateMatch;
     }
 
     @Override
@@ -90,8 +97,8 @@ public abstract class AbstractRequestImpl implements Request {
 
     @Override
     public Value uriParameter(String parameter) {
-        if (uriParameters != null) {
-            String value = uriParameters.get(parameter);
+        if (uriParameters != null || uriTemplateMatch != null) {
+            String value = uriParameters != null ? uriParameters.get(parameter) : uriTemplateMatch.get(parameter);
             if (value != null) {
                 return new StringValue(value);
             }
@@ -102,6 +109,10 @@ public abstract class AbstractRequestImpl implements Request {
 
     @Override
     public Map<String, String> uriParameters() {
+        if (uriParameters == null && uriTemplateMatch != null) {
+            uriParameters = uriTemplateMatch.toMap();
+        }
+
         return uriParameters;
     }
 }
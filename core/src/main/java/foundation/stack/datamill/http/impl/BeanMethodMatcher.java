@@ -103,6 +103,10 @@ public class BeanMethodMatcher implements Matcher {
         });
     }
 
+    List<RouteMatcher> getMatchers() {
+        return matchers;
+    }
+
     @Override
     public Observable<Response> applyIfMatches(ServerRequest request) {
         for (Matcher matcher : matchers) {
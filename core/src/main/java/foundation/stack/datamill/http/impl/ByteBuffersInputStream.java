@@ -0,0 +1,71 @@
+package foundation.stack.datamill.http.impl;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * An {@link InputStream} that reads across a list of chunks in place, so that a body received in chunks can be handed
+ * to a parser without first being copied into a single array. Chunks are read through duplicates, leaving their
+ * positions untouched.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+class ByteBuffersInputStream extends InputStream {
+    private final List<ByteBuffer> chunks;
+    private ByteBuffer current;
+    private int index;
+
+    public ByteBuffersInputStream(List<ByteBuffer> chunks) {
+        this.chunks = chunks;
+    }
+
+    private boolean advance() {
+        while (current == null || !current.hasRemaining()) {
+            if (index >= chunks.size()) {
+                return false;
+            }
+
+            current = chunks.get(index++).duplicate();
+        }
+
+        return true;
+    }
+
+    @Override
+    public int available() {
+        return advance() ? current.remaining() : 0;
+    }
+
+    @Override
+    public int read() {
+        return advance() ? current.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!advance()) {
+            return -1;
+        }
+
+        int read = Math.min(length, current.remaining());
+        current.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long count) {
+        long skipped = 0;
+        while (skipped < count && advance()) {
+            int step = (int) Math.min(count - skipped, current.remaining());
+            current.position(current.position() + step);
+            skipped += step;
+        }
+
+        return skipped;
+    }
+}
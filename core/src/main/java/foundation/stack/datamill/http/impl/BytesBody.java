@@ -1,7 +1,9 @@
 package foundation.stack.datamill.http.impl;
 
-import foundation.stack.datamill.http.Body;
 import foundation.stack.datamill.json.JsonObject;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import rx.Observable;
 
 import java.nio.ByteBuffer;
@@ -9,13 +11,19 @@ import java.nio.ByteBuffer;
 /**
  * @author Ravi Chodavarapu (rchodava@gmail.com)
  */
-public class BytesBody extends AbstractBody implements Body {
+public class BytesBody extends AbstractBody implements InMemoryBody {
     private byte[] bytes;
 
     public BytesBody(byte[] bytes) {
         this.bytes = bytes;
     }
 
+    @Override
+    public ByteBuf asByteBuf(ByteBufAllocator allocator) {
+        // The array is wrapped rather than copied, so it need not come from the allocator
+        return Unpooled.wrappedBuffer(bytes);
+    }
+
     @Override
     public Observable<ByteBuffer> asBufferChunks() {
         return asChunks().map(bytes -> ByteBuffer.wrap(bytes));
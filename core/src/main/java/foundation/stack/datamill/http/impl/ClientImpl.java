@@ -1,9 +1,9 @@
 package foundation.stack.datamill.http.impl;
 
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 import foundation.stack.datamill.http.*;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
@@ -17,49 +17,98 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpTrace;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.BasicHttpEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
-import foundation.stack.datamill.values.Value;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 import rx.schedulers.Schedulers;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * <p>
+ * A client that pools and reuses connections across requests. Clients created without options share a single pool,
+ * while clients created with {@link ClientOptions} have their own pool - create such a client once and share it, and
+ * close it to close its pooled connections.
+ * </p>
+ * <p>
+ * Response bodies of a known length of up to 64 KiB are read before the response is emitted, so that the connection is
+ * returned to the pool straight away, even if the body is never read. Larger bodies, and bodies of unknown length, are
+ * streamed, and hold on to their connection until they have been read.
+ * </p>
+ *
  * @author Ravi Chodavarapu (rchodava@gmail.com)
  */
-public class ClientImpl implements Client {
+public class ClientImpl extends AbstractClient implements Closeable {
     private static final Logger logger = LoggerFactory.getLogger(ClientImpl.class);
-    private final TemplateBasedUriBuilder templateBasedUriBuilder = new TemplateBasedUriBuilder();
+    private static final int MAX_BUFFERED_BODY_SIZE = 64 * 1024;
+    private static final int SHARED_CONNECTION_REQUEST_TIMEOUT = 30000;
 
-    @Override
-    public Observable<Response> request(Function<RequestBuilder, Request> builder) {
-        Request request = builder.apply(new RequestBuilderImpl());
-        return request(request.method(), request.headers(), request.uri(), request.uriParameters(),
-                request.queryParameters(), request.options(), request.body());
+    private static int timeoutOrDefault(int timeout) {
+        return timeout > 0 ? timeout : -1;
     }
 
-    @Override
-    public Observable<Response> request(Method method, Map<String, String> headers, String uri, Value entity) {
-        return request(method, headers, uri, new ValueBody(entity));
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final RequestConfig defaultRequestConfig;
+    private final CloseableHttpClient httpClient;
+    private final boolean shared;
+
+    /**
+     * Create a client that uses a connection pool, with the default options, that is shared by all clients created
+     * this way. Closing such a client has no effect, so it is safe to create one per request. Requests made through
+     * the shared pool fail if they wait longer than 30 seconds for a connection.
+     */
+    public ClientImpl() {
+        this(SharedPool.INSTANCE, true);
+    }
+
+    /**
+     * Create a client with its own connection pool, configured using the specified options. The client should be
+     * closed once it is no longer needed, to close its pooled connections and stop evicting idle connections.
+     */
+    public ClientImpl(ClientOptions options) {
+        this(new Pool(options), false);
+    }
+
+    private ClientImpl(Pool pool, boolean shared) {
+        this.connectionManager = pool.connectionManager;
+        this.defaultRequestConfig = pool.defaultRequestConfig;
+        this.httpClient = pool.httpClient;
+        this.shared = shared;
     }
 
+    /**
+     * Close all pooled connections, and stop evicting idle connections. The client can not be used once closed. Clients
+     * that use the shared connection pool are not affected by being closed.
+     */
     @Override
-    public Observable<Response> request(Method method, Map<String, String> headers, String uri, Body body) {
-        return request(method, headers != null ? Multimaps.forMap(headers) : null, uri, null, null, null, body);
+    public void close() throws IOException {
+        if (!shared) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * Get statistics on the connections in the pool - the number of connections leased by in-progress requests, the
+     * number available for reuse, and the number of requests waiting for a connection.
+     */
+    public PoolStats getConnectionPoolStats() {
+        return connectionManager.getTotalStats();
     }
 
     @Override
@@ -72,22 +121,9 @@ public class ClientImpl implements Client {
             Map<String, ?> options,
             Body body) {
 
-        if (uriParameters != null && !uriParameters.isEmpty()) {
-            uri = templateBasedUriBuilder.build(uri, uriParameters);
-        }
-
-        URI parsedURI;
-        try {
-            URIBuilder uriBuilder = new URIBuilder(uri);
-            parsedURI = appendQueryParameters(uriBuilder, queryParameters);
-        } catch (URISyntaxException e) {
-            throw new IllegalStateException("Could not build URI for " + uri);
-        }
-
-        final URI targetURI = parsedURI;
+        final URI targetURI = buildUri(uri, uriParameters, queryParameters);
 
         return Observable.fromCallable(() -> {
-            CloseableHttpClient httpClient = HttpClients.createDefault();
             HttpUriRequest request = buildHttpRequest(method, targetURI);
             setRequestOptions(request, options);
             setRequestHeaders(request, headers);
@@ -105,33 +141,53 @@ public class ClientImpl implements Client {
             Map<String, String> combinedHeaders = populateResponseHeaders(finalResponse);
             int responseCode = finalResponse.getStatusLine().getStatusCode();
             return new ResponseImpl(Status.valueOf(responseCode), combinedHeaders,
-                    buildResponseEntity(finalResponse, httpClient));
+                    buildResponseEntity(finalResponse));
         });
     }
 
-    private Body buildResponseEntity(CloseableHttpResponse finalResponse, CloseableHttpClient httpClient) throws IOException {
+    private Body buildResponseEntity(CloseableHttpResponse finalResponse) throws IOException {
         if (finalResponse != null && finalResponse.getEntity() != null) {
-            return new InputStreamBody(finalResponse.getEntity().getContent(), () -> {
+            HttpEntity entity = finalResponse.getEntity();
+            long length = entity.getContentLength();
+            if (length >= 0 && length <= MAX_BUFFERED_BODY_SIZE) {
+                // Small bodies are read right away, so that callers that never read them don't hold on to connections
                 try {
-                    finalResponse.close();
+                    byte[] bytes = EntityUtils.toByteArray(entity);
+                    return bytes != null ? new BytesBody(bytes) : new EmptyBody();
+                } finally {
+                    closeResponse(finalResponse);
+                }
+            }
+
+            InputStream content = entity.getContent();
+            return new InputStreamBody(content, () -> {
+                // Closing the content stream reads any remaining framing (such as the end of a chunked and compressed
+                // body) so that the connection is released back to the pool rather than closed
+                try {
+                    content.close();
                 } catch (IOException e) {
                     logger.debug("Error while closing response stream!", e);
                 }
 
-                if (httpClient != null) {
-                    try {
-                        httpClient.close();
-                    } catch (IOException e) {
-                        logger.debug("Error while closing client!", e);
-                    }
-                }
+                closeResponse(finalResponse);
             });
         }
         else {
+            closeResponse(finalResponse);
             return new EmptyBody();
         }
     }
 
+    private void closeResponse(CloseableHttpResponse response) {
+        if (response != null) {
+            try {
+                response.close();
+            } catch (IOException e) {
+                logger.debug("Error while closing response!", e);
+            }
+        }
+    }
+
     private CloseableHttpResponse doWithEntity(Body body, CloseableHttpClient httpClient, HttpUriRequest request) throws IOException {
         if (!(request instanceof HttpEntityEnclosingRequestBase)) {
             throw new IllegalArgumentException("Expecting to write an body for a request type that does not support it!");
@@ -156,18 +212,6 @@ public class ClientImpl implements Client {
         return httpClient.execute(request);
     }
 
-    private void printRequestIfTracingLog(Method method, URI composedUri, Multimap<String, String> headers) {
-        if (logger.isTraceEnabled()) {
-            logger.trace("Making HTTP request {} {}", method.name(), composedUri);
-            if (headers != null && logger.isDebugEnabled()) {
-                logger.trace("  HTTP request headers:");
-                for (Map.Entry<String, String> header : headers.entries()) {
-                    logger.trace("    {}: {}", header.getKey(), header.getValue());
-                }
-            }
-        }
-    }
-
     private Map<String, String> populateResponseHeaders(CloseableHttpResponse httpResponse) {
         Map<String, String> combinedHeaders = new HashMap<>();
 
@@ -189,11 +233,18 @@ public class ClientImpl implements Client {
     private void setRequestOptions(HttpUriRequest request, Map<String, ?> options) {
         if (options != null && !options.isEmpty()) {
             Object connectTimeout = options.get(Request.OPTION_CONNECT_TIMEOUT);
-            if (connectTimeout instanceof Integer) {
-                RequestConfig requestConfig = RequestConfig.custom()
-                        .setConnectTimeout((int) connectTimeout)
-                        .build();
-                ((HttpRequestBase) request).setConfig(requestConfig);
+            Object readTimeout = options.get(Request.OPTION_READ_TIMEOUT);
+            if (connectTimeout instanceof Integer || readTimeout instanceof Integer) {
+                RequestConfig.Builder requestConfig = RequestConfig.copy(defaultRequestConfig);
+                if (connectTimeout instanceof Integer) {
+                    requestConfig.setConnectTimeout((int) connectTimeout);
+                }
+
+                if (readTimeout instanceof Integer) {
+                    requestConfig.setSocketTimeout((int) readTimeout);
+                }
+
+                ((HttpRequestBase) request).setConfig(requestConfig.build());
             }
         }
     }
@@ -229,18 +280,6 @@ public class ClientImpl implements Client {
         }
     }
 
-    private URI appendQueryParameters(URIBuilder uriBuilder, Multimap<String, String> queryParameters) throws URISyntaxException {
-        if (queryParameters != null && !queryParameters.isEmpty()) {
-            queryParameters.entries().stream().forEach(entry -> {
-                try {
-                    uriBuilder.setParameter(URLEncoder.encode(entry.getKey(), "UTF-8"), entry.getValue());
-                } catch (UnsupportedEncodingException e) {
-                }
-            });
-        }
-        return uriBuilder.build();
-    }
-
     private void writeEntityOutOverConnection(Body body, PipedOutputStream pipedOutputStream) throws IOException {
         body.asChunks().observeOn(Schedulers.io())
                 .doOnNext(bytes -> {
@@ -269,110 +308,46 @@ public class ClientImpl implements Client {
                 .subscribe();
     }
 
-    @Override
-    public Observable<Response> delete(String uri) {
-        return delete(uri, null);
-    }
-
-    @Override
-    public Observable<Response> delete(String uri, Map<String, String> headers) {
-        return request(Method.DELETE, headers, uri, (Body) null);
-    }
-
-
-    @Override
-    public Observable<Response> delete(Function<RequestBuilder, Request> builder) {
-        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.DELETE)));
-    }
-
-    @Override
-    public Observable<Response> get(String uri) {
-        return get(uri, null);
-    }
-
-    @Override
-    public Observable<Response> get(String uri, Map<String, String> headers) {
-        return request(Method.GET, headers, uri, (Body) null);
-    }
-
-
-    @Override
-    public Observable<Response> get(Function<RequestBuilder, Request> builder) {
-        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.GET)));
-    }
-
-    @Override
-    public Observable<Response> patch(String uri, Body body) {
-        return patch(uri, null, body);
-    }
-
-    @Override
-    public Observable<Response> patch(String uri, Value entity) {
-        return patch(uri, null, entity);
-    }
-
-    @Override
-    public Observable<Response> patch(String uri, Map<String, String> headers, Body body) {
-        return request(Method.PATCH, headers, uri, body);
-    }
-
-    @Override
-    public Observable<Response> patch(String uri, Map<String, String> headers, Value entity) {
-        return request(Method.PATCH, headers, uri, entity);
-    }
-
-    @Override
-    public Observable<Response> patch(Function<RequestBuilder, Request> builder) {
-        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.PATCH)));
-    }
-
-    @Override
-    public Observable<Response> post(String uri, Body body) {
-        return post(uri, null, body);
-    }
-
-    @Override
-    public Observable<Response> post(String uri, Value entity) {
-        return post(uri, null, entity);
-    }
-
-    @Override
-    public Observable<Response> post(String uri, Map<String, String> headers, Body body) {
-        return request(Method.POST, headers, uri, body);
-    }
-
-    @Override
-    public Observable<Response> post(String uri, Map<String, String> headers, Value entity) {
-        return request(Method.POST, headers, uri, entity);
-    }
-
-    @Override
-    public Observable<Response> post(Function<RequestBuilder, Request> builder) {
-        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.POST)));
-    }
-
-    @Override
-    public Observable<Response> put(String uri, Body body) {
-        return put(uri, null, body);
-    }
-
-    @Override
-    public Observable<Response> put(String uri, Value entity) {
-        return put(uri, null, entity);
-    }
-
-    @Override
-    public Observable<Response> put(String uri, Map<String, String> headers, Body body) {
-        return request(Method.PUT, headers, uri, body);
-    }
+    private static class Pool {
+        private final PoolingHttpClientConnectionManager connectionManager;
+        private final RequestConfig defaultRequestConfig;
+        private final CloseableHttpClient httpClient;
+
+        Pool(ClientOptions options) {
+            connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(options.getMaxConnections());
+            connectionManager.setDefaultMaxPerRoute(options.getMaxConnectionsPerRoute());
+
+            defaultRequestConfig = RequestConfig.custom()
+                    .setConnectTimeout(timeoutOrDefault(options.getConnectTimeout()))
+                    .setConnectionRequestTimeout(timeoutOrDefault(options.getConnectionRequestTimeout()))
+                    .setSocketTimeout(timeoutOrDefault(options.getReadTimeout()))
+                    .build();
+
+            HttpClientBuilder builder = HttpClients.custom()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(defaultRequestConfig)
+                    .setKeepAliveStrategy((response, context) -> {
+                        long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                                .getKeepAliveDuration(response, context);
+                        if (options.getKeepAlive() > 0 && (keepAlive <= 0 || keepAlive > options.getKeepAlive())) {
+                            return options.getKeepAlive();
+                        }
+
+                        return keepAlive;
+                    });
+
+            if (options.getIdleTimeout() > 0) {
+                builder.evictExpiredConnections().evictIdleConnections(options.getIdleTimeout(), TimeUnit.MILLISECONDS);
+            }
 
-    @Override
-    public Observable<Response> put(String uri, Map<String, String> headers, Value entity) {
-        return request(Method.PUT, headers, uri, entity);
+            httpClient = builder.build();
+        }
     }
 
-    @Override
-    public Observable<Response> put(Function<RequestBuilder, Request> builder) {
-        return request(requestBuilder -> builder.apply(requestBuilder.method(Method.PUT)));
+    private static class SharedPool {
+        // Created on first use, so that only applications using the shared pool start its idle connection evictor
+        private static final Pool INSTANCE = new Pool(new ClientOptions()
+                .connectionRequestTimeout(SHARED_CONNECTION_REQUEST_TIMEOUT));
     }
 }
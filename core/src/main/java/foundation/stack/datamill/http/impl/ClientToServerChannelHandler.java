@@ -1,24 +1,51 @@
 package foundation.stack.datamill.http.impl;
 
+import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import foundation.stack.datamill.http.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.Subscriber;
 import rx.Subscription;
-import rx.subjects.ReplaySubject;
+import rx.subscriptions.Subscriptions;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 
 /**
@@ -26,32 +53,115 @@ import java.util.function.BiFunction;
  */
 public class ClientToServerChannelHandler extends ChannelInboundHandlerAdapter {
     private static final Logger logger = LoggerFactory.getLogger(ClientToServerChannelHandler.class);
-
+    private static final int FILE_CHUNK_SIZE = 64 * 1024;
+    private static final DateTimeFormatter HTTP_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    // Precompressed variants of files, in order of preference
+    private static final String[] PRECOMPRESSED_ENCODINGS = { "br", HttpHeaderValues.GZIP.toString() };
+    private static final String[] PRECOMPRESSED_EXTENSIONS = { ".br", ".gz" };
+    private static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+    private final boolean asynchronousDispatch;
+    private final ServerOptions options;
     private final BiFunction<ServerRequest, Throwable, Observable<Response>> errorResponseConstructor;
+    private final RequestExecutor requestExecutor;
     private final Route route;
-    private final ExecutorService threadPool;
     private volatile boolean channelClosed;
     private volatile Subscription entitySubscription;
+    private volatile RequestMetricsRecorder metricsRecorder;
+    private volatile ResponseBodyWriter responseBodyWriter;
+    private volatile Subscription responseSubscription;
 
-    private ReplaySubject<ByteBuffer> bodyStream;
+    private RequestBodyStream bodyStream;
+    private long receivedBodySize;
+    private boolean rejectingBody;
     private ServerRequestImpl serverRequest;
 
     public ClientToServerChannelHandler(
             ExecutorService threadPool,
             Route route,
             BiFunction<ServerRequest, Throwable, Observable<Response>> errorResponseConstructor) {
-        this.threadPool = threadPool;
+        this(RequestExecutors.using(threadPool), route, errorResponseConstructor, false);
+    }
+
+    public ClientToServerChannelHandler(
+            RequestExecutor requestExecutor,
+            Route route,
+            BiFunction<ServerRequest, Throwable, Observable<Response>> errorResponseConstructor,
+            boolean asynchronousDispatch) {
+        this(requestExecutor, route, errorResponseConstructor, asynchronousDispatch, new ServerOptions());
+    }
+
+    public ClientToServerChannelHandler(
+            RequestExecutor requestExecutor,
+            Route route,
+            BiFunction<ServerRequest, Throwable, Observable<Response>> errorResponseConstructor,
+            boolean asynchronousDispatch,
+            ServerOptions options) {
+        this.options = options;
+        this.requestExecutor = requestExecutor;
         this.route = route;
         this.errorResponseConstructor = errorResponseConstructor;
+        this.asynchronousDispatch = asynchronousDispatch || requestExecutor.runsOnEventLoop();
     }
 
     private void sendGeneralServerError(ChannelHandlerContext context) {
-        context.write(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.INTERNAL_SERVER_ERROR));
+        recordResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR.code(), 0);
+        writeAndRecordCompletion(context,
+                new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.INTERNAL_SERVER_ERROR));
+    }
+
+    private static Method methodOf(HttpRequest request) {
+        try {
+            return Method.valueOf(request.method().name());
+        } catch (IllegalArgumentException e) {
+            return Method.UNKNOWN;
+        }
+    }
+
+    private static InetSocketAddress remoteAddressOf(ChannelHandlerContext context) {
+        Channel channel = context.channel();
+        return channel != null && channel.remoteAddress() instanceof InetSocketAddress ?
+                (InetSocketAddress) channel.remoteAddress() : null;
+    }
+
+    private void recordResponse(int status, long contentLength) {
+        RequestMetricsRecorder recorder = metricsRecorder;
+        if (recorder != null) {
+            recorder.responded(status, contentLength);
+        }
+    }
+
+    private ChannelFuture writeAndRecordCompletion(ChannelHandlerContext context, Object response) {
+        // The recorder is picked up before writing, as the next request can replace it once the response is out
+        RequestMetricsRecorder recorder = metricsRecorder;
+        ChannelFuture writeFuture = context.writeAndFlush(response);
+        if (recorder != null) {
+            writeFuture.addListener(future -> recorder.completed());
+        }
+
+        return writeFuture;
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext context) throws Exception {
         channelClosed = true;
+        discardUnconsumedBody();
+
+        RequestMetricsRecorder recorder = metricsRecorder;
+        if (recorder != null) {
+            recorder.completed();
+            metricsRecorder = null;
+        }
+
+        if (responseSubscription != null) {
+            if (!responseSubscription.isUnsubscribed()) {
+                responseSubscription.unsubscribe();
+            }
+
+            responseSubscription = null;
+        }
+
         if (entitySubscription != null) {
             if (!entitySubscription.isUnsubscribed()) {
                 entitySubscription.unsubscribe();
@@ -61,6 +171,16 @@ public class ClientToServerChannelHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext context) throws Exception {
+        ResponseBodyWriter writer = responseBodyWriter;
+        if (writer != null && context.channel().isWritable()) {
+            writer.resume();
+        }
+
+        super.channelWritabilityChanged(context);
+    }
+
     @Override
     public void channelReadComplete(ChannelHandlerContext context) {
         context.flush();
@@ -68,82 +188,193 @@ public class ClientToServerChannelHandler extends ChannelInboundHandlerAdapter {
 
     @Override
     public void channelRead(ChannelHandlerContext context, Object message) {
-        if (message instanceof HttpRequest) {
-            HttpRequest request = (HttpRequest) message;
+        try {
+            if (message instanceof HttpRequest) {
+                HttpRequest request = (HttpRequest) message;
+
+                discardUnconsumedBody();
+
+                receivedBodySize = 0;
+                metricsRecorder = options.getMetrics() != null ?
+                        new RequestMetricsRecorder(options.getMetrics(), methodOf(request)) : null;
+                rejectingBody = exceedsMaximumBodySize(HttpUtil.getContentLength(request, -1L));
+                if (rejectingBody) {
+                    logger.debug("Request body is larger than the maximum allowed, sending a request entity too large error (413)");
+                    sendRequestEntityTooLarge(context);
+                    return;
+                }
 
-            if (HttpUtil.is100ContinueExpected(request)) {
-                sendContinueResponse(context);
-            }
+                if (HttpUtil.is100ContinueExpected(request)) {
+                    sendContinueResponse(context);
+                }
 
-            bodyStream = ReplaySubject.create();
-            serverRequest = ServerRequestBuilder.buildServerRequest(request, bodyStream);
+                bodyStream = new RequestBodyStream(context.channel(), options.getRequestBodyBufferSize());
+                serverRequest = ServerRequestBuilder.buildServerRequest(request, bodyStream.asObservable());
+                serverRequest.setRemoteAddress(remoteAddressOf(context));
 
-            processRequest(context, request);
+                processRequest(context, request);
 
-            if (request.decoderResult().isFailure()) {
-                bodyStream.onError(request.decoderResult().cause());
+                if (request.decoderResult().isFailure()) {
+                    bodyStream.onError(request.decoderResult().cause());
+                }
             }
-        }
 
-        if (message instanceof HttpContent) {
-            HttpContent httpContent = (HttpContent) message;
+            if (message instanceof HttpContent && !rejectingBody) {
+                HttpContent httpContent = (HttpContent) message;
+
+                ByteBuf content = httpContent.content();
+                if (content.isReadable()) {
+                    receivedBodySize += content.readableBytes();
+                    if (metricsRecorder != null) {
+                        metricsRecorder.addRequestBytes(content.readableBytes());
+                    }
+
+                    if (exceedsMaximumBodySize(receivedBodySize)) {
+                        logger.debug("Request body is larger than the maximum allowed, sending a request entity too large error (413)");
+                        rejectingBody = true;
+                        bodyStream.onError(new HttpException("Request body is larger than the maximum allowed"));
+                        sendRequestEntityTooLarge(context);
+                        return;
+                    }
+
+                    bodyStream.onNext(content);
+
+                    if (httpContent.decoderResult().isFailure()) {
+                        bodyStream.onError(httpContent.decoderResult().cause());
+                    }
+                }
 
-            ByteBuf content = httpContent.content();
-            if (content.isReadable()) {
-                bodyStream.onNext(content.nioBuffer());
+                if (message instanceof LastHttpContent) {
+                    LastHttpContent trailer = (LastHttpContent) message;
+                    if (!trailer.trailingHeaders().isEmpty()) {
+                        serverRequest.setTrailingHeaders(ServerRequestBuilder.buildHeadersMap(trailer.trailingHeaders()));
+                    }
 
-                if (httpContent.decoderResult().isFailure()) {
-                    bodyStream.onError(httpContent.decoderResult().cause());
+                    bodyStream.onCompleted();
                 }
             }
+        } finally {
+            ReferenceCountUtil.release(message);
+        }
+    }
 
-            if (message instanceof LastHttpContent) {
-                LastHttpContent trailer = (LastHttpContent) message;
-                if (!trailer.trailingHeaders().isEmpty()) {
-                    serverRequest.setTrailingHeaders(ServerRequestBuilder.buildHeadersMap(trailer.trailingHeaders()));
-                }
+    private boolean exceedsMaximumBodySize(long size) {
+        return options.getMaxRequestBodySize() > 0 && size > options.getMaxRequestBodySize();
+    }
 
-                bodyStream.onCompleted();
-            }
+    private void discardUnconsumedBody() {
+        RequestBodyStream body = bodyStream;
+        if (body != null && (!body.isSubscribed() || !body.isDone())) {
+            body.discard();
         }
     }
 
     private void processRequest(ChannelHandlerContext context, HttpRequest originalRequest) {
-        threadPool.execute(() -> {
-            try {
-                Observable<Response> responseObservable = route.apply(serverRequest);
-                if (responseObservable != null) {
-                    threadPool.execute(() -> {
-                        Response response = responseObservable.onErrorResumeNext(throwable -> {
-                            if (errorResponseConstructor != null) {
-                                Observable<Response> errorResponse =
-                                        errorResponseConstructor.apply(serverRequest, throwable);
-                                if (errorResponse != null) {
-                                    logger.debug("Error occurred handling request, invoking application error handler");
-                                    return errorResponse.onErrorResumeNext(Observable.just(null));
-                                }
-                            } else {
-                                logger.debug("Error occurred handling request - no application error handler was available to handle it - {}", throwable);
-                            }
-
-                            return Observable.just(new ResponseImpl(Status.INTERNAL_SERVER_ERROR));
-                        }).toBlocking().lastOrDefault(new ResponseImpl(Status.NOT_FOUND));
-
-                        sendResponse(context, originalRequest, response);
-                    });
+        ServerRequestImpl request = serverRequest;
+        try {
+            requestExecutor.execute(() -> {
+                if (asynchronousDispatch) {
+                    dispatchAsynchronously(context, originalRequest, request);
                 } else {
-                    logger.debug("Error occurred handling request, sending a generic server error (500)");
-                    sendGeneralServerError(context);
+                    dispatch(context, originalRequest, request);
                 }
-            } catch (Exception e) {
-                logger.debug("Error occurred handling request, sending a generic server error (500)", e);
+            }, context.executor());
+        } catch (RejectedExecutionException e) {
+            logger.debug("Request executor is saturated, sending a service unavailable error (503)");
+            sendServiceUnavailable(context, originalRequest);
+        }
+    }
+
+    private void dispatch(ChannelHandlerContext context, HttpRequest originalRequest, ServerRequestImpl request) {
+        try {
+            RequestMetricsRecorder recorder = metricsRecorder;
+            if (recorder != null) {
+                recorder.dispatched();
+            }
+
+            Observable<Response> responseObservable = route.apply(request);
+            if (recorder != null) {
+                recorder.routed(request);
+            }
+
+            if (responseObservable != null) {
+                Response response = handleErrors(request, responseObservable)
+                        .toBlocking().lastOrDefault(new ResponseImpl(Status.NOT_FOUND));
+
+                sendResponse(context, originalRequest, response);
+            } else {
+                logger.debug("Error occurred handling request, sending a generic server error (500)");
                 sendGeneralServerError(context);
             }
+        } catch (Exception e) {
+            logger.debug("Error occurred handling request, sending a generic server error (500)", e);
+            sendGeneralServerError(context);
+        }
+    }
+
+    private void dispatchAsynchronously(ChannelHandlerContext context, HttpRequest originalRequest,
+                                        ServerRequestImpl request) {
+        try {
+            RequestMetricsRecorder recorder = metricsRecorder;
+            if (recorder != null) {
+                recorder.dispatched();
+            }
+
+            Observable<Response> responseObservable = route.apply(request);
+            if (recorder != null) {
+                recorder.routed(request);
+            }
+
+            if (responseObservable != null) {
+                // The route's response is subscribed to directly - completion is handed back to the channel's
+                // event loop so that no thread is parked waiting on an in-flight request
+                responseSubscription = handleErrors(request, responseObservable)
+                        .lastOrDefault(new ResponseImpl(Status.NOT_FOUND))
+                        .subscribe(
+                                response -> executeOnEventLoop(context,
+                                        () -> sendResponse(context, originalRequest, response)),
+                                e -> {
+                                    logger.debug("Error occurred handling request, sending a generic server error (500)", e);
+                                    executeOnEventLoop(context, () -> sendGeneralServerError(context));
+                                });
+            } else {
+                logger.debug("Error occurred handling request, sending a generic server error (500)");
+                sendGeneralServerError(context);
+            }
+        } catch (Exception e) {
+            logger.debug("Error occurred handling request, sending a generic server error (500)", e);
+            sendGeneralServerError(context);
+        }
+    }
+
+    private Observable<Response> handleErrors(ServerRequest request, Observable<Response> responseObservable) {
+        return responseObservable.onErrorResumeNext(throwable -> {
+            if (errorResponseConstructor != null) {
+                Observable<Response> errorResponse =
+                        errorResponseConstructor.apply(request, throwable);
+                if (errorResponse != null) {
+                    logger.debug("Error occurred handling request, invoking application error handler");
+                    return errorResponse.onErrorResumeNext(Observable.just(null));
+                }
+            } else {
+                logger.debug("Error occurred handling request - no application error handler was available to handle it - {}", throwable);
+            }
+
+            return Observable.just(new ResponseImpl(Status.INTERNAL_SERVER_ERROR));
         });
     }
 
+    private static void executeOnEventLoop(ChannelHandlerContext context, Runnable task) {
+        EventExecutor executor = context.executor();
+        if (executor.inEventLoop()) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
     private void fillResponse(HttpRequest originalRequest, HttpResponse response,
-                              Multimap<String, String> headers, int contentLength) {
+                              Multimap<String, String> headers, long contentLength) {
         boolean keepAlive = HttpUtil.isKeepAlive(originalRequest);
         if (keepAlive) {
             // http://www.w3.org/Protocols/HTTP/1.1/draft-ietf-http-v11-spec-01.html#Connection
@@ -151,9 +382,12 @@ public class ClientToServerChannelHandler extends ChannelInboundHandlerAdapter {
         }
 
         if (contentLength > -1) {
-            response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, contentLength);
+            HttpUtil.setContentLength(response, contentLength);
         }
 
+        recordResponse(response.status().code(),
+                originalRequest.method() != HttpMethod.HEAD ? Math.max(contentLength, 0) : 0);
+
         if (headers != null && !headers.isEmpty()) {
             for (Map.Entry<String, String> header : headers.entries()) {
                 response.headers().add(header.getKey(), header.getValue());
@@ -173,72 +407,360 @@ public class ClientToServerChannelHandler extends ChannelInboundHandlerAdapter {
         context.write(response);
     }
 
-    private void sendContent(ChannelHandlerContext context, ByteBuffer contentBuffer) {
-        HttpContent content = new DefaultHttpContent(contentBuffer == null ?
-                Unpooled.EMPTY_BUFFER :
-                Unpooled.wrappedBuffer(contentBuffer));
-
-        context.writeAndFlush(content);
-    }
-
     private void sendResponseEnd(ChannelHandlerContext context, HttpRequest originalRequest) {
         writeAndFlush(context, originalRequest, LastHttpContent.EMPTY_LAST_CONTENT);
     }
 
     private void sendFullResponse(ChannelHandlerContext context, HttpRequest originalRequest,
                                   int status, Multimap<String, String> headers) {
+        sendFullResponse(context, originalRequest, status, headers, Unpooled.EMPTY_BUFFER);
+    }
+
+    private void sendFullResponse(ChannelHandlerContext context, HttpRequest originalRequest,
+                                  int status, Multimap<String, String> headers, ByteBuf content) {
         FullHttpResponse response = new DefaultFullHttpResponse(
                 originalRequest.protocolVersion(),
                 HttpResponseStatus.valueOf(status),
-                Unpooled.EMPTY_BUFFER);
+                content);
 
-        fillResponse(originalRequest, response, headers, 0);
+        fillResponse(originalRequest, response, headers, content.readableBytes());
 
         writeAndFlush(context, originalRequest, response);
     }
 
     private void sendResponse(ChannelHandlerContext context, HttpRequest originalRequest, Response serverResponse) {
         Optional<Body> responseBody = serverResponse.body();
-        if (responseBody != null && responseBody.isPresent()) {
-            threadPool.execute(() -> {
-                if (!channelClosed) {
-                    boolean[] first = {true};
-                    entitySubscription = responseBody.get().asBufferChunks()
-                            .doOnNext(buffer -> {
-                                if (first[0]) {
-                                    sendResponseStart(context, originalRequest,
-                                            serverResponse.status().getCode(),
-                                            serverResponse.headers(), -1);
-                                    sendContent(context, buffer);
-
-                                    first[0] = false;
-                                } else {
-                                    sendContent(context, buffer);
-                                }
-                            })
-                            .doAfterTerminate(() -> {
-                                if (first[0]) {
-                                    sendFullResponse(context, originalRequest,
-                                            serverResponse.status().getCode(),
-                                            serverResponse.headers());
-                                } else {
-                                    sendResponseEnd(context, originalRequest);
-                                }
-                            }).subscribe();
-                }
-            });
+        if (responseBody != null && responseBody.isPresent() && responseBody.get() instanceof JsonBody &&
+                asynchronousDispatch) {
+            // JSON bodies are only written out now, by serialization strategies that may iterate over lazy or blocking
+            // sources, so they are written on the request executor, and only the buffer is sent on the event loop
+            try {
+                requestExecutor.execute(() -> sendInMemoryBody(context, originalRequest, serverResponse,
+                        (InMemoryBody) responseBody.get()), context.executor());
+            } catch (RejectedExecutionException e) {
+                logger.debug("Request executor is saturated, sending a service unavailable error (503)");
+                sendServiceUnavailable(context, originalRequest);
+            }
+        } else if (responseBody != null && responseBody.isPresent() && responseBody.get() instanceof InMemoryBody) {
+            // Content is already in memory, so it is sent right away in one response, with a single flush
+            sendInMemoryBody(context, originalRequest, serverResponse, (InMemoryBody) responseBody.get());
+        } else if (responseBody != null && responseBody.isPresent()) {
+            if (asynchronousDispatch) {
+                // Bodies may be produced by blocking sources, so subscribe to them on the request executor rather
+                // than on the event loop we were called back on
+                try {
+                    requestExecutor.execute(() -> sendBody(context, originalRequest, serverResponse, responseBody.get()),
+                            context.executor());
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Request executor is saturated, sending a service unavailable error (503)");
+                    sendServiceUnavailable(context, originalRequest);
+                }
+            } else {
+                sendBody(context, originalRequest, serverResponse, responseBody.get());
+            }
         } else {
             sendFullResponse(context, originalRequest, serverResponse.status().getCode(), serverResponse.headers());
         }
     }
 
+    private void sendInMemoryBody(ChannelHandlerContext context, HttpRequest originalRequest, Response serverResponse,
+                                  InMemoryBody responseBody) {
+        ByteBuf content;
+        try {
+            content = responseBody.asByteBuf(context.alloc());
+        } catch (RuntimeException e) {
+            // Some bodies, such as JSON bodies, are only written out at this point
+            logger.debug("Error occurred writing response body, sending a generic server error (500)", e);
+            sendGeneralServerError(context);
+            return;
+        }
+
+        sendFullResponse(context, originalRequest, serverResponse.status().getCode(), serverResponse.headers(), content);
+    }
+
+    private void sendBody(ChannelHandlerContext context, HttpRequest originalRequest, Response serverResponse,
+                          Body responseBody) {
+        if (!channelClosed && responseBody instanceof FileBody) {
+            sendFile(context, originalRequest, serverResponse, ((FileBody) responseBody).getPath());
+        } else if (!channelClosed) {
+            ResponseBodyWriter writer = new ResponseBodyWriter(context, originalRequest, serverResponse);
+            responseBodyWriter = writer;
+            entitySubscription = writer;
+
+            responseBody.asBufferChunks().subscribe(writer);
+        }
+    }
+
+    private void sendFile(ChannelHandlerContext context, HttpRequest originalRequest, Response serverResponse,
+                          Path path) {
+        BasicFileAttributes attributes = readAttributes(path);
+        if (attributes == null || !attributes.isRegularFile()) {
+            logger.debug("Could not read file {}, sending a not found error (404)", path);
+            sendFullResponse(context, originalRequest, Status.NOT_FOUND.getCode(), null);
+            return;
+        }
+
+        int status = serverResponse.status().getCode();
+        Multimap<String, String> headers = LinkedListMultimap.create();
+        if (serverResponse.headers() != null) {
+            headers.putAll(serverResponse.headers());
+        }
+
+        Path content = path;
+        String contentEncoding = null;
+        if (status == Status.OK.getCode() && options.isPrecompressedFiles()) {
+            headers.put(HttpHeaderNames.VARY.toString(), HttpHeaderNames.ACCEPT_ENCODING.toString());
+
+            String acceptEncoding = originalRequest.headers().get(HttpHeaderNames.ACCEPT_ENCODING);
+            for (int i = 0; i < PRECOMPRESSED_ENCODINGS.length && contentEncoding == null; i++) {
+                if (ServerContentCompressor.acceptsEncoding(acceptEncoding, PRECOMPRESSED_ENCODINGS[i])) {
+                    Path variant = path.resolveSibling(path.getFileName() + PRECOMPRESSED_EXTENSIONS[i]);
+                    BasicFileAttributes variantAttributes = readAttributes(variant);
+                    if (variantAttributes != null && variantAttributes.isRegularFile()) {
+                        content = variant;
+                        contentEncoding = PRECOMPRESSED_ENCODINGS[i];
+                        attributes = variantAttributes;
+                    }
+                }
+            }
+        }
+
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String entityTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) +
+                (contentEncoding != null ? "-" + contentEncoding : "") + "\"";
+
+        long start = 0;
+        long count = length;
+        if (status == Status.OK.getCode()) {
+            if (contentEncoding != null) {
+                headers.put(HttpHeaderNames.CONTENT_ENCODING.toString(), contentEncoding);
+            }
+
+            headers.put(HttpHeaderNames.ETAG.toString(), entityTag);
+            headers.put(HttpHeaderNames.LAST_MODIFIED.toString(), HTTP_DATE_FORMAT.format(Instant.ofEpochMilli(lastModified)));
+            headers.put(HttpHeaderNames.ACCEPT_RANGES.toString(), HttpHeaderValues.BYTES.toString());
+            addContentType(headers, path);
+
+            if (isNotModified(originalRequest, entityTag, lastModified)) {
+                FullHttpResponse response = new DefaultFullHttpResponse(
+                        originalRequest.protocolVersion(), HttpResponseStatus.NOT_MODIFIED);
+                fillResponse(originalRequest, response, headers, -1);
+                writeAndFlush(context, originalRequest, response);
+                return;
+            }
+
+            String range = originalRequest.headers().get(HttpHeaderNames.RANGE);
+            if (range != null && originalRequest.method() == HttpMethod.GET &&
+                    isRangeApplicable(originalRequest, entityTag, lastModified)) {
+                long[] bounds = parseRange(range, length);
+                if (bounds == UNSATISFIABLE_RANGE) {
+                    headers.put(HttpHeaderNames.CONTENT_RANGE.toString(), "bytes */" + length);
+                    sendFullResponse(context, originalRequest,
+                            Status.REQUESTED_RANGE_NOT_SATISFIABLE.getCode(), headers);
+                    return;
+                } else if (bounds != null) {
+                    status = Status.PARTIAL_CONTENT.getCode();
+                    start = bounds[0];
+                    count = bounds[1] - bounds[0] + 1;
+                    headers.put(HttpHeaderNames.CONTENT_RANGE.toString(),
+                            "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+                }
+            }
+        }
+
+        // File content is written as is, so it must not pass through the compressor
+        HttpResponse response = new ServerContentCompressor.UncompressedHttpResponse(
+                originalRequest.protocolVersion(), HttpResponseStatus.valueOf(status));
+        fillResponse(originalRequest, response, headers, count);
+
+        if (count == 0 || originalRequest.method() == HttpMethod.HEAD) {
+            context.write(response);
+            sendResponseEnd(context, originalRequest);
+            return;
+        }
+
+        FileChannel file = null;
+        try {
+            file = FileChannel.open(content, StandardOpenOption.READ);
+
+            if (context.channel() instanceof SocketChannel && context.pipeline().get(SslHandler.class) == null) {
+                context.write(response);
+                context.write(new DefaultFileRegion(file, start, count));
+                sendResponseEnd(context, originalRequest);
+            } else {
+                // Content that has to be encrypted, or framed for an HTTP/2 stream, can not be transferred directly
+                // from the file system
+                context.write(response);
+                writeAndFlush(context, originalRequest,
+                        new HttpChunkedInput(new ChunkedNioFile(file, start, count, FILE_CHUNK_SIZE)));
+            }
+        } catch (IOException e) {
+            logger.debug("Could not read file {}, sending a generic server error (500)", content, e);
+            closeQuietly(file);
+            sendFullResponse(context, originalRequest, Status.INTERNAL_SERVER_ERROR.getCode(), null);
+        }
+    }
+
+    private static void addContentType(Multimap<String, String> headers, Path path) {
+        for (String name : headers.keySet()) {
+            if (HttpHeaderNames.CONTENT_TYPE.contentEqualsIgnoreCase(name)) {
+                return;
+            }
+        }
+
+        try {
+            String contentType = Files.probeContentType(path);
+            if (contentType != null) {
+                headers.put(HttpHeaderNames.CONTENT_TYPE.toString(), contentType);
+            }
+        } catch (IOException e) {
+            // Content type is left unspecified
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(FileChannel file) {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Nothing more can be done
+            }
+        }
+    }
+
+    private static boolean isNotModified(HttpRequest request, String entityTag, long lastModified) {
+        if (request.method() != HttpMethod.GET && request.method() != HttpMethod.HEAD) {
+            return false;
+        }
+
+        // If-Modified-Since is only considered when If-None-Match is absent
+        String ifNoneMatch = request.headers().get(HttpHeaderNames.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                candidate = candidate.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+
+                if (candidate.equals("*") || candidate.equals(entityTag)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        long ifModifiedSince = parseHttpDate(request.headers().get(HttpHeaderNames.IF_MODIFIED_SINCE));
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean isRangeApplicable(HttpRequest request, String entityTag, long lastModified) {
+        String ifRange = request.headers().get(HttpHeaderNames.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(entityTag);
+        }
+
+        long date = parseHttpDate(ifRange);
+        return date >= 0 && date / 1000 == lastModified / 1000;
+    }
+
+    private static long parseHttpDate(String date) {
+        if (date != null) {
+            try {
+                return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                // Treated as absent
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parse a single byte range, returning the first and last byte positions. Multiple ranges and malformed ranges are
+     * ignored (null is returned), so that the whole file is sent.
+     */
+    private static long[] parseRange(String range, long length) {
+        range = range.trim();
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return null;
+        }
+
+        int separator = range.indexOf('-');
+        if (separator < 0) {
+            return null;
+        }
+
+        try {
+            String first = range.substring("bytes=".length(), separator).trim();
+            String last = range.substring(separator + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+
+                return new long[] { Math.max(0, length - suffix), length - 1 };
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+            if (start < 0 || end < start) {
+                return null;
+            }
+
+            if (start >= length) {
+                return UNSATISFIABLE_RANGE;
+            }
+
+            return new long[] { start, Math.min(end, length - 1) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void sendServiceUnavailable(ChannelHandlerContext context, HttpRequest originalRequest) {
+        sendFullResponse(context, originalRequest, Status.SERVICE_UNAVAILABLE.getCode(), null);
+    }
+
+    private void sendRequestEntityTooLarge(ChannelHandlerContext context) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE);
+        response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 0);
+        response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+
+        recordResponse(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE.code(), 0);
+        writeAndRecordCompletion(context, response).addListener(ChannelFutureListener.CLOSE);
+    }
+
     private static void sendContinueResponse(ChannelHandlerContext context) {
         FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE);
         context.write(response);
     }
 
-    private void writeAndFlush(ChannelHandlerContext context, HttpRequest originalRequest, HttpObject response) {
-        ChannelFuture writeFuture = context.writeAndFlush(response);
+    private void writeAndFlush(ChannelHandlerContext context, HttpRequest originalRequest, Object response) {
+        // A response has been sent without the request body having been consumed - don't hold up reading the rest of
+        // it from the connection, in case it is never consumed
+        RequestBodyStream body = bodyStream;
+        if (body != null && !body.isSubscribed() && !body.isDone()) {
+            body.abandon();
+        }
+
+        ChannelFuture writeFuture = writeAndRecordCompletion(context, response);
         boolean keepAlive = HttpUtil.isKeepAlive(originalRequest);
         if (!keepAlive) {
             writeFuture.addListener(ChannelFutureListener.CLOSE);
@@ -250,4 +772,183 @@ public class ClientToServerChannelHandler extends ChannelInboundHandlerAdapter {
         cause.printStackTrace();
         context.close();
     }
+
+    /**
+     * Writes a streamed response body, coalescing small chunks into a pooled buffer. Buffered content is flushed once
+     * it fills the response buffer, once the flush interval has passed since it was buffered, and when the body
+     * completes. The next chunk is only requested while the channel is writable, so a fast body source is paused
+     * rather than filling up the outbound buffer.
+     */
+    private class ResponseBodyWriter extends Subscriber<ByteBuffer> {
+        private final ChannelHandlerContext context;
+        private final HttpRequest originalRequest;
+        private final AtomicInteger queuedTasks = new AtomicInteger();
+        private final Response serverResponse;
+        private final AtomicBoolean waitingForWritability = new AtomicBoolean();
+
+        // Only accessed on the event loop
+        private boolean finished;
+        private ByteBuf pending;
+        private ScheduledFuture<?> scheduledFlush;
+        private boolean started;
+
+        ResponseBodyWriter(ChannelHandlerContext context, HttpRequest originalRequest, Response serverResponse) {
+            this.context = context;
+            this.originalRequest = originalRequest;
+            this.serverResponse = serverResponse;
+
+            add(Subscriptions.create(() -> onEventLoop(this::discard)));
+        }
+
+        private void onEventLoop(Runnable task) {
+            // Tasks already queued from another thread must run first, so that chunks are written in order
+            EventExecutor executor = context.executor();
+            if (executor.inEventLoop() && queuedTasks.get() == 0) {
+                task.run();
+            } else {
+                queuedTasks.incrementAndGet();
+                executor.execute(() -> {
+                    queuedTasks.decrementAndGet();
+                    task.run();
+                });
+            }
+        }
+
+        @Override
+        public void onStart() {
+            request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            onEventLoop(() -> write(chunk));
+        }
+
+        @Override
+        public void onCompleted() {
+            onEventLoop(this::finish);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            logger.debug("Error occurred streaming response body, ending the response", e);
+            onEventLoop(this::finish);
+        }
+
+        void resume() {
+            if (waitingForWritability.compareAndSet(true, false)) {
+                request(1);
+            }
+        }
+
+        private void write(ByteBuffer chunk) {
+            if (finished) {
+                return;
+            }
+
+            if (!started) {
+                sendResponseStart(context, originalRequest,
+                        serverResponse.status().getCode(),
+                        serverResponse.headers(), -1);
+                started = true;
+            }
+
+            int bufferSize = options.getResponseBufferSize();
+            int size = chunk.remaining();
+
+            RequestMetricsRecorder recorder = metricsRecorder;
+            if (recorder != null) {
+                recorder.addResponseBytes(size);
+            }
+            if (pending != null && pending.readableBytes() + size > bufferSize) {
+                flush();
+            }
+
+            if (size >= bufferSize) {
+                context.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(chunk)));
+            } else if (size > 0) {
+                if (pending == null) {
+                    pending = context.alloc().buffer(bufferSize);
+                }
+
+                pending.writeBytes(chunk);
+                if (pending.readableBytes() >= bufferSize || options.getResponseFlushInterval() <= 0) {
+                    flush();
+                } else if (scheduledFlush == null) {
+                    scheduledFlush = context.executor().schedule(() -> {
+                        scheduledFlush = null;
+                        if (!finished) {
+                            flush();
+                        }
+                    }, options.getResponseFlushInterval(), TimeUnit.MILLISECONDS);
+                }
+            }
+
+            requestNext();
+        }
+
+        private void requestNext() {
+            if (context.channel().isWritable()) {
+                request(1);
+            } else {
+                // Make sure everything written so far drains, so that the channel becomes writable again
+                flush();
+                waitingForWritability.set(true);
+
+                // Writability may have been restored before the flag was set
+                if (context.channel().isWritable()) {
+                    resume();
+                }
+            }
+        }
+
+        private void cancelScheduledFlush() {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+
+        private void flush() {
+            cancelScheduledFlush();
+
+            if (pending != null) {
+                context.writeAndFlush(new DefaultHttpContent(pending));
+                pending = null;
+            } else {
+                context.flush();
+            }
+        }
+
+        private void finish() {
+            if (finished) {
+                return;
+            }
+
+            finished = true;
+            responseBodyWriter = null;
+            cancelScheduledFlush();
+
+            if (!started) {
+                sendFullResponse(context, originalRequest,
+                        serverResponse.status().getCode(),
+                        serverResponse.headers());
+            } else if (pending != null) {
+                writeAndFlush(context, originalRequest, new DefaultLastHttpContent(pending));
+                pending = null;
+            } else {
+                sendResponseEnd(context, originalRequest);
+            }
+        }
+
+        private void discard() {
+            finished = true;
+            cancelScheduledFlush();
+
+            if (pending != null) {
+                pending.release();
+                pending = null;
+            }
+        }
+    }
 }
@@ -1,20 +1,41 @@
 package foundation.stack.datamill.http.impl;
 
+import foundation.stack.datamill.http.RequestExecutor;
+import foundation.stack.datamill.http.RequestExecutors;
 import foundation.stack.datamill.http.Response;
 import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.ServerOptions;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpContentDecompressor;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2Codec;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2GoAwayFrame;
+import io.netty.handler.codec.http2.Http2ServerDowngrader;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
 import io.netty.handler.ssl.SslContext;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
 import foundation.stack.datamill.http.ServerRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 
 /**
@@ -22,19 +43,37 @@ import java.util.function.BiFunction;
  */
 public class ClientToServerChannelInitializer extends ChannelInitializer<SocketChannel> {
     private static final Logger logger = LoggerFactory.getLogger(ClientToServerChannelInitializer.class);
+    private static final String CHUNKED_WRITER = "chunkedWriter";
+    private static final String COMPRESSOR = "compressor";
+    private static final String DECOMPRESSOR = "decompressor";
+    private static final String GOVERNOR = "governor";
+    private static final String HANDLER = "handler";
+    private static final String REQUEST_TRACKER = "requestTracker";
 
+    private final boolean asynchronousDispatch;
+    private final AtomicInteger connections = new AtomicInteger();
     private final BiFunction<ServerRequest, Throwable, Observable<Response>> errorResponseConstructor;
+    private final ServerOptions options;
+    private final RequestExecutor requestExecutor;
     private final Route route;
     private final SslContext sslContext;
-    private final ExecutorService threadPool;
+    private final Http2StreamInitializer streamInitializer = new Http2StreamInitializer();
 
     public ClientToServerChannelInitializer(SslContext sslContext, ExecutorService threadPool,
                                             Route route, BiFunction<ServerRequest, Throwable, Observable<Response>> errorResponseConstructor) {
+        this(sslContext, RequestExecutors.using(threadPool), route, errorResponseConstructor, false, new ServerOptions());
+    }
+
+    public ClientToServerChannelInitializer(SslContext sslContext, RequestExecutor requestExecutor,
+                                            Route route, BiFunction<ServerRequest, Throwable, Observable<Response>> errorResponseConstructor,
+                                            boolean asynchronousDispatch, ServerOptions options) {
         this.sslContext = sslContext;
-        this.threadPool = threadPool;
+        this.requestExecutor = requestExecutor;
 
         this.route = route;
         this.errorResponseConstructor = errorResponseConstructor;
+        this.asynchronousDispatch = asynchronousDispatch;
+        this.options = options;
     }
 
     @Override
@@ -43,13 +82,147 @@ public class ClientToServerChannelInitializer extends ChannelInitializer<SocketC
 
         ChannelPipeline pipeline = channel.pipeline();
 
+        // Idle events are fired towards the governor, which is ahead of everything else so that refused connections
+        // are closed before a TLS handshake is started
+        if (options.getReadTimeout() > 0 || options.getWriteTimeout() > 0 || options.getIdleTimeout() > 0) {
+            pipeline.addLast(new IdleStateHandler(options.getReadTimeout(), options.getWriteTimeout(),
+                    options.getIdleTimeout(), TimeUnit.MILLISECONDS));
+        }
+
+        pipeline.addLast(GOVERNOR, new ConnectionGovernor(connections, options));
+
         if (sslContext != null) {
             pipeline.addLast(sslContext.newHandler(channel.alloc()));
         }
 
+        if (options.isHttp2() && sslContext != null) {
+            // The protocol is only known once the handshake completes - clients that don't negotiate it use HTTP/1.1
+            pipeline.addLast(new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                @Override
+                protected void configurePipeline(ChannelHandlerContext context, String protocol) {
+                    if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                        addHttp2Handlers(context.pipeline());
+                    } else {
+                        addHttp1Handlers(context.pipeline());
+                    }
+                }
+            });
+        } else if (options.isHttp2()) {
+            HttpServerCodec codec = new HttpServerCodec(4096, 8192, 65536);
+            pipeline.addLast(codec);
+            addRequestTracker(pipeline);
+            pipeline.addLast(new HttpServerUpgradeHandler(codec, protocol ->
+                    AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol) ?
+                            new Http2ServerUpgradeCodec(new Http2Codec(true, streamInitializer)) : null));
+            pipeline.addLast(new Http2UpgradeListener());
+            addHttp1RequestHandlers(pipeline);
+        } else {
+            addHttp1Handlers(pipeline);
+        }
+    }
+
+    private void addHttp1Handlers(ChannelPipeline pipeline) {
         pipeline.addLast(new HttpServerCodec(4096, 8192, 65536));
-        pipeline.addLast(new HttpContentDecompressor());
-        pipeline.addLast(new HttpContentCompressor());
-        pipeline.addLast(new ClientToServerChannelHandler(threadPool, route, errorResponseConstructor));
+        addRequestTracker(pipeline);
+        addHttp1RequestHandlers(pipeline);
+    }
+
+    private static void addRequestTracker(ChannelPipeline pipeline) {
+        pipeline.addLast(REQUEST_TRACKER, ((ConnectionGovernor) pipeline.get(GOVERNOR)).requestTracker());
+    }
+
+    private void addHttp1RequestHandlers(ChannelPipeline pipeline) {
+        pipeline.addLast(DECOMPRESSOR, new HttpContentDecompressor());
+        if (options.isCompression()) {
+            pipeline.addLast(COMPRESSOR, new ServerContentCompressor(options));
+        }
+
+        if (sslContext != null) {
+            // File bodies are written in chunks when the connection is encrypted
+            pipeline.addLast(CHUNKED_WRITER, new ChunkedWriteHandler());
+        }
+
+        pipeline.addLast(HANDLER, createHandler());
+    }
+
+    private void addHttp2Handlers(ChannelPipeline pipeline) {
+        pipeline.addLast(new Http2Codec(true, streamInitializer));
+        addGoAwayRetainer(pipeline);
+    }
+
+    private static void addGoAwayRetainer(ChannelPipeline pipeline) {
+        ChannelHandlerContext frameCodec = pipeline.context(Http2FrameCodec.class);
+        if (frameCodec != null) {
+            pipeline.addAfter(frameCodec.name(), null, GoAwayRetainer.INSTANCE);
+        }
+    }
+
+    private ClientToServerChannelHandler createHandler() {
+        return new ClientToServerChannelHandler(requestExecutor, route, errorResponseConstructor,
+                asynchronousDispatch, options);
+    }
+
+    /**
+     * Sets up the channel for each HTTP/2 stream, which carries a single request. Frames are converted to and from the
+     * same HTTP objects used for HTTP/1.1, so streams are handled just like HTTP/1.1 requests are.
+     */
+    private class Http2StreamInitializer extends ChannelInitializer<Channel> {
+        @Override
+        protected void initChannel(Channel stream) throws Exception {
+            ChannelPipeline pipeline = stream.pipeline();
+            pipeline.addLast(new Http2ServerDowngrader());
+            pipeline.addLast(new HttpContentDecompressor());
+            if (options.isCompression()) {
+                pipeline.addLast(new ServerContentCompressor(options));
+            }
+
+            // File regions can't be written to streams, so file bodies are always written in chunks
+            pipeline.addLast(new ChunkedWriteHandler());
+            pipeline.addLast(createHandler());
+        }
+    }
+
+    /**
+     * Removes the HTTP/1.1 handlers once a connection has been upgraded to HTTP/2 - from then on, requests are handled
+     * on the channels of the individual streams.
+     */
+    private static class Http2UpgradeListener extends ChannelInboundHandlerAdapter {
+        @Override
+        public void userEventTriggered(ChannelHandlerContext context, Object event) throws Exception {
+            if (event instanceof HttpServerUpgradeHandler.UpgradeEvent) {
+                ChannelPipeline pipeline = context.pipeline();
+                for (String name : new String[] { REQUEST_TRACKER, DECOMPRESSOR, COMPRESSOR, CHUNKED_WRITER, HANDLER }) {
+                    if (pipeline.get(name) != null) {
+                        pipeline.remove(name);
+                    }
+                }
+
+                addGoAwayRetainer(pipeline);
+                pipeline.remove(this);
+                ReferenceCountUtil.release(event);
+                return;
+            }
+
+            super.userEventTriggered(context, event);
+        }
+    }
+
+    /**
+     * The frame codec passes the debug data of a GOAWAY frame on without retaining it, while the multiplexing codec
+     * releases it, which releases the connection's read buffer out from under it when a client closes the connection.
+     * Retaining the frame as it is passed along balances this out.
+     */
+    @ChannelHandler.Sharable
+    private static class GoAwayRetainer extends ChannelInboundHandlerAdapter {
+        static final GoAwayRetainer INSTANCE = new GoAwayRetainer();
+
+        @Override
+        public void channelRead(ChannelHandlerContext context, Object message) throws Exception {
+            if (message instanceof Http2GoAwayFrame) {
+                ((Http2GoAwayFrame) message).retain();
+            }
+
+            super.channelRead(context, message);
+        }
     }
 }
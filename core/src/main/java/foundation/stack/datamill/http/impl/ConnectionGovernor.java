@@ -0,0 +1,277 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.ServerOptions;
+import foundation.stack.datamill.http.metrics.ConnectionCloseReason;
+import foundation.stack.datamill.http.metrics.ServerMetrics;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Governs a client connection, so that clients that hold on to connections without using them, or that use them very
+ * slowly, can't tie up the server at the expense of other clients. The governor:
+ * </p>
+ * <ul>
+ * <li>refuses connections beyond the maximum number of connections, by closing them as soon as they are accepted</li>
+ * <li>closes connections that have been idle for too long, as signalled by an {@link IdleStateEvent}</li>
+ * <li>closes HTTP/1.1 connections whose clients are too slow to send the headers or bodies of requests</li>
+ * </ul>
+ * <p>
+ * The governor is added at the front of a connection's pipeline, so that it sees connections before anything else
+ * does. HTTP/1.1 requests are followed by a {@link #requestTracker()}, which has to be added right after the HTTP
+ * codec. The reason for closing each connection is reported to the server's metrics.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ConnectionGovernor extends ChannelInboundHandlerAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionGovernor.class);
+    private static final long RATE_CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicInteger connections;
+    private final ServerMetrics metrics;
+    private final ServerOptions options;
+
+    // Only accessed on the event loop
+    private long bodyBytes;
+    private long bodyStartedAt;
+    private ConnectionCloseReason closeReason;
+    private ChannelHandlerContext context;
+    private boolean counted;
+    private ScheduledFuture<?> headerDeadline;
+    private int pendingResponses;
+    private ScheduledFuture<?> rateCheck;
+    private boolean receivingRequest;
+    private boolean tracking;
+
+    /**
+     * @param connections The number of connections open to the server, shared by the governors of all its connections.
+     */
+    public ConnectionGovernor(AtomicInteger connections, ServerOptions options) {
+        this.connections = connections;
+        this.metrics = options.getMetrics();
+        this.options = options;
+    }
+
+    /** Get the handler that follows the HTTP/1.1 requests on the connection. */
+    public ChannelHandler requestTracker() {
+        return new RequestTracker();
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext context) throws Exception {
+        if (options.getMaxConnections() > 0) {
+            if (connections.incrementAndGet() > options.getMaxConnections()) {
+                connections.decrementAndGet();
+
+                // The rest of the pipeline never sees the connection as active, so a TLS handshake isn't even started
+                close(ConnectionCloseReason.REFUSED, "Refusing connection from {}, the server has too many connections");
+                return;
+            }
+
+            counted = true;
+        }
+
+        if (metrics != null) {
+            metrics.connectionOpened();
+        }
+
+        if (options.getHeaderReadTimeout() > 0) {
+            startHeaderDeadline();
+        }
+
+        super.channelActive(context);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext context) throws Exception {
+        cancelHeaderDeadline();
+        cancelRateCheck();
+
+        if (counted) {
+            counted = false;
+            connections.decrementAndGet();
+        }
+
+        if (metrics != null) {
+            metrics.connectionClosed(closeReason != null ? closeReason : ConnectionCloseReason.CLOSED);
+        }
+
+        super.channelInactive(context);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext context, Object message) throws Exception {
+        if (tracking && !receivingRequest && headerDeadline == null && options.getHeaderReadTimeout() > 0) {
+            // The start of the next request has arrived
+            startHeaderDeadline();
+        }
+
+        super.channelRead(context, message);
+
+        // Checks are only scheduled for bodies that span reads, which keeps small requests cheap
+        if (receivingRequest && rateCheck == null && options.getMinimumRequestBodyRate() > 0) {
+            scheduleRateCheck();
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext context, Object event) throws Exception {
+        if (event instanceof IdleStateEvent) {
+            IdleState state = ((IdleStateEvent) event).state();
+            if (state == IdleState.ALL_IDLE) {
+                close(ConnectionCloseReason.IDLE, "Closing idle connection from {}");
+            } else if (state == IdleState.READER_IDLE) {
+                // A client waiting on a slow response has nothing to send
+                if (tracking && (receivingRequest || pendingResponses == 0)) {
+                    close(ConnectionCloseReason.READ_TIMEOUT, "Closing connection from {}, nothing was read in time");
+                }
+            } else if (!context.channel().isWritable()) {
+                close(ConnectionCloseReason.WRITE_TIMEOUT, "Closing connection from {}, the client stopped reading");
+            }
+        } else {
+            super.userEventTriggered(context, event);
+        }
+    }
+
+    private void close(ConnectionCloseReason reason, String message) {
+        if (closeReason == null) {
+            closeReason = reason;
+            logger.debug(message, context.channel().remoteAddress());
+        }
+
+        context.close();
+    }
+
+    private void startHeaderDeadline() {
+        headerDeadline = context.executor().schedule(() -> {
+            headerDeadline = null;
+            if (tracking && !receivingRequest) {
+                close(ConnectionCloseReason.HEADER_READ_TIMEOUT,
+                        "Closing connection from {}, request headers were not received in time");
+            }
+        }, options.getHeaderReadTimeout(), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelHeaderDeadline() {
+        if (headerDeadline != null) {
+            headerDeadline.cancel(false);
+            headerDeadline = null;
+        }
+    }
+
+    private void scheduleRateCheck() {
+        rateCheck = context.executor().schedule(this::checkRequestBodyRate, RATE_CHECK_INTERVAL, TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelRateCheck() {
+        if (rateCheck != null) {
+            rateCheck.cancel(false);
+            rateCheck = null;
+        }
+    }
+
+    private void checkRequestBodyRate() {
+        rateCheck = null;
+        if (!receivingRequest || !context.channel().isActive()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (!context.channel().config().isAutoRead()) {
+            // The body isn't being read because the request handler hasn't caught up - start measuring over
+            bodyStartedAt = now;
+            bodyBytes = 0;
+        } else {
+            long elapsed = now - bodyStartedAt;
+            if (elapsed >= RATE_CHECK_INTERVAL &&
+                    bodyBytes * TimeUnit.SECONDS.toNanos(1) / elapsed < options.getMinimumRequestBodyRate()) {
+                close(ConnectionCloseReason.SLOW_REQUEST_BODY,
+                        "Closing connection from {}, the request body is being sent too slowly");
+                return;
+            }
+        }
+
+        scheduleRateCheck();
+    }
+
+    /**
+     * Follows the requests and responses exchanged over an HTTP/1.1 connection. Connections upgraded to HTTP/2 remove
+     * the tracker, after which only the connection limit and the idle and write timeouts apply to them.
+     */
+    private class RequestTracker extends ChannelDuplexHandler {
+        @Override
+        public void handlerAdded(ChannelHandlerContext context) {
+            tracking = true;
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext context) {
+            tracking = false;
+            receivingRequest = false;
+            cancelHeaderDeadline();
+            cancelRateCheck();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext context, Object message) throws Exception {
+            if (message instanceof HttpRequest) {
+                cancelHeaderDeadline();
+
+                receivingRequest = true;
+                pendingResponses++;
+
+                if (options.getMinimumRequestBodyRate() > 0) {
+                    bodyStartedAt = System.nanoTime();
+                    bodyBytes = 0;
+                }
+            }
+
+            if (message instanceof HttpContent) {
+                bodyBytes += ((HttpContent) message).content().readableBytes();
+
+                if (message instanceof LastHttpContent) {
+                    receivingRequest = false;
+                    cancelRateCheck();
+                }
+            }
+
+            super.channelRead(context, message);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext context, Object message, ChannelPromise promise) throws Exception {
+            if (message instanceof LastHttpContent && !isInformational(message) && pendingResponses > 0) {
+                pendingResponses--;
+            }
+
+            super.write(context, message, promise);
+        }
+
+        private boolean isInformational(Object message) {
+            return message instanceof HttpResponse &&
+                    ((HttpResponse) message).status().codeClass() == HttpStatusClass.INFORMATIONAL;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package foundation.stack.datamill.http.impl;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Limits the number of connections leased across all of a client's per-route pools. Leases that can't be granted
+ * straight away wait in a bounded queue, in the order they were asked for, and are granted as other leases are
+ * released.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+class ConnectionLimiter {
+    private final int maxLeased;
+    private final int maxPending;
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private int leased;
+
+    ConnectionLimiter(int maxLeased, int maxPending) {
+        this.maxLeased = maxLeased;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Ask for a lease, running the specified action once it is granted, which may be straight away. The action is
+     * responsible for releasing the lease.
+     *
+     * @return False if the lease couldn't be granted, and there were already too many waiting.
+     */
+    boolean acquire(Runnable granted) {
+        synchronized (this) {
+            if (leased >= maxLeased) {
+                if (pending.size() >= maxPending) {
+                    return false;
+                }
+
+                pending.add(granted);
+                return true;
+            }
+
+            leased++;
+        }
+
+        granted.run();
+        return true;
+    }
+
+    /** Stop waiting for a lease. Returns false if the lease was already granted, and so has to be released. */
+    synchronized boolean cancel(Runnable granted) {
+        return pending.remove(granted);
+    }
+
+    /** Release a lease, handing it over to the next waiting action, if there is one. */
+    void release() {
+        Runnable next;
+        synchronized (this) {
+            next = pending.poll();
+            if (next == null) {
+                leased--;
+            }
+        }
+
+        if (next != null) {
+            next.run();
+        }
+    }
+}
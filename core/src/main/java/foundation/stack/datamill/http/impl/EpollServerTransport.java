@@ -0,0 +1,44 @@
+package foundation.stack.datamill.http.impl;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Uses the native Linux epoll transport. This class should only be loaded after checking that the epoll library is on
+ * the classpath, which is done by {@link ServerTransport#select(boolean)}.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class EpollServerTransport extends ServerTransport {
+    static boolean isAvailable() {
+        return Epoll.isAvailable();
+    }
+
+    @Override
+    public EventLoopGroup createEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        return new EpollEventLoopGroup(threads, threadFactory);
+    }
+
+    @Override
+    public Class<? extends ServerChannel> serverChannelClass() {
+        return EpollServerSocketChannel.class;
+    }
+
+    @Override
+    public boolean isNative() {
+        return true;
+    }
+
+    @Override
+    public boolean setReusePort(ServerBootstrap bootstrap) {
+        bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        return true;
+    }
+}
@@ -0,0 +1,28 @@
+package foundation.stack.datamill.http.impl;
+
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class EventLoopRequestExecutor extends AbstractRequestExecutor {
+    @Override
+    protected void dispatch(Runnable task, Executor eventLoop) {
+        if (eventLoop instanceof EventExecutor && ((EventExecutor) eventLoop).inEventLoop()) {
+            task.run();
+        } else {
+            eventLoop.execute(task);
+        }
+    }
+
+    @Override
+    public boolean runsOnEventLoop() {
+        return true;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
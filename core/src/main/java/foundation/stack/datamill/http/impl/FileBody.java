@@ -0,0 +1,74 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.Body;
+import foundation.stack.datamill.http.HttpException;
+import foundation.stack.datamill.json.JsonObject;
+import rx.Observable;
+import rx.observables.StringObservable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A body backed by a file. When a server response has a file body, the server transfers the file to the connection
+ * directly (using sendfile where the transport supports it) rather than reading it through the body's observables,
+ * and answers conditional and range requests for it. The observables are only used when the body is consumed
+ * otherwise, for example, when it is sent by a client.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class FileBody extends AbstractBody implements Body {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Path path;
+
+    public FileBody(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public Observable<byte[]> asBytes() {
+        return Observable.fromCallable(() -> Files.readAllBytes(path));
+    }
+
+    @Override
+    public Observable<ByteBuffer> asBufferChunks() {
+        return asChunks().map(bytes -> ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public Observable<byte[]> asChunks() {
+        return Observable.using(
+                () -> {
+                    try {
+                        return Files.newInputStream(path);
+                    } catch (IOException e) {
+                        throw new HttpException(e);
+                    }
+                },
+                stream -> StringObservable.from(stream, CHUNK_SIZE),
+                stream -> {
+                    try {
+                        stream.close();
+                    } catch (IOException e) {
+                        // Nothing more can be done
+                    }
+                });
+    }
+
+    @Override
+    public Observable<JsonObject> asJson() {
+        return asString().map(string -> new JsonObject(string));
+    }
+
+    @Override
+    public Observable<String> asString() {
+        return asBytes().map(bytes -> new String(bytes));
+    }
+}
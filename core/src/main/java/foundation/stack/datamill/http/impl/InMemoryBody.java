@@ -0,0 +1,16 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.Body;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * A body whose content is already held in memory. The server sends such bodies in a single response with a
+ * Content-Length rather than streaming them in chunks.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public interface InMemoryBody extends Body {
+    /** Get the content of this body as a buffer, which is allocated from the given allocator if necessary. */
+    ByteBuf asByteBuf(ByteBufAllocator allocator);
+}
@@ -0,0 +1,189 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.HttpException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits a JSON array into its elements incrementally, as the bytes of the array arrive in chunks. Only the bytes of
+ * the element being read are held in memory, so arrays of any size can be read in memory proportional to their largest
+ * element. The splitter only tracks nesting, strings and escapes to find where elements end - each element is
+ * returned as its JSON text, to be parsed separately. Structural characters are all ASCII, which never appears within
+ * multi-byte UTF-8 sequences, so chunks can be split anywhere. For the same reason, only UTF-8 and single-byte
+ * charsets that encode ASCII as ASCII are supported (see {@link #supports(Charset)}).
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+class JsonArraySplitter {
+    private enum State {
+        BEFORE_ARRAY, BEFORE_ELEMENT, IN_ELEMENT, AFTER_ELEMENT, AFTER_ARRAY
+    }
+
+    private static final String STRUCTURAL_CHARACTERS = "[]{},:\"\\ \n\r\t";
+
+    private final Charset charset;
+    private byte[] element = new byte[256];
+    private int depth;
+    private long completed;
+    private boolean escaped;
+    private boolean inString;
+    private int length;
+    private State state = State.BEFORE_ARRAY;
+
+    JsonArraySplitter(Charset charset) {
+        this.charset = charset;
+    }
+
+    /** Whether arrays encoded with the given charset can be split without decoding them first. */
+    static boolean supports(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return true;
+        }
+
+        // Structural bytes could otherwise appear within multi-byte characters, or not be ASCII at all
+        return charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1 &&
+                Arrays.equals(STRUCTURAL_CHARACTERS.getBytes(charset),
+                        STRUCTURAL_CHARACTERS.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static HttpException malformed(String message) {
+        return new HttpException("Malformed JSON array: " + message);
+    }
+
+    /**
+     * Feed the next chunk of the array to the splitter.
+     *
+     * @return The elements completed by the chunk.
+     */
+    List<String> feed(ByteBuffer chunk) {
+        List<String> elements = null;
+        while (chunk.hasRemaining()) {
+            byte b = chunk.get();
+            switch (state) {
+                case BEFORE_ARRAY:
+                    if (b == '[') {
+                        state = State.BEFORE_ELEMENT;
+                    } else if (!isWhitespace(b) && !isByteOrderMark(b)) {
+                        throw malformed("expected the start of an array");
+                    }
+                    break;
+                case BEFORE_ELEMENT:
+                    if (b == ']' && completed == 0) {
+                        state = State.AFTER_ARRAY;
+                    } else if (b == ',' || b == ']') {
+                        throw malformed("expected an element");
+                    } else if (!isWhitespace(b)) {
+                        state = State.IN_ELEMENT;
+                        if (read(b)) {
+                            elements = complete(elements);
+                        }
+                    }
+                    break;
+                case IN_ELEMENT:
+                    if (depth == 0 && !inString && (b == ',' || b == ']' || isWhitespace(b))) {
+                        // A scalar element ends with whatever follows it
+                        elements = complete(elements);
+                        after(b);
+                    } else if (read(b)) {
+                        elements = complete(elements);
+                    }
+                    break;
+                case AFTER_ELEMENT:
+                    after(b);
+                    break;
+                case AFTER_ARRAY:
+                    if (!isWhitespace(b)) {
+                        throw malformed("unexpected content after the array");
+                    }
+                    break;
+            }
+        }
+
+        return elements != null ? elements : Collections.emptyList();
+    }
+
+    /** Signal that all of the array has been fed to the splitter. */
+    void finish() {
+        if (state != State.AFTER_ARRAY) {
+            throw malformed("the array is incomplete");
+        }
+    }
+
+    private boolean isByteOrderMark(byte b) {
+        return b == (byte) 0xEF || b == (byte) 0xBB || b == (byte) 0xBF;
+    }
+
+    private void after(byte b) {
+        if (b == ',') {
+            state = State.BEFORE_ELEMENT;
+        } else if (b == ']') {
+            state = State.AFTER_ARRAY;
+        } else if (!isWhitespace(b)) {
+            throw malformed("expected a comma or the end of the array");
+        } else {
+            state = State.AFTER_ELEMENT;
+        }
+    }
+
+    /**
+     * Read a byte of the current element.
+     *
+     * @return Whether the byte completes an object or array element.
+     */
+    private boolean read(byte b) {
+        if (length == element.length) {
+            element = Arrays.copyOf(element, length * 2);
+        }
+
+        element[length++] = b;
+
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+            }
+
+            return false;
+        }
+
+        if (b == '"') {
+            inString = true;
+        } else if (b == '{' || b == '[') {
+            depth++;
+        } else if (b == '}' || b == ']') {
+            if (--depth < 0) {
+                throw malformed("unbalanced " + (char) b);
+            }
+
+            return depth == 0;
+        }
+
+        return false;
+    }
+
+    private List<String> complete(List<String> elements) {
+        if (elements == null) {
+            elements = new ArrayList<>();
+        }
+
+        elements.add(new String(element, 0, length, charset));
+        completed++;
+        length = 0;
+        state = State.AFTER_ELEMENT;
+
+        return elements;
+    }
+}
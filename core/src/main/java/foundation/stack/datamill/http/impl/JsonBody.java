@@ -0,0 +1,87 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.json.JsonObject;
+import foundation.stack.datamill.json.JsonWriter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import rx.Observable;
+import rx.functions.Action1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A body that is written as JSON by a {@link JsonWriter}. When a server response has a JSON body, the JSON is written
+ * straight into a buffer from the connection's allocator as the response is sent, so no tree of JSON objects or
+ * string is built up along the way. As the writer may run serialization strategies over lazy or blocking sources, a
+ * server dispatching asynchronously writes the JSON on its request executor rather than on the connection's event loop.
+ * The JSON is written out again each time the body is read.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class JsonBody extends AbstractBody implements InMemoryBody {
+    private final Action1<JsonWriter> writer;
+
+    /**
+     * @param writer Writes the JSON value making up the body, and is called each time the body is read.
+     */
+    public JsonBody(Action1<JsonWriter> writer) {
+        this.writer = writer;
+    }
+
+    private void writeTo(OutputStream stream) {
+        JsonWriter json = new JsonWriter(stream);
+        writer.call(json);
+        json.close();
+    }
+
+    @Override
+    public ByteBuf asByteBuf(ByteBufAllocator allocator) {
+        ByteBuf buffer = allocator.buffer();
+        try {
+            writeTo(new ByteBufOutputStream(buffer));
+            return buffer;
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Observable<byte[]> asBytes() {
+        return Observable.fromCallable(() -> {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            writeTo(stream);
+            return stream.toByteArray();
+        });
+    }
+
+    @Override
+    public Observable<byte[]> asChunks() {
+        return asBytes();
+    }
+
+    @Override
+    public Observable<ByteBuffer> asBufferChunks() {
+        return asBytes().map(bytes -> ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public Observable<JsonObject> asJson() {
+        return asString().map(json -> new JsonObject(json));
+    }
+
+    @Override
+    public Observable<String> asString() {
+        return asBytes().map(bytes -> new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected Charset charset() {
+        return StandardCharsets.UTF_8;
+    }
+}
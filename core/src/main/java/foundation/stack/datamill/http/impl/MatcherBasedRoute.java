@@ -1,24 +1,26 @@
 package foundation.stack.datamill.http.impl;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Multimap;
 import foundation.stack.datamill.http.*;
+import foundation.stack.datamill.values.Value;
 import rx.Observable;
 import rx.functions.Func2;
 
 import java.util.ArrayList;
-import java.util.EnumSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * @author Ravi Chodavarapu (rchodava@gmail.com)
  */
 public class MatcherBasedRoute implements PostProcessedRoute {
-    private final List<Matcher> matchers;
     private final List<Func2<Request, Response, Response>> postProcessors = new ArrayList<>();
+    private final RouteTree tree;
+    private CorsPolicy corsPolicy;
 
     public MatcherBasedRoute(List<Matcher> matchers) {
-        this.matchers = matchers;
+        this.tree = new RouteTree(matchers);
     }
 
     @Override
@@ -27,6 +29,12 @@ public class MatcherBasedRoute implements PostProcessedRoute {
         return this;
     }
 
+    @Override
+    public PostProcessedRoute cors(CorsPolicy policy) {
+        this.corsPolicy = policy;
+        return this;
+    }
+
     private Response postProcess(Request request, Response response) {
         for (Func2<Request, Response, Response> postProcessor : postProcessors) {
             response = postProcessor.call(request, response);
@@ -35,30 +43,90 @@ public class MatcherBasedRoute implements PostProcessedRoute {
         return response;
     }
 
+    private Response addCorsHeaders(Request request, Response response) {
+        Value origin = request.firstHeader(RequestHeader.ORIGIN);
+        if (origin == null || !corsPolicy.isOriginAllowed(origin.asString())) {
+            return response;
+        }
+
+        Multimap<String, String> headers = LinkedListMultimap.create();
+        if (response.headers() != null) {
+            headers.putAll(response.headers());
+        }
+
+        addAllowedOrigin(headers, origin.asString());
+        if (!corsPolicy.getExposedHeaders().isEmpty()) {
+            headers.put("Access-Control-Expose-Headers", Joiner.on(',').join(corsPolicy.getExposedHeaders()));
+        }
+
+        return new ResponseImpl(response.status(), headers, response.body().orElse(null));
+    }
+
+    private void addAllowedOrigin(Multimap<String, String> headers, String origin) {
+        // Only origins that were explicitly allowed are echoed back, and only they are allowed to send credentials -
+        // otherwise any site could make credentialed requests
+        if (corsPolicy.getAllowedOrigins().contains(origin)) {
+            headers.put("Access-Control-Allow-Origin", origin);
+            headers.put("Vary", "Origin");
+
+            if (corsPolicy.isAllowCredentials()) {
+                headers.put("Access-Control-Allow-Credentials", "true");
+            }
+        } else {
+            headers.put("Access-Control-Allow-Origin", "*");
+        }
+    }
+
+    private Response preflight(Request request, String allowedMethods) {
+        String origin = request.firstHeader(RequestHeader.ORIGIN).asString();
+        if (!corsPolicy.isOriginAllowed(origin)) {
+            return new ResponseImpl(Status.FORBIDDEN);
+        }
+
+        Value requestedHeaders = request.firstHeader(RequestHeader.ACCESS_CONTROL_REQUEST_HEADERS);
+        String allowedHeaders = corsPolicy.getAllowedHeaders() != null ?
+                Joiner.on(',').join(corsPolicy.getAllowedHeaders()) :
+                requestedHeaders != null ? requestedHeaders.asString() : null;
+
+        Multimap<String, String> headers = LinkedListMultimap.create();
+        addAllowedOrigin(headers, origin);
+        headers.put("Access-Control-Allow-Methods", allowedMethods);
+        if (allowedHeaders != null && !allowedHeaders.isEmpty()) {
+            headers.put("Access-Control-Allow-Headers", allowedHeaders);
+        }
+
+        headers.put("Access-Control-Max-Age", String.valueOf(corsPolicy.getMaxAge()));
+        return new ResponseImpl(Status.NO_CONTENT, headers);
+    }
+
+    private boolean isPreflight(Request request) {
+        return corsPolicy != null && request.firstHeader(RequestHeader.ORIGIN) != null &&
+                request.firstHeader(RequestHeader.ACCESS_CONTROL_REQUEST_METHOD) != null;
+    }
+
     @Override
     public Observable<Response> apply(ServerRequest request) {
         if (request.method() == Method.OPTIONS) {
-            EnumSet<Method> availableMethods = EnumSet.noneOf(Method.class);
-            for (Matcher matcher : matchers) {
-                Set<Method> matcherMethods = matcher.queryOptions(request);
-                if (matcherMethods != null) {
-                    availableMethods.addAll(matcherMethods);
+            // The methods allowed for each template are compiled into the tree, so no matcher is consulted
+            String allowedMethods = tree.allowedMethods(request);
+            if (allowedMethods != null) {
+                if (isPreflight(request)) {
+                    return Observable.just(postProcess(request, preflight(request, allowedMethods)));
                 }
-            }
 
-            if (!availableMethods.isEmpty()) {
-                return request.respond(b ->
-                        b.header("Access-Control-Allow-Methods", Joiner.on(',').join(availableMethods))
-                        .ok())
-                        .map(response -> postProcess(request, response));
+                return request.respond(b -> b.header("Access-Control-Allow-Methods", allowedMethods).ok())
+                        .map(response -> postProcess(request, corsPolicy != null ?
+                                addCorsHeaders(request, response) : response));
             }
         }
 
-        for (Matcher matcher : matchers) {
-            Observable<Response> responseObservable = matcher.applyIfMatches(request);
-            if (responseObservable != null) {
-                return responseObservable.map(response -> postProcess(request, response));
+        Observable<Response> responseObservable = tree.apply(request);
+        if (responseObservable != null) {
+            if (corsPolicy != null) {
+                return responseObservable.map(response -> postProcess(request, addCorsHeaders(request, response)));
             }
+
+            return responseObservable.map(response -> postProcess(request, response));
         }
 
         return Observable.empty();
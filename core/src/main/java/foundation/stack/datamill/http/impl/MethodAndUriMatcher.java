@@ -13,6 +13,17 @@ import java.util.*;
  */
 public class MethodAndUriMatcher extends RouteMatcher {
     private static final Logger logger = LoggerFactory.getLogger(MethodAndUriMatcher.class);
+    private static final ThreadLocal<int[]> captureBuffers = ThreadLocal.withInitial(() -> new int[16]);
+
+    private static int[] captureBuffer(int size) {
+        int[] captures = captureBuffers.get();
+        if (captures.length < size) {
+            captures = new int[size];
+            captureBuffers.set(captures);
+        }
+
+        return captures;
+    }
 
     private final Method method;
     private final UriTemplate uriTemplate;
@@ -29,6 +40,14 @@ public class MethodAndUriMatcher extends RouteMatcher {
         }
     }
 
+    Method getMethod() {
+        return method;
+    }
+
+    UriTemplate getUriTemplate() {
+        return uriTemplate;
+    }
+
     @Override
     public boolean matches(ServerRequest request) {
         boolean matches = matchesMethod(request) && matchesUri(request);
@@ -42,10 +61,12 @@ public class MethodAndUriMatcher extends RouteMatcher {
 
     private boolean matchesUri(ServerRequest request) {
         if (uriTemplate != null) {
-            Map<String, String> uriParameters = uriTemplate.match(request.uri());
-            if (uriParameters != null) {
-                if (!uriParameters.isEmpty()) {
-                    ((ServerRequestImpl) request).setUriParameters(uriParameters);
+            int variableCount = uriTemplate.getVariableCount();
+            int[] captures = captureBuffer(variableCount * 2);
+            if (uriTemplate.match(request.uri(), captures)) {
+                if (variableCount > 0) {
+                    ((ServerRequestImpl) request).setUriParameters(new UriTemplateMatch(
+                            uriTemplate, request.uri(), Arrays.copyOf(captures, variableCount * 2)));
                 }
 
                 return true;
@@ -0,0 +1,290 @@
+package foundation.stack.datamill.http.impl;
+
+import com.google.common.collect.Multimap;
+import foundation.stack.datamill.http.*;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.Future;
+import rx.Emitter;
+import rx.Observable;
+import rx.Subscriber;
+import rx.observers.Subscribers;
+import rx.subscriptions.Subscriptions;
+
+import javax.net.ssl.SSLException;
+import java.io.Closeable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A non-blocking client built on Netty. Connections are established asynchronously and pooled per route (scheme, host
+ * and port), requests and responses are processed on a small number of event loop threads, and request and response
+ * bodies are streamed with backpressure - a request body is only consumed as fast as it can be written to the
+ * connection, and reading a response from the connection is paused while the response body consumer falls behind.
+ * This makes the client suitable for fanning out calls from request handlers without tying up a thread per call.
+ * </p>
+ * <p>
+ * The response is emitted as soon as its headers are received. Note that the callbacks of the returned observables run
+ * on the client's event loop threads, so they should not block.
+ * </p>
+ * <p>
+ * The connections in use are limited by both {@link ClientOptions#maxConnections(int)} and
+ * {@link ClientOptions#maxConnectionsPerRoute(int)}, requests wait for a connection for up to
+ * {@link ClientOptions#connectionRequestTimeout(int)}, and no more than {@link ClientOptions#maxPendingRequests(int)}
+ * requests wait at once. Idle connections are closed after {@link ClientOptions#idleTimeout(long)}. Read timeouts apply
+ * per request, but the connect timeout can only be set for the client as a whole.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class NettyClientImpl extends AbstractClient implements Closeable {
+    private static final String HANDLER = "handler";
+    private static final int RESPONSE_BODY_BUFFER_SIZE = 256 * 1024;
+
+    private static int portOf(URI uri) {
+        if (uri.getPort() > 0) {
+            return uri.getPort();
+        }
+
+        return isSecure(uri) ? 443 : 80;
+    }
+
+    private static boolean isSecure(URI uri) {
+        return "https".equalsIgnoreCase(uri.getScheme());
+    }
+
+    private final Bootstrap bootstrap;
+    private final EventLoopGroup eventLoopGroup;
+    private final ConnectionLimiter limiter;
+    private final ClientOptions options;
+    private final AbstractChannelPoolMap<URI, FixedChannelPool> pools;
+    private volatile SslContext sslContext;
+
+    public NettyClientImpl() {
+        this(new ClientOptions());
+    }
+
+    public NettyClientImpl(ClientOptions options) {
+        this.options = options;
+        this.eventLoopGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("http-client", true));
+        this.limiter = new ConnectionLimiter(options.getMaxConnections(), options.getMaxPendingRequests());
+
+        this.bootstrap = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true);
+        if (options.getConnectTimeout() > 0) {
+            bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, options.getConnectTimeout());
+        }
+
+        this.pools = new AbstractChannelPoolMap<URI, FixedChannelPool>() {
+            @Override
+            protected FixedChannelPool newPool(URI route) {
+                return createPool(route);
+            }
+        };
+    }
+
+    private FixedChannelPool createPool(URI route) {
+        Bootstrap routeBootstrap = bootstrap.clone().remoteAddress(route.getHost(), route.getPort());
+        AbstractChannelPoolHandler handler = new AbstractChannelPoolHandler() {
+            @Override
+            public void channelCreated(Channel channel) throws Exception {
+                ChannelPipeline pipeline = channel.pipeline();
+                if (isSecure(route)) {
+                    pipeline.addLast("ssl", sslContext().newHandler(channel.alloc(), route.getHost(), route.getPort()));
+                }
+
+                pipeline.addLast("codec", new HttpClientCodec());
+                pipeline.addLast("decompressor", new HttpContentDecompressor());
+
+                if (options.getIdleTimeout() > 0) {
+                    pipeline.addLast("idle", new IdleStateHandler(0, 0, options.getIdleTimeout(), TimeUnit.MILLISECONDS));
+                }
+
+                pipeline.addLast(HANDLER, new ServerToClientChannelHandler(RESPONSE_BODY_BUFFER_SIZE));
+            }
+        };
+
+        if (options.getConnectionRequestTimeout() > 0) {
+            return new FixedChannelPool(routeBootstrap, handler, ChannelHealthChecker.ACTIVE,
+                    FixedChannelPool.AcquireTimeoutAction.FAIL, options.getConnectionRequestTimeout(),
+                    options.getMaxConnectionsPerRoute(), options.getMaxPendingRequests());
+        }
+
+        return new FixedChannelPool(routeBootstrap, handler, options.getMaxConnectionsPerRoute(),
+                options.getMaxPendingRequests());
+    }
+
+    private SslContext sslContext() throws SSLException {
+        if (sslContext == null) {
+            synchronized (this) {
+                if (sslContext == null) {
+                    sslContext = SslContextBuilder.forClient().build();
+                }
+            }
+        }
+
+        return sslContext;
+    }
+
+    /**
+     * Close all pooled connections, and stop the client's event loop threads. The client can not be used once closed.
+     */
+    @Override
+    public void close() {
+        pools.close();
+        eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Observable<Response> request(
+            Method method,
+            Multimap<String, String> headers,
+            String uri,
+            Map<String, String> uriParameters,
+            Multimap<String, String> queryParameters,
+            Map<String, ?> options,
+            Body body) {
+        URI targetURI = buildUri(uri, uriParameters, queryParameters);
+        URI route = routeOf(targetURI);
+        int readTimeout = readTimeout(options);
+
+        return Observable.create(emitter -> {
+            printRequestIfTracingLog(method, targetURI, headers);
+
+            // The exchange is tracked by a subscriber, which is unsubscribed along with the emitter
+            Subscriber<Response> subscriber = Subscribers.from(emitter);
+            emitter.setSubscription(subscriber);
+
+            Runnable granted = () -> {
+                if (subscriber.isUnsubscribed()) {
+                    limiter.release();
+                    return;
+                }
+
+                FixedChannelPool pool = pools.get(route);
+                pool.acquire().addListener((Future<Channel> acquired) -> {
+                    if (!acquired.isSuccess()) {
+                        limiter.release();
+                        subscriber.onError(new HttpException("Could not connect to " + route, acquired.cause()));
+                        return;
+                    }
+
+                    Channel channel = acquired.getNow();
+                    if (subscriber.isUnsubscribed()) {
+                        pool.release(channel);
+                        limiter.release();
+                        return;
+                    }
+
+                    ServerToClientChannelHandler handler =
+                            (ServerToClientChannelHandler) channel.pipeline().get(HANDLER);
+                    handler.send(buildHttpRequest(method, targetURI, headers, body), body, readTimeout, subscriber,
+                            reusable -> {
+                                pool.release(channel);
+                                limiter.release();
+                            });
+                });
+            };
+
+            if (!limiter.acquire(granted)) {
+                subscriber.onError(new HttpException("Too many requests waiting for a connection to " + route));
+                return;
+            }
+
+            subscriber.add(Subscriptions.create(() -> limiter.cancel(granted)));
+            if (this.options.getConnectionRequestTimeout() > 0) {
+                eventLoopGroup.schedule(() -> {
+                    if (limiter.cancel(granted)) {
+                        subscriber.onError(new HttpException("Timed out waiting for a connection to " + route));
+                    }
+                }, this.options.getConnectionRequestTimeout(), TimeUnit.MILLISECONDS);
+            }
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    private URI routeOf(URI uri) {
+        try {
+            return new URI(uri.getScheme().toLowerCase(), null, uri.getHost(), portOf(uri), null, null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Could not determine route for " + uri);
+        }
+    }
+
+    private int readTimeout(Map<String, ?> requestOptions) {
+        if (requestOptions != null) {
+            Object readTimeout = requestOptions.get(Request.OPTION_READ_TIMEOUT);
+            if (readTimeout instanceof Integer) {
+                return (int) readTimeout;
+            }
+        }
+
+        return options.getReadTimeout();
+    }
+
+    private HttpRequest buildHttpRequest(Method method, URI uri, Multimap<String, String> headers, Body body) {
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+
+        if (uri.getRawQuery() != null) {
+            path = path + '?' + uri.getRawQuery();
+        }
+
+        HttpRequest request;
+        if (body == null) {
+            request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.valueOf(method.name()), path);
+            if (method == Method.POST || method == Method.PUT || method == Method.PATCH) {
+                request.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+            }
+        } else {
+            request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.valueOf(method.name()), path);
+        }
+
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entries()) {
+                request.headers().add(header.getKey().toLowerCase(), header.getValue());
+            }
+        }
+
+        if (!request.headers().contains(HttpHeaderNames.HOST)) {
+            int port = portOf(uri);
+            request.headers().set(HttpHeaderNames.HOST, port == (isSecure(uri) ? 443 : 80) ?
+                    uri.getHost() : uri.getHost() + ':' + port);
+        }
+
+        if (!request.headers().contains(HttpHeaderNames.ACCEPT_ENCODING)) {
+            request.headers().set(HttpHeaderNames.ACCEPT_ENCODING,
+                    HttpHeaderValues.GZIP + "," + HttpHeaderValues.DEFLATE);
+        }
+
+        return request;
+    }
+}
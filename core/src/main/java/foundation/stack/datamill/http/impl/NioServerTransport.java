@@ -0,0 +1,30 @@
+package foundation.stack.datamill.http.impl;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class NioServerTransport extends ServerTransport {
+    @Override
+    public EventLoopGroup createEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    @Override
+    public Class<? extends ServerChannel> serverChannelClass() {
+        return NioServerSocketChannel.class;
+    }
+
+    @Override
+    public boolean setReusePort(ServerBootstrap bootstrap) {
+        // SO_REUSEPORT is not available through NIO before Java 9
+        return false;
+    }
+}
@@ -0,0 +1,294 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.HttpException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A stream of request body chunks read from a channel. Chunks received from the channel are retained and queued until
+ * they are requested by the subscriber, at which point they are copied out and released. When more than the buffer
+ * size is queued, reading from the channel is paused until the subscriber catches up, so the amount of memory used by
+ * a request body is bounded no matter how large it is. Note that the body can only be subscribed to once.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RequestBodyStream {
+    private final Channel channel;
+    private final int bufferSize;
+
+    private final Queue<ByteBuf> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicReference<Subscriber<? super ByteBuffer>> subscriber = new AtomicReference<>();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean abandoned;
+    private volatile boolean cancelled;
+    private volatile boolean detached;
+    private volatile boolean discarded;
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean paused;
+    private volatile boolean subscribed;
+    private boolean terminated;
+
+    public RequestBodyStream(Channel channel, int bufferSize) {
+        this.channel = channel;
+        this.bufferSize = bufferSize;
+    }
+
+    public Observable<ByteBuffer> asObservable() {
+        return Observable.<ByteBuffer>unsafeCreate(this::subscribe);
+    }
+
+    private void subscribe(Subscriber<? super ByteBuffer> child) {
+        if (!subscriber.compareAndSet(null, child)) {
+            child.onError(new IllegalStateException("A request body can only be subscribed to once"));
+            return;
+        }
+
+        subscribed = true;
+
+        child.add(Subscriptions.create(() -> {
+            cancelled = true;
+            drain();
+        }));
+
+        child.setProducer(new Producer() {
+            @Override
+            public void request(long n) {
+                if (n > 0) {
+                    addRequested(n);
+                    drain();
+                }
+            }
+        });
+    }
+
+    private void addRequested(long n) {
+        for (;;) {
+            long current = requested.get();
+            long next = current + n;
+            if (next < 0) {
+                next = Long.MAX_VALUE;
+            }
+
+            if (requested.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add a chunk received from the channel. The chunk is retained by the stream until it has been consumed.
+     */
+    public void onNext(ByteBuf content) {
+        if (cancelled || discarded || done) {
+            return;
+        }
+
+        queue.offer(content.retain());
+        if (queuedBytes.addAndGet(content.readableBytes()) >= bufferSize) {
+            if (abandoned) {
+                discard();
+                return;
+            }
+
+            if (!paused) {
+                paused = true;
+                channel.config().setAutoRead(false);
+            }
+        }
+
+        drain();
+    }
+
+    public void onCompleted() {
+        done = true;
+        drain();
+    }
+
+    public void onError(Throwable e) {
+        error = e;
+        done = true;
+        drain();
+    }
+
+    /** Whether this stream has received all of the body, or has failed. */
+    public boolean isDone() {
+        return done;
+    }
+
+    /** Whether anyone has subscribed to the body. */
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * Indicate that a response has been sent without the body having been consumed. The body continues to be buffered
+     * in case it is consumed later, but rather than pausing reading from the channel once the buffer fills up, the body
+     * is discarded.
+     */
+    public void abandon() {
+        abandoned = true;
+        if (paused) {
+            discard();
+        }
+    }
+
+    /**
+     * Indicate that the channel is done with this stream, once it has received all of the body. Chunks that are still
+     * queued are copied out of the channel's (possibly pooled) buffers, which are released, so that a body that is
+     * never consumed holds on to no more than ordinary heap memory, which is reclaimed along with the stream.
+     */
+    public void detach() {
+        detached = true;
+        drain();
+    }
+
+    /**
+     * Release any chunks that have been queued, and discard any further chunks received, resuming reading from the
+     * channel if it was paused. A subscriber to the body receives an error.
+     */
+    public void discard() {
+        discarded = true;
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        for (;;) {
+            if (detached) {
+                detached = false;
+                copyQueued();
+            }
+
+            if (cancelled) {
+                clear();
+            } else if (discarded) {
+                clear();
+
+                Subscriber<? super ByteBuffer> child = subscriber.get();
+                if (child != null && !terminated) {
+                    terminated = true;
+                    child.onError(new HttpException("Request body was discarded"));
+                }
+            } else {
+                Subscriber<? super ByteBuffer> child = subscriber.get();
+                if (child != null && !terminated) {
+                    emit(child);
+                } else if (child == null && error != null) {
+                    // Chunks are never emitted once the body has failed, so there is no point in holding on to them
+                    clear();
+                }
+            }
+
+            resumeIfDrained();
+
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                break;
+            }
+        }
+    }
+
+    private void emit(Subscriber<? super ByteBuffer> child) {
+        Throwable failure = error;
+        if (failure != null) {
+            clear();
+            terminated = true;
+            child.onError(failure);
+            return;
+        }
+
+        long emitted = 0;
+        long demand = requested.get();
+        while (emitted != demand) {
+            if (cancelled || discarded) {
+                return;
+            }
+
+            boolean finished = done;
+            ByteBuf content = queue.poll();
+            if (content == null) {
+                if (finished && error == null) {
+                    terminated = true;
+                    child.onCompleted();
+                }
+
+                break;
+            }
+
+            child.onNext(copyAndRelease(content));
+            emitted++;
+        }
+
+        if (emitted == demand && done && queue.isEmpty() && error == null && !terminated) {
+            terminated = true;
+            child.onCompleted();
+        }
+
+        if (emitted != 0 && demand != Long.MAX_VALUE) {
+            requested.addAndGet(-emitted);
+        }
+    }
+
+    private ByteBuffer copyAndRelease(ByteBuf content) {
+        int length = content.readableBytes();
+        try {
+            ByteBuffer copy = ByteBuffer.allocate(length);
+            content.readBytes(copy);
+            copy.flip();
+            return copy;
+        } finally {
+            queuedBytes.addAndGet(-length);
+            content.release();
+        }
+    }
+
+    private void copyQueued() {
+        for (int i = queue.size(); i > 0; i--) {
+            ByteBuf content = queue.poll();
+            if (content == null) {
+                break;
+            }
+
+            try {
+                queue.offer(Unpooled.copiedBuffer(content));
+            } finally {
+                content.release();
+            }
+        }
+    }
+
+    private void clear() {
+        ByteBuf content;
+        while ((content = queue.poll()) != null) {
+            queuedBytes.addAndGet(-content.readableBytes());
+            content.release();
+        }
+    }
+
+    private void resumeIfDrained() {
+        if (paused && queuedBytes.get() < bufferSize / 2) {
+            paused = false;
+            channel.config().setAutoRead(true);
+        }
+    }
+}
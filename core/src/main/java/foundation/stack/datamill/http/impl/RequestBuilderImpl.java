@@ -72,6 +72,12 @@ public class RequestBuilderImpl implements RequestBuilder {
         return this;
     }
 
+    @Override
+    public RequestBuilder readTimeout(int milliseconds) {
+        options.put(Request.OPTION_READ_TIMEOUT, milliseconds);
+        return this;
+    }
+
     @Override
     public RequestBuilder uri(String uri) {
         this.uri = uri;
@@ -0,0 +1,86 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.Method;
+import foundation.stack.datamill.http.metrics.ServerMetrics;
+
+/**
+ * Tracks the phases of a single request-response exchange, and reports them to the server's metrics once the response
+ * has been written (or the connection closed). An exchange moves through its phases in order - it is dispatched to
+ * the route, routed, responded to and then completed - with each phase being entered at most once. Phases may be
+ * entered on different threads, but never concurrently.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RequestMetricsRecorder {
+    private final Method method;
+    private final ServerMetrics metrics;
+
+    private boolean completed;
+    private long dispatchedAt;
+    private long requestBytes;
+    private long respondedAt;
+    private long responseBytes;
+    private String route = ServerMetrics.OTHER_ROUTE;
+    private long routedAt;
+    private boolean started;
+    private int status;
+
+    public RequestMetricsRecorder(ServerMetrics metrics, Method method) {
+        this.metrics = metrics;
+        this.method = method;
+    }
+
+    /** The request is about to be passed to the server's route. */
+    public void dispatched() {
+        dispatchedAt = System.nanoTime();
+    }
+
+    /** The server's route has been applied to the request, and produced the observable response. */
+    public void routed(ServerRequestImpl request) {
+        if (request.getRoute() != null) {
+            route = request.getRoute();
+        }
+
+        routedAt = request.getRoutedAt() > 0 ? request.getRoutedAt() : System.nanoTime();
+
+        started = true;
+        metrics.requestStarted(method, route);
+    }
+
+    /** The response has been produced, and writing its start is about to begin. */
+    public void responded(int status, long responseBytes) {
+        if (respondedAt == 0) {
+            this.status = status;
+            this.responseBytes = responseBytes;
+            this.respondedAt = System.nanoTime();
+        }
+    }
+
+    public void addRequestBytes(long bytes) {
+        requestBytes += bytes;
+    }
+
+    public void addResponseBytes(long bytes) {
+        responseBytes += bytes;
+    }
+
+    /** The response has been written, or the connection was closed before it could be. */
+    public void completed() {
+        if (completed) {
+            return;
+        }
+
+        completed = true;
+        if (!started) {
+            // Requests rejected before being dispatched are still counted
+            metrics.requestStarted(method, route);
+        }
+
+        long now = System.nanoTime();
+        long routing = dispatchedAt > 0 && routedAt > 0 ? routedAt - dispatchedAt : 0;
+        long handler = routedAt > 0 && respondedAt > 0 ? respondedAt - routedAt : 0;
+        long write = respondedAt > 0 ? now - respondedAt : 0;
+
+        metrics.requestCompleted(method, route, status, requestBytes, responseBytes, routing, handler, write);
+    }
+}
@@ -7,6 +7,7 @@ import foundation.stack.datamill.http.Response;
 import foundation.stack.datamill.http.ResponseBuilder;
 import foundation.stack.datamill.http.Status;
 import foundation.stack.datamill.json.Json;
+import foundation.stack.datamill.serialization.SerializationStrategy;
 import foundation.stack.datamill.values.StringValue;
 import rx.Emitter;
 import rx.Observable;
@@ -17,6 +18,7 @@ import rx.schedulers.Schedulers;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 
 /**
  * @author Ravi Chodavarapu (rchodava@gmail.com)
@@ -51,6 +53,18 @@ public class ResponseBuilderImpl implements ResponseBuilder {
         return new ResponseImpl(Status.INTERNAL_SERVER_ERROR, headers, new ValueBody(new StringValue(content)));
     }
 
+    @Override
+    public <T> ResponseBuilder json(T value, SerializationStrategy<T> strategy) {
+        this.body = new JsonBody(json -> json.value(value, strategy));
+        return this;
+    }
+
+    @Override
+    public <T> ResponseBuilder jsonArray(Iterable<T> values, SerializationStrategy<T> strategy) {
+        this.body = new JsonBody(json -> json.values(values, strategy));
+        return this;
+    }
+
     @Override
     public Response noContent() {
         return new ResponseImpl(Status.NO_CONTENT, headers);
@@ -81,6 +95,11 @@ public class ResponseBuilderImpl implements ResponseBuilder {
         return new ResponseImpl(Status.OK, headers, new BytesBody(content));
     }
 
+    @Override
+    public Response ok(Path file) {
+        return new ResponseImpl(Status.OK, headers, new FileBody(file));
+    }
+
     @Override
     public Response status(Status status) {
         return new ResponseImpl(status, headers, body);
@@ -113,6 +132,18 @@ public class ResponseBuilderImpl implements ResponseBuilder {
         return this;
     }
 
+    @Override
+    public ResponseBuilder streamingBodyAsBufferChunks(Observable<ByteBuffer> chunks) {
+        // Requests from the server are passed through to the source, so nothing is buffered here
+        this.body = new StreamedChunksBody(chunks.subscribeOn(Schedulers.io()), Charset.defaultCharset());
+        return this;
+    }
+
+    @Override
+    public ResponseBuilder streamingBody(Observable<byte[]> chunks) {
+        return streamingBodyAsBufferChunks(chunks.map(bytes -> ByteBuffer.wrap(bytes)));
+    }
+
     @Override
     public ResponseBuilder streamingBody(Func1<Observer<byte[]>, Observable<byte[]>> bodyStreamer) {
         return streamingBodyAsBufferChunks(body -> bodyStreamer.call(
@@ -143,6 +174,19 @@ public class ResponseBuilderImpl implements ResponseBuilder {
                 }, Emitter.BackpressureMode.BUFFER));
     }
 
+    @Override
+    public ResponseBuilder streamingJson(Observable<? extends Json> json) {
+        return streamingBody(Observable.defer(() -> {
+            boolean[] first = {true};
+            return json.<byte[]>map(element -> {
+                String out = first[0] ? "[" : ",";
+                first[0] = false;
+
+                return (out + element.toString()).getBytes();
+            }).concatWith(Observable.defer(() -> Observable.just((first[0] ? "[]" : "]").getBytes())));
+        }));
+    }
+
     @Override
     public Response unauthorized() {
         return new ResponseImpl(Status.UNAUTHORIZED, headers, body);
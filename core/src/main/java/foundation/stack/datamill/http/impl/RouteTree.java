@@ -0,0 +1,438 @@
+package foundation.stack.datamill.http.impl;
+
+import com.google.common.base.Joiner;
+import foundation.stack.datamill.http.Method;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.ServerRequest;
+import rx.Observable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A radix tree compiled from the URI templates of a list of matchers. Finding the matcher for a request walks the
+ * request URI once instead of trying every template in turn, while still honoring registration order - the matcher
+ * that was registered first always wins. Matchers that do not have a URI template (such as those created by
+ * {@link foundation.stack.datamill.http.builder.RouteBuilder#ifMethodMatches} or
+ * {@link foundation.stack.datamill.http.builder.ElseBuilder#orElse}) are tried in their registered position. Templates
+ * declared on beans matched by a {@link BeanMethodMatcher} are compiled into the tree individually.
+ *
+ * Searching the tree does not allocate; only once a candidate is found does the matcher extract URI parameters.
+ *
+ * The methods allowed by each template are also compiled into the tree, so the methods allowed for a URI, as reported
+ * to OPTIONS requests, are found by walking the tree rather than by asking each matcher in turn.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RouteTree {
+    private static final int ALL_METHODS = (1 << Method.values().length) - 1;
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private static int maskOf(Method method) {
+        return method != null ? 1 << method.ordinal() : ALL_METHODS;
+    }
+
+    private static boolean completesAt(String uri, int position, int end) {
+        return position == end || UriTemplate.queryStartsAt(uri, position, end);
+    }
+
+    // Allowed method header values, by method mask, joined as they are first needed
+    private final String[] allowedMethodsHeaders = new String[ALL_METHODS + 1];
+    private final Matcher[] matchers;
+    private final Matcher[] queriedForOptions;
+    private final Node root = new Node();
+    private final String[] templates;
+    private final int[] untemplated;
+    private final int untemplatedMethods;
+
+    public RouteTree(List<Matcher> matchers) {
+        List<Matcher> flattened = new ArrayList<>();
+        for (Matcher matcher : matchers) {
+            if (matcher instanceof BeanMethodMatcher) {
+                flattened.addAll(((BeanMethodMatcher) matcher).getMatchers());
+            } else {
+                flattened.add(matcher);
+            }
+        }
+
+        this.matchers = flattened.toArray(new Matcher[flattened.size()]);
+
+        this.templates = new String[this.matchers.length];
+
+        int[] untemplated = new int[this.matchers.length];
+        int untemplatedCount = 0;
+        int untemplatedMethods = 0;
+        List<Matcher> queriedForOptions = new ArrayList<>();
+        for (int i = 0; i < this.matchers.length; i++) {
+            Matcher matcher = this.matchers[i];
+            if (matcher instanceof MethodAndUriMatcher && ((MethodAndUriMatcher) matcher).getUriTemplate() != null) {
+                MethodAndUriMatcher templated = (MethodAndUriMatcher) matcher;
+                root.insert(templated.getUriTemplate().getRegions()).addEntry(i, templated.getMethod());
+                String template = templated.getUriTemplate().toString();
+                templates[i] = template.startsWith("/") ? template : "/" + template;
+            } else {
+                untemplated[untemplatedCount++] = i;
+
+                if (matcher instanceof MethodAndUriMatcher) {
+                    untemplatedMethods |= maskOf(((MethodAndUriMatcher) matcher).getMethod());
+                } else {
+                    queriedForOptions.add(matcher);
+                }
+            }
+        }
+
+        this.untemplated = Arrays.copyOf(untemplated, untemplatedCount);
+        this.untemplatedMethods = untemplatedMethods;
+        this.queriedForOptions = queriedForOptions.toArray(new Matcher[queriedForOptions.size()]);
+        root.computeLowest();
+    }
+
+    /**
+     * Apply the first matcher, in registration order, that matches the request and whose route produces a response.
+     *
+     * @return The response observable, or null if no matcher applies.
+     */
+    public Observable<Response> apply(ServerRequest request) {
+        String uri = request.uri();
+        Method method = request.method();
+
+        int start = 0;
+        int end = 0;
+        int queryStart = 0;
+        if (uri != null) {
+            start = UriTemplate.pathStart(uri);
+            end = UriTemplate.pathEnd(uri);
+            queryStart = UriTemplate.queryStart(uri, start, end);
+        }
+
+        int previous = -1;
+        int nextUntemplated = 0;
+        while (true) {
+            int candidate = uri != null ? find(uri, start, end, queryStart, method, previous) : NO_MATCH;
+
+            while (nextUntemplated < untemplated.length && untemplated[nextUntemplated] <= previous) {
+                nextUntemplated++;
+            }
+
+            if (nextUntemplated < untemplated.length && untemplated[nextUntemplated] < candidate) {
+                candidate = untemplated[nextUntemplated];
+            }
+
+            if (candidate == NO_MATCH) {
+                if (request instanceof ServerRequestImpl) {
+                    ((ServerRequestImpl) request).setRoute(null);
+                }
+
+                return null;
+            }
+
+            // The route is recorded before the matcher applies it, so that it is known while the request is handled
+            if (request instanceof ServerRequestImpl) {
+                ((ServerRequestImpl) request).setRoute(templates[candidate]);
+            }
+
+            // The matcher re-checks the request, which is also where URI parameters are extracted
+            Observable<Response> response = matchers[candidate].applyIfMatches(request);
+            if (response != null) {
+                return response;
+            }
+
+            previous = candidate;
+        }
+    }
+
+    /**
+     * Get the methods allowed for the request's URI by all matchers, as the value of an Access-Control-Allow-Methods
+     * header.
+     *
+     * @return The allowed methods, or null if no matcher allows any method for the URI.
+     */
+    public String allowedMethods(ServerRequest request) {
+        int methods = untemplatedMethods;
+
+        String uri = request.uri();
+        if (uri != null) {
+            int start = UriTemplate.pathStart(uri);
+            int end = UriTemplate.pathEnd(uri);
+            int queryStart = UriTemplate.queryStart(uri, start, end);
+
+            if (root.entries.length > 0 && completesAt(uri, start, end)) {
+                methods |= root.methodMask;
+            }
+
+            methods |= collectMethods(root, uri, start, end, queryStart);
+        }
+
+        for (Matcher matcher : queriedForOptions) {
+            Set<Method> matcherMethods = matcher.queryOptions(request);
+            if (matcherMethods != null) {
+                for (Method method : matcherMethods) {
+                    methods |= maskOf(method);
+                }
+            }
+        }
+
+        if (methods == 0) {
+            return null;
+        }
+
+        String header = allowedMethodsHeaders[methods];
+        if (header == null) {
+            EnumSet<Method> allowed = EnumSet.noneOf(Method.class);
+            for (Method method : Method.values()) {
+                if ((methods & maskOf(method)) != 0) {
+                    allowed.add(method);
+                }
+            }
+
+            // Racing threads join the same value, so the array needs no synchronization
+            header = Joiner.on(',').join(allowed);
+            allowedMethodsHeaders[methods] = header;
+        }
+
+        return header;
+    }
+
+    private int collectMethods(Node node, String uri, int position, int end, int queryStart) {
+        int methods = 0;
+        for (Node child : node.literals) {
+            String label = child.label;
+            int next = position + label.length();
+            if (next <= end && uri.charAt(position) == label.charAt(0) &&
+                    uri.regionMatches(position, label, 0, label.length())) {
+                if (next <= queryStart && completesAt(uri, next, end)) {
+                    methods |= child.methodMask;
+                }
+
+                methods |= collectMethods(child, uri, next, end, queryStart);
+            }
+        }
+
+        Node variable = node.variable;
+        if (variable != null) {
+            int next = position;
+            while (next < end && uri.charAt(next) != '/') {
+                next++;
+            }
+
+            int finalNext = position > queryStart ? position : Math.min(next, queryStart);
+            if (completesAt(uri, finalNext, end)) {
+                methods |= variable.methodMask;
+            }
+
+            methods |= collectMethods(variable, uri, next, end, queryStart);
+        }
+
+        for (Node child : node.patterns) {
+            int next = child.pattern.match(uri, position, end, queryStart, false);
+            if (next >= 0) {
+                if (completesAt(uri, next, end)) {
+                    methods |= child.methodMask;
+                }
+
+                methods |= collectMethods(child, uri, next, end, queryStart);
+            }
+        }
+
+        return methods;
+    }
+
+    private int find(String uri, int start, int end, int queryStart, Method method, int previous) {
+        int best = NO_MATCH;
+        if (root.entries.length > 0 && completesAt(uri, start, end)) {
+            best = root.firstEntry(method, previous);
+        }
+
+        return search(root, uri, start, end, queryStart, method, previous, best);
+    }
+
+    private int search(Node node, String uri, int position, int end, int queryStart, Method method, int previous, int best) {
+        for (Node child : node.literals) {
+            if (child.lowest >= best) {
+                continue;
+            }
+
+            String label = child.label;
+            int next = position + label.length();
+            if (next <= end && uri.charAt(position) == label.charAt(0) &&
+                    uri.regionMatches(position, label, 0, label.length())) {
+                // A template ending in fixed content must not match into the query string
+                if (next <= queryStart && completesAt(uri, next, end)) {
+                    best = Math.min(best, child.firstEntry(method, previous));
+                }
+
+                best = search(child, uri, next, end, queryStart, method, previous, best);
+            }
+        }
+
+        Node variable = node.variable;
+        if (variable != null && variable.lowest < best) {
+            int next = position;
+            while (next < end && uri.charAt(next) != '/') {
+                next++;
+            }
+
+            // A template ending in a variable does not capture the query string
+            int finalNext = position > queryStart ? position : Math.min(next, queryStart);
+            if (completesAt(uri, finalNext, end)) {
+                best = Math.min(best, variable.firstEntry(method, previous));
+            }
+
+            best = search(variable, uri, next, end, queryStart, method, previous, best);
+        }
+
+        for (Node child : node.patterns) {
+            if (child.lowest >= best) {
+                continue;
+            }
+
+            int next = child.pattern.match(uri, position, end, queryStart, false);
+            if (next >= 0) {
+                if (completesAt(uri, next, end)) {
+                    best = Math.min(best, child.firstEntry(method, previous));
+                }
+
+                best = search(child, uri, next, end, queryStart, method, previous, best);
+            }
+        }
+
+        return best;
+    }
+
+    private static class Node {
+        private static final Method[] NO_METHODS = new Method[0];
+        private static final Node[] NO_NODES = new Node[0];
+
+        private static int commonPrefixLength(String first, String second) {
+            int length = Math.min(first.length(), second.length());
+            for (int i = 0; i < length; i++) {
+                if (first.charAt(i) != second.charAt(i)) {
+                    return i;
+                }
+            }
+
+            return length;
+        }
+
+        private int[] entries = new int[0];
+        private String label;
+        private Node[] literals = NO_NODES;
+        private int lowest = NO_MATCH;
+        private int methodMask;
+        private Method[] methods = NO_METHODS;
+        private UriTemplateRegion pattern;
+        private Node[] patterns = NO_NODES;
+        private Node variable;
+
+        private void addEntry(int index, Method method) {
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = index;
+
+            methods = Arrays.copyOf(methods, methods.length + 1);
+            methods[methods.length - 1] = method;
+            methodMask |= maskOf(method);
+        }
+
+        private int computeLowest() {
+            lowest = entries.length > 0 ? entries[0] : NO_MATCH;
+
+            for (Node child : literals) {
+                lowest = Math.min(lowest, child.computeLowest());
+            }
+
+            if (variable != null) {
+                lowest = Math.min(lowest, variable.computeLowest());
+            }
+
+            for (Node child : patterns) {
+                lowest = Math.min(lowest, child.computeLowest());
+            }
+
+            return lowest;
+        }
+
+        private int firstEntry(Method method, int previous) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] > previous && (methods[i] == null || methods[i] == method)) {
+                    return entries[i];
+                }
+            }
+
+            return NO_MATCH;
+        }
+
+        private Node insert(List<UriTemplateRegion> regions) {
+            Node node = this;
+            for (UriTemplateRegion region : regions) {
+                if (region.isFixedContent()) {
+                    node = node.insertLiteral(region.getContent());
+                } else if (region.isDefaultPattern()) {
+                    if (node.variable == null) {
+                        node.variable = new Node();
+                    }
+
+                    node = node.variable;
+                } else {
+                    node = node.insertPattern(region);
+                }
+            }
+
+            return node;
+        }
+
+        private Node insertLiteral(String literal) {
+            Node node = this;
+            while (!literal.isEmpty()) {
+                int childIndex = -1;
+                for (int i = 0; i < node.literals.length; i++) {
+                    if (node.literals[i].label.charAt(0) == literal.charAt(0)) {
+                        childIndex = i;
+                        break;
+                    }
+                }
+
+                if (childIndex < 0) {
+                    Node child = new Node();
+                    child.label = literal;
+                    node.literals = Arrays.copyOf(node.literals, node.literals.length + 1);
+                    node.literals[node.literals.length - 1] = child;
+                    return child;
+                }
+
+                Node child = node.literals[childIndex];
+                int common = commonPrefixLength(child.label, literal);
+                if (common < child.label.length()) {
+                    Node split = new Node();
+                    split.label = child.label.substring(0, common);
+                    split.literals = new Node[] { child };
+                    child.label = child.label.substring(common);
+
+                    node.literals[childIndex] = split;
+                    child = split;
+                }
+
+                node = child;
+                literal = literal.substring(common);
+            }
+
+            return node;
+        }
+
+        private Node insertPattern(UriTemplateRegion pattern) {
+            for (Node child : patterns) {
+                if (child.pattern.getContent().equals(pattern.getContent())) {
+                    return child;
+                }
+            }
+
+            Node child = new Node();
+            child.pattern = pattern;
+            patterns = Arrays.copyOf(patterns, patterns.length + 1);
+            patterns[patterns.length - 1] = child;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.ServerOptions;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.util.List;
+
+/**
+ * Compresses responses for clients that accept it, according to the compression options of the server. Responses that
+ * are known to be smaller than the minimum size, or that have a content type that isn't compressible (such as images,
+ * which are already compressed) are sent as they are. Responses whose content must be sent as is are never compressed -
+ * file regions are written to the connection directly and can not be compressed, and compressing a range of a file
+ * would make the Content-Range meaningless.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ServerContentCompressor extends HttpContentCompressor {
+    /**
+     * Determine whether an Accept-Encoding header value accepts the specified content coding, either by name or using
+     * a wildcard, with a non-zero quality.
+     */
+    static boolean acceptsEncoding(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        boolean accepted = false;
+        for (String candidate : acceptEncoding.split(",")) {
+            String coding = candidate;
+            float quality = 1.0f;
+
+            int parameters = candidate.indexOf(';');
+            if (parameters >= 0) {
+                coding = candidate.substring(0, parameters);
+
+                int qualityStart = candidate.indexOf("q=", parameters);
+                if (qualityStart >= 0) {
+                    try {
+                        quality = Float.parseFloat(candidate.substring(qualityStart + 2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            coding = coding.trim();
+            if (coding.equalsIgnoreCase(encoding)) {
+                // An explicit entry overrides a wildcard
+                return quality > 0;
+            } else if (coding.equals("*")) {
+                accepted = quality > 0;
+            }
+        }
+
+        return accepted;
+    }
+
+    private static boolean matchesContentType(String pattern, String type, String subtype) {
+        int separator = pattern.indexOf('/');
+        if (separator < 0) {
+            return false;
+        }
+
+        boolean anyType = separator == 1 && pattern.charAt(0) == '*';
+        if (!anyType && (separator != type.length() || !pattern.regionMatches(true, 0, type, 0, separator))) {
+            return false;
+        }
+
+        String subtypePattern = pattern.substring(separator + 1);
+        if (subtypePattern.equals("*")) {
+            return true;
+        } else if (subtypePattern.startsWith("*")) {
+            String suffix = subtypePattern.substring(1);
+            return subtype.regionMatches(true, subtype.length() - suffix.length(), suffix, 0, suffix.length());
+        }
+
+        return subtypePattern.equalsIgnoreCase(subtype);
+    }
+
+    private final List<String> compressibleContentTypes;
+    private final int minimumSize;
+
+    public ServerContentCompressor() {
+        this(new ServerOptions());
+    }
+
+    public ServerContentCompressor(ServerOptions options) {
+        super(options.getCompressionLevel());
+
+        this.compressibleContentTypes = options.getCompressibleContentTypes();
+        this.minimumSize = options.getCompressionMinimumSize();
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse response, String acceptEncoding) throws Exception {
+        if (response instanceof UncompressedHttpResponse || !isCompressible(response)) {
+            return null;
+        }
+
+        return super.beginEncode(response, acceptEncoding);
+    }
+
+    private boolean isCompressible(HttpResponse response) {
+        long contentLength = HttpUtil.getContentLength(response, -1L);
+        if (contentLength >= 0 && contentLength < minimumSize) {
+            return false;
+        }
+
+        String contentType = response.headers().get(HttpHeaderNames.CONTENT_TYPE);
+        if (contentType == null) {
+            return true;
+        }
+
+        int parameters = contentType.indexOf(';');
+        String mediaType = (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim();
+        int separator = mediaType.indexOf('/');
+        if (separator < 0) {
+            return false;
+        }
+
+        String type = mediaType.substring(0, separator);
+        String subtype = mediaType.substring(separator + 1);
+        for (String pattern : compressibleContentTypes) {
+            if (matchesContentType(pattern, type, subtype)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * A response that is passed through by the compressor.
+     */
+    public static class UncompressedHttpResponse extends DefaultHttpResponse {
+        public UncompressedHttpResponse(HttpVersion version, HttpResponseStatus status) {
+            super(version, status);
+        }
+    }
+}
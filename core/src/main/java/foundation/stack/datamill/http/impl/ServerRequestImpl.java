@@ -9,6 +9,7 @@ import io.netty.handler.codec.http.QueryStringDecoder;
 import foundation.stack.datamill.values.Value;
 import rx.Observable;
 
+import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.util.*;
 import java.util.function.Function;
@@ -22,6 +23,9 @@ public class ServerRequestImpl extends AbstractRequestImpl implements ServerRequ
 
     private Multimap<String, String> queryParameters;
     private QueryStringDecoder queryStringDecoder;
+    private InetSocketAddress remoteAddress;
+    private String route;
+    private long routedAt;
     private Multimap<String, String> trailingHeaders;
 
     public ServerRequestImpl(
@@ -96,11 +100,35 @@ public class ServerRequestImpl extends AbstractRequestImpl implements ServerRequ
         return Collections.emptyMap();
     }
 
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return remoteAddress;
+    }
+
     @Override
     public rx.Observable<Response> respond(Function<ResponseBuilder, Response> responseBuilder) {
         return Observable.just(responseBuilder.apply(new ResponseBuilderImpl()));
     }
 
+    /** Get the URI template of the route that is handling this request, if it has one. */
+    public String getRoute() {
+        return route;
+    }
+
+    /** Get the time (as given by {@link System#nanoTime()}) at which the route handling this request was found. */
+    public long getRoutedAt() {
+        return routedAt;
+    }
+
+    public void setRemoteAddress(InetSocketAddress remoteAddress) {
+        this.remoteAddress = remoteAddress;
+    }
+
+    public void setRoute(String route) {
+        this.route = route;
+        this.routedAt = System.nanoTime();
+    }
+
     public void setTrailingHeaders(Multimap<String, String> trailingHeaders) {
         this.trailingHeaders = trailingHeaders;
     }
@@ -0,0 +1,385 @@
+package foundation.stack.datamill.http.impl;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimap;
+import foundation.stack.datamill.http.Body;
+import foundation.stack.datamill.http.HttpException;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Status;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.subscriptions.Subscriptions;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handles a single request-response exchange at a time over a pooled client connection. The request body is written
+ * as the channel can accept it, and the response is emitted as soon as its headers are received, with its body
+ * streamed from the channel as it is consumed.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ServerToClientChannelHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(ServerToClientChannelHandler.class);
+    private static final String READ_TIMEOUT_HANDLER = "readTimeout";
+
+    private static Multimap<String, String> buildHeadersMap(HttpResponse response) {
+        // Header names are kept as they were sent, as they are by ClientImpl
+        ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+        for (Map.Entry<String, String> header : response.headers()) {
+            headers.put(header.getKey(), header.getValue());
+        }
+
+        return headers.build();
+    }
+
+    private static void executeOnEventLoop(ChannelHandlerContext context, Runnable task) {
+        EventExecutor executor = context.executor();
+        if (executor.inEventLoop()) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    private final int responseBodyBufferSize;
+
+    private ChannelHandlerContext context;
+    private boolean informationalResponse;
+    private boolean keepAlive;
+    private Action1<Boolean> release;
+    private RequestBodyWriter requestBodyWriter;
+    private boolean requestSent;
+    private RequestBodyStream responseBody;
+    private boolean responseReceived;
+    private Subscriber<? super Response> subscriber;
+
+    public ServerToClientChannelHandler(int responseBodyBufferSize) {
+        this.responseBodyBufferSize = responseBodyBufferSize;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Send a request over this channel. The response is emitted to the subscriber once its headers are received. The
+     * release action is invoked once both the request has been sent and the response has been received (or the
+     * exchange fails), indicating whether the connection can be reused - a connection that can not be reused is closed
+     * before it is released.
+     */
+    public void send(HttpRequest request, Body body, int readTimeout,
+                     Subscriber<? super Response> subscriber, Action1<Boolean> release) {
+        executeOnEventLoop(context, () -> start(request, body, readTimeout, subscriber, release));
+    }
+
+    private void start(HttpRequest request, Body body, int readTimeout,
+                       Subscriber<? super Response> subscriber, Action1<Boolean> release) {
+        this.subscriber = subscriber;
+        this.release = release;
+        this.informationalResponse = false;
+        this.keepAlive = false;
+        this.requestSent = false;
+        this.responseBody = null;
+        this.responseReceived = false;
+
+        if (!context.channel().isActive()) {
+            fail(new HttpException("Connection was closed before the request could be sent"));
+            return;
+        }
+
+        if (readTimeout > 0) {
+            context.pipeline().addBefore(context.name(), READ_TIMEOUT_HANDLER,
+                    new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS));
+        }
+
+        // Closing the connection is the only way to abandon an exchange once the request has started
+        subscriber.add(Subscriptions.create(() -> executeOnEventLoop(context, () -> {
+            if (this.subscriber == subscriber && responseBody == null) {
+                fail(new HttpException("Request was cancelled"));
+            }
+        })));
+
+        if (this.subscriber != subscriber) {
+            return;
+        }
+
+        if (body == null) {
+            context.writeAndFlush(request).addListener(future -> {
+                if (future.isSuccess()) {
+                    requestSent(subscriber);
+                } else {
+                    failIfCurrent(subscriber, future.cause());
+                }
+            });
+        } else {
+            HttpUtil.setTransferEncodingChunked(request, true);
+            context.write(request);
+
+            requestBodyWriter = new RequestBodyWriter(subscriber);
+            body.asBufferChunks().subscribe(requestBodyWriter);
+        }
+    }
+
+    private void requestSent(Subscriber<? super Response> exchange) {
+        executeOnEventLoop(context, () -> {
+            if (subscriber == exchange) {
+                requestSent = true;
+                requestBodyWriter = null;
+                releaseIfComplete();
+            }
+        });
+    }
+
+    private void failIfCurrent(Subscriber<? super Response> exchange, Throwable cause) {
+        executeOnEventLoop(context, () -> {
+            if (subscriber == exchange) {
+                fail(cause);
+            }
+        });
+    }
+
+    private void fail(Throwable cause) {
+        Subscriber<? super Response> failed = subscriber;
+        if (failed == null) {
+            return;
+        }
+
+        if (responseBody == null) {
+            failed.onError(cause);
+        } else if (!responseBody.isDone()) {
+            responseBody.onError(cause);
+        }
+
+        if (requestBodyWriter != null) {
+            requestBodyWriter.unsubscribe();
+        }
+
+        finish(false);
+    }
+
+    private void releaseIfComplete() {
+        if (requestSent && responseReceived) {
+            finish(keepAlive);
+        }
+    }
+
+    private void finish(boolean reusable) {
+        Action1<Boolean> finished = release;
+
+        // A body that hasn't been read yet may never be, so it mustn't keep holding on to the channel's buffers
+        if (responseBody != null && !responseBody.isSubscribed()) {
+            responseBody.detach();
+        }
+
+        subscriber = null;
+        release = null;
+        requestBodyWriter = null;
+        responseBody = null;
+
+        if (context.pipeline().get(READ_TIMEOUT_HANDLER) != null) {
+            context.pipeline().remove(READ_TIMEOUT_HANDLER);
+        }
+
+        if (reusable) {
+            context.channel().config().setAutoRead(true);
+        } else {
+            context.close();
+        }
+
+        if (finished != null) {
+            finished.call(reusable);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext context, Object message) {
+        try {
+            if (subscriber == null) {
+                logger.debug("Discarding unexpected message received on idle connection");
+                return;
+            }
+
+            if (message instanceof HttpResponse) {
+                HttpResponse response = (HttpResponse) message;
+                if (response.decoderResult().isFailure()) {
+                    fail(response.decoderResult().cause());
+                    return;
+                }
+
+                // Interim responses (such as 100 Continue) are followed by the actual response
+                informationalResponse = response.status().codeClass() == HttpStatusClass.INFORMATIONAL &&
+                        response.status().code() != HttpResponseStatus.SWITCHING_PROTOCOLS.code();
+                if (!informationalResponse) {
+                    keepAlive = HttpUtil.isKeepAlive(response);
+                    emitResponse(response);
+                }
+            }
+
+            if (message instanceof HttpContent) {
+                HttpContent content = (HttpContent) message;
+                if (informationalResponse) {
+                    if (content instanceof LastHttpContent) {
+                        informationalResponse = false;
+                    }
+
+                    return;
+                }
+
+                if (responseBody == null) {
+                    return;
+                }
+
+                if (content.decoderResult().isFailure()) {
+                    fail(content.decoderResult().cause());
+                    return;
+                }
+
+                if (content.content().isReadable()) {
+                    responseBody.onNext(content.content());
+                }
+
+                if (content instanceof LastHttpContent) {
+                    responseBody.onCompleted();
+                    responseReceived = true;
+                    releaseIfComplete();
+                }
+            }
+        } finally {
+            ReferenceCountUtil.release(message);
+        }
+    }
+
+    private void emitResponse(HttpResponse response) {
+        Charset charset = HttpUtil.getCharset(response);
+
+        responseBody = new RequestBodyStream(context.channel(), responseBodyBufferSize);
+        ResponseImpl clientResponse = new ResponseImpl(
+                Status.valueOf(response.status().code()),
+                buildHeadersMap(response),
+                new StreamedChunksBody(responseBody.asObservable(), charset));
+
+        Subscriber<? super Response> responseSubscriber = subscriber;
+        responseSubscriber.onNext(clientResponse);
+        responseSubscriber.onCompleted();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext context) throws Exception {
+        RequestBodyWriter writer = requestBodyWriter;
+        if (writer != null && context.channel().isWritable()) {
+            writer.resume();
+        }
+
+        super.channelWritabilityChanged(context);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext context) throws Exception {
+        fail(new HttpException("Connection was closed before the response was received"));
+        super.channelInactive(context);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext context, Object event) throws Exception {
+        if (event instanceof IdleStateEvent && subscriber == null) {
+            logger.debug("Closing idle pooled connection");
+            context.close();
+            return;
+        }
+
+        super.userEventTriggered(context, event);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
+        if (subscriber != null) {
+            fail(cause);
+        } else {
+            logger.debug("Error on idle pooled connection", cause);
+            context.close();
+        }
+    }
+
+    /**
+     * Writes request body chunks to the channel one at a time, requesting the next chunk only while the channel is
+     * writable, so that a fast body source does not fill up the outbound buffer.
+     */
+    private class RequestBodyWriter extends Subscriber<ByteBuffer> {
+        private final Subscriber<? super Response> exchange;
+        private final AtomicBoolean waitingForWritability = new AtomicBoolean();
+
+        RequestBodyWriter(Subscriber<? super Response> exchange) {
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void onStart() {
+            request(1);
+        }
+
+        @Override
+        public void onNext(ByteBuffer chunk) {
+            context.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(chunk))).addListener(future -> {
+                if (!future.isSuccess()) {
+                    failIfCurrent(exchange, future.cause());
+                }
+            });
+
+            if (context.channel().isWritable()) {
+                request(1);
+            } else {
+                waitingForWritability.set(true);
+
+                // Writability may have been restored before the flag was set
+                if (context.channel().isWritable()) {
+                    resume();
+                }
+            }
+        }
+
+        void resume() {
+            if (waitingForWritability.compareAndSet(true, false)) {
+                request(1);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            context.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(future -> {
+                if (future.isSuccess()) {
+                    requestSent(exchange);
+                } else {
+                    failIfCurrent(exchange, future.cause());
+                }
+            });
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            failIfCurrent(exchange, e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package foundation.stack.datamill.http.impl;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public abstract class ServerTransport {
+    private static final Logger logger = LoggerFactory.getLogger(ServerTransport.class);
+
+    private static final String EPOLL_CLASS = "io.netty.channel.epoll.Epoll";
+
+    public static ServerTransport select(boolean preferNative) {
+        if (preferNative && isClassAvailable(EPOLL_CLASS) && EpollServerTransport.isAvailable()) {
+            logger.debug("Using the native epoll transport");
+            return new EpollServerTransport();
+        }
+
+        return new NioServerTransport();
+    }
+
+    private static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, ServerTransport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public abstract EventLoopGroup createEventLoopGroup(int threads, ThreadFactory threadFactory);
+
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    public boolean isNative() {
+        return false;
+    }
+
+    /**
+     * Set SO_REUSEPORT on the server channels created by the specified bootstrap, if the transport supports it.
+     *
+     * @return Whether the option was set.
+     */
+    public abstract boolean setReusePort(ServerBootstrap bootstrap);
+}
@@ -35,6 +35,11 @@ public class StreamedChunksBody extends AbstractBody implements Body {
                 }).map(os -> os.toByteArray());
     }
 
+    @Override
+    protected Charset charset() {
+        return charset;
+    }
+
     @Override
     public Observable<byte[]> asChunks() {
         return chunks.map(buffer -> {
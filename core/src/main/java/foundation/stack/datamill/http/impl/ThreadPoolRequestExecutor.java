@@ -0,0 +1,35 @@
+package foundation.stack.datamill.http.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ThreadPoolRequestExecutor extends AbstractRequestExecutor {
+    private final ExecutorService executorService;
+
+    public ThreadPoolRequestExecutor(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    @Override
+    protected void dispatch(Runnable task, Executor eventLoop) {
+        executorService.execute(task);
+    }
+
+    @Override
+    public int queueDepth() {
+        if (executorService instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executorService).getQueue().size();
+        }
+
+        return 0;
+    }
+
+    @Override
+    public void shutdown() {
+        executorService.shutdown();
+    }
+}
@@ -12,28 +12,38 @@ public class UriTemplate {
     private static final String TEMPLATE_VARIABLE = "(\\w[\\w\\.-]*)";
     private static final Pattern TEMPLATE_PATTERN = Pattern.compile("\\{\\s*" + TEMPLATE_VARIABLE + "\\s*" + TEMPLATE_REGEX + "\\}");
 
-    private static String stripSlashes(String uri) {
-        int start = 0;
-        if (uri.charAt(0) == '/') {
-            start = 1;
+    static int pathStart(String uri) {
+        if (uri.length() > 0 && uri.charAt(0) == '/') {
+            return 1;
         }
 
-        int end = uri.length() - 1;
-        if (uri.charAt(end) == '/') {
+        return 0;
+    }
+
+    static int pathEnd(String uri) {
+        int start = pathStart(uri);
+        int end = uri.length();
+        if (end > start && uri.charAt(end - 1) == '/') {
             end--;
         }
 
-        if (end > start) {
-            return uri.substring(start, end + 1);
-        }
+        return end;
+    }
 
-        return "";
+    private static String stripSlashes(String uri) {
+        return uri.substring(pathStart(uri), pathEnd(uri));
     }
 
     private final List<UriTemplateRegion> regions = new ArrayList<>();
+    private final String[] variables;
 
     public UriTemplate(String template) {
         computeTemplateRegions(template);
+
+        this.variables = regions.stream()
+                .filter(region -> !region.isFixedContent())
+                .map(UriTemplateRegion::getVariable)
+                .toArray(String[]::new);
     }
 
     private void computeTemplateRegions(String template) {
@@ -59,12 +69,22 @@ public class UriTemplate {
         }
     }
 
-    private static boolean queryStartsAt(String uri, int position) {
-        while (position < uri.length() && uri.charAt(position) == '/') {
+    static int queryStart(String uri, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (uri.charAt(i) == '?') {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    static boolean queryStartsAt(String uri, int position, int end) {
+        while (position < end && uri.charAt(position) == '/') {
             position++;
         }
 
-        if (position < uri.length() && uri.charAt(position) == '?') {
+        if (position < end && uri.charAt(position) == '?') {
             return true;
         }
 
@@ -82,47 +102,79 @@ public class UriTemplate {
         }
     }
 
-    public Map<String, String> match(String uri) {
-        uri = stripSlashes(uri);
+    List<UriTemplateRegion> getRegions() {
+        return regions;
+    }
+
+    /**
+     * Get the number of variables in this template - a capture array passed to {@link #match(String, int[])} needs
+     * two entries per variable.
+     */
+    public int getVariableCount() {
+        return variables.length;
+    }
+
+    public String getVariable(int index) {
+        return variables[index];
+    }
+
+    /**
+     * Get the index of the named variable, or -1 if there is no such variable. If a variable name is repeated, the
+     * index of the last occurrence is returned.
+     */
+    public int indexOfVariable(String variable) {
+        for (int i = variables.length - 1; i >= 0; i--) {
+            if (variables[i].equals(variable)) {
+                return i;
+            }
+        }
 
-        HashMap<String, String> matches = null;
+        return -1;
+    }
 
-        int uriLength = uri.length();
-        int position = 0;
+    /**
+     * Match the URI against this template without allocating. On a match, the start and end positions in the URI of
+     * each variable are recorded into the capture array, in the order the variables appear in the template.
+     *
+     * @param uri URI to match.
+     * @param captures Array of at least twice the {@link #getVariableCount()} entries, receiving variable boundaries.
+     * @return Whether the URI matches this template.
+     */
+    public boolean match(String uri, int[] captures) {
+        int end = pathEnd(uri);
+        int queryStart = queryStart(uri, pathStart(uri), end);
+
+        int position = pathStart(uri);
+        int variable = 0;
         int numberOfRegions = regions.size();
 
         for (int i = 0; i < numberOfRegions; i++) {
             UriTemplateRegion region = regions.get(i);
 
-            if (position > uriLength) {
-                return null;
-            }
-
-            int regionEnd = region.match(uri, position, i == numberOfRegions - 1);
+            int regionEnd = region.match(uri, position, end, queryStart, i == numberOfRegions - 1);
             if (regionEnd < 0) {
-                return null;
+                return false;
             }
 
             if (!region.isFixedContent()) {
-                if (matches == null) {
-                    matches = new HashMap<>();
-                }
-
-                matches.put(region.getVariable(), uri.substring(position, regionEnd));
+                captures[variable * 2] = position;
+                captures[variable * 2 + 1] = regionEnd;
+                variable++;
             }
 
             position = regionEnd;
         }
 
-        if (position != uri.length() && !queryStartsAt(uri, position)) {
-            return null;
-        }
+        return position == end || queryStartsAt(uri, position, end);
+    }
 
-        if (matches == null) {
-            return Collections.emptyMap();
+    public Map<String, String> match(String uri) {
+        int[] captures = new int[variables.length * 2];
+        if (!match(uri, captures)) {
+            return null;
         }
 
-        return matches;
+        return new UriTemplateMatch(this, uri, captures).toMap();
     }
 
     @Override
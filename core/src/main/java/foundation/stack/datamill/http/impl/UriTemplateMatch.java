@@ -0,0 +1,46 @@
+package foundation.stack.datamill.http.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The variable boundaries captured when a URI matched a {@link UriTemplate}. Parameter values are only extracted from
+ * the URI when they are asked for.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class UriTemplateMatch {
+    private final int[] captures;
+    private final UriTemplate template;
+    private final String uri;
+
+    public UriTemplateMatch(UriTemplate template, String uri, int[] captures) {
+        this.captures = captures;
+        this.template = template;
+        this.uri = uri;
+    }
+
+    public String get(String variable) {
+        int index = template.indexOfVariable(variable);
+        if (index < 0) {
+            return null;
+        }
+
+        return uri.substring(captures[index * 2], captures[index * 2 + 1]);
+    }
+
+    public Map<String, String> toMap() {
+        int variableCount = template.getVariableCount();
+        if (variableCount == 0) {
+            return Collections.emptyMap();
+        }
+
+        HashMap<String, String> parameters = new HashMap<>();
+        for (int i = 0; i < variableCount; i++) {
+            parameters.put(template.getVariable(i), uri.substring(captures[i * 2], captures[i * 2 + 1]));
+        }
+
+        return parameters;
+    }
+}
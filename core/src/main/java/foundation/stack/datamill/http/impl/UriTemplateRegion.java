@@ -7,23 +7,16 @@ import java.util.regex.Pattern;
  * @author Ravi Chodavarapu (rchodava@gmail.com)
  */
 public class UriTemplateRegion {
-    private static String stripQueryParams(String uri) {
-        int querySeparator = uri.indexOf('?');
-        if (querySeparator > -1) {
-            return uri.substring(0, querySeparator);
-        }
-
-        return uri;
-    }
-
     private final String variable;
     private final String content;
     private final Pattern pattern;
+    private final ThreadLocal<Matcher> matcher;
 
     public UriTemplateRegion(String content) {
         this.variable = null;
         this.content = content;
         this.pattern = null;
+        this.matcher = null;
     }
 
     public UriTemplateRegion(String variable, String content) {
@@ -32,11 +25,20 @@ public class UriTemplateRegion {
 
         if (content != null) {
             this.pattern = Pattern.compile(content);
+            // Patterns see the rest of the URI around the region they match, as they would matching the whole URI
+            this.matcher = ThreadLocal.withInitial(() -> pattern.matcher("")
+                    .useAnchoringBounds(false)
+                    .useTransparentBounds(true));
         } else {
             this.pattern = null;
+            this.matcher = null;
         }
     }
 
+    String getContent() {
+        return content;
+    }
+
     public String getVariable() {
         return variable;
     }
@@ -49,49 +51,58 @@ public class UriTemplateRegion {
         return variable == null;
     }
 
-    public int match(String uri, int start, boolean finalRegion) {
+    /**
+     * Match this region against the URI starting at the specified position, without copying any part of the URI.
+     *
+     * @param uri The full request URI.
+     * @param start Position at which this region should start matching.
+     * @param end End of the URI path, excluding any trailing slash.
+     * @param queryStart Position of the query string separator, or end if there is no query string.
+     * @param finalRegion Whether this is the last region of the template, which may not match into the query string.
+     * @return The position at which this region stopped matching, or -1 if the region does not match.
+     */
+    public int match(String uri, int start, int end, int queryStart, boolean finalRegion) {
         if (isFixedContent()) {
-            return matchFixedContent(finalRegion ? stripQueryParams(uri) : uri, start);
+            return matchFixedContent(uri, start, finalRegion ? queryStart : end);
         } else {
             if (isDefaultPattern()) {
-                return matchDefaultPatternContent(finalRegion ? stripQueryParams(uri) : uri, start);
+                return matchDefaultPatternContent(uri, start, finalRegion ? queryStart : end);
             } else {
-                return matchCustomPatternContent(uri, start);
+                return matchCustomPatternContent(uri, start, end);
             }
         }
     }
 
-    private int matchCustomPatternContent(String uri, int start) {
-        Matcher matcher = pattern.matcher(uri);
-        if (matcher.find(start) && matcher.start() == start) {
+    private int matchCustomPatternContent(String uri, int start, int end) {
+        Matcher matcher = this.matcher.get();
+        matcher.reset(uri).region(start, end);
+        if (matcher.lookingAt()) {
             return matcher.end();
         }
 
         return -1;
     }
 
-    private int matchDefaultPatternContent(String uri, int start) {
+    private int matchDefaultPatternContent(String uri, int start, int end) {
         int position = start;
-        int uriLength = uri.length();
-        while (position < uriLength && uri.charAt(position) != '/') {
+        while (position < end && uri.charAt(position) != '/') {
             position++;
         }
 
         return position;
     }
 
-    private int matchFixedContent(String uri, int start) {
-        if (start + content.length() > uri.length()) {
+    private int matchFixedContent(String uri, int start, int end) {
+        if (start + content.length() > end) {
             return -1;
         }
 
-        if (uri.substring(start, start + content.length()).equals(content)) {
+        if (uri.regionMatches(start, content, 0, content.length())) {
             return start + content.length();
         } else {
             return -1;
         }
     }
-
     @Override
     public String toString() {
         if (isFixedContent()) {
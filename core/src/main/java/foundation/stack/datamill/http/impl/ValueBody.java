@@ -1,17 +1,22 @@
 package foundation.stack.datamill.http.impl;
 
-import foundation.stack.datamill.http.Body;
 import foundation.stack.datamill.http.HttpException;
 import foundation.stack.datamill.json.JsonObject;
 import foundation.stack.datamill.values.Value;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
 import rx.Observable;
 
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 
 /**
  * @author Ravi Chodavarapu (rchodava@gmail.com)
  */
-public class ValueBody extends AbstractBody implements Body {
+public class ValueBody extends AbstractBody implements InMemoryBody {
     private Value value;
 
     public ValueBody(Value value) {
@@ -23,6 +28,16 @@ public class ValueBody extends AbstractBody implements Body {
         return asString().map(s -> s.getBytes());
     }
 
+    @Override
+    public ByteBuf asByteBuf(ByteBufAllocator allocator) {
+        if (value == null) {
+            return Unpooled.EMPTY_BUFFER;
+        }
+
+        // Encoded straight into a buffer from the allocator, with the same charset as asBytes()
+        return ByteBufUtil.encodeString(allocator, CharBuffer.wrap(value.asString()), Charset.defaultCharset());
+    }
+
     @Override
     public Observable<byte[]> asChunks() {
         return asBytes();
@@ -0,0 +1,42 @@
+package foundation.stack.datamill.http.limits;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An additive-increase, multiplicative-decrease limit. The limit grows by one for each window in which the limit was
+ * being used, and the average latency stayed under a threshold, and is cut by a ratio for each window in which the
+ * average latency exceeded the threshold.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class AimdLimit implements LimitAlgorithm {
+    private double backoffRatio = 0.9;
+    private long latencyThreshold = TimeUnit.SECONDS.toNanos(1);
+
+    /** Set the ratio the limit is multiplied by when latency exceeds the threshold, between 0.5 and 1. */
+    public AimdLimit backoffRatio(double backoffRatio) {
+        this.backoffRatio = Math.max(0.5, Math.min(1, backoffRatio));
+        return this;
+    }
+
+    /** Set the average latency above which the limit is reduced. */
+    public AimdLimit latencyThreshold(long threshold, TimeUnit unit) {
+        this.latencyThreshold = unit.toNanos(threshold);
+        return this;
+    }
+
+    @Override
+    public double update(double limit, long averageLatency, long minimumLatency, int maximumInFlight,
+                         boolean rejected) {
+        if (averageLatency > latencyThreshold) {
+            return limit * backoffRatio;
+        }
+
+        // Growing the limit while most of it goes unused would let it grow without bound during quiet periods
+        if (rejected || maximumInFlight * 2 >= limit) {
+            return limit + 1;
+        }
+
+        return limit;
+    }
+}
@@ -0,0 +1,184 @@
+package foundation.stack.datamill.http.limits;
+
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.RouteFilter;
+import foundation.stack.datamill.http.Status;
+import rx.Observable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>
+ * A filter that limits the number of requests a route handles at once, adapting the limit to the latency of the
+ * route's responses. Requests beyond the limit are answered with a 503 Service Unavailable response carrying a
+ * Retry-After header, instead of queueing behind requests that are already slow. For example:
+ * </p>
+ * <pre>
+ * ConcurrencyLimiter limiter = new ConcurrencyLimiter(new GradientLimit()).maxLimit(200);
+ * rb.ifMethodAndUriMatch(Method.POST, "/reports", limiter.filter(request -> ...))
+ * </pre>
+ * <p>
+ * A request is counted from the time the route is applied to it, until its response is emitted, the response fails,
+ * or the server stops waiting for the response. The latencies of requests are sampled into striped counters, and the
+ * limit is adjusted by the {@link LimitAlgorithm} once per window, by whichever request completes after the window
+ * ends.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ConcurrencyLimiter implements RouteFilter {
+    private final LimitAlgorithm algorithm;
+    private final LongSupplier clock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maximumInFlight = new AtomicInteger();
+    private final LongAccumulator minimumLatency = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final AtomicBoolean rejected = new AtomicBoolean();
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicBoolean updating = new AtomicBoolean();
+    private final AtomicLong windowStart = new AtomicLong();
+
+    // Only changed while updating
+    private double estimatedLimit = 20;
+
+    private volatile int limit = 20;
+    private volatile int maxLimit = 1000;
+    private volatile int minLimit = 1;
+    private volatile long window = TimeUnit.SECONDS.toNanos(1);
+
+    public ConcurrencyLimiter(LimitAlgorithm algorithm) {
+        this(algorithm, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(LimitAlgorithm algorithm, LongSupplier clock) {
+        this.algorithm = algorithm;
+        this.clock = clock;
+        this.windowStart.set(clock.getAsLong());
+    }
+
+    /** Set the limit used until enough latencies have been observed to adjust it. */
+    public ConcurrencyLimiter initialLimit(int limit) {
+        this.estimatedLimit = limit;
+        this.limit = clamp(limit);
+        return this;
+    }
+
+    public ConcurrencyLimiter maxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+        this.limit = clamp(limit);
+        return this;
+    }
+
+    public ConcurrencyLimiter minLimit(int minLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.limit = clamp(limit);
+        return this;
+    }
+
+    /** Set how often the limit is adjusted. */
+    public ConcurrencyLimiter window(long window, TimeUnit unit) {
+        this.window = unit.toNanos(window);
+        return this;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private int clamp(double limit) {
+        return (int) Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                rejected.set(true);
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+
+        maximumInFlight.accumulateAndGet(current + 1, Math::max);
+        return true;
+    }
+
+    void release(long latency) {
+        inFlight.decrementAndGet();
+        if (latency >= 0) {
+            samples.increment();
+            totalLatency.add(latency);
+            minimumLatency.accumulate(latency);
+        }
+
+        long now = clock.getAsLong();
+        if (now - windowStart.get() >= window && updating.compareAndSet(false, true)) {
+            try {
+                if (now - windowStart.get() >= window) {
+                    updateLimit(now);
+                }
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    private void updateLimit(long now) {
+        long count = samples.sumThenReset();
+        long total = totalLatency.sumThenReset();
+        long minimum = minimumLatency.getThenReset();
+        int maximum = maximumInFlight.getAndSet(inFlight.get());
+        boolean wasRejected = rejected.getAndSet(false);
+        windowStart.set(now);
+
+        if (count > 0) {
+            double next = algorithm.update(estimatedLimit, total / count, minimum, maximum, wasRejected);
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit, next));
+            limit = clamp(estimatedLimit);
+        }
+    }
+
+    @Override
+    public Route filter(Route route) {
+        return request -> {
+            if (!tryAcquire()) {
+                long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(window));
+                return request.respond(b -> b.header("Retry-After", seconds).status(Status.SERVICE_UNAVAILABLE));
+            }
+
+            long start = clock.getAsLong();
+            Observable<Response> response;
+            try {
+                response = route.apply(request);
+            } catch (RuntimeException e) {
+                release(-1);
+                throw e;
+            }
+
+            if (response == null) {
+                release(-1);
+                return null;
+            }
+
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable releaser = () -> {
+                if (released.compareAndSet(false, true)) {
+                    release(clock.getAsLong() - start);
+                }
+            };
+
+            return response.doOnEach(notification -> releaser.run()).doOnUnsubscribe(releaser::run);
+        };
+    }
+}
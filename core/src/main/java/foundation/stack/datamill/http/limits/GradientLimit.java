@@ -0,0 +1,57 @@
+package foundation.stack.datamill.http.limits;
+
+/**
+ * <p>
+ * A limit that follows the gradient between the latency of requests when the server isn't loaded, and their current
+ * latency. While latencies stay near the unloaded latency, the limit grows by a queue allowance of roughly the square
+ * root of the limit. When latencies grow, requests are queueing somewhere, and the limit shrinks in proportion to the
+ * increase in latency, so that the queue drains.
+ * </p>
+ * <p>
+ * The unloaded latency is the lowest latency observed, which is allowed to drift upwards slowly so that a change in
+ * the work a route does is eventually reflected in the limit.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class GradientLimit implements LimitAlgorithm {
+    private static final double DRIFT = 0.01;
+
+    private double smoothing = 0.2;
+    private double tolerance = 1.5;
+    private double unloadedLatency;
+
+    /** Set how much weight each window's limit is given, compared to the previous limit, between 0 and 1. */
+    public GradientLimit smoothing(double smoothing) {
+        this.smoothing = Math.max(0.01, Math.min(1, smoothing));
+        return this;
+    }
+
+    /** Set by how much the latency has to grow over the unloaded latency before the limit is reduced. */
+    public GradientLimit tolerance(double tolerance) {
+        this.tolerance = Math.max(1, tolerance);
+        return this;
+    }
+
+    @Override
+    public double update(double limit, long averageLatency, long minimumLatency, int maximumInFlight,
+                         boolean rejected) {
+        if (unloadedLatency == 0 || minimumLatency < unloadedLatency) {
+            unloadedLatency = minimumLatency;
+        } else {
+            unloadedLatency += (minimumLatency - unloadedLatency) * DRIFT;
+        }
+
+        if (averageLatency <= 0) {
+            return limit;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1, tolerance * unloadedLatency / averageLatency));
+
+        // A limit that is mostly unused doesn't need to grow
+        double queue = maximumInFlight * 2 >= limit || rejected ? Math.sqrt(limit) : 0;
+        double next = limit * gradient + queue;
+
+        return limit * (1 - smoothing) + next * smoothing;
+    }
+}
@@ -0,0 +1,22 @@
+package foundation.stack.datamill.http.limits;
+
+/**
+ * Adjusts the concurrency limit of a {@link ConcurrencyLimiter} based on the latencies it observes. The limiter calls
+ * the algorithm once per sampling window, and never concurrently, so algorithms can keep state between windows
+ * without synchronizing.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public interface LimitAlgorithm {
+    /**
+     * Compute a new limit.
+     *
+     * @param limit The current limit.
+     * @param averageLatency The average latency of requests completed during the window, in nanoseconds.
+     * @param minimumLatency The lowest latency of a request completed during the window, in nanoseconds.
+     * @param maximumInFlight The highest number of requests that were in flight at once during the window.
+     * @param rejected Whether any requests were rejected during the window.
+     * @return The new limit, which the limiter keeps within its minimum and maximum.
+     */
+    double update(double limit, long averageLatency, long minimumLatency, int maximumInFlight, boolean rejected);
+}
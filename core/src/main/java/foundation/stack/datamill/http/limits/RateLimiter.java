@@ -0,0 +1,162 @@
+package foundation.stack.datamill.http.limits;
+
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.RouteFilter;
+import foundation.stack.datamill.http.ServerRequest;
+import foundation.stack.datamill.http.Status;
+import rx.Observable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>
+ * A filter that limits the rate at which each client can make requests, using a token bucket per client. A client
+ * can make a burst of requests up to the size of its bucket, after which its requests are limited to the sustained
+ * rate at which the bucket is refilled. Requests over the limit are answered with a 429 Too Many Requests response,
+ * carrying a Retry-After header. For example, to allow each IP address 10 requests a second, in bursts of up to 20:
+ * </p>
+ * <pre>
+ * RateLimiter limiter = new RateLimiter(RequestKeys.remoteAddress()).permitsPerSecond(10).burst(20);
+ * rb.ifMethodAndUriMatch(Method.POST, "/reports", limiter.filter(request -> ...))
+ * </pre>
+ * <p>
+ * Each bucket is kept as a single timestamp - the time at which it will be full again - which is updated using
+ * compare-and-set, so requests from different clients never contend with each other, and requests from the same
+ * client only contend on their own bucket. Buckets that have refilled are forgotten once there are more than
+ * {@link #maxKeys(int)} of them, and if all of them are still in use, requests from additional clients share a single
+ * bucket until some are forgotten.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RateLimiter implements RouteFilter {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private final Function<ServerRequest, String> keys;
+    private final AtomicLong lastSwept = new AtomicLong();
+
+    private volatile int burst = 1;
+    private volatile long interval = SECOND;
+    private volatile int maxKeys = 10000;
+
+    /**
+     * @param keys A function that identifies the client making a request, such as one of the {@link RequestKeys}.
+     */
+    public RateLimiter(Function<ServerRequest, String> keys) {
+        this(keys, System::nanoTime);
+    }
+
+    RateLimiter(Function<ServerRequest, String> keys, LongSupplier clock) {
+        this.keys = keys;
+        this.clock = clock;
+        this.lastSwept.set(clock.getAsLong());
+    }
+
+    /**
+     * Set the number of requests a client can make at once, before being limited to the sustained rate.
+     *
+     * @throws IllegalArgumentException If the burst is not positive.
+     */
+    public RateLimiter burst(int burst) {
+        if (burst <= 0) {
+            throw new IllegalArgumentException("Burst must be positive, but was " + burst);
+        }
+
+        this.burst = burst;
+        return this;
+    }
+
+    /** Set the maximum number of clients to keep buckets for. */
+    public RateLimiter maxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+        return this;
+    }
+
+    /**
+     * Set the sustained number of requests each client can make per second.
+     *
+     * @throws IllegalArgumentException If the number of permits is not positive.
+     */
+    public RateLimiter permitsPerSecond(double permits) {
+        if (!(permits > 0)) {
+            throw new IllegalArgumentException("Permits per second must be positive, but was " + permits);
+        }
+
+        this.interval = Math.max(1, (long) (SECOND / permits));
+        return this;
+    }
+
+    /**
+     * Take a permit for a request from the specified client.
+     *
+     * @return Zero if the request is allowed, or the number of nanoseconds until it would be allowed.
+     */
+    long acquire(String key) {
+        long now = clock.getAsLong();
+        long interval = this.interval;
+        long tolerance = interval * burst;
+
+        AtomicLong bucket = bucketFor(key != null ? key : RequestKeys.UNIDENTIFIED, now);
+        while (true) {
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + interval;
+            if (next - now > tolerance) {
+                return next - now - tolerance;
+            }
+
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucketFor(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+
+        if (buckets.size() >= maxKeys) {
+            sweep(now);
+            if (buckets.size() >= maxKeys) {
+                return buckets.computeIfAbsent(RequestKeys.UNIDENTIFIED, k -> new AtomicLong(now));
+            }
+        }
+
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    private void sweep(long now) {
+        // A bucket can't have refilled since the last sweep unless a full refill interval has passed, so sweeping more
+        // often than that when all buckets are in use would only waste time
+        long last = lastSwept.get();
+        if (now - last >= interval * burst && lastSwept.compareAndSet(last, now)) {
+            buckets.values().removeIf(bucket -> bucket.get() <= now);
+        }
+    }
+
+    @Override
+    public Route filter(Route route) {
+        return request -> {
+            long wait = acquire(keys.apply(request));
+            if (wait > 0) {
+                return reject(request, wait);
+            }
+
+            return route.apply(request);
+        };
+    }
+
+    private static Observable<Response> reject(ServerRequest request, long wait) {
+        long seconds = (wait + SECOND - 1) / SECOND;
+        return request.respond(b -> b.header("Retry-After", seconds).status(Status.TOO_MANY_REQUESTS));
+    }
+}
@@ -0,0 +1,63 @@
+package foundation.stack.datamill.http.limits;
+
+import foundation.stack.datamill.http.RequestHeader;
+import foundation.stack.datamill.http.ServerRequest;
+import foundation.stack.datamill.security.JsonWebTokenVerificationBuilder;
+import foundation.stack.datamill.security.SecurityException;
+import foundation.stack.datamill.values.Value;
+
+import java.net.InetSocketAddress;
+import java.util.function.Function;
+
+/**
+ * Functions that identify the client making a request, for limits that are applied to each client separately.
+ * Requests that can't be identified all share the {@link #UNIDENTIFIED} key, so that clients can't escape a limit by
+ * leaving out whatever identifies them.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RequestKeys {
+    public static final String UNIDENTIFIED = "";
+
+    private RequestKeys() {
+    }
+
+    /** Identify requests by the value of the specified header, such as an API key. */
+    public static Function<ServerRequest, String> header(String name) {
+        return request -> {
+            Value value = request.firstHeader(name);
+            return value != null ? value.asString() : UNIDENTIFIED;
+        };
+    }
+
+    /**
+     * Identify requests by the subject of the JSON web token in their Authorization header. Requests whose tokens fail
+     * verification are unidentified.
+     */
+    public static Function<ServerRequest, String> jwtSubject(JsonWebTokenVerificationBuilder verification) {
+        return request -> {
+            Value authorization = request.firstHeader(RequestHeader.AUTHORIZATION);
+            if (authorization != null) {
+                try {
+                    String subject = verification.verify(authorization.asString()).getSubject();
+                    if (subject != null) {
+                        return subject;
+                    }
+                } catch (SecurityException e) {
+                    return UNIDENTIFIED;
+                }
+            }
+
+            return UNIDENTIFIED;
+        };
+    }
+
+    /** Identify requests by the IP address of the client. */
+    public static Function<ServerRequest, String> remoteAddress() {
+        return request -> {
+            InetSocketAddress address = request.remoteAddress();
+            return address != null && address.getAddress() != null ?
+                    address.getAddress().getHostAddress() : UNIDENTIFIED;
+        };
+    }
+}
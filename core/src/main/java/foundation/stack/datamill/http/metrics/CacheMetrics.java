@@ -0,0 +1,31 @@
+package foundation.stack.datamill.http.metrics;
+
+/**
+ * Counters kept by a cache of responses, such as a {@link foundation.stack.datamill.http.cache.ResponseCache}. Add
+ * caches to a {@link MetricsRegistry} using {@link MetricsRegistry#addCache(String, CacheMetrics)} to expose these
+ * counters with the rest of the server's metrics.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public interface CacheMetrics {
+    /** Get the number of requests that were answered with a response that was being fetched for another request. */
+    long getCoalesced();
+
+    /** Get the number of responses evicted to keep the cache within its maximum size. */
+    long getEvictions();
+
+    /** Get the number of requests answered with a fresh cached response. */
+    long getHits();
+
+    /** Get the number of requests for which there was no usable cached response. */
+    long getMisses();
+
+    /** Get the number of requests answered with a 304 Not Modified response. */
+    long getNotModified();
+
+    /** Get the number of responses currently cached. */
+    long getSize();
+
+    /** Get the number of requests answered with a stale cached response, while it was being refreshed. */
+    long getStaleHits();
+}
@@ -0,0 +1,23 @@
+package foundation.stack.datamill.http.metrics;
+
+/**
+ * The reasons for which client connections to a server are closed.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public enum ConnectionCloseReason {
+    /** Closed by the client, or by the server in the normal course of handling requests. */
+    CLOSED,
+    /** Refused as soon as it was accepted, because the server already had the maximum number of connections. */
+    REFUSED,
+    /** Nothing was read or written for longer than the idle timeout. */
+    IDLE,
+    /** Nothing was read for longer than the read timeout, while the server was waiting on the client. */
+    READ_TIMEOUT,
+    /** The client stopped reading a response, so that nothing could be written for longer than the write timeout. */
+    WRITE_TIMEOUT,
+    /** The client took longer than the header read timeout to send the headers of a request. */
+    HEADER_READ_TIMEOUT,
+    /** The client sent a request body at less than the minimum request body rate. */
+    SLOW_REQUEST_BODY
+}
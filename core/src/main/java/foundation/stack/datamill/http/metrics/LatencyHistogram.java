@@ -0,0 +1,103 @@
+package foundation.stack.datamill.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, with log-linear buckets in the style of an HDR histogram - each power of two
+ * is split into {@link #SUB_BUCKETS} linear buckets, so recorded values are resolved to within 12.5% over the whole
+ * range of durations, using a fixed amount of memory. Recording a value is lock-free and does not allocate, so it can be
+ * done concurrently from any number of threads.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /** The largest value that falls into the specified bucket. */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket & (SUB_BUCKETS - 1);
+        long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        sum.add(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Get the number of recorded values that are at most the specified value. Values are counted by bucket, so the
+     * count includes values up to 12.5% larger than the specified value.
+     */
+    public long countAtOrBelow(long nanos) {
+        int last = bucketOf(nanos);
+
+        long total = 0;
+        for (int i = 0; i <= last; i++) {
+            total += counts.get(i);
+        }
+
+        return total;
+    }
+
+    /**
+     * Get the value below which the specified percentage of recorded values fall, accurate to within the resolution
+     * of the histogram.
+     *
+     * @param percentile A percentile between 0 and 100.
+     * @return The value at the percentile, or 0 if no values have been recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            recorded += counts.get(i);
+        }
+
+        if (recorded == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(recorded * Math.min(percentile, 100) / 100));
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+            if (total >= target) {
+                return upperBoundOf(i);
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,301 @@
+package foundation.stack.datamill.http.metrics;
+
+import foundation.stack.datamill.http.Method;
+import foundation.stack.datamill.http.Route;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Keeps server metrics in memory, per route and method, and exposes them in the Prometheus text exposition format.
+ * Recording is lock-free - the metrics for a route are created the first time it is used, after which recording
+ * a request only updates counters and histograms. For example, to record metrics and serve them at /metrics:
+ * </p>
+ * <pre>
+ * MetricsRegistry metrics = new MetricsRegistry();
+ * new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/metrics", metrics.route())
+ *         .elseIfMethodAndUriMatch(...))
+ *     .options(new ServerOptions().metrics(metrics))
+ *     .listen(8080);
+ * </pre>
+ * <p>
+ * Latency histograms are exposed with fixed buckets ranging from 500 microseconds to 10 seconds. The histograms are
+ * kept at a finer resolution, and can be queried directly for percentiles using {@link #getRoutes()}.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class MetricsRegistry implements ServerMetrics {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] BUCKETS = { 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5,
+            5, 10 };
+    private static final String[] BUCKET_LABELS = new String[BUCKETS.length];
+    private static final String[] STATUS_CLASSES = { "none", "1xx", "2xx", "3xx", "4xx", "5xx" };
+    private static final int METHODS = Method.values().length;
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKETS[i]).toPlainString();
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if (character == '\\' || character == '"' || character == '\n') {
+                if (escaped == null) {
+                    escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+                }
+
+                escaped.append('\\').append(character == '\n' ? 'n' : character);
+            } else if (escaped != null) {
+                escaped.append(character);
+            }
+        }
+
+        return escaped != null ? escaped.toString() : value;
+    }
+
+    private static void appendHistogram(StringBuilder text, String name, String labels, LatencyHistogram histogram) {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            long count = histogram.countAtOrBelow((long) (BUCKETS[i] * TimeUnit.SECONDS.toNanos(1)));
+            text.append(name).append("_bucket{").append(labels).append(",le=\"").append(BUCKET_LABELS[i])
+                    .append("\"} ").append(count).append('\n');
+        }
+
+        long count = histogram.getCount();
+        text.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+        text.append(name).append("_sum{").append(labels).append("} ")
+                .append(histogram.getSum() / (double) TimeUnit.SECONDS.toNanos(1)).append('\n');
+        text.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+    }
+
+    private final Map<String, CacheMetrics> caches = new ConcurrentHashMap<>();
+    private final LongAdder[] closedConnections = new LongAdder[ConnectionCloseReason.values().length];
+    private final LongAdder openConnections = new LongAdder();
+    private final ConcurrentHashMap<String, AtomicReferenceArray<RouteMetrics>> routes = new ConcurrentHashMap<>();
+
+    public MetricsRegistry() {
+        for (int i = 0; i < closedConnections.length; i++) {
+            closedConnections[i] = new LongAdder();
+        }
+    }
+
+    /** Expose the hit, miss and eviction counts of the specified cache, under the specified name. */
+    public MetricsRegistry addCache(String name, CacheMetrics cache) {
+        caches.put(name, cache);
+        return this;
+    }
+
+    private RouteMetrics metricsFor(Method method, String route) {
+        AtomicReferenceArray<RouteMetrics> methods = routes.get(route);
+        if (methods == null) {
+            methods = routes.computeIfAbsent(route, key -> new AtomicReferenceArray<>(METHODS));
+        }
+
+        int index = (method != null ? method : Method.UNKNOWN).ordinal();
+        RouteMetrics metrics = methods.get(index);
+        if (metrics == null) {
+            methods.compareAndSet(index, null, new RouteMetrics(Method.values()[index], route));
+            metrics = methods.get(index);
+        }
+
+        return metrics;
+    }
+
+    @Override
+    public void requestStarted(Method method, String route) {
+        metricsFor(method, route).started();
+    }
+
+    @Override
+    public void requestCompleted(Method method, String route, int status, long requestBytes, long responseBytes,
+                                 long routingNanos, long handlerNanos, long writeNanos) {
+        metricsFor(method, route).completed(status, requestBytes, responseBytes, routingNanos, handlerNanos, writeNanos);
+    }
+
+    @Override
+    public void connectionOpened() {
+        openConnections.increment();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionCloseReason reason) {
+        if (reason != ConnectionCloseReason.REFUSED) {
+            openConnections.decrement();
+        }
+
+        closedConnections[reason.ordinal()].increment();
+    }
+
+    /** Get the number of connections that have been closed for the specified reason. */
+    public long getClosedConnections(ConnectionCloseReason reason) {
+        return closedConnections[reason.ordinal()].sum();
+    }
+
+    public long getOpenConnections() {
+        return openConnections.sum();
+    }
+
+    /** Get the metrics for all routes and methods that have been recorded, ordered by route and method. */
+    public List<RouteMetrics> getRoutes() {
+        List<RouteMetrics> metrics = new ArrayList<>();
+        for (AtomicReferenceArray<RouteMetrics> methods : new TreeMap<>(routes).values()) {
+            for (int i = 0; i < methods.length(); i++) {
+                RouteMetrics route = methods.get(i);
+                if (route != null) {
+                    metrics.add(route);
+                }
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Get the metrics for requests with the specified method, handled by the specified route.
+     *
+     * @return The metrics, or null if no such requests have been recorded.
+     */
+    public RouteMetrics getRoute(Method method, String route) {
+        AtomicReferenceArray<RouteMetrics> methods = routes.get(route);
+        return methods != null ? methods.get(method.ordinal()) : null;
+    }
+
+    /** Get the metrics in the Prometheus text exposition format. */
+    public String toPrometheusText() {
+        List<RouteMetrics> metrics = getRoutes();
+        List<String> labels = new ArrayList<>(metrics.size());
+        for (RouteMetrics route : metrics) {
+            labels.add("method=\"" + route.getMethod() + "\",route=\"" + escape(route.getRoute()) + "\"");
+        }
+
+        StringBuilder text = new StringBuilder();
+        text.append("# HELP http_server_connections_open Client connections currently open.\n");
+        text.append("# TYPE http_server_connections_open gauge\n");
+        text.append("http_server_connections_open ").append(getOpenConnections()).append('\n');
+
+        text.append("# HELP http_server_connections_closed_total Client connections closed, by reason.\n");
+        text.append("# TYPE http_server_connections_closed_total counter\n");
+        for (ConnectionCloseReason reason : ConnectionCloseReason.values()) {
+            text.append("http_server_connections_closed_total{reason=\"").append(reason.name().toLowerCase())
+                    .append("\"} ").append(getClosedConnections(reason)).append('\n');
+        }
+
+        if (!caches.isEmpty()) {
+            appendCaches(text);
+        }
+
+        text.append("# HELP http_server_requests_total Completed requests, by route, method and response status class.\n");
+        text.append("# TYPE http_server_requests_total counter\n");
+        for (int i = 0; i < metrics.size(); i++) {
+            for (int statusClass = 0; statusClass < STATUS_CLASSES.length; statusClass++) {
+                long requests = metrics.get(i).getRequests(statusClass);
+                if (requests > 0) {
+                    text.append("http_server_requests_total{").append(labels.get(i)).append(",status=\"")
+                            .append(STATUS_CLASSES[statusClass]).append("\"} ").append(requests).append('\n');
+                }
+            }
+        }
+
+        text.append("# HELP http_server_requests_in_flight Requests currently being handled.\n");
+        text.append("# TYPE http_server_requests_in_flight gauge\n");
+        for (int i = 0; i < metrics.size(); i++) {
+            text.append("http_server_requests_in_flight{").append(labels.get(i)).append("} ")
+                    .append(metrics.get(i).getInFlight()).append('\n');
+        }
+
+        text.append("# HELP http_server_request_bytes_total Request body bytes received.\n");
+        text.append("# TYPE http_server_request_bytes_total counter\n");
+        for (int i = 0; i < metrics.size(); i++) {
+            text.append("http_server_request_bytes_total{").append(labels.get(i)).append("} ")
+                    .append(metrics.get(i).getRequestBytes()).append('\n');
+        }
+
+        text.append("# HELP http_server_response_bytes_total Response body bytes sent, before compression.\n");
+        text.append("# TYPE http_server_response_bytes_total counter\n");
+        for (int i = 0; i < metrics.size(); i++) {
+            text.append("http_server_response_bytes_total{").append(labels.get(i)).append("} ")
+                    .append(metrics.get(i).getResponseBytes()).append('\n');
+        }
+
+        text.append("# HELP http_server_request_duration_seconds Time taken to route, handle and write responses.\n");
+        text.append("# TYPE http_server_request_duration_seconds histogram\n");
+        for (int i = 0; i < metrics.size(); i++) {
+            appendHistogram(text, "http_server_request_duration_seconds", labels.get(i),
+                    metrics.get(i).getDurations());
+        }
+
+        text.append("# HELP http_server_request_phase_duration_seconds Time taken by each phase of handling requests.\n");
+        text.append("# TYPE http_server_request_phase_duration_seconds histogram\n");
+        for (int i = 0; i < metrics.size(); i++) {
+            RouteMetrics route = metrics.get(i);
+            appendHistogram(text, "http_server_request_phase_duration_seconds", labels.get(i) + ",phase=\"routing\"",
+                    route.getRoutingDurations());
+            appendHistogram(text, "http_server_request_phase_duration_seconds", labels.get(i) + ",phase=\"handler\"",
+                    route.getHandlerDurations());
+            appendHistogram(text, "http_server_request_phase_duration_seconds", labels.get(i) + ",phase=\"write\"",
+                    route.getWriteDurations());
+        }
+
+        return text.toString();
+    }
+
+    private void appendCaches(StringBuilder text) {
+        Map<String, CacheMetrics> caches = new TreeMap<>(this.caches);
+
+        text.append("# HELP http_response_cache_requests_total Requests handled by response caches, by result.\n");
+        text.append("# TYPE http_response_cache_requests_total counter\n");
+        for (Map.Entry<String, CacheMetrics> cache : caches.entrySet()) {
+            String label = "cache=\"" + escape(cache.getKey()) + "\"";
+            text.append("http_response_cache_requests_total{").append(label).append(",result=\"hit\"} ")
+                    .append(cache.getValue().getHits()).append('\n');
+            text.append("http_response_cache_requests_total{").append(label).append(",result=\"stale\"} ")
+                    .append(cache.getValue().getStaleHits()).append('\n');
+            text.append("http_response_cache_requests_total{").append(label).append(",result=\"miss\"} ")
+                    .append(cache.getValue().getMisses()).append('\n');
+        }
+
+        text.append("# HELP http_response_cache_coalesced_total Misses that shared another request's response.\n");
+        text.append("# TYPE http_response_cache_coalesced_total counter\n");
+        for (Map.Entry<String, CacheMetrics> cache : caches.entrySet()) {
+            text.append("http_response_cache_coalesced_total{cache=\"").append(escape(cache.getKey())).append("\"} ")
+                    .append(cache.getValue().getCoalesced()).append('\n');
+        }
+
+        text.append("# HELP http_response_cache_not_modified_total Requests answered with 304 Not Modified.\n");
+        text.append("# TYPE http_response_cache_not_modified_total counter\n");
+        for (Map.Entry<String, CacheMetrics> cache : caches.entrySet()) {
+            text.append("http_response_cache_not_modified_total{cache=\"").append(escape(cache.getKey())).append("\"} ")
+                    .append(cache.getValue().getNotModified()).append('\n');
+        }
+
+        text.append("# HELP http_response_cache_evictions_total Responses evicted to keep caches within their size.\n");
+        text.append("# TYPE http_response_cache_evictions_total counter\n");
+        for (Map.Entry<String, CacheMetrics> cache : caches.entrySet()) {
+            text.append("http_response_cache_evictions_total{cache=\"").append(escape(cache.getKey())).append("\"} ")
+                    .append(cache.getValue().getEvictions()).append('\n');
+        }
+
+        text.append("# HELP http_response_cache_entries Responses currently cached.\n");
+        text.append("# TYPE http_response_cache_entries gauge\n");
+        for (Map.Entry<String, CacheMetrics> cache : caches.entrySet()) {
+            text.append("http_response_cache_entries{cache=\"").append(escape(cache.getKey())).append("\"} ")
+                    .append(cache.getValue().getSize()).append('\n');
+        }
+    }
+
+    /** Get a route that responds with the metrics in the Prometheus text exposition format. */
+    public Route route() {
+        return request -> request.respond(b -> b.header("Content-Type", CONTENT_TYPE).ok(toPrometheusText()));
+    }
+}
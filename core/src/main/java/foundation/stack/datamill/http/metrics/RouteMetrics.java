@@ -0,0 +1,107 @@
+package foundation.stack.datamill.http.metrics;
+
+import foundation.stack.datamill.http.Method;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics kept by a {@link MetricsRegistry} for requests with a particular method, handled by a particular route.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RouteMetrics {
+    private final LatencyHistogram durations = new LatencyHistogram();
+    private final LatencyHistogram handlerDurations = new LatencyHistogram();
+    private final LongAdder inFlight = new LongAdder();
+    private final Method method;
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final String route;
+    private final LatencyHistogram routingDurations = new LatencyHistogram();
+    private final LongAdder[] statusClasses = new LongAdder[6];
+    private final LatencyHistogram writeDurations = new LatencyHistogram();
+
+    RouteMetrics(Method method, String route) {
+        this.method = method;
+        this.route = route;
+
+        for (int i = 0; i < statusClasses.length; i++) {
+            statusClasses[i] = new LongAdder();
+        }
+    }
+
+    void started() {
+        inFlight.increment();
+    }
+
+    void completed(int status, long requestBytes, long responseBytes,
+                   long routingNanos, long handlerNanos, long writeNanos) {
+        inFlight.decrement();
+
+        int statusClass = status / 100;
+        statusClasses[statusClass > 0 && statusClass < statusClasses.length ? statusClass : 0].increment();
+
+        this.requestBytes.add(requestBytes);
+        this.responseBytes.add(responseBytes);
+
+        routingDurations.record(routingNanos);
+        handlerDurations.record(handlerNanos);
+        writeDurations.record(writeNanos);
+        durations.record(routingNanos + handlerNanos + writeNanos);
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    /** Get the distribution of the total time taken to route, handle and write responses to requests. */
+    public LatencyHistogram getDurations() {
+        return durations;
+    }
+
+    public LatencyHistogram getHandlerDurations() {
+        return handlerDurations;
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    public long getRequests() {
+        long requests = 0;
+        for (LongAdder statusClass : statusClasses) {
+            requests += statusClass.sum();
+        }
+
+        return requests;
+    }
+
+    /**
+     * Get the number of completed requests with a status in the specified class.
+     *
+     * @param statusClass The first digit of the status codes (1 to 5), or 0 for requests that were not responded to.
+     */
+    public long getRequests(int statusClass) {
+        return statusClass >= 0 && statusClass < statusClasses.length ? statusClasses[statusClass].sum() : 0;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    public LatencyHistogram getRoutingDurations() {
+        return routingDurations;
+    }
+
+    public LatencyHistogram getWriteDurations() {
+        return writeDurations;
+    }
+}
@@ -0,0 +1,60 @@
+package foundation.stack.datamill.http.metrics;
+
+import foundation.stack.datamill.http.Method;
+
+/**
+ * <p>
+ * Receives metrics about the connections and requests handled by a {@link foundation.stack.datamill.http.Server}. Set an
+ * implementation on a server using {@link foundation.stack.datamill.http.ServerOptions#metrics(ServerMetrics)} - use a
+ * {@link MetricsRegistry} to keep metrics in memory and expose them in the Prometheus text format, or implement this
+ * interface to forward metrics to another metrics library.
+ * </p>
+ * <p>
+ * Requests are identified by their method, and by the URI template of the route that handled them (such as
+ * /users/{id}) rather than the request URI, so that the number of distinct routes stays bounded. Requests that were
+ * not handled by a route with a URI template are reported with the route {@link #OTHER_ROUTE}.
+ * </p>
+ * <p>
+ * Methods are called on the threads handling requests, including the server's event loop threads, so
+ * implementations must be thread-safe and must not block.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public interface ServerMetrics {
+    /** The route reported for requests that were not handled by a route with a URI template. */
+    String OTHER_ROUTE = "other";
+
+    /**
+     * Called when a request has been routed, and is being handled. Every call is followed by a call to
+     * {@link #requestCompleted}, with the same method and route.
+     */
+    void requestStarted(Method method, String route);
+
+    /**
+     * Called once the response to a request has been written, or the connection was closed before it could be.
+     *
+     * @param method The request method.
+     * @param route The URI template of the route that handled the request, or {@link #OTHER_ROUTE}.
+     * @param status The response status code, or 0 if the connection was closed before a response was started.
+     * @param requestBytes The number of request body bytes received.
+     * @param responseBytes The number of response body bytes sent, before any compression.
+     * @param routingNanos The time taken to find the route for the request.
+     * @param handlerNanos The time taken by the route to produce a response.
+     * @param writeNanos The time taken to write the response to the connection.
+     */
+    void requestCompleted(Method method, String route, int status, long requestBytes, long responseBytes,
+                          long routingNanos, long handlerNanos, long writeNanos);
+
+    /** Called when a client connection has been accepted by the server. */
+    default void connectionOpened() {
+    }
+
+    /**
+     * Called when a client connection has been closed. Every call to {@link #connectionOpened()} is followed by a call
+     * to this, except that connections refused because the server has too many connections are only reported as
+     * closed, with the reason {@link ConnectionCloseReason#REFUSED}.
+     */
+    default void connectionClosed(ConnectionCloseReason reason) {
+    }
+}
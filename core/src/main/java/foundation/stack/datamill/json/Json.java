@@ -20,4 +20,16 @@ public interface Json {
             return json;
         };
     }
+
+    static <T> Deserializer<JsonNodeObject, T> nodeDeserializer(DeserializationStrategy<T> strategy) {
+        return json -> strategy.deserialize(json);
+    }
+
+    static <T> Serializer<T, JsonNodeObject> nodeSerializer(SerializationStrategy<T> strategy) {
+        return o -> {
+            JsonNodeObject json = new JsonNodeObject();
+            strategy.serialize(json, o);
+            return json;
+        };
+    }
 }
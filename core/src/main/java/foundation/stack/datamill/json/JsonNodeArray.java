@@ -0,0 +1,189 @@
+package foundation.stack.datamill.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import foundation.stack.datamill.values.ReflectableValue;
+import foundation.stack.datamill.values.Value;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A JSON array backed by a Jackson tree, holding {@link JsonNodeObject}s - the counterpart of {@link JsonArray}.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class JsonNodeArray implements Json, ReflectableValue {
+    final ArrayNode array;
+
+    public JsonNodeArray() {
+        array = JsonNodes.factory.arrayNode();
+    }
+
+    public JsonNodeArray(String json) {
+        array = JsonNodes.parseArray(json);
+    }
+
+    JsonNodeArray(ArrayNode array) {
+        this.array = array;
+    }
+
+    public JsonNodeArray(List<JsonNodeObject> values) {
+        array = JsonNodes.factory.arrayNode();
+        for (JsonNodeObject value : values) {
+            array.add(value.object);
+        }
+    }
+
+    public JsonNodeArray(String[] values) {
+        array = JsonNodes.factory.arrayNode();
+        for (String value : values) {
+            array.add(value);
+        }
+    }
+
+    public JsonNodeArray add(JsonNodeObject value) {
+        array.add(value.object);
+        return this;
+    }
+
+    @Override
+    public boolean asBoolean() {
+        throw new JsonException("A JSON array cannot be converted to a boolean!");
+    }
+
+    @Override
+    public byte asByte() {
+        throw new JsonException("A JSON array cannot be converted to a byte!");
+    }
+
+    @Override
+    public byte[] asByteArray() {
+        return asString().getBytes();
+    }
+
+    @Override
+    public char asCharacter() {
+        throw new JsonException("A JSON array cannot be converted to a character!");
+    }
+
+    @Override
+    public float asFloat() {
+        throw new JsonException("A JSON array cannot be converted to a float!");
+    }
+
+    @Override
+    public int asInteger() {
+        throw new JsonException("A JSON array cannot be converted to an integer!");
+    }
+
+    @Override
+    public double asDouble() {
+        throw new JsonException("A JSON array cannot be converted to a double!");
+    }
+
+    @Override
+    public LocalDateTime asLocalDateTime() {
+        throw new JsonException("A JSON array cannot be converted to a LocalDateTime!");
+    }
+
+    @Override
+    public long asLong() {
+        throw new JsonException("A JSON array cannot be converted to a long!");
+    }
+
+    @Override
+    public short asShort() {
+        throw new JsonException("A JSON array cannot be converted to a short!");
+    }
+
+    @Override
+    public String asString() {
+        return JsonNodes.write(array);
+    }
+
+    @Override
+    public Object asObject(Class<?> type) {
+        if (type == String.class) {
+            return asString();
+        }
+
+        return this;
+    }
+
+    public List<JsonNodeObject> asJsonObjects() {
+        ArrayList<JsonNodeObject> objects = new ArrayList<>(array.size());
+        for (JsonNode element : array) {
+            if (!element.isObject()) {
+                throw new JsonException("Array element is not a JSON object!");
+            }
+
+            objects.add(new JsonNodeObject((ObjectNode) element));
+        }
+
+        return objects;
+    }
+
+    @Override
+    public boolean isBoolean() {
+        return false;
+    }
+
+    @Override
+    public boolean isByte() {
+        return false;
+    }
+
+    @Override
+    public boolean isCharacter() {
+        return false;
+    }
+
+    @Override
+    public boolean isDouble() {
+        return false;
+    }
+
+    @Override
+    public boolean isFloat() {
+        return false;
+    }
+
+    @Override
+    public boolean isInteger() {
+        return false;
+    }
+
+    @Override
+    public boolean isLong() {
+        return false;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return false;
+    }
+
+    @Override
+    public boolean isShort() {
+        return false;
+    }
+
+    @Override
+    public boolean isString() {
+        return false;
+    }
+
+    @Override
+    public <T> T map(Function<Value, T> mapper) {
+        return mapper.apply(this);
+    }
+
+    @Override
+    public String toString() {
+        return asString();
+    }
+}
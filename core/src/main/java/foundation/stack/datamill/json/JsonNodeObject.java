@@ -0,0 +1,566 @@
+package foundation.stack.datamill.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import foundation.stack.datamill.reflection.Member;
+import foundation.stack.datamill.reflection.impl.TypeSwitch;
+import foundation.stack.datamill.serialization.DeepStructuredInput;
+import foundation.stack.datamill.serialization.DeserializationStrategy;
+import foundation.stack.datamill.serialization.SerializationStrategy;
+import foundation.stack.datamill.serialization.StructuredOutput;
+import foundation.stack.datamill.values.ReflectableValue;
+import foundation.stack.datamill.values.Value;
+import rx.functions.Action1;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * A JSON object backed by a Jackson tree, rather than by an org.json object as {@link JsonObject} is. It offers the
+ * same API as {@link JsonObject}, and converts properties the same way, but it is much cheaper to parse and write
+ * out - numbers are held unboxed in their nodes, and each typed read of a property looks the property up only once.
+ * </p>
+ * <p>
+ * Like {@link JsonObject}, putting a null value removes the property.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class JsonNodeObject implements Json, ReflectableValue, StructuredOutput<JsonNodeObject>, DeepStructuredInput {
+    private static final TypeSwitch<JsonNode, JsonNodeProperty, Object> propertyAsObjectSwitch =
+            new TypeSwitch<JsonNode, JsonNodeProperty, Object>() {
+                @Override
+                protected Object caseBoolean(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asBoolean() : null;
+                }
+
+                @Override
+                protected Object caseByte(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asByte() : null;
+                }
+
+                @Override
+                protected Object caseCharacter(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asCharacter() : null;
+                }
+
+                @Override
+                protected Object caseShort(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asShort() : null;
+                }
+
+                @Override
+                protected Object caseInteger(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asInteger() : null;
+                }
+
+                @Override
+                protected Object caseLong(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asLong() : null;
+                }
+
+                @Override
+                protected Object caseFloat(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asFloat() : null;
+                }
+
+                @Override
+                protected Object caseDouble(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asDouble() : null;
+                }
+
+                @Override
+                protected Object caseString(JsonNode value1, JsonNodeProperty value2) {
+                    return isPresent(value1) ? value2.asString() : null;
+                }
+
+                @Override
+                protected Object caseLocalDateTime(JsonNode value1, JsonNodeProperty value2) {
+                    return value2.asLocalDateTime();
+                }
+
+                @Override
+                protected Object caseByteArray(JsonNode value1, JsonNodeProperty value2) {
+                    return value1 != null ? value2.asByteArray() : null;
+                }
+
+                @Override
+                protected Object defaultCase(JsonNode value1, JsonNodeProperty value2) {
+                    return value2.asJson();
+                }
+            };
+
+    private static boolean isPresent(JsonNode node) {
+        return node != null && !node.isNull();
+    }
+
+    private static Double parseNumber(String text) {
+        try {
+            return Double.valueOf(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    final ObjectNode object;
+
+    JsonNodeObject(ObjectNode object) {
+        this.object = object;
+    }
+
+    public JsonNodeObject() {
+        object = JsonNodes.factory.objectNode();
+    }
+
+    public JsonNodeObject(String json) {
+        object = JsonNodes.parseObject(json);
+    }
+
+    public JsonNodeObject(Map<String, Object> values) {
+        object = JsonNodes.toObjectNode(values);
+    }
+
+    @Override
+    public boolean asBoolean() {
+        throw new JsonException("A JSON object cannot be converted to a boolean!");
+    }
+
+    @Override
+    public byte asByte() {
+        throw new JsonException("A JSON object cannot be converted to a byte!");
+    }
+
+    @Override
+    public byte[] asByteArray() {
+        return asString().getBytes();
+    }
+
+    @Override
+    public char asCharacter() {
+        throw new JsonException("A JSON object cannot be converted to a character!");
+    }
+
+    @Override
+    public float asFloat() {
+        throw new JsonException("A JSON object cannot be converted to a float!");
+    }
+
+    @Override
+    public int asInteger() {
+        throw new JsonException("A JSON object cannot be converted to an integer!");
+    }
+
+    @Override
+    public double asDouble() {
+        throw new JsonException("A JSON object cannot be converted to a double!");
+    }
+
+    @Override
+    public LocalDateTime asLocalDateTime() {
+        throw new JsonException("A JSON object cannot be converted to a LocalDateTime!");
+    }
+
+    @Override
+    public long asLong() {
+        throw new JsonException("A JSON object cannot be converted to a long!");
+    }
+
+    @Override
+    public Object asObject(Class<?> type) {
+        if (type == String.class) {
+            return asString();
+        }
+
+        return this;
+    }
+
+    @Override
+    public short asShort() {
+        throw new JsonException("A JSON object cannot be converted to a short!");
+    }
+
+    @Override
+    public String asString() {
+        return JsonNodes.write(object);
+    }
+
+    @Override
+    public DeepStructuredInput forEach(String name, Action1<Value> action) {
+        JsonNode child = object.get(name);
+        if (child != null && child.isArray()) {
+            for (JsonNode element : child) {
+                action.call(new JsonNodeProperty(element));
+            }
+        } else {
+            action.call(new JsonNodeProperty(child));
+        }
+
+        return this;
+    }
+
+    @Override
+    public <T> DeepStructuredInput forEach(String name, DeserializationStrategy<T> strategy, Action1<T> action) {
+        JsonNode child = object.get(name);
+        if (child != null) {
+            if (child.isObject()) {
+                action.call(strategy.deserialize(new JsonNodeObject((ObjectNode) child)));
+            } else if (child.isArray()) {
+                for (JsonNode element : child) {
+                    if (!element.isObject()) {
+                        throw new JsonException("Array element is not a JSON object!");
+                    }
+
+                    action.call(strategy.deserialize(new JsonNodeObject((ObjectNode) element)));
+                }
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public JsonNodeProperty get(String property) {
+        return new JsonNodeProperty(object.get(property));
+    }
+
+    @Override
+    public JsonNodeProperty get(Member member) {
+        return get(member.name());
+    }
+
+    @Override
+    public <T> T get(String name, DeserializationStrategy<T> strategy) {
+        JsonNode child = object.get(name);
+        if (child != null && child.isObject()) {
+            return strategy.deserialize(new JsonNodeObject((ObjectNode) child));
+        }
+
+        return null;
+    }
+
+    @Override
+    public boolean isBoolean() {
+        return false;
+    }
+
+    @Override
+    public boolean isByte() {
+        return false;
+    }
+
+    @Override
+    public boolean isCharacter() {
+        return false;
+    }
+
+    @Override
+    public boolean isDouble() {
+        return false;
+    }
+
+    @Override
+    public boolean isFloat() {
+        return false;
+    }
+
+    @Override
+    public boolean isInteger() {
+        return false;
+    }
+
+    @Override
+    public boolean isLong() {
+        return false;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return false;
+    }
+
+    @Override
+    public boolean isShort() {
+        return false;
+    }
+
+    @Override
+    public boolean isString() {
+        return false;
+    }
+
+    @Override
+    public <T> T map(Function<Value, T> mapper) {
+        return mapper.apply(this);
+    }
+
+    private JsonNodeObject set(String key, JsonNode node) {
+        if (node == null || node.isNull()) {
+            object.remove(key);
+        } else {
+            object.set(key, node);
+        }
+
+        return this;
+    }
+
+    @Override
+    public <T> JsonNodeObject put(String key, T value) {
+        return set(key, value != null ? JsonNodes.toNode(value) : null);
+    }
+
+    @Override
+    public <T> JsonNodeObject put(String key, T value, SerializationStrategy<T> strategy) {
+        if (value != null) {
+            JsonNodeObject serialized = (JsonNodeObject) strategy.serialize(new JsonNodeObject(), value);
+            if (serialized != null) {
+                object.set(key, serialized.object);
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public <T> JsonNodeObject put(String key, Iterable<T> values, SerializationStrategy<T> strategy) {
+        if (values != null) {
+            ArrayNode array = object.putArray(key);
+            for (T value : values) {
+                JsonNodeObject serialized = (JsonNodeObject) strategy.serialize(new JsonNodeObject(), value);
+                if (serialized != null) {
+                    array.add(serialized.object);
+                } else {
+                    array.addNull();
+                }
+            }
+        }
+
+        return this;
+    }
+
+    public JsonNodeObject put(String key, JsonNodeObject object) {
+        return set(key, object != null ? object.object : null);
+    }
+
+    public JsonNodeObject put(String key, JsonNodeArray array) {
+        return set(key, array != null ? array.array : null);
+    }
+
+    @Override
+    public JsonNodeObject put(String name, Object[] value) {
+        return set(name, value != null ? JsonNodes.toArrayNode(Arrays.asList(value)) : null);
+    }
+
+    @Override
+    public JsonNodeObject put(String name, Map<String, ?> value) {
+        return set(name, value != null ? JsonNodes.toObjectNode(value) : null);
+    }
+
+    public Set<String> propertyNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (Iterator<String> iterator = object.fieldNames(); iterator.hasNext(); ) {
+            names.add(iterator.next());
+        }
+
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return asString();
+    }
+
+    /**
+     * A property of a JSON object, or an element of a JSON array. Missing and null values convert to the same
+     * defaults as they do for {@link JsonObject} properties.
+     */
+    public static class JsonNodeProperty implements Value {
+        private final JsonNode node;
+
+        JsonNodeProperty(JsonNode node) {
+            this.node = node;
+        }
+
+        private int requireInteger() {
+            if (node != null) {
+                if (node.isNumber()) {
+                    return node.intValue();
+                } else if (node.isTextual()) {
+                    Double parsed = parseNumber(node.textValue());
+                    if (parsed != null) {
+                        return parsed.intValue();
+                    }
+                }
+            }
+
+            throw new JsonException("Property cannot be converted to an integer!");
+        }
+
+        private double optDouble() {
+            if (node != null) {
+                if (node.isNumber()) {
+                    return node.doubleValue();
+                } else if (node.isTextual()) {
+                    Double parsed = parseNumber(node.textValue());
+                    if (parsed != null) {
+                        return parsed;
+                    }
+                }
+            }
+
+            return Double.NaN;
+        }
+
+        private long optLong() {
+            if (node != null) {
+                if (node.isNumber()) {
+                    return node.longValue();
+                } else if (node.isTextual()) {
+                    Double parsed = parseNumber(node.textValue());
+                    if (parsed != null) {
+                        return parsed.longValue();
+                    }
+                }
+            }
+
+            return 0;
+        }
+
+        @Override
+        public boolean asBoolean() {
+            if (node != null) {
+                if (node.isBoolean()) {
+                    return node.booleanValue();
+                } else if (node.isTextual()) {
+                    if ("true".equalsIgnoreCase(node.textValue())) {
+                        return true;
+                    } else if ("false".equalsIgnoreCase(node.textValue())) {
+                        return false;
+                    }
+                }
+            }
+
+            throw new JsonException("Property cannot be converted to a boolean!");
+        }
+
+        @Override
+        public byte asByte() {
+            return (byte) requireInteger();
+        }
+
+        @Override
+        public byte[] asByteArray() {
+            if (node != null && node.isArray()) {
+                byte[] bytes = new byte[node.size()];
+                for (int i = 0; i < bytes.length; i++) {
+                    JsonNode element = node.get(i);
+                    if (!element.isNumber()) {
+                        throw new JsonException("Array element cannot be converted to a byte!");
+                    }
+
+                    bytes[i] = (byte) element.intValue();
+                }
+
+                return bytes;
+            }
+
+            return asString().getBytes();
+        }
+
+        @Override
+        public char asCharacter() {
+            if (node != null && node.isNumber()) {
+                return (char) node.intValue();
+            } else if (node != null && node.isTextual()) {
+                String value = node.textValue();
+                Double parsed = parseNumber(value);
+                if (parsed != null) {
+                    return (char) parsed.intValue();
+                } else if (value.length() == 1) {
+                    return value.charAt(0);
+                }
+            }
+
+            throw new JsonException("Property cannot be converted to a character!");
+        }
+
+        @Override
+        public double asDouble() {
+            return optDouble();
+        }
+
+        @Override
+        public float asFloat() {
+            return (float) optDouble();
+        }
+
+        @Override
+        public int asInteger() {
+            return (int) optLong();
+        }
+
+        public JsonNodeArray asJsonArray() {
+            if (node != null && node.isArray()) {
+                return new JsonNodeArray((ArrayNode) node);
+            }
+
+            return null;
+        }
+
+        public JsonNodeObject asJson() {
+            if (node != null && node.isObject()) {
+                return new JsonNodeObject((ObjectNode) node);
+            }
+
+            return null;
+        }
+
+        @Override
+        public LocalDateTime asLocalDateTime() {
+            if (isPresent(node)) {
+                return LocalDateTime.parse(asString());
+            }
+
+            return null;
+        }
+
+        @Override
+        public long asLong() {
+            return optLong();
+        }
+
+        @Override
+        public Object asObject(Class<?> type) {
+            return propertyAsObjectSwitch.doSwitch(type, node, this);
+        }
+
+        @Override
+        public short asShort() {
+            return (short) (int) optLong();
+        }
+
+        @Override
+        public String asString() {
+            if (!isPresent(node)) {
+                return "";
+            } else if (node.isTextual()) {
+                return node.textValue();
+            } else if (node.isContainerNode()) {
+                return JsonNodes.write(node);
+            }
+
+            return node.asText();
+        }
+
+        @Override
+        public <T> T map(Function<Value, T> mapper) {
+            return mapper.apply(this);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package foundation.stack.datamill.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Parses, writes and builds the Jackson trees behind {@link JsonNodeObject} and {@link JsonNodeArray}, and creates the
+ * generators {@link JsonWriter}s write with. Values are converted to nodes the same way {@link JsonObject} writes them
+ * out - maps become objects, collections and arrays become arrays, and anything that isn't a number, boolean or JSON
+ * value is written as its string form.
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+final class JsonNodes {
+    static final JsonNodeFactory factory = JsonNodeFactory.instance;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final ObjectReader reader = mapper.readerFor(JsonNode.class);
+    private static final ObjectWriter writer = mapper.writer();
+
+    private JsonNodes() {
+    }
+
+    static JsonNode parse(String json) {
+        try {
+            JsonNode node = reader.readValue(json);
+            if (node == null) {
+                throw new JsonException("No JSON value found!");
+            }
+
+            return node;
+        } catch (IOException e) {
+            throw new JsonException("Invalid JSON!", e);
+        }
+    }
+
+    static ObjectNode parseObject(String json) {
+        JsonNode node = parse(json);
+        if (!node.isObject()) {
+            throw new JsonException("JSON text is not an object!");
+        }
+
+        return (ObjectNode) node;
+    }
+
+    static ArrayNode parseArray(String json) {
+        JsonNode node = parse(json);
+        if (!node.isArray()) {
+            throw new JsonException("JSON text is not an array!");
+        }
+
+        return (ArrayNode) node;
+    }
+
+    static JsonGenerator generator(OutputStream stream) throws IOException {
+        // Generators from the mapper's factory can also write trees
+        return mapper.getFactory().createGenerator(stream, JsonEncoding.UTF8);
+    }
+
+    static String write(JsonNode node) {
+        try {
+            return writer.writeValueAsString(node);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+
+    static ObjectNode toObjectNode(Map<?, ?> values) {
+        ObjectNode object = factory.objectNode();
+        if (values != null) {
+            for (Map.Entry<?, ?> entry : values.entrySet()) {
+                if (entry.getValue() != null) {
+                    object.set(String.valueOf(entry.getKey()), toNode(entry.getValue()));
+                }
+            }
+        }
+
+        return object;
+    }
+
+    static ArrayNode toArrayNode(Iterable<?> values) {
+        ArrayNode array = factory.arrayNode();
+        for (Object value : values) {
+            array.add(toNode(value));
+        }
+
+        return array;
+    }
+
+    static JsonNode toNode(Object value) {
+        if (value == null) {
+            return factory.nullNode();
+        } else if (value instanceof String) {
+            return factory.textNode((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return factory.numberNode(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            return factory.numberNode((Long) value);
+        } else if (value instanceof Double) {
+            return factory.numberNode((Double) value);
+        } else if (value instanceof Float) {
+            return factory.numberNode((Float) value);
+        } else if (value instanceof BigDecimal) {
+            return factory.numberNode((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            return factory.numberNode((BigInteger) value);
+        } else if (value instanceof Boolean) {
+            return factory.booleanNode((Boolean) value);
+        } else if (value instanceof JsonNodeObject) {
+            return ((JsonNodeObject) value).object;
+        } else if (value instanceof JsonNodeArray) {
+            return ((JsonNodeArray) value).array;
+        } else if (value instanceof JsonNode) {
+            return (JsonNode) value;
+        } else if (value instanceof JsonObject || value instanceof JsonArray) {
+            return parse(value.toString());
+        } else if (value instanceof Map) {
+            return toObjectNode((Map<?, ?>) value);
+        } else if (value instanceof Iterable) {
+            return toArrayNode((Iterable<?>) value);
+        } else if (value.getClass().isArray()) {
+            ArrayNode array = factory.arrayNode();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                array.add(toNode(Array.get(value, i)));
+            }
+
+            return array;
+        }
+
+        return factory.textNode(value.toString());
+    }
+}
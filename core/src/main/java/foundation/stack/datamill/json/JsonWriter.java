@@ -0,0 +1,273 @@
+package foundation.stack.datamill.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import foundation.stack.datamill.serialization.SerializationStrategy;
+import foundation.stack.datamill.serialization.StructuredOutput;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * <p>
+ * A {@link StructuredOutput} that writes JSON straight to a stream as properties are put, rather than building up a
+ * tree of JSON objects to be converted to a string afterwards. Objects serialized using {@link SerializationStrategy}s
+ * are written one after the other, so a large list of them is never held in memory in any form other than its UTF-8
+ * bytes:
+ * </p>
+ * <pre>
+ * new JsonWriter(stream).values(entities, strategy).close();
+ * </pre>
+ * <p>
+ * Properties are written the same way {@link JsonObject} writes them out - putting a null value leaves the property
+ * out, maps are written as objects, collections and arrays as arrays, and anything that isn't a number, boolean or
+ * JSON value is written as its string form. As properties are written as they are put, a property that is put twice
+ * appears twice. Since they have been written out by the time they return, the output returned by serialization
+ * strategies is ignored. Writing fails with {@link JsonException}s.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class JsonWriter implements StructuredOutput<JsonWriter>, Closeable, Flushable {
+    private final JsonGenerator generator;
+
+    public JsonWriter(OutputStream stream) {
+        try {
+            generator = JsonNodes.generator(stream);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+
+    /** Start writing an object, as the next value. */
+    public JsonWriter beginObject() {
+        try {
+            generator.writeStartObject();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+
+        return this;
+    }
+
+    /** Finish writing the current object. */
+    public JsonWriter endObject() {
+        try {
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+
+        return this;
+    }
+
+    /** Start writing an array, as the next value. */
+    public JsonWriter beginArray() {
+        try {
+            generator.writeStartArray();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+
+        return this;
+    }
+
+    /** Finish writing the current array. */
+    public JsonWriter endArray() {
+        try {
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+
+        return this;
+    }
+
+    /** Write the next value, which may be written as null. */
+    public JsonWriter value(Object value) {
+        try {
+            writeValue(value);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+
+        return this;
+    }
+
+    /** Write an object serialized using the given strategy as the next value, or null if there is no object. */
+    public <T> JsonWriter value(T value, SerializationStrategy<T> strategy) {
+        try {
+            writeObject(value, strategy);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+
+        return this;
+    }
+
+    /** Write an array of objects serialized using the given strategy as the next value. */
+    public <T> JsonWriter values(Iterable<T> values, SerializationStrategy<T> strategy) {
+        try {
+            writeObjects(values, strategy);
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+
+        return this;
+    }
+
+    @Override
+    public <T> JsonWriter put(String name, T value) {
+        if (value != null) {
+            try {
+                generator.writeFieldName(name);
+                writeValue(value);
+            } catch (IOException e) {
+                throw new JsonException(e);
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public <T> JsonWriter put(String name, T value, SerializationStrategy<T> strategy) {
+        if (value != null) {
+            try {
+                generator.writeFieldName(name);
+                writeObject(value, strategy);
+            } catch (IOException e) {
+                throw new JsonException(e);
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public <T> JsonWriter put(String name, Iterable<T> values, SerializationStrategy<T> strategy) {
+        if (values != null) {
+            try {
+                generator.writeFieldName(name);
+                writeObjects(values, strategy);
+            } catch (IOException e) {
+                throw new JsonException(e);
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public JsonWriter put(String name, Object[] value) {
+        return put(name, value != null ? Arrays.asList(value) : null);
+    }
+
+    @Override
+    public JsonWriter put(String name, Map<String, ?> value) {
+        return put(name, (Object) value);
+    }
+
+    private <T> void writeObject(T value, SerializationStrategy<T> strategy) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+            return;
+        }
+
+        generator.writeStartObject();
+        strategy.serialize(this, value);
+        generator.writeEndObject();
+    }
+
+    private <T> void writeObjects(Iterable<T> values, SerializationStrategy<T> strategy) throws IOException {
+        generator.writeStartArray();
+        for (T value : values) {
+            writeObject(value, strategy);
+        }
+
+        generator.writeEndArray();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            generator.writeNumber(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            generator.writeNumber((Long) value);
+        } else if (value instanceof Double) {
+            generator.writeNumber((Double) value);
+        } else if (value instanceof Float) {
+            generator.writeNumber((Float) value);
+        } else if (value instanceof BigDecimal) {
+            generator.writeNumber((BigDecimal) value);
+        } else if (value instanceof BigInteger) {
+            generator.writeNumber((BigInteger) value);
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof JsonNodeObject) {
+            generator.writeTree(((JsonNodeObject) value).object);
+        } else if (value instanceof JsonNodeArray) {
+            generator.writeTree(((JsonNodeArray) value).array);
+        } else if (value instanceof JsonNode) {
+            generator.writeTree((JsonNode) value);
+        } else if (value instanceof JsonObject || value instanceof JsonArray) {
+            generator.writeRawValue(value.toString());
+        } else if (value instanceof Map) {
+            generator.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (entry.getValue() != null) {
+                    generator.writeFieldName(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue());
+                }
+            }
+
+            generator.writeEndObject();
+        } else if (value instanceof Iterable) {
+            generator.writeStartArray();
+            for (Object element : (Iterable<?>) value) {
+                writeValue(element);
+            }
+
+            generator.writeEndArray();
+        } else if (value.getClass().isArray()) {
+            generator.writeStartArray();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                writeValue(Array.get(value, i));
+            }
+
+            generator.writeEndArray();
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            generator.flush();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+
+    /** Finish writing, closing any objects and arrays left open, and close the underlying stream. */
+    @Override
+    public void close() {
+        try {
+            generator.close();
+        } catch (IOException e) {
+            throw new JsonException(e);
+        }
+    }
+}
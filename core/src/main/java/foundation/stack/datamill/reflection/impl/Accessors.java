@@ -0,0 +1,186 @@
+package foundation.stack.datamill.reflection.impl;
+
+import foundation.stack.datamill.reflection.ReflectionException;
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+import org.objenesis.instantiator.ObjectInstantiator;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Creates functions that call getters, setters and constructors. Where possible, the functions are generated classes
+ * that call the methods directly (using {@link LambdaMetafactory}, just as method references are compiled), so that
+ * calling them is as fast as calling the methods in code. Access is checked only once, when a function is created,
+ * rather than on every call as it is when invoking methods reflectively.
+ * </p>
+ * <p>
+ * Methods that the generated classes can't access, such as those of non-public classes or of classes loaded by other
+ * class loaders, are called through method handles instead. Classes without a no-argument constructor are instantiated
+ * without calling a constructor, the same way outlines are.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public final class Accessors {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final Objenesis objenesis = new ObjenesisStd();
+
+    private Accessors() {
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+
+            return lookup.unreflect(method);
+        } catch (IllegalAccessException | SecurityException e) {
+            throw new ReflectionException(e);
+        }
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+
+        if (type.isPrimitive()) {
+            return true;
+        }
+
+        try {
+            // Generated classes resolve the types they use through our class loader
+            return Modifier.isPublic(type.getModifiers()) &&
+                    Class.forName(type.getName(), false, Accessors.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static boolean isGeneratable(Executable executable) {
+        if (!Modifier.isPublic(executable.getModifiers()) || !isVisible(executable.getDeclaringClass())) {
+            return false;
+        }
+
+        for (Class<?> type : executable.getParameterTypes()) {
+            if (!isVisible(type)) {
+                return false;
+            }
+        }
+
+        return !(executable instanceof Method) || isVisible(((Method) executable).getReturnType());
+    }
+
+    private static <F> F generate(Class<?> functionType, String name, MethodType erasedType, MethodHandle handle,
+                                  MethodType instantiatedType, Executable executable) {
+        if (!isGeneratable(executable)) {
+            return null;
+        }
+
+        try {
+            CallSite site = LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(functionType),
+                    erasedType, handle, instantiatedType);
+            // Functional interfaces are generic, but the generated classes can only be checked against their erasures
+            @SuppressWarnings("unchecked")
+            F function = (F) functionType.cast(site.getTarget().invoke());
+            return function;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /** Create a function that calls the given getter on the instance it is applied to. */
+    public static Function<Object, Object> getter(Method getter) {
+        MethodHandle handle = unreflect(getter);
+
+        Function<Object, Object> generated = generate(Function.class, "apply",
+                MethodType.methodType(Object.class, Object.class), handle, handle.type().wrap(), getter);
+        if (generated != null) {
+            return generated;
+        }
+
+        MethodHandle adapted = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return instance -> {
+            try {
+                return adapted.invokeExact(instance);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ReflectionException(e);
+            }
+        };
+    }
+
+    /**
+     * Create a function that calls the given setter on the instance it is applied to, with the given value. Setters
+     * that return values, such as fluent setters, are supported.
+     */
+    public static BiConsumer<Object, Object> setter(Method setter) {
+        MethodHandle handle = unreflect(setter);
+
+        BiConsumer<Object, Object> generated = generate(BiConsumer.class, "accept",
+                MethodType.methodType(void.class, Object.class, Object.class), handle,
+                MethodType.methodType(void.class, setter.getDeclaringClass(), handle.type().wrap().parameterType(1)),
+                setter);
+        if (generated != null) {
+            return generated;
+        }
+
+        MethodHandle adapted = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (instance, value) -> {
+            try {
+                adapted.invokeExact(instance, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new ReflectionException(e);
+            }
+        };
+    }
+
+    /** Create a function that creates instances of the given class. */
+    public static <T> Supplier<T> constructor(Class<T> type) {
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor();
+            if (!constructor.isAccessible()) {
+                constructor.setAccessible(true);
+            }
+
+            MethodHandle handle = lookup.unreflectConstructor(constructor);
+            Supplier<T> generated = generate(Supplier.class, "get", MethodType.methodType(Object.class), handle,
+                    MethodType.methodType(type), constructor);
+            if (generated != null) {
+                return generated;
+            }
+
+            MethodHandle adapted = handle.asType(MethodType.methodType(Object.class));
+            return () -> {
+                try {
+                    return type.cast(adapted.invokeExact());
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new ReflectionException(e);
+                }
+            };
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+            // Instantiated without a constructor below
+        }
+
+        ObjectInstantiator<T> instantiator = objenesis.getInstantiatorOf(type);
+        return instantiator::newInstance;
+    }
+}
@@ -0,0 +1,212 @@
+package foundation.stack.datamill.serialization;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import foundation.stack.datamill.reflection.ReflectionException;
+import foundation.stack.datamill.reflection.impl.Accessors;
+import foundation.stack.datamill.values.Value;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Derives {@link SerializationStrategy}s and {@link DeserializationStrategy}s for bean classes, so that strategies
+ * that simply copy each property of a bean don't need to be written out by hand:
+ * </p>
+ * <pre>
+ * SerializationStrategy&lt;User&gt; serializer = BeanStrategies.CAMEL_CASED.serializer(User.class);
+ * DeserializationStrategy&lt;User&gt; deserializer = BeanStrategies.CAMEL_CASED.deserializer(User.class);
+ * </pre>
+ * <p>
+ * A class is introspected once, the first time strategies are asked for, and its getters, setters and constructor are
+ * bound to generated accessors (see {@link Accessors}). The strategies returned are cached, and are as fast as
+ * strategies written by hand, rather than looking up and reflectively invoking each property the way strategies
+ * built using outlines do.
+ * </p>
+ * <p>
+ * Properties are named the same way outlines name them. Serializers put the value of each property that has a
+ * getter. Deserializers create an instance, without calling a constructor if the class doesn't have a no-argument
+ * constructor, and set each property that has a setter, converting values the same way
+ * {@link foundation.stack.datamill.reflection.Bean#set(java.util.function.Consumer, Value)} does. Properties of types
+ * that values can't be converted to, such as collections or other beans, are left for strategies to handle
+ * explicitly.
+ * </p>
+ *
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class BeanStrategies {
+    public static final BeanStrategies CAMEL_CASED = new BeanStrategies(true);
+    public static final BeanStrategies SNAKE_CASED = new BeanStrategies(false);
+
+    private static final Map<Class<?>, Function<Value, Object>> converters =
+            ImmutableMap.<Class<?>, Function<Value, Object>>builder()
+                    .put(boolean.class, value -> value.asBoolean())
+                    .put(Boolean.class, value -> value != null ? value.asObject(Boolean.class) : null)
+                    .put(byte.class, value -> value.asByte())
+                    .put(Byte.class, value -> value != null ? value.asObject(Byte.class) : null)
+                    .put(char.class, value -> value.asCharacter())
+                    .put(Character.class, value -> value != null ? value.asObject(Character.class) : null)
+                    .put(short.class, value -> value.asShort())
+                    .put(Short.class, value -> value != null ? value.asObject(Short.class) : null)
+                    .put(int.class, value -> value.asInteger())
+                    .put(Integer.class, value -> value != null ? value.asObject(Integer.class) : null)
+                    .put(long.class, value -> value.asLong())
+                    .put(Long.class, value -> value != null ? value.asObject(Long.class) : null)
+                    .put(float.class, value -> value.asFloat())
+                    .put(Float.class, value -> value != null ? value.asObject(Float.class) : null)
+                    .put(double.class, value -> value.asDouble())
+                    .put(Double.class, value -> value != null ? value.asObject(Double.class) : null)
+                    .put(LocalDateTime.class, value -> value != null ? value.asLocalDateTime() : null)
+                    .put(byte[].class, value -> value != null ? value.asByteArray() : null)
+                    .build();
+
+    private static final Function<Value, Object> stringConverter = value -> value != null ? value.asString() : null;
+
+    private static String capitalize(String string) {
+        return Character.toUpperCase(string.charAt(0)) + string.substring(1);
+    }
+
+    private static Function<Value, Object> converter(Class<?> type) {
+        Function<Value, Object> converter = converters.get(type);
+        if (converter == null && type.isAssignableFrom(String.class)) {
+            return stringConverter;
+        }
+
+        return converter;
+    }
+
+    private static Method writeMethod(Class<?> beanClass, PropertyDescriptor descriptor) {
+        Method method = descriptor.getWriteMethod();
+        if (method == null && descriptor.getPropertyType() != null) {
+            // Setters that return values, such as fluent setters, aren't recognized as write methods by introspection
+            try {
+                method = beanClass.getMethod("set" + capitalize(descriptor.getName()), descriptor.getPropertyType());
+            } catch (NoSuchMethodException e) {
+                // The property is read-only, and isn't set when deserializing
+            }
+        }
+
+        return method;
+    }
+
+    private final boolean camelCased;
+    private final LoadingCache<Class<?>, Strategies<?>> strategies =
+            CacheBuilder.newBuilder().build(new CacheLoader<Class<?>, Strategies<?>>() {
+                @Override
+                public Strategies<?> load(Class<?> key) throws Exception {
+                    return new Strategies<>(key);
+                }
+            });
+
+    private BeanStrategies(boolean camelCased) {
+        this.camelCased = camelCased;
+    }
+
+    private <T> Strategies<T> strategies(Class<T> beanClass) {
+        try {
+            // Strategies are cached by the class they were created for
+            @SuppressWarnings("unchecked")
+            Strategies<T> beanStrategies = (Strategies<T>) strategies.get(beanClass);
+            return beanStrategies;
+        } catch (ExecutionException e) {
+            throw new ReflectionException(e.getCause());
+        }
+    }
+
+    /** Get a strategy that puts each readable property of beans of the given class. */
+    public <T> SerializationStrategy<T> serializer(Class<T> beanClass) {
+        return strategies(beanClass).serializer;
+    }
+
+    /** Get a strategy that creates beans of the given class, setting each writable property from the input. */
+    public <T> DeserializationStrategy<T> deserializer(Class<T> beanClass) {
+        return strategies(beanClass).deserializer;
+    }
+
+    private String propertyName(PropertyDescriptor descriptor) {
+        return camelCased ?
+                descriptor.getName() :
+                CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, descriptor.getName());
+    }
+
+    private class Strategies<T> {
+        private final SerializationStrategy<T> serializer;
+        private final DeserializationStrategy<T> deserializer;
+
+        public Strategies(Class<T> beanClass) throws IntrospectionException {
+            List<String> readableNames = new ArrayList<>();
+            List<Function<Object, Object>> getters = new ArrayList<>();
+            List<String> writableNames = new ArrayList<>();
+            List<BiConsumer<Object, Object>> setters = new ArrayList<>();
+            List<Function<Value, Object>> setterConverters = new ArrayList<>();
+
+            BeanInfo beanInfo = Introspector.getBeanInfo(beanClass, Object.class);
+            for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+                String name = propertyName(descriptor);
+
+                Method readMethod = descriptor.getReadMethod();
+                if (readMethod != null) {
+                    readableNames.add(name);
+                    getters.add(Accessors.getter(readMethod));
+                }
+
+                Method writeMethod = writeMethod(beanClass, descriptor);
+                Function<Value, Object> converter = descriptor.getPropertyType() != null ?
+                        converter(descriptor.getPropertyType()) : null;
+                if (writeMethod != null && converter != null) {
+                    writableNames.add(name);
+                    setters.add(Accessors.setter(writeMethod));
+                    setterConverters.add(converter);
+                }
+            }
+
+            serializer = serializer(ImmutableList.copyOf(readableNames), ImmutableList.copyOf(getters));
+            deserializer = deserializer(
+                    Accessors.constructor(beanClass),
+                    ImmutableList.copyOf(writableNames),
+                    ImmutableList.copyOf(setters),
+                    ImmutableList.copyOf(setterConverters));
+        }
+
+        private SerializationStrategy<T> serializer(List<String> names, List<Function<Object, Object>> getters) {
+            return (target, source) -> {
+                for (int i = 0; i < names.size(); i++) {
+                    target.put(names.get(i), getters.get(i).apply(source));
+                }
+
+                return target;
+            };
+        }
+
+        private DeserializationStrategy<T> deserializer(
+                Supplier<T> constructor,
+                List<String> names,
+                List<BiConsumer<Object, Object>> setters,
+                List<Function<Value, Object>> converters) {
+            return source -> {
+                T instance = constructor.get();
+                for (int i = 0; i < names.size(); i++) {
+                    setters.get(i).accept(instance, converters.get(i).apply(source.get(names.get(i))));
+                }
+
+                return instance;
+            };
+        }
+    }
+}
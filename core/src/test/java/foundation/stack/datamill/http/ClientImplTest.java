@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.function.Function;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -72,6 +73,16 @@ public class ClientImplTest {
                 Method.DELETE, "http://sample.com", ImmutableMap.of("Authorization", "Bearer token"));
     }
 
+    @Test
+    public void defaultClientsSharePool() throws Exception {
+        TestClientImpl first = createClientAndRequest(c -> c.get("http://sample.com"));
+        first.close();
+        TestClientImpl second = createClientAndRequest(c -> c.get("http://sample.com"));
+        second.close();
+
+        assertThat(second.httpClient, sameInstance(first.httpClient));
+    }
+
     @Test
     public void getRequests() throws Exception {
         verifyConnectionSetup(createClientAndRequest(c -> c.get("http://sample.com")), Method.GET, "http://sample.com", null);
@@ -208,6 +219,7 @@ public class ClientImplTest {
     }
 
     private class TestClientImpl extends ClientImpl {
+        private CloseableHttpClient httpClient;
         private PipedOutputStream spiedPipedOutputStream;
         private HttpUriRequest request;
 
@@ -227,6 +239,7 @@ public class ClientImplTest {
 
         @Override
         protected CloseableHttpResponse doExecute(CloseableHttpClient httpClient, HttpUriRequest request) throws IOException {
+            this.httpClient = httpClient;
             CloseableHttpResponse response = mock(CloseableHttpResponse.class);
             when(response.getAllHeaders()).thenReturn(new Header[0]);
             when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
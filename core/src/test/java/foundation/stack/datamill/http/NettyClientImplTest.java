@@ -0,0 +1,122 @@
+package foundation.stack.datamill.http;
+
+import foundation.stack.datamill.http.impl.BytesBody;
+import foundation.stack.datamill.http.impl.NettyClientImpl;
+import foundation.stack.datamill.http.impl.StreamedChunksBody;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Observable;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class NettyClientImplTest {
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private NettyClientImpl client;
+    private String baseUri;
+    private Server server;
+
+    @Before
+    public void startServer() throws IOException {
+        int port = findFreePort();
+        baseUri = "http://localhost:" + port;
+        server = new Server(rb -> rb
+                .ifMethodAndUriMatch(Method.GET, "/hello/{name}", r -> r.respond(b -> b
+                        .header("X-Greeting", "hello")
+                        .ok("Hello " + r.uriParameter("name").asString() + " " +
+                                r.firstQueryParameter("suffix").asString())))
+                .elseIfMethodAndUriMatch(Method.POST, "/count", r -> r.body().asChunks()
+                        .reduce(0, (length, chunk) -> length + chunk.length)
+                        .flatMap(length -> r.respond(b -> b.ok(String.valueOf(length)))))
+                .elseIfMethodAndUriMatch(Method.GET, "/slow", r -> Observable.timer(2, TimeUnit.SECONDS)
+                        .flatMap(tick -> r.respond(b -> b.ok("slow"))))
+                .elseIfMethodAndUriMatch(Method.HEAD, "/hello/{name}", r -> r.respond(b -> b.ok()))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .listen(port);
+
+        client = new NettyClientImpl(new ClientOptions().maxConnectionsPerRoute(4));
+    }
+
+    @After
+    public void stopServer() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void getRequest() {
+        Response response = client.get(rb -> rb.uri(baseUri + "/hello/{name}")
+                .uriParameter("name", "world")
+                .queryParameter("suffix", "!")
+                .build()).toBlocking().last();
+
+        assertEquals(Status.OK, response.status());
+        assertEquals("hello", response.headers().get("X-Greeting").iterator().next());
+        assertEquals("Hello world !", response.body().get().asString().toBlocking().last());
+    }
+
+    @Test
+    public void headRequest() {
+        Response response = client.request(rb -> rb.method(Method.HEAD).uri(baseUri + "/hello/world").build())
+                .toBlocking().last();
+        assertEquals(Status.OK, response.status());
+        assertEquals(0, (int) response.body().get().asBytes().toBlocking().last().length);
+    }
+
+    @Test
+    public void requestBodyStreamed() {
+        byte[] chunk = new byte[64 * 1024];
+        Body body = new StreamedChunksBody(Observable.range(0, 64).map(i -> ByteBuffer.wrap(chunk)),
+                StandardCharsets.UTF_8);
+
+        Response response = client.post(baseUri + "/count", body).toBlocking().last();
+        assertEquals(String.valueOf(64 * chunk.length), response.body().get().asString().toBlocking().last());
+
+        response = client.post(baseUri + "/count", new BytesBody(new byte[1000])).toBlocking().last();
+        assertEquals("1000", response.body().get().asString().toBlocking().last());
+    }
+
+    @Test
+    public void concurrentRequestsShareLimitedConnections() {
+        List<String> responses = Observable.range(0, 50)
+                .flatMap(i -> client.get(baseUri + "/hello/" + i + "?suffix=.")
+                        .flatMap(response -> response.body().get().asString()))
+                .toList()
+                .toBlocking().last();
+
+        assertEquals(50, responses.size());
+        for (int i = 0; i < 50; i++) {
+            assertTrue(responses.contains("Hello " + i + " ."));
+        }
+    }
+
+    @Test
+    public void readTimeout() {
+        try {
+            client.get(rb -> rb.uri(baseUri + "/slow").readTimeout(200).build()).toBlocking().last();
+            fail("Expected the request to time out");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+
+        Response response = client.get(baseUri + "/hello/again?suffix=!").toBlocking().last();
+        assertEquals("Hello again !", response.body().get().asString().toBlocking().last());
+    }
+}
@@ -0,0 +1,75 @@
+package foundation.stack.datamill.http;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RequestExecutorsTest {
+    @Test
+    public void boundedExecutorQueuesAndRejects() throws Exception {
+        RequestExecutor executor = RequestExecutors.bounded(1, 2);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+            }
+        }, null);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, executor.activeCount());
+
+        executor.execute(() -> {}, null);
+        executor.execute(() -> {}, null);
+        assertEquals(2, executor.queueDepth());
+
+        try {
+            executor.execute(() -> {}, null);
+            fail("Expected the saturated executor to reject the task");
+        } catch (RejectedExecutionException e) {
+        }
+
+        assertEquals(1, executor.rejectedCount());
+
+        blocker.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void eventLoopExecutorRunsOnEventLoop() {
+        RequestExecutor executor = RequestExecutors.eventLoop();
+        assertTrue(executor.runsOnEventLoop());
+
+        boolean[] ran = {false};
+        executor.execute(() -> ran[0] = true, Runnable::run);
+
+        assertTrue(ran[0]);
+        assertEquals(0, executor.activeCount());
+        assertEquals(0, executor.rejectedCount());
+    }
+
+    @Test
+    public void virtualThreadsExecutorRunsTasks() throws Exception {
+        RequestExecutor executor = RequestExecutors.virtualThreads();
+        assertFalse(executor.runsOnEventLoop());
+
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.execute(ran::countDown, null);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
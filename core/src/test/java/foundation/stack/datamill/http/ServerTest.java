@@ -0,0 +1,472 @@
+package foundation.stack.datamill.http;
+
+import foundation.stack.datamill.http.builder.RouteBuilder;
+import foundation.stack.datamill.http.impl.BytesBody;
+import foundation.stack.datamill.http.impl.ClientImpl;
+import foundation.stack.datamill.http.impl.NioServerTransport;
+import foundation.stack.datamill.http.impl.ServerTransport;
+import foundation.stack.datamill.http.metrics.MetricsRegistry;
+import foundation.stack.datamill.http.metrics.RouteMetrics;
+import foundation.stack.datamill.http.metrics.ServerMetrics;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpClientUpgradeHandler;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.DelegatingDecompressorFrameListener;
+import io.netty.handler.codec.http2.Http2ClientUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandler;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import org.apache.http.pool.PoolStats;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ServerTest {
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void assertServerResponds(ServerOptions options) throws IOException {
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/test", r -> r.respond(b -> b.ok("test")))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .options(options)
+                .listen(port);
+
+        try {
+            Response response = new ClientImpl().get("http://localhost:" + port + "/test").toBlocking().last();
+            assertEquals(Status.OK, response.status());
+            assertEquals("test", response.body().get().asString().toBlocking().last());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void listenWithNioTransport() throws Exception {
+        assertServerResponds(new ServerOptions()
+                .nativeTransport(false)
+                .backlog(1024)
+                .idleTimeout(10000)
+                .receiveBufferSize(65536)
+                .sendBufferSize(65536)
+                .workerThreads(2)
+                .writeBufferWaterMark(32 * 1024, 64 * 1024));
+    }
+
+    @Test
+    public void listenWithMultipleAcceptors() throws Exception {
+        assertServerResponds(new ServerOptions()
+                .acceptorThreads(2)
+                .reusePort(true));
+    }
+
+    @Test
+    public void listenAgainAfterStopping() throws Exception {
+        int port = findFreePort();
+        RequestExecutor requestExecutor = RequestExecutors.bounded(4, 16);
+        Function<RouteBuilder, Route> routes = rb -> rb.any(r -> r.respond(b -> b.ok("test")))
+                .orElse(r -> r.respond(b -> b.notFound()));
+        for (Server server : Arrays.asList(
+                new Server(routes, true),
+                new Server(routes, true).executeRequestsWith(requestExecutor))) {
+            for (int i = 0; i < 2; i++) {
+                server.listen(port);
+                try {
+                    Response response = new ClientImpl().get("http://localhost:" + port + "/test")
+                            .toBlocking().last();
+                    assertEquals(Status.OK, response.status());
+                    assertEquals("test", response.body().get().asString().toBlocking().last());
+                } finally {
+                    server.stop();
+                }
+            }
+        }
+
+        requestExecutor.shutdown();
+    }
+
+    @Test
+    public void clientConnectionsReleasedWhenBodiesAreNotRead() throws Exception {
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/test", r -> r.respond(b -> b.ok("test")))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .listen(port);
+
+        try {
+            int requests = new ClientOptions().getMaxConnectionsPerRoute() + 5;
+            for (int i = 0; i < requests; i++) {
+                Status status = new ClientImpl().get("http://localhost:" + port + "/test")
+                        .map(Response::status).toBlocking().last();
+                assertEquals(Status.OK, status);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void largeRequestBodyStreamedThroughSmallBuffer() throws Exception {
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.POST, "/upload", r -> r.body().asChunks()
+                .reduce(0, (length, chunk) -> length + chunk.length)
+                .flatMap(length -> r.respond(b -> b.ok(String.valueOf(length)))))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .options(new ServerOptions().requestBodyBufferSize(16 * 1024))
+                .listen(port);
+
+        try {
+            byte[] upload = new byte[4 * 1024 * 1024];
+            Response response = new ClientImpl().post("http://localhost:" + port + "/upload",
+                    new BytesBody(upload)).toBlocking().last();
+            assertEquals(Status.OK, response.status());
+            assertEquals(String.valueOf(upload.length), response.body().get().asString().toBlocking().last());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void requestBodyLargerThanMaximumRejected() throws Exception {
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodMatches(Method.POST, r -> r.respond(b -> b.ok()))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .options(new ServerOptions().maxRequestBodySize(1024))
+                .listen(port);
+
+        try {
+            Response response = new ClientImpl().post("http://localhost:" + port + "/upload",
+                    new BytesBody(new byte[2048])).toBlocking().last();
+            assertEquals(Status.REQUEST_ENTITY_TOO_LARGE, response.status());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void clientReusesPooledConnections() throws Exception {
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/test", r -> r.respond(b -> b.ok("test")))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .listen(port);
+
+        try (ClientImpl client = new ClientImpl(new ClientOptions()
+                .maxConnectionsPerRoute(4)
+                .keepAlive(30000)
+                .readTimeout(5000))) {
+            for (int i = 0; i < 10; i++) {
+                Response response = client.get(rb -> rb.uri("http://localhost:" + port + "/test")
+                        .readTimeout(1000)
+                        .build()).toBlocking().last();
+                assertEquals("test", response.body().get().asString().toBlocking().last());
+            }
+
+            PoolStats stats = client.getConnectionPoolStats();
+            assertEquals(0, stats.getLeased());
+            assertEquals(1, stats.getAvailable());
+            assertEquals(200, stats.getMax());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void fileServedWithRangeAndConditionalRequestSupport() throws Exception {
+        byte[] content = new byte[256 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+
+        Path file = Files.createTempFile("server-test", ".bin");
+        Files.write(file, content);
+
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/file", r -> r.respond(b -> b.ok(file)))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .listen(port);
+
+        try (ClientImpl client = new ClientImpl()) {
+            String uri = "http://localhost:" + port + "/file";
+
+            Response response = client.get(uri).toBlocking().last();
+            assertEquals(Status.OK, response.status());
+            assertEquals(String.valueOf(content.length), response.headers().get("content-length").iterator().next());
+            assertEquals("bytes", response.headers().get("accept-ranges").iterator().next());
+            assertArrayEquals(content, response.body().get().asBytes().toBlocking().last());
+
+            String entityTag = response.headers().get("etag").iterator().next();
+            String lastModified = response.headers().get("last-modified").iterator().next();
+
+            response = client.get(rb -> rb.uri(uri).header("If-None-Match", entityTag).build()).toBlocking().last();
+            assertEquals(Status.NOT_MODIFIED, response.status());
+
+            response = client.get(rb -> rb.uri(uri).header("If-Modified-Since", lastModified).build())
+                    .toBlocking().last();
+            assertEquals(Status.NOT_MODIFIED, response.status());
+
+            response = client.get(rb -> rb.uri(uri).header("Range", "bytes=1000-1999").build()).toBlocking().last();
+            assertEquals(Status.PARTIAL_CONTENT, response.status());
+            assertEquals("bytes 1000-1999/" + content.length,
+                    response.headers().get("content-range").iterator().next());
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000),
+                    response.body().get().asBytes().toBlocking().last());
+
+            response = client.get(rb -> rb.uri(uri).header("Range", "bytes=-10").build()).toBlocking().last();
+            assertEquals(Status.PARTIAL_CONTENT, response.status());
+            assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length),
+                    response.body().get().asBytes().toBlocking().last());
+
+            response = client.get(rb -> rb.uri(uri)
+                    .header("Range", "bytes=0-9")
+                    .header("If-Range", "\"stale\"")
+                    .build()).toBlocking().last();
+            assertEquals(Status.OK, response.status());
+
+            response = client.get(rb -> rb.uri(uri).header("Range", "bytes=" + content.length + "-").build())
+                    .toBlocking().last();
+            assertEquals(Status.REQUESTED_RANGE_NOT_SATISFIABLE, response.status());
+        } finally {
+            server.stop();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void precompressedFileVariantsServed() throws Exception {
+        Path directory = Files.createTempDirectory("server-test");
+        Path file = directory.resolve("resource.txt");
+        Files.write(file, "plain".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream stream = new GZIPOutputStream(compressed)) {
+            stream.write("precompressed".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Path gzipVariant = directory.resolve("resource.txt.gz");
+        Files.write(gzipVariant, compressed.toByteArray());
+        Path brotliVariant = directory.resolve("resource.txt.br");
+        Files.write(brotliVariant, new byte[] { 1, 2, 3 });
+
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/file", r -> r.respond(b -> b.ok(file)))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .options(new ServerOptions().precompressedFiles(true))
+                .listen(port);
+
+        try (ClientImpl client = new ClientImpl()) {
+            String uri = "http://localhost:" + port + "/file";
+
+            // The client accepts gzip, and decompresses the response
+            Response response = client.get(uri).toBlocking().last();
+            assertEquals(Status.OK, response.status());
+            assertEquals("precompressed", response.body().get().asString().toBlocking().last());
+
+            response = client.get(rb -> rb.uri(uri).header("Accept-Encoding", "br").build()).toBlocking().last();
+            assertEquals("br", response.headers().get("content-encoding").iterator().next());
+            assertEquals("accept-encoding", response.headers().get("vary").iterator().next());
+            assertArrayEquals(new byte[] { 1, 2, 3 }, response.body().get().asBytes().toBlocking().last());
+
+            response = client.get(rb -> rb.uri(uri).header("Accept-Encoding", "identity").build()).toBlocking().last();
+            assertFalse(response.headers().containsKey("content-encoding"));
+            assertEquals("plain", response.body().get().asString().toBlocking().last());
+        } finally {
+            server.stop();
+            Files.delete(gzipVariant);
+            Files.delete(brotliVariant);
+            Files.delete(file);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void connectionsSendingHeadersSlowlyClosed() throws Exception {
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/test", r -> r.respond(b -> b.ok("test")))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .options(new ServerOptions().headerReadTimeout(200).minimumRequestBodyRate(1024))
+                .listen(port);
+
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write("GET /test HTTP/1.1\r\nHost: localhost\r\n".getBytes(StandardCharsets.US_ASCII));
+            assertEquals(-1, socket.getInputStream().read());
+
+            // Clients that keep up are unaffected
+            Response response = new ClientImpl().get("http://localhost:" + port + "/test").toBlocking().last();
+            assertEquals("test", response.body().get().asString().toBlocking().last());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void requestMetricsRecordedPerRoute() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/metrics", metrics.route())
+                .elseIfMethodAndUriMatch(Method.GET, "/users/{id}", r -> r.respond(b -> b.ok("user")))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .options(new ServerOptions().metrics(metrics))
+                .listen(port);
+
+        try (ClientImpl client = new ClientImpl()) {
+            for (String uri : new String[] { "/users/1", "/users/2", "/missing" }) {
+                client.get("http://localhost:" + port + uri).toBlocking().last().body().get()
+                        .asString().toBlocking().last();
+            }
+
+            // Requests are completed once their responses have been written, which may be after they are received
+            long deadline = System.currentTimeMillis() + 5000;
+            while (getRequests(metrics, "/users/{id}") < 2 || getRequests(metrics, ServerMetrics.OTHER_ROUTE) < 1) {
+                assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+
+            RouteMetrics users = metrics.getRoute(Method.GET, "/users/{id}");
+            assertEquals(2, users.getRequests(2));
+            assertEquals(2 * "user".length(), users.getResponseBytes());
+            assertEquals(2, users.getDurations().getCount());
+            assertEquals(1, metrics.getRoute(Method.GET, ServerMetrics.OTHER_ROUTE).getRequests(4));
+
+            Response response = client.get("http://localhost:" + port + "/metrics").toBlocking().last();
+            assertTrue(response.headers().get("Content-Type").iterator().next().startsWith("text/plain"));
+            assertTrue(response.body().get().asString().toBlocking().last().contains(
+                    "http_server_requests_total{method=\"GET\",route=\"/users/{id}\",status=\"2xx\"} 2\n"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long getRequests(MetricsRegistry metrics, String route) {
+        RouteMetrics routeMetrics = metrics.getRoute(Method.GET, route);
+        return routeMetrics != null ? routeMetrics.getRequests() : 0;
+    }
+
+    @Test
+    public void http2UpgradeFromCleartext() throws Exception {
+        int port = findFreePort();
+        Server server = new Server(rb -> rb.ifMethodAndUriMatch(Method.GET, "/test/{id}", r -> r.respond(b -> b
+                .ok("test " + r.uriParameter("id").asString())))
+                .elseIfMethodAndUriMatch(Method.POST, "/echo", r -> r.body().asString()
+                        .flatMap(body -> r.respond(b -> b.ok(body))))
+                .orElse(r -> r.respond(b -> b.notFound())), true)
+                .options(new ServerOptions().http2(true))
+                .listen(port);
+
+        BlockingQueue<FullHttpResponse> responses = new LinkedBlockingQueue<>();
+        EventLoopGroup group = new NioEventLoopGroup(1);
+        try {
+            Channel channel = new Bootstrap()
+                    .group(group)
+                    .channel(NioSocketChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel channel) {
+                            Http2Connection connection = new DefaultHttp2Connection(false);
+                            HttpToHttp2ConnectionHandler connectionHandler = new HttpToHttp2ConnectionHandlerBuilder()
+                                    .connection(connection)
+                                    .frameListener(new DelegatingDecompressorFrameListener(connection,
+                                            new InboundHttp2ToHttpAdapterBuilder(connection)
+                                                    .maxContentLength(65536)
+                                                    .build()))
+                                    .build();
+
+                            HttpClientCodec codec = new HttpClientCodec();
+                            channel.pipeline().addLast(codec);
+                            channel.pipeline().addLast(new HttpClientUpgradeHandler(codec,
+                                    new Http2ClientUpgradeCodec(connectionHandler), 65536));
+                            channel.pipeline().addLast(new SimpleChannelInboundHandler<FullHttpResponse>() {
+                                @Override
+                                protected void channelRead0(ChannelHandlerContext context, FullHttpResponse response) {
+                                    responses.add(response.retain());
+                                }
+                            });
+                        }
+                    })
+                    .connect("localhost", port).sync().channel();
+
+            // The upgrade request is answered on stream 1 once the connection has switched to HTTP/2
+            DefaultFullHttpRequest upgrade = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/test/1");
+            upgrade.headers().set(HttpHeaderNames.HOST, "localhost:" + port);
+            channel.writeAndFlush(upgrade);
+
+            FullHttpResponse response = responses.poll(5, TimeUnit.SECONDS);
+            assertEquals(HttpResponseStatus.OK, response.status());
+            assertEquals(1, (int) response.headers().getInt(
+                    HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text()));
+            assertEquals("test 1", response.content().toString(StandardCharsets.UTF_8));
+            response.release();
+
+            // Further requests are multiplexed over the same connection as separate streams
+            for (int streamId = 3; streamId <= 7; streamId += 2) {
+                DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST,
+                        "/echo", Unpooled.copiedBuffer("stream " + streamId, StandardCharsets.UTF_8));
+                request.headers().set(HttpHeaderNames.HOST, "localhost:" + port);
+                request.headers().setInt(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text(), streamId);
+                request.headers().set(HttpConversionUtil.ExtensionHeaderNames.SCHEME.text(), "http");
+                channel.writeAndFlush(request);
+            }
+
+            Set<String> bodies = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                response = responses.poll(5, TimeUnit.SECONDS);
+                assertEquals(HttpResponseStatus.OK, response.status());
+                bodies.add(response.content().toString(StandardCharsets.UTF_8));
+                response.release();
+            }
+
+            assertEquals(new HashSet<>(Arrays.asList("stream 3", "stream 5", "stream 7")), bodies);
+            channel.close().sync();
+        } finally {
+            group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+            server.stop();
+        }
+    }
+
+    @Test
+    public void nioTransportSelectedWhenNativeTransportIsNotPreferred() {
+        assertTrue(ServerTransport.select(false) instanceof NioServerTransport);
+    }
+}
@@ -13,6 +13,7 @@ public class StatusTest {
         assertEquals(Status.OK, Status.valueOf(200));
         assertEquals(Status.NO_CONTENT, Status.valueOf(204));
         assertEquals(Status.NOT_FOUND, Status.valueOf(404));
+        assertEquals(Status.TOO_MANY_REQUESTS, Status.valueOf(429));
         assertEquals(Status.INTERNAL_SERVER_ERROR, Status.valueOf(500));
     }
 }
@@ -6,8 +6,10 @@ import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Ravi Chodavarapu (rchodava@gmail.com)
@@ -50,6 +52,37 @@ public class UriTemplateTest {
         assertNull(new UriTemplate("{id:\\w+}/users/{userId:\\w+}/").match("/testIdContent.32/users/testUserIdContent"));
     }
 
+    @Test
+    public void matchesIntoCaptures() {
+        UriTemplate template = new UriTemplate("/users/{userId}/posts/{postId:\\d+}");
+        assertEquals(2, template.getVariableCount());
+        assertEquals(1, template.indexOfVariable("postId"));
+        assertEquals(-1, template.indexOfVariable("missing"));
+
+        int[] captures = new int[4];
+        String uri = "/users/user_12/posts/456/?param=1";
+        assertTrue(template.match(uri, captures));
+        assertEquals("user_12", uri.substring(captures[0], captures[1]));
+        assertEquals("456", uri.substring(captures[2], captures[3]));
+
+        assertFalse(template.match("/users/user_12/posts/abc", captures));
+        assertFalse(template.match("/users/user_12/comments/456", captures));
+
+        assertTrue(new UriTemplate("/a").match("/a/", new int[0]));
+        assertFalse(new UriTemplate("/a").match("/b", new int[0]));
+        assertTrue(new UriTemplate("/users").match("/users/?x=1", new int[0]));
+    }
+
+    @Test
+    public void patternsSeeWholeUri() {
+        assertThat(new UriTemplate("/api/v{version:(?<=v)\\d+}/users").match("/api/v2/users"),
+                equalTo(ImmutableMap.of("version", "2")));
+        assertNull(new UriTemplate("/api/{version:(?<=v)\\d+}/users").match("/api/2/users"));
+        assertThat(new UriTemplate("/users/{id:\\d+\\b}").match("/users/12/"),
+                equalTo(ImmutableMap.of("id", "12")));
+        assertNull(new UriTemplate("/users/{id:^\\d+}").match("/users/12"));
+    }
+
     @Test
     public void templateAsString() {
         assertEquals("{id}/users/{userId}", new UriTemplate("{id}/users/{userId}/").toString());
@@ -0,0 +1,139 @@
+package foundation.stack.datamill.http.cache;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.impl.ServerRequestImpl;
+import org.junit.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RequestCoalescerTest {
+    private static ServerRequestImpl request(String method, String uri, String... headers) {
+        Multimap<String, String> requestHeaders = ArrayListMultimap.create();
+        for (int i = 0; i < headers.length; i += 2) {
+            requestHeaders.put(headers[i].toLowerCase(), headers[i + 1]);
+        }
+
+        return new ServerRequestImpl(method, requestHeaders, uri, StandardCharsets.UTF_8, null);
+    }
+
+    private static String bodyOf(Response response) {
+        return response.body().get().asString().toBlocking().single();
+    }
+
+    @Test
+    public void identicalConcurrentRequestsShareResponse() {
+        PublishSubject<Response> pending = PublishSubject.create();
+        AtomicInteger calls = new AtomicInteger();
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Route route = coalescer.filter(request -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+
+        TestSubscriber<Response> first = new TestSubscriber<>();
+        route.apply(request("GET", "/popular")).subscribe(first);
+        TestSubscriber<Response> second = new TestSubscriber<>();
+        route.apply(request("GET", "/popular")).subscribe(second);
+
+        // Only the first subscriber starts the route, and unsubscribing doesn't stop it for the others
+        TestSubscriber<Response> abandoned = new TestSubscriber<>();
+        route.apply(request("GET", "/popular")).subscribe(abandoned);
+        abandoned.unsubscribe();
+
+        pending.onNext(request("GET", "/popular").respond(b -> b.header("X-Served-By", "one").ok("Popular"))
+                .toBlocking().single());
+        pending.onCompleted();
+
+        assertEquals(1, calls.get());
+        assertEquals(2, coalescer.getCoalesced());
+
+        Response firstResponse = first.getOnNextEvents().get(0);
+        Response secondResponse = second.getOnNextEvents().get(0);
+        assertEquals("Popular", bodyOf(firstResponse));
+        assertEquals("Popular", bodyOf(secondResponse));
+        assertNotSame(firstResponse.headers(), secondResponse.headers());
+        assertEquals("one", secondResponse.headers().get("X-Served-By").iterator().next());
+    }
+
+    @Test
+    public void requestsAfterCompletionRunRouteAgain() {
+        AtomicInteger calls = new AtomicInteger();
+        Route route = new RequestCoalescer().filter(request -> request.respond(b -> b.ok("" + calls.incrementAndGet())));
+
+        assertEquals("1", bodyOf(route.apply(request("GET", "/popular")).toBlocking().single()));
+        assertEquals("2", bodyOf(route.apply(request("GET", "/popular")).toBlocking().single()));
+        assertEquals("3", bodyOf(route.apply(request("GET", "/other")).toBlocking().single()));
+    }
+
+    @Test
+    public void uncoalescedRequestsPassedThrough() {
+        AtomicInteger calls = new AtomicInteger();
+        Route route = new RequestCoalescer().filter(request -> {
+            calls.incrementAndGet();
+            return Observable.never();
+        });
+
+        route.apply(request("POST", "/popular")).subscribe(new TestSubscriber<>());
+        route.apply(request("POST", "/popular")).subscribe(new TestSubscriber<>());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void requestsFromDifferentUsersNotCoalesced() {
+        AtomicInteger calls = new AtomicInteger();
+        RequestCoalescer coalescer = new RequestCoalescer();
+        Route route = coalescer.filter(request -> {
+            calls.incrementAndGet();
+            return Observable.never();
+        });
+
+        route.apply(request("GET", "/me", "Authorization", "Bearer one")).subscribe(new TestSubscriber<>());
+        route.apply(request("GET", "/me", "Authorization", "Bearer two")).subscribe(new TestSubscriber<>());
+        route.apply(request("GET", "/me", "Cookie", "session=one")).subscribe(new TestSubscriber<>());
+        route.apply(request("GET", "/me", "Cookie", "session=one")).subscribe(new TestSubscriber<>());
+
+        assertEquals(3, calls.get());
+        assertEquals(1, coalescer.getCoalesced());
+    }
+
+    @Test
+    public void privateResponsesNotShared() {
+        PublishSubject<Response> pending = PublishSubject.create();
+        AtomicInteger calls = new AtomicInteger();
+        Route route = new RequestCoalescer().filter(request -> {
+            if (calls.incrementAndGet() == 1) {
+                return pending;
+            }
+
+            return request.respond(b -> b.ok("Second"));
+        });
+
+        TestSubscriber<Response> first = new TestSubscriber<>();
+        route.apply(request("GET", "/popular")).subscribe(first);
+        TestSubscriber<Response> second = new TestSubscriber<>();
+        route.apply(request("GET", "/popular")).subscribe(second);
+
+        pending.onNext(request("GET", "/popular").respond(b -> b.header("Set-Cookie", "session=first").ok("First"))
+                .toBlocking().single());
+        pending.onCompleted();
+
+        assertEquals(2, calls.get());
+        assertEquals("First", bodyOf(first.getOnNextEvents().get(0)));
+        assertEquals("Second", bodyOf(second.getOnNextEvents().get(0)));
+        assertFalse(second.getOnNextEvents().get(0).headers().containsKey("Set-Cookie"));
+    }
+}
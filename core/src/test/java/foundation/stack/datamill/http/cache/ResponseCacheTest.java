@@ -0,0 +1,268 @@
+package foundation.stack.datamill.http.cache;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import foundation.stack.datamill.http.RequestHeader;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.Status;
+import foundation.stack.datamill.http.impl.ServerRequestImpl;
+import foundation.stack.datamill.values.Value;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ResponseCacheTest {
+    private static ServerRequestImpl request(String method, String uri, String... headers) {
+        Multimap<String, String> requestHeaders = ArrayListMultimap.create();
+        for (int i = 0; i < headers.length; i += 2) {
+            requestHeaders.put(headers[i].toLowerCase(), headers[i + 1]);
+        }
+
+        return new ServerRequestImpl(method, requestHeaders, uri, StandardCharsets.UTF_8, null);
+    }
+
+    private static Response get(Route route, String uri, String... headers) {
+        return route.apply(request("GET", uri, headers)).toBlocking().single();
+    }
+
+    private static String bodyOf(Response response) {
+        return response.body().get().asString().toBlocking().single();
+    }
+
+    private static String header(Response response, String name) {
+        return response.headers().get(name).iterator().next();
+    }
+
+    @Test
+    public void responsesCachedUntilStale() {
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache cache = new ResponseCache(1024 * 1024, clock::get)
+                .timeToLive(10, TimeUnit.SECONDS);
+        Route route = cache.filter(request -> request.respond(b -> b.ok("Call " + calls.incrementAndGet())));
+
+        assertEquals("Call 1", bodyOf(get(route, "/countries?page=1")));
+        assertEquals("Call 1", bodyOf(get(route, "/countries?page=1")));
+        assertEquals("Call 2", bodyOf(get(route, "/countries?page=2")));
+        assertEquals(Status.OK, route.apply(request("POST", "/countries?page=1")).toBlocking().single().status());
+        assertEquals(3, calls.get());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals("Call 4", bodyOf(get(route, "/countries?page=1")));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void responsesVaryOnSelectedHeadersAndQueryParameters() {
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache cache = new ResponseCache(1024 * 1024)
+                .varyingOnHeaders("Accept-Language")
+                .varyingOnQueryParameters("page");
+        Route route = cache.filter(request -> request.respond(b -> b.ok("Call " + calls.incrementAndGet())));
+
+        assertEquals("Call 1", bodyOf(get(route, "/countries?page=1&tracking=a", "Accept-Language", "en")));
+        assertEquals("Call 1", bodyOf(get(route, "/countries?tracking=b&page=1", "Accept-Language", "en")));
+        assertEquals("Call 2", bodyOf(get(route, "/countries?page=1", "Accept-Language", "fr")));
+        assertEquals("Call 3", bodyOf(get(route, "/countries?page=2", "Accept-Language", "fr")));
+    }
+
+    @Test
+    public void responsesToUsersWithCredentialsNotShared() {
+        ResponseCache cache = new ResponseCache(1024 * 1024);
+        Route route = cache.filter(request -> {
+            Value authorization = request.firstHeader(RequestHeader.AUTHORIZATION);
+            return request.respond(b -> b.ok(authorization != null ? "Hello " + authorization.asString() : "Hello"));
+        });
+
+        assertEquals("Hello Bearer first", bodyOf(get(route, "/me", "Authorization", "Bearer first")));
+        assertEquals("Hello Bearer second", bodyOf(get(route, "/me", "Authorization", "Bearer second")));
+        assertEquals("Hello", bodyOf(get(route, "/me")));
+        assertEquals("Hello Bearer first", bodyOf(get(route, "/me", "Authorization", "Bearer first")));
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void uncacheableResponsesNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        Route route = new ResponseCache(1024 * 1024).filter(request -> {
+            calls.incrementAndGet();
+            if (request.uri().startsWith("/private")) {
+                return request.respond(b -> b.header("Cache-Control", "max-age=60, private").ok());
+            }
+
+            return request.respond(b -> b.notFound());
+        });
+
+        get(route, "/private");
+        get(route, "/private");
+        get(route, "/missing");
+        get(route, "/missing");
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void matchingEntityTagsNotModified() {
+        ResponseCache cache = new ResponseCache(1024 * 1024);
+        Route route = cache.filter(request -> request.respond(b -> b.header("Cache-Control", "max-age=60").ok("Hello")));
+
+        Response response = get(route, "/hello");
+        String entityTag = header(response, "ETag");
+        assertNotNull(entityTag);
+
+        Response notModified = get(route, "/hello", "If-None-Match", "\"other\", " + entityTag);
+        assertEquals(Status.NOT_MODIFIED, notModified.status());
+        assertEquals(entityTag, header(notModified, "ETag"));
+        assertEquals("max-age=60", header(notModified, "Cache-Control"));
+        assertFalse(notModified.body().isPresent());
+
+        assertEquals(Status.OK, get(route, "/hello", "If-None-Match", "\"other\"").status());
+        assertEquals(1, cache.getNotModified());
+
+        Route tagged = new ResponseCache(1024).filter(request -> request.respond(b -> b.header("ETag", "\"v1\"").ok()));
+        assertEquals("\"v1\"", header(get(tagged, "/tagged"), "ETag"));
+    }
+
+    @Test
+    public void concurrentMissesCoalesced() {
+        PublishSubject<Response> pending = PublishSubject.create();
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache cache = new ResponseCache(1024 * 1024);
+        Route route = cache.filter(request -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+
+        TestSubscriber<Response> first = new TestSubscriber<>();
+        route.apply(request("GET", "/slow")).subscribe(first);
+        TestSubscriber<Response> second = new TestSubscriber<>();
+        route.apply(request("GET", "/slow")).subscribe(second);
+
+        pending.onNext(request("GET", "/slow").respond(b -> b.ok("Slow")).toBlocking().single());
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getCoalesced());
+        assertEquals("Slow", bodyOf(first.getOnNextEvents().get(0)));
+        assertEquals("Slow", bodyOf(second.getOnNextEvents().get(0)));
+    }
+
+    @Test
+    public void concurrentMissesForPrivateResponsesNotShared() {
+        PublishSubject<Response> pending = PublishSubject.create();
+        AtomicInteger calls = new AtomicInteger();
+        Route route = new ResponseCache(1024 * 1024).filter(request -> {
+            if (calls.incrementAndGet() == 1) {
+                return pending;
+            }
+
+            return request.respond(b -> b.header("Cache-Control", "private").ok("Second user"));
+        });
+
+        TestSubscriber<Response> first = new TestSubscriber<>();
+        route.apply(request("GET", "/me")).subscribe(first);
+        TestSubscriber<Response> second = new TestSubscriber<>();
+        route.apply(request("GET", "/me")).subscribe(second);
+
+        pending.onNext(request("GET", "/me").respond(b -> b.header("Set-Cookie", "session=first").ok("First user"))
+                .toBlocking().single());
+
+        assertEquals(2, calls.get());
+        assertEquals("First user", bodyOf(first.getOnNextEvents().get(0)));
+        assertEquals("Second user", bodyOf(second.getOnNextEvents().get(0)));
+        assertFalse(second.getOnNextEvents().get(0).headers().containsKey("Set-Cookie"));
+    }
+
+    @Test
+    public void staleResponsesRefreshedInBackground() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ResponseCache cache = new ResponseCache(1024 * 1024, clock::get)
+                .timeToLive(10, TimeUnit.SECONDS)
+                .staleWhileRevalidate(5, TimeUnit.SECONDS)
+                .refreshingOn(Schedulers.from(executor));
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        Route route = cache.filter(request -> {
+            threads.add(Thread.currentThread());
+            return request.respond(b -> b.ok("Call " + threads.size()));
+        });
+
+        try {
+            assertEquals("Call 1", bodyOf(get(route, "/countries")));
+
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(12));
+            assertEquals("Call 1", bodyOf(get(route, "/countries")));
+
+            executor.submit(() -> {}).get(5, TimeUnit.SECONDS);
+            assertEquals(2, threads.size());
+            assertNotEquals(Thread.currentThread(), threads.get(1));
+            assertEquals("Call 2", bodyOf(get(route, "/countries")));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void staleResponsesServedWhileRevalidating() {
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache cache = new ResponseCache(1024 * 1024, clock::get)
+                .timeToLive(10, TimeUnit.SECONDS)
+                .staleWhileRevalidate(5, TimeUnit.SECONDS)
+                .refreshingOn(Schedulers.immediate());
+        Route route = cache.filter(request -> request.respond(b -> b.ok("Call " + calls.incrementAndGet())));
+
+        assertEquals("Call 1", bodyOf(get(route, "/countries")));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(12));
+        assertEquals("Call 1", bodyOf(get(route, "/countries")));
+        assertEquals(2, calls.get());
+        assertEquals("Call 2", bodyOf(get(route, "/countries")));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        assertEquals("Call 3", bodyOf(get(route, "/countries")));
+        assertEquals(1, cache.getStaleHits());
+    }
+
+    @Test
+    public void responsesEvictedToStayWithinMaximumSize() {
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache cache = new ResponseCache(16 * 1024);
+        Route route = cache.filter(request -> {
+            calls.incrementAndGet();
+            return request.respond(b -> b.ok(new byte[1000]));
+        });
+
+        for (int i = 0; i < 100; i++) {
+            get(route, "/large/" + i);
+        }
+
+        assertTrue(cache.getSize() * 1000 <= 16 * 1024);
+        assertEquals(100, cache.getEvictions() + cache.getSize());
+
+        get(route, "/large/99");
+        assertEquals(100, calls.get());
+    }
+}
@@ -1,10 +1,18 @@
 package foundation.stack.datamill.http.impl;
 
+import com.google.common.collect.ImmutableMultimap;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.http.*;
+import foundation.stack.datamill.http.RequestExecutor;
+import foundation.stack.datamill.http.RequestExecutors;
+import foundation.stack.datamill.http.Response;
 import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.ServerOptions;
 import foundation.stack.datamill.http.ServerRequest;
+import foundation.stack.datamill.http.Status;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
@@ -12,14 +20,22 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import rx.Observable;
+import rx.schedulers.Schedulers;
+import rx.subjects.PublishSubject;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -43,12 +59,6 @@ public class ClientToServerChannelHandlerTest {
     @Captor
     private ArgumentCaptor<FullHttpResponse> responseCaptor;
 
-    @Captor
-    private ArgumentCaptor<HttpObject> responseFragmentsCaptor;
-
-    @Captor
-    private ArgumentCaptor<HttpObject> responseStartCaptor;
-
     private void waitForExecutorToFinishAllTasks(ExecutorService executor) throws Exception {
         for (int i = 0; i < 5; i++) {
             // We submit an empty task and wait for it so that other tasks submitted ahead of this get executed first
@@ -143,23 +153,245 @@ public class ClientToServerChannelHandlerTest {
 
     @Test
     public void multipleResponseChunksSent() throws Exception {
+        when(route.apply(any())).thenReturn(Observable.just(new ResponseImpl(Status.OK, ImmutableMultimap.of(),
+                new StreamedChunksBody(Observable.just("Test ", "Content")
+                        .map(chunk -> ByteBuffer.wrap(chunk.getBytes())), StandardCharsets.UTF_8))));
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ClientToServerChannelHandler(RequestExecutors.eventLoop(), route, null, false));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
+
+        HttpResponse responseStart = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, responseStart.status());
+        assertTrue(HttpUtil.isTransferEncodingChunked(responseStart) || !HttpUtil.isContentLengthSet(responseStart));
+
+        LastHttpContent content = channel.readOutbound();
+        assertEquals("Test Content", content.content().toString(StandardCharsets.UTF_8));
+        assertNull(channel.readOutbound());
+
+        content.release();
+    }
+
+    @Test
+    public void smallResponseChunksCoalesced() throws Exception {
+        when(route.apply(any())).thenReturn(Observable.just(new ResponseImpl(Status.OK, ImmutableMultimap.of(),
+                new StreamedChunksBody(Observable.range(0, 1000)
+                        .map(i -> ByteBuffer.wrap("0123456789".getBytes())), StandardCharsets.UTF_8))));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ClientToServerChannelHandler(RequestExecutors.eventLoop(),
+                route, null, false, new ServerOptions().responseBufferSize(1024)));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
+
+        assertTrue(channel.readOutbound() instanceof HttpResponse);
+
+        int writes = 0;
+        int length = 0;
+        HttpContent content;
+        while ((content = channel.readOutbound()) != null) {
+            writes++;
+            length += content.content().readableBytes();
+            assertTrue(content.content().readableBytes() <= 1024);
+            content.release();
+        }
+
+        assertEquals(10000, length);
+        assertEquals(10, writes);
+    }
+
+    @Test
+    public void knownLengthBodySentAsFullResponse() throws Exception {
+        when(route.apply(any())).thenReturn(Observable.just(new ResponseBuilderImpl().ok("Test Content")));
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ClientToServerChannelHandler(RequestExecutors.eventLoop(), route, null, false));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals(12, HttpUtil.getContentLength(response));
+        assertFalse(HttpUtil.isTransferEncodingChunked(response));
+        assertEquals("Test Content", response.content().toString(StandardCharsets.UTF_8));
+        assertNull(channel.readOutbound());
+
+        response.release();
+    }
+
+    @Test
+    public void asynchronousDispatchDoesNotBlockWhileResponseIsPending() throws Exception {
         ExecutorService service = Executors.newSingleThreadExecutor();
-        ClientToServerChannelHandler handler = new ClientToServerChannelHandler(service, route, null);
+        PublishSubject<Response> pendingResponse = PublishSubject.create();
 
-        DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost");
+        when(route.apply(any())).thenReturn(pendingResponse);
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ClientToServerChannelHandler(RequestExecutors.using(service), route, null, true));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
+
+        waitForExecutorToFinishAllTasks(service);
+
+        assertNull(channel.readOutbound());
+
+        pendingResponse.onNext(new ResponseBuilderImpl().ok());
+        pendingResponse.onCompleted();
+        channel.runPendingTasks();
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+    }
+
+    @Test
+    public void asynchronousDispatchSendsResponseBody() throws Exception {
+        ExecutorService service = Executors.newSingleThreadExecutor();
 
         when(route.apply(any())).thenReturn(Observable.just(new ResponseBuilderImpl().ok("Test Content")));
 
-        handler.channelRead(context, request);
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ClientToServerChannelHandler(RequestExecutors.using(service), route, null, true));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
+
+        waitForExecutorToFinishAllTasks(service);
+        channel.runPendingTasks();
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals("Test Content", response.content().toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void asynchronousDispatchWritesJsonOnRequestExecutor() throws Exception {
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        Thread executorThread = service.submit(Thread::currentThread).get();
+        AtomicReference<Thread> writingThread = new AtomicReference<>();
+
+        JsonBody body = new JsonBody(writer -> {
+            writingThread.set(Thread.currentThread());
+            writer.beginObject().put("name", "value").endObject();
+        });
+        when(route.apply(any())).thenReturn(Observable.<Response>just(
+                new ResponseImpl(Status.OK, ImmutableMultimap.of(), body)).observeOn(Schedulers.computation()));
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ClientToServerChannelHandler(RequestExecutors.using(service), route, null, true));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
+
+        FullHttpResponse response = null;
+        for (int i = 0; i < 100 && response == null; i++) {
+            waitForExecutorToFinishAllTasks(service);
+            channel.runPendingTasks();
+            response = channel.readOutbound();
+            if (response == null) {
+                Thread.sleep(10);
+            }
+        }
+
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals("{\"name\":\"value\"}", response.content().toString(StandardCharsets.UTF_8));
+        assertEquals(executorThread, writingThread.get());
+    }
+
+    @Test
+    public void asynchronousDispatchSendsServerErrorWhenRouteFails() throws Exception {
+        ExecutorService service = Executors.newSingleThreadExecutor();
+
+        when(route.apply(any())).thenReturn(Observable.error(new IllegalStateException()));
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ClientToServerChannelHandler(RequestExecutors.using(service), route, null, true));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
 
         waitForExecutorToFinishAllTasks(service);
+        channel.runPendingTasks();
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR, response.status());
+    }
+
+    @Test
+    public void serviceUnavailableSentWhenExecutorIsSaturated() throws Exception {
+        RequestExecutor saturated = RequestExecutors.bounded(1, 1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        saturated.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+            }
+        }, null);
+        saturated.execute(() -> {}, null);
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ClientToServerChannelHandler(saturated, route, null, false));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.status());
+        assertEquals(1, saturated.rejectedCount());
+
+        blocker.countDown();
+        saturated.shutdown();
+    }
+
+    @Test
+    public void eventLoopExecutorHandlesRequestOnEventLoop() throws Exception {
+        when(route.apply(any())).thenReturn(Observable.just(new ResponseBuilderImpl().ok()));
+
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new ClientToServerChannelHandler(RequestExecutors.eventLoop(), route, null, false));
+        channel.writeInbound(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "localhost"));
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+    }
+
+    @Test
+    public void requestEntityTooLargeSentWhenContentLengthExceedsMaximum() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ClientToServerChannelHandler(
+                RequestExecutors.eventLoop(), route, null, false, new ServerOptions().maxRequestBodySize(4)));
+
+        DefaultHttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "localhost");
+        request.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, 5);
+        channel.writeInbound(request);
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, response.status());
+        verify(route, never()).apply(any());
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void requestEntityTooLargeSentWhenStreamedBodyExceedsMaximum() throws Exception {
+        when(route.apply(any())).thenReturn(PublishSubject.create());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ClientToServerChannelHandler(
+                RequestExecutors.eventLoop(), route, null, false, new ServerOptions().maxRequestBodySize(4)));
+
+        channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "localhost"));
+
+        ByteBuf content = Unpooled.copiedBuffer("Test Content".getBytes());
+        channel.writeInbound(new DefaultHttpContent(content));
+
+        FullHttpResponse response = channel.readOutbound();
+        assertEquals(HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE, response.status());
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void requestBodyReleasedOnceConsumed() throws Exception {
+        ServerRequest[] applied = new ServerRequest[1];
+        when(route.apply(any())).thenAnswer(invocation -> {
+            applied[0] = (ServerRequest) invocation.getArguments()[0];
+            return PublishSubject.create();
+        });
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ClientToServerChannelHandler(
+                RequestExecutors.eventLoop(), route, null, false, new ServerOptions()));
+
+        channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "localhost"));
 
-        verify(context).write(responseStartCaptor.capture());
-        verify(context, times(2)).writeAndFlush(responseFragmentsCaptor.capture());
+        ByteBuf content = Unpooled.copiedBuffer("Test Content".getBytes());
+        channel.writeInbound(new DefaultLastHttpContent(content));
+        assertEquals(1, content.refCnt());
 
-        assertEquals(HttpResponseStatus.OK, ((HttpResponse) responseStartCaptor.getValue()).status());
-        byte[] bytes = new byte[((HttpContent) responseFragmentsCaptor.getAllValues().get(0)).content().readableBytes()];
-        ((HttpContent) responseFragmentsCaptor.getAllValues().get(0)).content().readBytes(bytes);
-        assertArrayEquals("Test Content".getBytes(), bytes);
+        assertEquals("Test Content", applied[0].body().asString().toBlocking().last());
+        assertEquals(0, content.refCnt());
     }
 }
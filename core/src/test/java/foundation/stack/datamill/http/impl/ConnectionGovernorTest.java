@@ -0,0 +1,154 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.ServerOptions;
+import foundation.stack.datamill.http.metrics.ConnectionCloseReason;
+import foundation.stack.datamill.http.metrics.ServerMetrics;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ConnectionGovernorTest {
+    @Mock
+    private ServerMetrics metrics;
+
+    private static EmbeddedChannel createChannel(AtomicInteger connections, ServerOptions options) {
+        ConnectionGovernor governor = new ConnectionGovernor(connections, options);
+        return new EmbeddedChannel(governor, new HttpServerCodec(), governor.requestTracker());
+    }
+
+    private static void send(EmbeddedChannel channel, String content) {
+        channel.writeInbound(Unpooled.copiedBuffer(content, StandardCharsets.US_ASCII));
+        Object message;
+        while ((message = channel.readInbound()) != null) {
+            ReferenceCountUtil.release(message);
+        }
+    }
+
+    private static void waitAndRunPendingTasks(EmbeddedChannel channel, long milliseconds) throws Exception {
+        Thread.sleep(milliseconds);
+        channel.runPendingTasks();
+    }
+
+    @Test
+    public void connectionsBeyondMaximumRefused() {
+        AtomicInteger connections = new AtomicInteger();
+        ServerOptions options = new ServerOptions().maxConnections(1).metrics(metrics);
+
+        EmbeddedChannel first = createChannel(connections, options);
+        EmbeddedChannel second = createChannel(connections, options);
+
+        assertTrue(first.isOpen());
+        assertFalse(second.isOpen());
+        second.runPendingTasks();
+        assertEquals(1, connections.get());
+        verify(metrics).connectionOpened();
+        verify(metrics).connectionClosed(ConnectionCloseReason.REFUSED);
+
+        first.close();
+        first.runPendingTasks();
+        assertEquals(0, connections.get());
+        verify(metrics).connectionClosed(ConnectionCloseReason.CLOSED);
+
+        EmbeddedChannel third = createChannel(connections, options);
+        assertTrue(third.isOpen());
+        verify(metrics, times(2)).connectionOpened();
+    }
+
+    @Test
+    public void slowRequestHeadersTimeOut() throws Exception {
+        ServerOptions options = new ServerOptions().headerReadTimeout(50).metrics(metrics);
+
+        EmbeddedChannel channel = createChannel(new AtomicInteger(), options);
+        send(channel, "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        waitAndRunPendingTasks(channel, 100);
+        assertTrue(channel.isOpen());
+
+        // Idle connections are left alone until the next request starts arriving
+        send(channel, "GET / HTTP/1.1\r\n");
+        waitAndRunPendingTasks(channel, 100);
+        assertFalse(channel.isOpen());
+        channel.runPendingTasks();
+        verify(metrics).connectionClosed(ConnectionCloseReason.HEADER_READ_TIMEOUT);
+    }
+
+    @Test
+    public void connectionsWithoutRequestsTimeOut() throws Exception {
+        EmbeddedChannel channel = createChannel(new AtomicInteger(), new ServerOptions().headerReadTimeout(50));
+        waitAndRunPendingTasks(channel, 100);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void slowRequestBodiesClosed() throws Exception {
+        ServerOptions options = new ServerOptions().minimumRequestBodyRate(1024).metrics(metrics);
+
+        EmbeddedChannel channel = createChannel(new AtomicInteger(), options);
+        send(channel, "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4096\r\n\r\n0123456789");
+        waitAndRunPendingTasks(channel, 1100);
+        assertFalse(channel.isOpen());
+        channel.runPendingTasks();
+        verify(metrics).connectionClosed(ConnectionCloseReason.SLOW_REQUEST_BODY);
+    }
+
+    @Test
+    public void bodiesNotBeingReadAreNotCountedAsSlow() throws Exception {
+        EmbeddedChannel channel = createChannel(new AtomicInteger(), new ServerOptions().minimumRequestBodyRate(1024));
+        send(channel, "POST / HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4096\r\n\r\n0123456789");
+
+        channel.config().setAutoRead(false);
+        waitAndRunPendingTasks(channel, 1100);
+        assertTrue(channel.isOpen());
+    }
+
+    @Test
+    public void readTimeoutIgnoredWhileClientWaitsForResponse() {
+        EmbeddedChannel channel = createChannel(new AtomicInteger(), new ServerOptions().metrics(metrics));
+        send(channel, "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT);
+        assertTrue(channel.isOpen());
+
+        channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+        ReferenceCountUtil.release(channel.readOutbound());
+
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.READER_IDLE_STATE_EVENT);
+        assertFalse(channel.isOpen());
+        channel.runPendingTasks();
+        verify(metrics).connectionClosed(ConnectionCloseReason.READ_TIMEOUT);
+        verify(metrics, never()).connectionClosed(ConnectionCloseReason.CLOSED);
+    }
+
+    @Test
+    public void writeTimeoutOnlyClosesConnectionsThatCannotBeWritten() {
+        EmbeddedChannel channel = createChannel(new AtomicInteger(), new ServerOptions());
+
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT);
+        assertTrue(channel.isOpen());
+
+        channel.pipeline().fireUserEventTriggered(IdleStateEvent.ALL_IDLE_STATE_EVENT);
+        assertFalse(channel.isOpen());
+    }
+}
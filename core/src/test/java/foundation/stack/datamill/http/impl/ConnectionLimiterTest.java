@@ -0,0 +1,55 @@
+package foundation.stack.datamill.http.impl;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ConnectionLimiterTest {
+    @Test
+    public void leasesLimitedAndHandedOver() {
+        ConnectionLimiter limiter = new ConnectionLimiter(2, 1);
+        AtomicInteger granted = new AtomicInteger();
+        Runnable lease = granted::incrementAndGet;
+
+        assertTrue(limiter.acquire(lease));
+        assertTrue(limiter.acquire(lease));
+        assertEquals(2, granted.get());
+
+        Runnable waiting = granted::incrementAndGet;
+        assertTrue(limiter.acquire(waiting));
+        assertFalse(limiter.acquire(lease));
+        assertEquals(2, granted.get());
+
+        limiter.release();
+        assertEquals(3, granted.get());
+        assertFalse(limiter.cancel(waiting));
+
+        limiter.release();
+        limiter.release();
+        assertTrue(limiter.acquire(lease));
+        assertEquals(4, granted.get());
+    }
+
+    @Test
+    public void cancelledLeasesNeverGranted() {
+        ConnectionLimiter limiter = new ConnectionLimiter(1, 1);
+        AtomicInteger granted = new AtomicInteger();
+
+        assertTrue(limiter.acquire(granted::incrementAndGet));
+        Runnable waiting = granted::incrementAndGet;
+        assertTrue(limiter.acquire(waiting));
+        assertTrue(limiter.cancel(waiting));
+
+        limiter.release();
+        assertEquals(1, granted.get());
+        assertTrue(limiter.acquire(granted::incrementAndGet));
+        assertEquals(2, granted.get());
+    }
+}
@@ -0,0 +1,101 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.HttpException;
+import foundation.stack.datamill.json.JsonObject;
+import org.junit.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class JsonArraySplitterTest {
+    private static List<String> splitByteByByte(String json) {
+        JsonArraySplitter splitter = new JsonArraySplitter(StandardCharsets.UTF_8);
+        List<String> elements = new ArrayList<>();
+        for (byte b : json.getBytes(StandardCharsets.UTF_8)) {
+            elements.addAll(splitter.feed(ByteBuffer.wrap(new byte[] { b })));
+        }
+
+        splitter.finish();
+        return elements;
+    }
+
+    private static void assertMalformed(String json) {
+        try {
+            splitByteByByte(json);
+            fail("Expected " + json + " to be rejected");
+        } catch (HttpException e) {
+        }
+    }
+
+    @Test
+    public void elementsSplitAcrossChunks() {
+        assertEquals(Arrays.asList(), splitByteByByte(" [ ] "));
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":[1,{\"c\":\"]}\\\"\"}]}", "2", "\"x,y\"", "null"),
+                splitByteByByte("\uFEFF[{\"a\":1}, {\"b\":[1,{\"c\":\"]}\\\"\"}]},2 ,\"x,y\",null]"));
+        assertEquals(Arrays.asList("{\"name\":\"\u00e9\u4e2d\"}"), splitByteByByte("[{\"name\":\"\u00e9\u4e2d\"}]"));
+    }
+
+    @Test
+    public void malformedArraysRejected() {
+        assertMalformed("{\"a\":1}");
+        assertMalformed("[{\"a\":1}");
+        assertMalformed("[{\"a\":1},]");
+        assertMalformed("[,{\"a\":1}]");
+        assertMalformed("[{\"a\":1}} ]");
+        assertMalformed("[{\"a\":1} {\"b\":2}]");
+        assertMalformed("[{\"a\":1}] x");
+    }
+
+    @Test
+    public void objectsEmittedAsTheyArrive() {
+        PublishSubject<ByteBuffer> chunks = PublishSubject.create();
+        TestSubscriber<JsonObject> subscriber = new TestSubscriber<>();
+        new StreamedChunksBody(chunks, StandardCharsets.UTF_8).asJsonArray().subscribe(subscriber);
+
+        chunks.onNext(ByteBuffer.wrap("[{\"id\":1},{\"i".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, subscriber.getOnNextEvents().size());
+        assertEquals(1, (int) subscriber.getOnNextEvents().get(0).get("id").asInteger());
+
+        chunks.onNext(ByteBuffer.wrap("d\":2}]".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, subscriber.getOnNextEvents().size());
+
+        chunks.onCompleted();
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void largeArraysStreamed() {
+        int count = 100000;
+        byte[] element = "{\"id\":0,\"name\":\"An element with some text in it\"}".getBytes(StandardCharsets.UTF_8);
+        Observable<ByteBuffer> chunks = Observable.range(0, count).map(i -> {
+            ByteBuffer chunk = ByteBuffer.allocate(element.length + 2);
+            chunk.put((byte) (i == 0 ? '[' : ',')).put(element);
+            if (i == count - 1) {
+                chunk.put((byte) ']');
+            }
+
+            chunk.flip();
+            return chunk;
+        });
+
+        TestSubscriber<JsonObject> subscriber = new TestSubscriber<>(10);
+        new StreamedChunksBody(chunks, StandardCharsets.UTF_8).asJsonArray().subscribe(subscriber);
+        assertEquals(10, subscriber.getOnNextEvents().size());
+
+        subscriber.requestMore(Long.MAX_VALUE);
+        subscriber.assertCompleted();
+        assertEquals(count, subscriber.getOnNextEvents().size());
+    }
+}
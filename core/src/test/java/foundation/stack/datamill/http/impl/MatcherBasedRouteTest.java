@@ -0,0 +1,122 @@
+package foundation.stack.datamill.http.impl;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import foundation.stack.datamill.http.CorsPolicy;
+import foundation.stack.datamill.http.Method;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.Status;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class MatcherBasedRouteTest {
+    private static Response apply(Route route, String method, String uri, String... headers) {
+        Multimap<String, String> requestHeaders = ArrayListMultimap.create();
+        for (int i = 0; i < headers.length; i += 2) {
+            requestHeaders.put(headers[i].toLowerCase(), headers[i + 1]);
+        }
+
+        return route.apply(new ServerRequestImpl(method, requestHeaders, uri, StandardCharsets.UTF_8, null))
+                .toBlocking().single();
+    }
+
+    private static String header(Response response, String name) {
+        return response.headers().containsKey(name) ? response.headers().get(name).iterator().next() : null;
+    }
+
+    @Test
+    public void optionsAnsweredWithoutInvokingHandlers() {
+        AtomicInteger calls = new AtomicInteger();
+        Route handler = request -> {
+            calls.incrementAndGet();
+            return request.respond(b -> b.ok());
+        };
+
+        MatcherBasedRoute route = new MatcherBasedRoute(Arrays.asList(
+                new MethodAndUriMatcher(Method.GET, "/users/{id}", handler),
+                new MethodAndUriMatcher(Method.PUT, "/users/{id}", handler)));
+
+        Response response = apply(route, "OPTIONS", "/users/1");
+        assertEquals(Status.OK, response.status());
+        assertEquals("GET,PUT", header(response, "Access-Control-Allow-Methods"));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void preflightsAnsweredByPolicy() {
+        MatcherBasedRoute route = new MatcherBasedRoute(Collections.singletonList(
+                new MethodAndUriMatcher(Method.DELETE, "/users/{id}", request -> request.respond(b -> b.ok()))));
+        route.cors(new CorsPolicy().allowedOrigins("https://app.example.com").maxAge(3600));
+
+        for (int i = 0; i < 2; i++) {
+            Response preflight = apply(route, "OPTIONS", "/users/1",
+                    "Origin", "https://app.example.com",
+                    "Access-Control-Request-Method", "DELETE",
+                    "Access-Control-Request-Headers", "Authorization");
+            assertEquals(Status.NO_CONTENT, preflight.status());
+            assertEquals("https://app.example.com", header(preflight, "Access-Control-Allow-Origin"));
+            assertEquals("DELETE", header(preflight, "Access-Control-Allow-Methods"));
+            assertEquals("Authorization", header(preflight, "Access-Control-Allow-Headers"));
+            assertEquals("3600", header(preflight, "Access-Control-Max-Age"));
+            assertEquals("Origin", header(preflight, "Vary"));
+        }
+
+        Response forbidden = apply(route, "OPTIONS", "/users/1",
+                "Origin", "https://evil.example.com",
+                "Access-Control-Request-Method", "DELETE");
+        assertEquals(Status.FORBIDDEN, forbidden.status());
+    }
+
+    @Test
+    public void responsesToAllowedOriginsGivenCorsHeaders() {
+        MatcherBasedRoute route = new MatcherBasedRoute(Collections.singletonList(
+                new MethodAndUriMatcher(Method.GET, "/users", request -> request.respond(b -> b.ok("users")))));
+        route.cors(new CorsPolicy()
+                .allowedOrigins("https://app.example.com")
+                .allowCredentials(true)
+                .exposedHeaders("X-Total-Count"))
+                .andFinally((request, response) -> {
+                    response.headers().put("X-Post-Processed", "true");
+                    return response;
+                });
+
+        Response response = apply(route, "GET", "/users", "Origin", "https://app.example.com");
+        assertEquals("users", response.body().get().asString().toBlocking().single());
+        assertEquals("https://app.example.com", header(response, "Access-Control-Allow-Origin"));
+        assertEquals("true", header(response, "Access-Control-Allow-Credentials"));
+        assertEquals("X-Total-Count", header(response, "Access-Control-Expose-Headers"));
+        assertEquals("true", header(response, "X-Post-Processed"));
+
+        Response sameOrigin = apply(route, "GET", "/users");
+        assertTrue(!sameOrigin.headers().containsKey("Access-Control-Allow-Origin"));
+    }
+
+    @Test
+    public void credentialsNeverAllowedForUnlistedOrigins() {
+        MatcherBasedRoute route = new MatcherBasedRoute(Collections.singletonList(
+                new MethodAndUriMatcher(Method.GET, "/users", request -> request.respond(b -> b.ok("users")))));
+        route.cors(new CorsPolicy().allowCredentials(true));
+
+        Response response = apply(route, "GET", "/users", "Origin", "https://evil.example.com");
+        assertEquals("*", header(response, "Access-Control-Allow-Origin"));
+        assertNull(header(response, "Access-Control-Allow-Credentials"));
+
+        Response preflight = apply(route, "OPTIONS", "/users",
+                "Origin", "https://evil.example.com",
+                "Access-Control-Request-Method", "GET");
+        assertEquals("*", header(preflight, "Access-Control-Allow-Origin"));
+        assertNull(header(preflight, "Access-Control-Allow-Credentials"));
+    }
+}
@@ -0,0 +1,135 @@
+package foundation.stack.datamill.http.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RequestBodyStreamTest {
+    private static String asString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes);
+    }
+
+    @Test
+    public void chunksBufferedUntilSubscribed() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RequestBodyStream stream = new RequestBodyStream(channel, 1024);
+
+        ByteBuf first = Unpooled.copiedBuffer("first".getBytes());
+        ByteBuf second = Unpooled.copiedBuffer("second".getBytes());
+        stream.onNext(first);
+        stream.onNext(second);
+        stream.onCompleted();
+
+        first.release();
+        second.release();
+        assertEquals(1, first.refCnt());
+
+        TestSubscriber<ByteBuffer> subscriber = new TestSubscriber<>();
+        stream.asObservable().subscribe(subscriber);
+
+        subscriber.assertCompleted();
+        assertEquals("first", asString(subscriber.getOnNextEvents().get(0)));
+        assertEquals("second", asString(subscriber.getOnNextEvents().get(1)));
+        assertEquals(0, first.refCnt());
+        assertEquals(0, second.refCnt());
+    }
+
+    @Test
+    public void readingPausedUntilSubscriberRequestsMore() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RequestBodyStream stream = new RequestBodyStream(channel, 8);
+
+        TestSubscriber<ByteBuffer> subscriber = new TestSubscriber<>(0);
+        stream.asObservable().subscribe(subscriber);
+
+        stream.onNext(Unpooled.copiedBuffer("0123".getBytes()));
+        assertTrue(channel.config().isAutoRead());
+
+        stream.onNext(Unpooled.copiedBuffer("4567".getBytes()));
+        assertFalse(channel.config().isAutoRead());
+        subscriber.assertNoValues();
+
+        subscriber.requestMore(1);
+        assertEquals(1, subscriber.getOnNextEvents().size());
+        assertFalse(channel.config().isAutoRead());
+
+        subscriber.requestMore(1);
+        assertEquals(2, subscriber.getOnNextEvents().size());
+        assertTrue(channel.config().isAutoRead());
+
+        stream.onCompleted();
+        subscriber.assertCompleted();
+    }
+
+    @Test
+    public void discardReleasesQueuedChunks() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        RequestBodyStream stream = new RequestBodyStream(channel, 4);
+
+        ByteBuf content = Unpooled.copiedBuffer("content".getBytes());
+        stream.onNext(content);
+        content.release();
+        assertFalse(channel.config().isAutoRead());
+
+        stream.discard();
+
+        assertEquals(0, content.refCnt());
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void detachedStreamsReleaseChannelBuffers() {
+        RequestBodyStream stream = new RequestBodyStream(new EmbeddedChannel(), 1024);
+
+        ByteBuf content = Unpooled.copiedBuffer("content".getBytes());
+        stream.onNext(content);
+        content.release();
+        stream.onCompleted();
+
+        stream.detach();
+        assertEquals(0, content.refCnt());
+
+        TestSubscriber<ByteBuffer> subscriber = new TestSubscriber<>();
+        stream.asObservable().subscribe(subscriber);
+        subscriber.assertCompleted();
+        assertEquals("content", asString(subscriber.getOnNextEvents().get(0)));
+    }
+
+    @Test
+    public void failedStreamsReleaseQueuedChunks() {
+        RequestBodyStream stream = new RequestBodyStream(new EmbeddedChannel(), 1024);
+
+        ByteBuf content = Unpooled.copiedBuffer("content".getBytes());
+        stream.onNext(content);
+        content.release();
+        stream.onError(new IllegalStateException());
+        assertEquals(0, content.refCnt());
+
+        TestSubscriber<ByteBuffer> subscriber = new TestSubscriber<>();
+        stream.asObservable().subscribe(subscriber);
+        subscriber.assertError(IllegalStateException.class);
+    }
+
+    @Test
+    public void onlyOneSubscriberAllowed() {
+        RequestBodyStream stream = new RequestBodyStream(new EmbeddedChannel(), 1024);
+        stream.asObservable().subscribe(new TestSubscriber<>());
+
+        TestSubscriber<ByteBuffer> second = new TestSubscriber<>();
+        stream.asObservable().subscribe(second);
+        second.assertError(IllegalStateException.class);
+    }
+}
@@ -1,14 +1,29 @@
 package foundation.stack.datamill.http.impl;
 
+import foundation.stack.datamill.http.Response;
 import foundation.stack.datamill.http.Status;
 import foundation.stack.datamill.http.ResponseBuilder;
 import foundation.stack.datamill.json.JsonArray;
 import foundation.stack.datamill.json.JsonObject;
+import foundation.stack.datamill.serialization.SerializationStrategy;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.json.JSONArray;
 import org.junit.Test;
 import rx.Observable;
+import rx.observers.TestSubscriber;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Ravi Chodavarapu (rchodava@gmail.com)
@@ -105,4 +120,73 @@ public class ResponseBuilderTest {
         assertEquals("value", streamingJsonArray.getJSONObject(0).get("test"));
         assertEquals("response2value", streamingJsonArray.getJSONObject(1).get("response2"));
     }
+
+    @Test
+    public void backpressuredStreamingBody() {
+        AtomicInteger produced = new AtomicInteger();
+        Response response = new ResponseBuilderImpl()
+                .streamingBody(Observable.range(0, 1000)
+                        .doOnNext(i -> produced.incrementAndGet())
+                        .map(i -> String.valueOf(i % 10).getBytes()))
+                .ok();
+
+        TestSubscriber<ByteBuffer> subscriber = new TestSubscriber<>(2);
+        response.body().get().asBufferChunks().subscribe(subscriber);
+
+        subscriber.awaitValueCount(2, 5, TimeUnit.SECONDS);
+        assertEquals(2, produced.get());
+
+        subscriber.requestMore(Long.MAX_VALUE);
+        subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+        assertEquals(1000, produced.get());
+        subscriber.assertValueCount(1000);
+    }
+
+    @Test
+    public void backpressuredStreamingJson() {
+        Response response = new ResponseBuilderImpl()
+                .streamingJson(Observable.just(
+                        new JsonObject().put("response1", "response1value"),
+                        new JsonObject().put("response2", "response2value")))
+                .ok();
+
+        JSONArray array = new JSONArray(response.body().get().asString().toBlocking().last());
+        assertEquals("response1value", array.getJSONObject(0).get("response1"));
+        assertEquals("response2value", array.getJSONObject(1).get("response2"));
+
+        response = new ResponseBuilderImpl().streamingJson(Observable.<JsonObject>empty()).ok();
+        assertEquals(0, new JSONArray(response.body().get().asString().toBlocking().last()).length());
+    }
+
+    @Test
+    public void serializedJson() {
+        SerializationStrategy<String> strategy = (target, name) -> target.put("name", name);
+
+        Response response = new ResponseBuilderImpl().jsonArray(Arrays.asList("one", "two"), strategy).ok();
+        assertEquals("[{\"name\":\"one\"},{\"name\":\"two\"}]", response.body().get().asString().toBlocking().last());
+
+        ByteBuf buffer = ((InMemoryBody) response.body().get()).asByteBuf(PooledByteBufAllocator.DEFAULT);
+        try {
+            assertEquals("[{\"name\":\"one\"},{\"name\":\"two\"}]", buffer.toString(StandardCharsets.UTF_8));
+        } finally {
+            buffer.release();
+        }
+
+        response = new ResponseBuilderImpl().json("one", strategy).ok();
+        assertEquals("one", response.body().get().asJson().toBlocking().last().get("name").asString());
+
+        response = new ResponseBuilderImpl().json("one", (target, name) -> {
+            throw new IllegalStateException();
+        }).ok();
+
+        ByteBuf failed = PooledByteBufAllocator.DEFAULT.buffer();
+        ByteBufAllocator allocator = mock(ByteBufAllocator.class);
+        when(allocator.buffer()).thenReturn(failed);
+        try {
+            ((InMemoryBody) response.body().get()).asByteBuf(allocator);
+            fail("Expected the body to fail to be written");
+        } catch (IllegalStateException e) {
+            assertEquals(0, failed.refCnt());
+        }
+    }
 }
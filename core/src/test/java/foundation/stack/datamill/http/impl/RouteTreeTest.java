@@ -0,0 +1,141 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.Method;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.ServerRequest;
+import foundation.stack.datamill.http.annotations.GET;
+import foundation.stack.datamill.http.annotations.POST;
+import foundation.stack.datamill.http.annotations.Path;
+import foundation.stack.datamill.reflection.OutlineBuilder;
+import org.junit.Test;
+import rx.Observable;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RouteTreeTest {
+    @Path("/beans")
+    private static class TestBean {
+        @GET
+        @Path("{id}")
+        public Observable<Response> get(ServerRequest request) {
+            return Observable.just(new ResponseBuilderImpl().ok("bean " + request.uriParameter("id").asString()));
+        }
+
+        @POST
+        public Observable<Response> post(ServerRequest request) {
+            return Observable.just(new ResponseBuilderImpl().ok("bean post"));
+        }
+    }
+
+    private static Route respond(String content) {
+        return r -> Observable.just(new ResponseBuilderImpl().ok(content));
+    }
+
+    private static String apply(RouteTree tree, Method method, String uri) {
+        ServerRequest request = new ServerRequestImpl(method.name(), null, uri, Charset.defaultCharset(), null);
+        Observable<Response> response = tree.apply(request);
+        if (response == null) {
+            return null;
+        }
+
+        return response.toBlocking().last().body().get().asString().toBlocking().last();
+    }
+
+    @Test
+    public void templatesMatched() {
+        RouteTree tree = new RouteTree(Arrays.asList(
+                new MethodAndUriMatcher(Method.GET, "/users", respond("users")),
+                new MethodAndUriMatcher(Method.GET, "/users/{id}", respond("user")),
+                new MethodAndUriMatcher(Method.GET, "/users/{id}/posts/{postId:\\d+}", respond("post")),
+                new MethodAndUriMatcher(Method.GET, "/userstats", respond("stats")),
+                new MethodAndUriMatcher(Method.GET, "/", respond("root")),
+                new MethodAndUriMatcher(Method.GET, "/files/{path:.+}", respond("file"))));
+
+        assertEquals("users", apply(tree, Method.GET, "/users"));
+        assertEquals("users", apply(tree, Method.GET, "/users/?sort=name"));
+        assertEquals("user", apply(tree, Method.GET, "/users/12"));
+        assertEquals("user", apply(tree, Method.GET, "/users/12?expand=posts/all"));
+        assertEquals("post", apply(tree, Method.GET, "/users/12/posts/34"));
+        assertEquals("stats", apply(tree, Method.GET, "/userstats/"));
+        assertEquals("root", apply(tree, Method.GET, "/"));
+        assertEquals("file", apply(tree, Method.GET, "/files/a/b/c.txt"));
+
+        assertNull(apply(tree, Method.GET, "/users/12/posts/abc"));
+        assertNull(apply(tree, Method.GET, "/users/12/comments"));
+        assertNull(apply(tree, Method.GET, "/user"));
+        assertNull(apply(tree, Method.POST, "/users"));
+    }
+
+    @Test
+    public void firstRegisteredMatcherWins() {
+        RouteTree tree = new RouteTree(Arrays.asList(
+                new MethodAndUriMatcher(null, "/users/{id}", respond("any user")),
+                new MethodAndUriMatcher(Method.GET, "/users/me", respond("me")),
+                new MethodAndUriMatcher(Method.POST, null, respond("any post")),
+                new MethodAndUriMatcher(Method.POST, "/things", respond("things")),
+                new TautologyMatcher(respond("fallback"))));
+
+        assertEquals("any user", apply(tree, Method.GET, "/users/me"));
+        assertEquals("any post", apply(tree, Method.POST, "/things"));
+        assertEquals("fallback", apply(tree, Method.GET, "/things"));
+    }
+
+    @Test
+    public void laterMatchersTriedWhenRouteDeclines() {
+        RouteTree tree = new RouteTree(Arrays.asList(
+                new MethodAndUriMatcher(Method.GET, "/users/{id}", r -> null),
+                new MethodAndUriMatcher(Method.GET, "/users/{name:\\w+}", respond("by name")),
+                new TautologyMatcher(respond("fallback"))));
+
+        assertEquals("by name", apply(tree, Method.GET, "/users/bob"));
+        assertEquals("fallback", apply(tree, Method.GET, "/users/bob.smith"));
+    }
+
+    @Test
+    public void beanMethodTemplatesMatched() {
+        RouteTree tree = new RouteTree(Arrays.asList(
+                new MethodAndUriMatcher(Method.GET, "/beans/special", respond("special")),
+                new BeanMethodMatcher(OutlineBuilder.DEFAULT.wrap(new TestBean()),
+                        (request, method) -> method.invoke(new TestBean(), request)),
+                new MethodAndUriMatcher(Method.GET, "/beans/{id}", respond("shadowed"))));
+
+        assertEquals("special", apply(tree, Method.GET, "/beans/special"));
+        assertEquals("bean 42", apply(tree, Method.GET, "/beans/42"));
+        assertEquals("bean post", apply(tree, Method.POST, "/beans"));
+        assertNull(apply(tree, Method.PUT, "/beans/42"));
+    }
+
+    @Test
+    public void allowedMethodsCompiledIntoTree() {
+        RouteTree tree = new RouteTree(Arrays.asList(
+                new MethodAndUriMatcher(Method.GET, "/users", respond("users")),
+                new MethodAndUriMatcher(Method.POST, "/users", respond("create")),
+                new MethodAndUriMatcher(Method.DELETE, "/users/{id}", respond("delete")),
+                new MethodAndUriMatcher(Method.GET, "/users/{id:\\d+}", respond("user")),
+                new MethodAndUriMatcher(Method.HEAD, null, respond("head")),
+                new BeanMethodMatcher(OutlineBuilder.DEFAULT.wrap(new TestBean()),
+                        (request, method) -> method.invoke(new TestBean(), request))));
+
+        assertEquals("GET,HEAD,POST", allowedMethods(tree, "/users?page=1"));
+        assertEquals("GET,HEAD,DELETE", allowedMethods(tree, "/users/1"));
+        assertEquals("HEAD,DELETE", allowedMethods(tree, "/users/abc"));
+        assertEquals("HEAD,POST", allowedMethods(tree, "/beans"));
+        assertEquals("GET,HEAD", allowedMethods(tree, "/beans/1"));
+        assertEquals("HEAD", allowedMethods(tree, "/other"));
+
+        assertNull(new RouteTree(Arrays.asList(new MethodAndUriMatcher(Method.GET, "/users", respond("users"))))
+                .allowedMethods(new ServerRequestImpl("OPTIONS", null, "/other", Charset.defaultCharset(), null)));
+    }
+
+    private static String allowedMethods(RouteTree tree, String uri) {
+        return tree.allowedMethods(new ServerRequestImpl("OPTIONS", null, uri, Charset.defaultCharset(), null));
+    }
+}
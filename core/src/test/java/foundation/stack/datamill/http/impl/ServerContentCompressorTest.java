@@ -0,0 +1,93 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.http.ServerOptions;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ServerContentCompressorTest {
+    private static String sendResponse(ServerOptions options, String contentType, int length) {
+        EmbeddedChannel channel = new EmbeddedChannel(new ServerContentCompressor(options));
+
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+        channel.writeInbound(request);
+        ReferenceCountUtil.release(channel.readInbound());
+
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.wrappedBuffer(new byte[length]));
+        if (contentType != null) {
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        }
+
+        HttpUtil.setContentLength(response, length);
+        channel.writeOutbound(response);
+
+        HttpResponse sent = channel.readOutbound();
+        String contentEncoding = sent.headers().get(HttpHeaderNames.CONTENT_ENCODING);
+
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(message);
+        }
+
+        ReferenceCountUtil.release(sent);
+        channel.finishAndReleaseAll();
+
+        return contentEncoding;
+    }
+
+    @Test
+    public void compressibleResponsesCompressed() {
+        ServerOptions options = new ServerOptions();
+        assertEquals("gzip", sendResponse(options, "application/json; charset=utf-8", 4096));
+        assertEquals("gzip", sendResponse(options, "text/html", 4096));
+        assertEquals("gzip", sendResponse(options, "application/vnd.api+json", 4096));
+        assertEquals("gzip", sendResponse(options, null, 4096));
+    }
+
+    @Test
+    public void smallResponsesNotCompressed() {
+        assertNull(sendResponse(new ServerOptions(), "application/json", 100));
+        assertNull(sendResponse(new ServerOptions().compressionMinimumSize(8192), "application/json", 4096));
+        assertEquals("gzip", sendResponse(new ServerOptions().compressionMinimumSize(0), "application/json", 100));
+    }
+
+    @Test
+    public void incompressibleContentTypesNotCompressed() {
+        assertNull(sendResponse(new ServerOptions(), "image/png", 4096));
+        assertNull(sendResponse(new ServerOptions(), "application/gzip", 4096));
+        assertNull(sendResponse(new ServerOptions().compressibleContentTypes("text/*"), "application/json", 4096));
+        assertEquals("gzip", sendResponse(new ServerOptions().compressibleContentTypes("*/*"), "image/png", 4096));
+    }
+
+    @Test
+    public void acceptedEncodings() {
+        assertTrue(ServerContentCompressor.acceptsEncoding("gzip, deflate, br", "br"));
+        assertTrue(ServerContentCompressor.acceptsEncoding("gzip;q=0.5, br;q=1.0", "gzip"));
+        assertTrue(ServerContentCompressor.acceptsEncoding("*", "gzip"));
+        assertFalse(ServerContentCompressor.acceptsEncoding("gzip;q=0, *", "gzip"));
+        assertFalse(ServerContentCompressor.acceptsEncoding("*;q=0", "br"));
+        assertFalse(ServerContentCompressor.acceptsEncoding("gzip", "br"));
+        assertFalse(ServerContentCompressor.acceptsEncoding(null, "gzip"));
+    }
+}
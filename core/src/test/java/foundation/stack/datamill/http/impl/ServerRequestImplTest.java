@@ -1,5 +1,6 @@
 package foundation.stack.datamill.http.impl;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import foundation.stack.datamill.http.Method;
 import foundation.stack.datamill.http.ServerRequest;
@@ -13,6 +14,7 @@ import java.nio.charset.Charset;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author Ravi Chodavarapu (rchodava@gmail.com)
@@ -65,4 +67,20 @@ public class ServerRequestImplTest {
         assertEquals("valueh1v1", request.firstHeader("header1").asString());
         assertEquals("valueh2v1", request.firstHeader("header2").asString());
     }
+
+    @Test
+    public void uriParametersExtractedFromTemplateMatch() {
+        String uri = "/users/12/posts/34";
+        UriTemplate template = new UriTemplate("/users/{userId}/posts/{postId}");
+        int[] captures = new int[4];
+        template.match(uri, captures);
+
+        ServerRequestImpl request = new ServerRequestImpl("GET", null, uri, Charset.defaultCharset(), null);
+        request.setUriParameters(new UriTemplateMatch(template, uri, captures));
+
+        assertEquals("12", request.uriParameter("userId").asString());
+        assertEquals("34", request.uriParameter("postId").asString());
+        assertNull(request.uriParameter("missing"));
+        assertEquals(ImmutableMap.of("userId", "12", "postId", "34"), request.uriParameters());
+    }
 }
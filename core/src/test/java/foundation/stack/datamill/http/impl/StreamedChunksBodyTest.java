@@ -0,0 +1,109 @@
+package foundation.stack.datamill.http.impl;
+
+import foundation.stack.datamill.json.JsonObject;
+import org.junit.Test;
+import rx.Observable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class StreamedChunksBodyTest {
+    private static List<ByteBuffer> chunksOf(byte[] bytes, int size) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += size) {
+            chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + size))));
+        }
+
+        return chunks;
+    }
+
+    private static StreamedChunksBody bodyOf(String json, Charset charset, int chunkSize) {
+        return new StreamedChunksBody(Observable.from(chunksOf(json.getBytes(charset), chunkSize)), charset);
+    }
+
+    public static class Bean {
+        public String name;
+        public List<Integer> values;
+    }
+
+    @Test
+    public void fromJsonReadsAcrossChunks() {
+        String json = "{\"name\":\"é中\",\"values\":[1,2,3]}";
+        for (int size : new int[] { 1, 2, 3, 7, 1024 }) {
+            Bean bean = bodyOf(json, StandardCharsets.UTF_8, size).fromJson(Bean.class).toBlocking().single();
+            assertEquals("é中", bean.name);
+            assertEquals(Arrays.asList(1, 2, 3), bean.values);
+        }
+
+        Map<?, ?> map = bodyOf("{\"name\":\"été\"}", StandardCharsets.ISO_8859_1, 2)
+                .fromJson(Map.class).toBlocking().single();
+        assertEquals("été", map.get("name"));
+
+        Bean bean = bodyOf("{\"name\":\"中\"}", StandardCharsets.UTF_16LE, 3).fromJson(Bean.class)
+                .toBlocking().single();
+        assertEquals("中", bean.name);
+    }
+
+    @Test
+    public void fromJsonFailsOnMalformedBodies() {
+        try {
+            bodyOf("{\"name\":", StandardCharsets.UTF_8, 3).fromJson(Bean.class).toBlocking().single();
+            fail("Expected a truncated body to be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void jsonArraysDecodedWithBodyCharset() {
+        String json = "[{\"name\":\"été\"},{\"name\":\"ça\"}]";
+        for (Charset charset : new Charset[] { StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16LE }) {
+            List<JsonObject> objects = bodyOf(json, charset, 3).asJsonArray().toList().toBlocking().single();
+            assertEquals(2, objects.size());
+            assertEquals("été", objects.get(0).get("name").asString());
+            assertEquals("ça", objects.get(1).get("name").asString());
+        }
+
+        assertTrue(JsonArraySplitter.supports(StandardCharsets.ISO_8859_1));
+        assertFalse(JsonArraySplitter.supports(StandardCharsets.UTF_16LE));
+        assertFalse(JsonArraySplitter.supports(Charset.forName("Shift_JIS")));
+    }
+
+    @Test
+    public void chunksReadInPlace() throws IOException {
+        byte[] bytes = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        List<ByteBuffer> chunks = chunksOf(bytes, 3);
+        chunks.add(1, ByteBuffer.allocate(0));
+
+        ByteBuffersInputStream stream = new ByteBuffersInputStream(chunks);
+        assertEquals('0', stream.read());
+        assertEquals(2, stream.available());
+        assertEquals(3, stream.skip(3));
+
+        byte[] read = new byte[8];
+        assertEquals(2, stream.read(read, 0, 8));
+        assertEquals(3, stream.read(read, 2, 6));
+        assertEquals(1, stream.read(read, 5, 3));
+        assertArrayEquals("456789".getBytes(StandardCharsets.US_ASCII), Arrays.copyOf(read, 6));
+        assertEquals(-1, stream.read());
+        assertEquals(-1, stream.read(read, 0, 8));
+
+        // The chunks themselves are left as they were, so the body can be read again
+        assertEquals(0, chunks.get(0).position());
+    }
+}
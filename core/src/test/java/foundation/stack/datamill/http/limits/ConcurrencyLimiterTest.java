@@ -0,0 +1,103 @@
+package foundation.stack.datamill.http.limits;
+
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.Status;
+import foundation.stack.datamill.http.impl.ServerRequestImpl;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class ConcurrencyLimiterTest {
+    private static ServerRequestImpl request() {
+        return new ServerRequestImpl("GET", null, "/reports", StandardCharsets.UTF_8, null);
+    }
+
+    @Test
+    public void requestsBeyondLimitRejected() {
+        PublishSubject<Response> pending = PublishSubject.create();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit()).initialLimit(2);
+        Route route = limiter.filter(request -> pending);
+
+        TestSubscriber<Response> first = new TestSubscriber<>();
+        route.apply(request()).subscribe(first);
+        TestSubscriber<Response> second = new TestSubscriber<>();
+        route.apply(request()).subscribe(second);
+        assertEquals(2, limiter.getInFlight());
+
+        Response rejected = route.apply(request()).toBlocking().single();
+        assertEquals(Status.SERVICE_UNAVAILABLE, rejected.status());
+        assertEquals("1", rejected.headers().get("Retry-After").iterator().next());
+
+        // Requests are released whether they complete, or the server stops waiting on them
+        pending.onNext(request().respond(b -> b.ok()).toBlocking().single());
+        second.unsubscribe();
+        assertEquals(0, limiter.getInFlight());
+
+        TestSubscriber<Response> third = new TestSubscriber<>();
+        route.apply(request()).subscribe(third);
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    private static void completeWindow(ConcurrencyLimiter limiter, AtomicLong clock, int requests, long latency) {
+        for (int i = 0; i < requests; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+
+        // The limit is updated by the first request to complete after the window ends
+        for (int i = 0; i < requests - 1; i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(latency));
+        }
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(latency));
+    }
+
+    @Test
+    public void aimdLimitAdaptsToLatency() {
+        AtomicLong clock = new AtomicLong();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(
+                new AimdLimit().latencyThreshold(100, TimeUnit.MILLISECONDS).backoffRatio(0.5), clock::get)
+                .initialLimit(10)
+                .window(1, TimeUnit.SECONDS);
+
+        completeWindow(limiter, clock, 10, 10);
+        assertEquals(11, limiter.getLimit());
+
+        // An unused limit isn't grown
+        completeWindow(limiter, clock, 1, 10);
+        assertEquals(11, limiter.getLimit());
+
+        completeWindow(limiter, clock, 1, 500);
+        assertEquals(5, limiter.getLimit());
+    }
+
+    @Test
+    public void gradientLimitShrinksAsLatencyGrows() {
+        AtomicLong clock = new AtomicLong();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new GradientLimit().smoothing(1), clock::get)
+                .initialLimit(100)
+                .minLimit(10);
+
+        for (int i = 0; i < 3; i++) {
+            completeWindow(limiter, clock, 60, 10);
+        }
+
+        int unloaded = limiter.getLimit();
+        assertTrue(unloaded > 100);
+
+        completeWindow(limiter, clock, 60, 100);
+        assertTrue(limiter.getLimit() < unloaded * 0.6);
+        assertTrue(limiter.getLimit() >= 10);
+    }
+}
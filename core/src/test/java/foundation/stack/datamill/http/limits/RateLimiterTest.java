@@ -0,0 +1,106 @@
+package foundation.stack.datamill.http.limits;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import foundation.stack.datamill.http.Response;
+import foundation.stack.datamill.http.Route;
+import foundation.stack.datamill.http.ServerRequest;
+import foundation.stack.datamill.http.Status;
+import foundation.stack.datamill.http.impl.ServerRequestImpl;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class RateLimiterTest {
+    private static ServerRequestImpl request(String apiKey) {
+        Multimap<String, String> headers = ArrayListMultimap.create();
+        if (apiKey != null) {
+            headers.put("x-api-key", apiKey);
+        }
+
+        return new ServerRequestImpl("GET", headers, "/reports", StandardCharsets.UTF_8, null);
+    }
+
+    private static Response respond(Route route, ServerRequest request) {
+        return route.apply(request).toBlocking().single();
+    }
+
+    @Test
+    public void requestsLimitedPerKey() {
+        AtomicLong clock = new AtomicLong();
+        Route route = new RateLimiter(RequestKeys.header("X-API-Key"), clock::get).permitsPerSecond(2).burst(3)
+                .filter(request -> request.respond(b -> b.ok()));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Status.OK, respond(route, request("first")).status());
+        }
+
+        Response rejected = respond(route, request("first"));
+        assertEquals(Status.TOO_MANY_REQUESTS, rejected.status());
+        assertEquals("1", rejected.headers().get("Retry-After").iterator().next());
+
+        assertEquals(Status.OK, respond(route, request("second")).status());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(Status.OK, respond(route, request("first")).status());
+        assertEquals(Status.TOO_MANY_REQUESTS, respond(route, request("first")).status());
+    }
+
+    @Test
+    public void unidentifiedRequestsShareBucket() {
+        AtomicLong clock = new AtomicLong();
+        Route route = new RateLimiter(RequestKeys.remoteAddress(), clock::get).permitsPerSecond(1)
+                .filter(request -> request.respond(b -> b.ok()));
+
+        ServerRequestImpl identified = request(null);
+        identified.setRemoteAddress(new InetSocketAddress("127.0.0.1", 1234));
+
+        assertEquals(Status.OK, respond(route, request(null)).status());
+        assertEquals(Status.TOO_MANY_REQUESTS, respond(route, request(null)).status());
+        assertEquals(Status.OK, respond(route, identified).status());
+    }
+
+    @Test
+    public void refilledBucketsForgottenBeyondMaximumKeys() {
+        AtomicLong clock = new AtomicLong();
+        RateLimiter limiter = new RateLimiter(RequestKeys.header("X-API-Key"), clock::get).maxKeys(2);
+
+        assertEquals(0, limiter.acquire("first"));
+        assertEquals(0, limiter.acquire("second"));
+
+        // While all buckets are in use, additional clients share a bucket
+        assertEquals(0, limiter.acquire("third"));
+        assertEquals(TimeUnit.SECONDS.toNanos(1), limiter.acquire("fourth"));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(0, limiter.acquire("fourth"));
+        assertEquals(0, limiter.acquire("fifth"));
+    }
+
+    @Test
+    public void nonPositiveRatesRejected() {
+        RateLimiter limiter = new RateLimiter(RequestKeys.remoteAddress());
+        for (double permits : new double[] { 0, -1, Double.NaN }) {
+            try {
+                limiter.permitsPerSecond(permits);
+                fail("Expected " + permits + " permits per second to be rejected");
+            } catch (IllegalArgumentException e) {
+            }
+        }
+
+        try {
+            limiter.burst(0);
+            fail("Expected a burst of 0 to be rejected");
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package foundation.stack.datamill.http.metrics;
+
+import foundation.stack.datamill.http.Method;
+import foundation.stack.datamill.http.cache.ResponseCache;
+import foundation.stack.datamill.http.impl.ServerRequestImpl;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class MetricsRegistryTest {
+    @Test
+    public void histogramBuckets() {
+        for (long value : new long[] { 0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE }) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.upperBoundOf(bucket));
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.upperBoundOf(bucket - 1));
+            }
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.valueAtPercentile(50));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5050), histogram.getSum());
+
+        long median = histogram.valueAtPercentile(50);
+        assertTrue(median >= TimeUnit.MILLISECONDS.toNanos(50) && median <= TimeUnit.MILLISECONDS.toNanos(57));
+        long maximum = histogram.valueAtPercentile(100);
+        assertTrue(maximum >= TimeUnit.MILLISECONDS.toNanos(100) && maximum <= TimeUnit.MILLISECONDS.toNanos(113));
+
+        assertEquals(0, histogram.countAtOrBelow(0));
+        assertEquals(100, histogram.countAtOrBelow(TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test
+    public void requestsRecordedPerRouteAndMethod() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertNull(registry.getRoute(Method.GET, "/users/{id}"));
+
+        registry.requestStarted(Method.GET, "/users/{id}");
+        assertEquals(1, registry.getRoute(Method.GET, "/users/{id}").getInFlight());
+        registry.requestCompleted(Method.GET, "/users/{id}", 200, 0, 100, 1000, 2000000, 3000);
+
+        registry.requestStarted(Method.GET, "/users/{id}");
+        registry.requestCompleted(Method.GET, "/users/{id}", 404, 0, 0, 1000, 1000, 1000);
+
+        registry.requestStarted(Method.POST, "/users");
+        registry.requestCompleted(Method.POST, "/users", 0, 512, 0, 1000, 0, 0);
+
+        RouteMetrics users = registry.getRoute(Method.GET, "/users/{id}");
+        assertEquals(0, users.getInFlight());
+        assertEquals(2, users.getRequests());
+        assertEquals(1, users.getRequests(2));
+        assertEquals(1, users.getRequests(4));
+        assertEquals(100, users.getResponseBytes());
+        assertEquals(2, users.getDurations().getCount());
+        assertEquals(2004000 + 3000, users.getDurations().getSum());
+        assertEquals(2001000, users.getHandlerDurations().getSum());
+
+        RouteMetrics created = registry.getRoute(Method.POST, "/users");
+        assertEquals(1, created.getRequests(0));
+        assertEquals(512, created.getRequestBytes());
+
+        List<RouteMetrics> routes = registry.getRoutes();
+        assertEquals(2, routes.size());
+        assertEquals("/users", routes.get(0).getRoute());
+        assertEquals("/users/{id}", routes.get(1).getRoute());
+    }
+
+    @Test
+    public void prometheusText() {
+        ResponseCache cache = new ResponseCache(1024);
+        cache.filter(request -> request.respond(b -> b.ok()))
+                .apply(new ServerRequestImpl("GET", null, "/cached", StandardCharsets.UTF_8, null))
+                .toBlocking().single();
+
+        MetricsRegistry registry = new MetricsRegistry().addCache("countries", cache);
+        registry.requestStarted(Method.GET, "/users/{id}");
+        registry.requestCompleted(Method.GET, "/users/{id}", 200, 0, 100, 0, TimeUnit.MILLISECONDS.toNanos(20), 0);
+        registry.requestStarted(Method.GET, "/\"quoted\"");
+        registry.connectionOpened();
+        registry.connectionOpened();
+        registry.connectionClosed(ConnectionCloseReason.IDLE);
+        registry.connectionClosed(ConnectionCloseReason.REFUSED);
+
+        String text = registry.toPrometheusText();
+        assertTrue(text.contains("# TYPE http_server_requests_total counter\n"));
+        assertTrue(text.contains("http_server_connections_open 1\n"));
+        assertTrue(text.contains("http_response_cache_requests_total{cache=\"countries\",result=\"miss\"} 1\n"));
+        assertTrue(text.contains("http_response_cache_entries{cache=\"countries\"} 1\n"));
+        assertTrue(text.contains("http_server_connections_closed_total{reason=\"idle\"} 1\n"));
+        assertTrue(text.contains("http_server_connections_closed_total{reason=\"refused\"} 1\n"));
+        assertTrue(text.contains("http_server_requests_total{method=\"GET\",route=\"/users/{id}\",status=\"2xx\"} 1\n"));
+        assertTrue(text.contains("http_server_requests_in_flight{method=\"GET\",route=\"/\\\"quoted\\\"\"} 1\n"));
+        assertTrue(text.contains("http_server_response_bytes_total{method=\"GET\",route=\"/users/{id}\"} 100\n"));
+        assertTrue(text.contains(
+                "http_server_request_duration_seconds_bucket{method=\"GET\",route=\"/users/{id}\",le=\"0.01\"} 0\n"));
+        assertTrue(text.contains(
+                "http_server_request_duration_seconds_bucket{method=\"GET\",route=\"/users/{id}\",le=\"0.025\"} 1\n"));
+        assertTrue(text.contains(
+                "http_server_request_duration_seconds_bucket{method=\"GET\",route=\"/users/{id}\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains(
+                "http_server_request_duration_seconds_sum{method=\"GET\",route=\"/users/{id}\"} 0.02\n"));
+        assertTrue(text.contains("http_server_request_phase_duration_seconds_count" +
+                "{method=\"GET\",route=\"/users/{id}\",phase=\"handler\"} 1\n"));
+    }
+}
@@ -0,0 +1,174 @@
+package foundation.stack.datamill.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.collect.ImmutableMap;
+import foundation.stack.datamill.serialization.SerializationStrategy;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class JsonNodeObjectTest {
+    private static final String PROPERTIES = "{\"character\": \"v\", \"numeric\": 2, \"decimal\": 2.5, " +
+            "\"boolean\": true, \"string\": \"value\", \"bytes\": [1, 2], \"numericString\": \"3\", " +
+            "\"nested\": {\"name\": \"value\"}, \"empty\": null}";
+
+    private final JsonNodeObject testObject = new JsonNodeObject("{\"name\": \"value\"}");
+
+    private void testThrowsConversionException(JsonNodeObject json, Consumer<JsonNodeObject> conversion) {
+        try {
+            conversion.accept(json);
+            fail("Failed to throw an expected conversion exception!");
+        } catch (JsonException e) {
+        }
+    }
+
+    private void testThrowsConversionException(Consumer<JsonNodeObject> conversion) {
+        testThrowsConversionException(testObject, conversion);
+    }
+
+    @Test
+    public void unsupportedConversions() {
+        testThrowsConversionException(j -> j.asBoolean());
+        testThrowsConversionException(j -> j.asByte());
+        testThrowsConversionException(j -> j.asCharacter());
+        testThrowsConversionException(j -> j.asDouble());
+        testThrowsConversionException(j -> j.asFloat());
+        testThrowsConversionException(j -> j.asInteger());
+        testThrowsConversionException(j -> j.asLocalDateTime());
+        testThrowsConversionException(j -> j.asLong());
+        testThrowsConversionException(j -> j.asShort());
+        testThrowsConversionException(j -> new JsonNodeObject("[1, 2]"));
+        testThrowsConversionException(j -> new JsonNodeObject("{\"name\":"));
+
+        assertFalse(testObject.isBoolean());
+        assertFalse(testObject.isNumeric());
+        assertFalse(testObject.isString());
+    }
+
+    @Test
+    public void stringConversion() throws Exception {
+        String json = new JsonNodeObject("{\"name\": \"value\"}").put("name2", 2).asString();
+
+        JsonParser parser = new JsonFactory().createParser(json);
+        parser.nextToken();
+        assertEquals("name", parser.nextFieldName());
+        assertEquals("value", parser.nextTextValue());
+        assertEquals("name2", parser.nextFieldName());
+        assertEquals(2, parser.nextIntValue(0));
+    }
+
+    @Test
+    public void propertyConversionsMatchJsonObject() {
+        JsonObject expected = new JsonObject(PROPERTIES);
+        JsonNodeObject json = new JsonNodeObject(PROPERTIES);
+
+        for (String name : Arrays.asList("character", "numeric", "decimal", "boolean", "string", "bytes",
+                "numericString", "nested", "empty", "missing")) {
+            assertEquals(name, expected.get(name).asString(), json.get(name).asString());
+            assertEquals(name, expected.get(name).asInteger(), json.get(name).asInteger());
+            assertEquals(name, expected.get(name).asLong(), json.get(name).asLong());
+            assertEquals(name, expected.get(name).asShort(), json.get(name).asShort());
+            assertEquals(name, expected.get(name).asDouble(), json.get(name).asDouble(), 0.001);
+            assertEquals(name, expected.get(name).asFloat(), json.get(name).asFloat(), 0.001);
+
+            for (Class<?> type : Arrays.asList(Integer.class, long.class, Double.class)) {
+                assertEquals(name, expected.get(name).asObject(type), json.get(name).asObject(type));
+            }
+        }
+
+        assertEquals(true, json.get("boolean").asBoolean());
+        assertEquals(2, json.get("numeric").asByte());
+        assertEquals('v', json.get("character").asCharacter());
+        assertEquals((char) 2, json.get("numeric").asCharacter());
+        assertArrayEquals("value".getBytes(), json.get("string").asByteArray());
+        assertArrayEquals(new byte[] {(byte) 1, (byte) 2}, json.get("bytes").asByteArray());
+        assertEquals("value", json.get("nested").asJson().get("name").asString());
+        assertNull(json.get("string").asJson());
+        assertNull(json.get("missing").asObject(Boolean.class));
+        assertNull(json.get("missing").asLocalDateTime());
+        assertEquals(true, json.get("boolean").asObject(boolean.class));
+
+        testThrowsConversionException(json, j -> j.get("string").asBoolean());
+        testThrowsConversionException(json, j -> j.get("string").asCharacter());
+        testThrowsConversionException(json, j -> j.get("missing").asByte());
+    }
+
+    @Test
+    public void valuesPut() {
+        LocalDateTime now = LocalDateTime.now();
+        JsonNodeObject json = new JsonNodeObject()
+                .put("string", "value")
+                .put("integer", 1)
+                .put("long", Long.MAX_VALUE)
+                .put("double", 1.5)
+                .put("boolean", false)
+                .put("time", now)
+                .put("array", new Object[] { 1, "two" })
+                .put("map", ImmutableMap.of("key", "value"))
+                .put("list", Arrays.asList(1, 2))
+                .put("nested", new JsonNodeObject().put("name", "value"))
+                .put("removed", "value")
+                .put("removed", (Object) null);
+
+        JsonObject parsed = new JsonObject(json.asString());
+        assertEquals("value", parsed.get("string").asString());
+        assertEquals(1, parsed.get("integer").asInteger());
+        assertEquals(Long.MAX_VALUE, parsed.get("long").asLong());
+        assertEquals(1.5, parsed.get("double").asDouble(), 0.001);
+        assertFalse(parsed.get("boolean").asBoolean());
+        assertEquals(now, parsed.get("time").asLocalDateTime());
+        assertEquals("[1,\"two\"]", parsed.get("array").asString());
+        assertEquals("value", ((JsonObject.JsonProperty) parsed.get("map")).asJson().get("key").asString());
+        assertEquals("[1,2]", parsed.get("list").asString());
+        assertEquals("value", ((JsonObject.JsonProperty) parsed.get("nested")).asJson().get("name").asString());
+        assertFalse(json.propertyNames().contains("removed"));
+        assertEquals(Arrays.asList("string", "integer", "long", "double", "boolean", "time", "array", "map", "list",
+                "nested"), new ArrayList<>(json.propertyNames()));
+    }
+
+    @Test
+    public void structuredInputAndOutput() {
+        SerializationStrategy<String> named = (target, value) -> target.put("name", value);
+        JsonNodeObject json = new JsonNodeObject()
+                .put("single", "one", named)
+                .put("many", (Iterable<String>) Arrays.asList("one", "two"), named);
+
+        assertEquals("one", json.get("single", source -> source.get("name").asString()));
+
+        List<String> names = new ArrayList<>();
+        json.forEach("many", source -> source.get("name").asString(), names::add);
+        json.forEach("single", source -> source.get("name").asString(), names::add);
+        assertEquals(Arrays.asList("one", "two", "one"), names);
+
+        List<Integer> values = new ArrayList<>();
+        new JsonNodeObject("{\"values\": [1, 2, 3]}").forEach("values", value -> values.add(value.asInteger()));
+        assertEquals(Arrays.asList(1, 2, 3), values);
+
+        assertEquals("one", Json.nodeDeserializer(source -> source.get("single", s -> s.get("name").asString()))
+                .call(json));
+        assertEquals("{\"name\":\"one\"}", Json.nodeSerializer(named).call("one").asString());
+    }
+
+    @Test
+    public void arrays() {
+        List<JsonNodeObject> objects = new JsonNodeArray("[{\"key\": \"value\"}, {\"key\":\"value\"}]")
+                .asJsonObjects();
+        assertEquals(2, objects.size());
+        assertEquals("value", objects.get(0).get("key").asString());
+
+        assertEquals("[{\"key\":\"value\"}]", new JsonNodeArray().add(objects.get(0)).asString());
+        assertEquals("[\"a\",\"b\"]", new JsonNodeArray(new String[] { "a", "b" }).asString());
+        assertEquals(2, new JsonNodeObject().put("array", new JsonNodeArray(objects)).get("array")
+                .asJsonArray().asJsonObjects().size());
+    }
+}
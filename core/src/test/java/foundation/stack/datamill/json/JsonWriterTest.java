@@ -0,0 +1,102 @@
+package foundation.stack.datamill.json;
+
+import com.google.common.collect.ImmutableMap;
+import foundation.stack.datamill.serialization.SerializationStrategy;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class JsonWriterTest {
+    private static class Entity {
+        private final int id;
+        private final String name;
+        private final List<String> tags;
+
+        Entity(int id, String name, String... tags) {
+            this.id = id;
+            this.name = name;
+            this.tags = Arrays.asList(tags);
+        }
+    }
+
+    private static final SerializationStrategy<Entity> strategy = (target, entity) -> target
+            .put("id", entity.id)
+            .put("name", entity.name)
+            .put("tags", entity.tags);
+
+    private static String write(JsonWriterAction action) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(stream);
+        action.write(writer);
+        writer.close();
+        return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private interface JsonWriterAction {
+        void write(JsonWriter writer);
+    }
+
+    @Test
+    public void entitiesWrittenAsTheTreeWouldBe() {
+        List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entities.add(new Entity(i, i % 3 == 0 ? null : "Entity \"" + i + "\" é", "a", "b"));
+        }
+
+        String written = write(writer -> writer.values(entities, strategy));
+
+        JsonArray expected = new JsonArray();
+        for (Entity entity : entities) {
+            expected.add((JsonObject) strategy.serialize(new JsonObject(), entity));
+        }
+
+        assertEquals(expected.asJsonObjects().toString(), new JsonArray(written).asJsonObjects().toString());
+        assertEquals("{\"id\":1,\"name\":\"one\",\"tags\":[]}", write(writer -> writer.value(new Entity(1, "one"),
+                strategy)));
+        assertEquals("[]", write(writer -> writer.values(new ArrayList<Entity>(), strategy)));
+    }
+
+    @Test
+    public void valuesWritten() {
+        LocalDateTime time = LocalDateTime.of(2017, 1, 1, 10, 0);
+        String written = write(writer -> writer.beginObject()
+                .put("string", "value")
+                .put("integer", 1)
+                .put("long", Long.MAX_VALUE)
+                .put("double", 1.5)
+                .put("boolean", true)
+                .put("missing", (Object) null)
+                .put("time", time)
+                .put("array", new Object[] { 1, null, "two" })
+                .put("bytes", new byte[] { 1, 2 })
+                .put("map", ImmutableMap.of("key", "value"))
+                .put("json", new JsonObject().put("name", "value"))
+                .put("node", new JsonNodeObject().put("name", "value"))
+                .put("nested", new Entity(2, "two"), strategy)
+                .put("list", Arrays.asList(new Entity(3, "three")), strategy)
+                .endObject());
+
+        assertEquals("{\"string\":\"value\",\"integer\":1,\"long\":9223372036854775807,\"double\":1.5," +
+                "\"boolean\":true,\"time\":\"2017-01-01T10:00\",\"array\":[1,null,\"two\"],\"bytes\":[1,2]," +
+                "\"map\":{\"key\":\"value\"},\"json\":{\"name\":\"value\"},\"node\":{\"name\":\"value\"}," +
+                "\"nested\":{\"id\":2,\"name\":\"two\",\"tags\":[]}," +
+                "\"list\":[{\"id\":3,\"name\":\"three\",\"tags\":[]}]}", written);
+
+        assertEquals(new byte[] { 1, 2 }.length, new JsonObject(written).get("bytes").asByteArray().length);
+    }
+
+    @Test
+    public void openValuesClosed() {
+        assertEquals("[{\"name\":\"value\"}]", write(writer -> writer.beginArray().beginObject().put("name", "value")));
+    }
+}
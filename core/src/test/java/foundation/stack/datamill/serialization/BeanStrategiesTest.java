@@ -0,0 +1,217 @@
+package foundation.stack.datamill.serialization;
+
+import foundation.stack.datamill.json.JsonObject;
+import foundation.stack.datamill.reflection.Bean;
+import foundation.stack.datamill.reflection.OutlineBuilder;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Ravi Chodavarapu (rchodava@gmail.com)
+ */
+public class BeanStrategiesTest {
+    public static class User {
+        private long id;
+        private String firstName;
+        private Integer age;
+        private boolean active;
+        private LocalDateTime created;
+        private String nickname;
+        private List<String> roles;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public void setFirstName(String firstName) {
+            this.firstName = firstName;
+        }
+
+        public Integer getAge() {
+            return age;
+        }
+
+        public void setAge(Integer age) {
+            this.age = age;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public LocalDateTime getCreated() {
+            return created;
+        }
+
+        public void setCreated(LocalDateTime created) {
+            this.created = created;
+        }
+
+        public String getNickname() {
+            return nickname;
+        }
+
+        public User setNickname(String nickname) {
+            this.nickname = nickname;
+            return this;
+        }
+
+        public List<String> getRoles() {
+            return roles;
+        }
+
+        public void setRoles(List<String> roles) {
+            this.roles = roles;
+        }
+
+        public String getDisplayName() {
+            return firstName + " (" + nickname + ")";
+        }
+    }
+
+    private static class Point {
+        private int x;
+        private int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public void setX(int x) {
+            this.x = x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public void setY(int y) {
+            this.y = y;
+        }
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(1);
+        user.setFirstName("Ravi");
+        user.setAge(30);
+        user.setActive(true);
+        user.setCreated(LocalDateTime.of(2017, 1, 1, 10, 0));
+        user.setNickname("rc");
+        user.setRoles(Arrays.asList("admin"));
+        return user;
+    }
+
+    @Test
+    public void serializedCamelCased() {
+        JsonObject json = (JsonObject) BeanStrategies.CAMEL_CASED.serializer(User.class)
+                .serialize(new JsonObject(), user());
+
+        assertEquals(1, (long) json.get("id").asLong());
+        assertEquals("Ravi", json.get("firstName").asString());
+        assertEquals(30, (int) json.get("age").asInteger());
+        assertTrue(json.get("active").asBoolean());
+        assertEquals(LocalDateTime.of(2017, 1, 1, 10, 0), json.get("created").asLocalDateTime());
+        assertEquals("rc", json.get("nickname").asString());
+        assertEquals("Ravi (rc)", json.get("displayName").asString());
+        assertFalse(json.propertyNames().contains("class"));
+    }
+
+    @Test
+    public void serializedSnakeCased() {
+        JsonObject json = (JsonObject) BeanStrategies.SNAKE_CASED.serializer(User.class)
+                .serialize(new JsonObject(), user());
+
+        assertEquals("Ravi", json.get("first_name").asString());
+        assertEquals("Ravi (rc)", json.get("display_name").asString());
+        assertFalse(json.propertyNames().contains("firstName"));
+    }
+
+    @Test
+    public void deserializedAsBeansWouldBe() {
+        JsonObject json = new JsonObject()
+                .put("id", 2)
+                .put("firstName", "Ravi")
+                .put("age", "31")
+                .put("active", true)
+                .put("created", LocalDateTime.of(2017, 1, 1, 10, 0))
+                .put("nickname", "rc")
+                .put("roles", Arrays.asList("admin"));
+
+        User deserialized = BeanStrategies.CAMEL_CASED.deserializer(User.class).deserialize(json);
+
+        Bean<User> expected = OutlineBuilder.CAMEL_CASED.wrap(new User())
+                .set(u -> u.getId(), json.get("id"))
+                .set(u -> u.getFirstName(), json.get("firstName"))
+                .set(u -> u.getAge(), json.get("age"))
+                .set(u -> u.isActive(), json.get("active"))
+                .set(u -> u.getCreated(), json.get("created"))
+                .set(u -> u.getNickname(), json.get("nickname"));
+
+        assertEquals(expected.get().getId(), deserialized.getId());
+        assertEquals(expected.get().getFirstName(), deserialized.getFirstName());
+        assertEquals(expected.get().getAge(), deserialized.getAge());
+        assertEquals(expected.get().isActive(), deserialized.isActive());
+        assertEquals(expected.get().getCreated(), deserialized.getCreated());
+        assertEquals("rc", deserialized.getNickname());
+        assertNull(deserialized.getRoles());
+    }
+
+    @Test
+    public void roundTripped() {
+        User user = user();
+        User deserialized = BeanStrategies.SNAKE_CASED.deserializer(User.class).deserialize(
+                new JsonObject(BeanStrategies.SNAKE_CASED.serializer(User.class)
+                        .serialize(new JsonObject(), user).toString()));
+
+        assertEquals(user.getId(), deserialized.getId());
+        assertEquals(user.getFirstName(), deserialized.getFirstName());
+        assertEquals(user.getAge(), deserialized.getAge());
+        assertEquals(user.isActive(), deserialized.isActive());
+        assertEquals(user.getCreated(), deserialized.getCreated());
+        assertEquals(user.getNickname(), deserialized.getNickname());
+    }
+
+    @Test
+    public void inaccessibleClassesWithoutDefaultConstructors() {
+        JsonObject json = (JsonObject) BeanStrategies.CAMEL_CASED.serializer(Point.class)
+                .serialize(new JsonObject(), new Point(1, 2));
+        assertEquals("{\"x\":1,\"y\":2}", json.toString());
+
+        Point point = BeanStrategies.CAMEL_CASED.deserializer(Point.class).deserialize(json.put("y", 3));
+        assertEquals(1, point.getX());
+        assertEquals(3, point.getY());
+    }
+
+    @Test
+    public void strategiesCached() {
+        assertSame(BeanStrategies.CAMEL_CASED.serializer(User.class),
+                BeanStrategies.CAMEL_CASED.serializer(User.class));
+        assertSame(BeanStrategies.CAMEL_CASED.deserializer(User.class),
+                BeanStrategies.CAMEL_CASED.deserializer(User.class));
+        assertNotSame(BeanStrategies.CAMEL_CASED.serializer(User.class),
+                BeanStrategies.SNAKE_CASED.serializer(User.class));
+    }
+}